@@ -0,0 +1,107 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting cost of the {@link Log} calls made on the data path.
+ *
+ * The disabled variants log below the current level, i.e. the per frame debug logging with the default INFO level,
+ * so they show what the filtered out messages cost. The messages go to the {@link NullOutputChannel}, directly or
+ * through the {@link AsyncOutputChannel} which formats them on its own thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark {
+    private static final String FRAME_TEMPLATE =
+            "PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, track: %s";
+
+    private NullOutputChannel outputChannel;
+    private Log log;
+    private AsyncOutputChannel asyncOutputChannel;
+    private Log asyncLog;
+    private LogRateLimiter rateLimiter;
+    private IOException exception;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        outputChannel = new NullOutputChannel();
+        log = new Log(outputChannel, LogLevel.INFO, "Benchmark");
+        exception = new IOException("Connection reset");
+        asyncOutputChannel = new AsyncOutputChannel(new NullOutputChannel());
+        asyncLog = new Log(asyncOutputChannel, LogLevel.INFO, "Benchmark");
+        rateLimiter = new LogRateLimiter(50, 1, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        asyncOutputChannel.close(1000);
+    }
+
+    @Benchmark
+    public long disabledMessage() {
+        log.debug("Received end-of-stream for ACKs.");
+        return outputChannel.getMessageLength();
+    }
+
+    @Benchmark
+    public long disabledTemplate() {
+        final int frameIndex = index++;
+        log.debug(FRAME_TEMPLATE, frameIndex, frameIndex * 333333L, frameIndex * 333333L, 333333L, false, 1L);
+        return outputChannel.getMessageLength();
+    }
+
+    @Benchmark
+    public long enabledMessage() {
+        log.info("Starting ACK processing");
+        return outputChannel.getMessageLength();
+    }
+
+    @Benchmark
+    public long enabledTemplate() {
+        final int frameIndex = index++;
+        log.info(FRAME_TEMPLATE, frameIndex, frameIndex * 333333L, frameIndex * 333333L, 333333L, false, 1L);
+        return outputChannel.getMessageLength();
+    }
+
+    @Benchmark
+    public long asyncTemplate() {
+        final int frameIndex = index++;
+        asyncLog.info(FRAME_TEMPLATE, frameIndex, frameIndex * 333333L, frameIndex * 333333L, 333333L, false, 1L);
+        return asyncOutputChannel.getDroppedCount();
+    }
+
+    @Benchmark
+    public long rateLimitedTemplate() {
+        final int frameIndex = index++;
+        if (log.isEnabled(LogLevel.INFO) && rateLimiter.tryAcquire()) {
+            log.info(FRAME_TEMPLATE, frameIndex, frameIndex * 333333L, frameIndex * 333333L, 333333L, false, 1L);
+        }
+
+        return outputChannel.getMessageLength();
+    }
+
+    @Benchmark
+    public long exception() {
+        log.exception(exception, "Processing ACK threw an exception. Logging and continuing. ");
+        return outputChannel.getMessageLength();
+    }
+}
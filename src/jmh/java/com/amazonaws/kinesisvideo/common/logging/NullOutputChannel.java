@@ -0,0 +1,19 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Log output channel which drops the messages so the benchmarks measure the formatting without the I/O
+ */
+public class NullOutputChannel implements OutputChannel {
+    private long messageLength;
+
+    @Override
+    public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        messageLength += message.length();
+    }
+
+    public long getMessageLength() {
+        return messageLength;
+    }
+}
@@ -0,0 +1,80 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunk framing cost of {@link ChunkEncoder#encode(byte[], int)} compared to
+ * {@link ChunkEncoder#encodeInPlace(byte[], int, int)} used by the upload path.
+ *
+ * The chunks are written into a sink which only counts the bytes so the benchmark measures the framing itself.
+ * Compare the allocation rate reported by the jmh profile, i.e. -Djmh.args="ChunkEncodingBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkEncodingBenchmark {
+    @Param({"4096", "65536", "1048576"})
+    public int payloadSize;
+
+    private byte[] payload;
+    private byte[] framedPayload;
+    private CountingOutputStream sink;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        framedPayload = new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize + ChunkEncoder.CHUNK_TRAILER_SIZE];
+        System.arraycopy(payload, 0, framedPayload, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, payloadSize);
+        sink = new CountingOutputStream();
+    }
+
+    @Benchmark
+    public void chunkEncoder(final Blackhole blackhole) throws IOException {
+        sink.write(ChunkEncoder.encode(payload, payloadSize));
+        blackhole.consume(sink.count);
+    }
+
+    @Benchmark
+    public void chunkEncoderInPlace(final Blackhole blackhole) throws IOException {
+        final int chunkOffset = ChunkEncoder.encodeInPlace(framedPayload, ChunkEncoder.MAX_CHUNK_HEADER_SIZE,
+                payloadSize);
+        sink.write(framedPayload, chunkOffset,
+                ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize + ChunkEncoder.CHUNK_TRAILER_SIZE - chunkOffset);
+        blackhole.consume(sink.count);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing cost of a chunked PutMedia response with {@link ChunkDecoder} compared to {@link HttpResponseParser}.
+ *
+ * The response has the status line, the headers and a chunk per ACK. The {@link ChunkDecoder} reads the status
+ * line and the headers byte at a time and the body through a reader while the {@link HttpResponseParser} is fed
+ * with the same bulk reads the blocking ACK consumer does. Compare the allocation rate reported by the jmh profile,
+ * i.e. -Djmh.args="HttpResponseParsingBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpResponseParsingBenchmark {
+    private static final int READ_BUFFER_SIZE = 4 * 1024;
+    private static final String ACK = "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":1500000000000,"
+            + "\"FragmentNumber\":\"91343852333181432392682062607743920146264772054\"}";
+
+    @Param({"8", "32"})
+    public int headerCount;
+
+    @Param({"1", "100"})
+    public int ackCount;
+
+    private byte[] response;
+    private byte[] readBuffer;
+    private HttpResponseParser parser;
+    private long bodyBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\n");
+        for (int i = 0; i < headerCount; i++) {
+            head.append("X-Amz-Header-").append(i).append(": value-").append(i).append("\r\n");
+        }
+        head.append("Transfer-Encoding: chunked\r\n\r\n");
+        outputStream.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+
+        final byte[] ack = ACK.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < ackCount; i++) {
+            outputStream.write(ChunkEncoder.encode(ack, ack.length));
+        }
+        outputStream.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        response = outputStream.toByteArray();
+        readBuffer = new byte[READ_BUFFER_SIZE];
+        parser = new HttpResponseParser(new HttpResponseParser.Listener() {
+            @Override
+            public void onBody(final byte[] buffer, final int offset, final int length) {
+                bodyBytes += length;
+            }
+
+            @Override
+            public void onComplete() {
+                // Nothing to do
+            }
+        });
+    }
+
+    @Benchmark
+    public void chunkDecoder(final Blackhole blackhole) {
+        final InputStream inputStream = new ByteArrayInputStream(response);
+        blackhole.consume(ChunkDecoder.readStatusLine(inputStream));
+        blackhole.consume(ChunkDecoder.decodeHeaders(inputStream));
+        ChunkDecoder.parseResponseBodyAndDecodeAck(
+                new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII)),
+                new Consumer<String>() {
+                    @Override
+                    public void accept(final String chunk) {
+                        blackhole.consume(chunk);
+                    }
+                });
+    }
+
+    @Benchmark
+    public void httpResponseParser(final Blackhole blackhole) {
+        final ByteArrayInputStream inputStream = new ByteArrayInputStream(response);
+        parser.reset();
+        int bytesRead;
+        while (!parser.isComplete() && (bytesRead = inputStream.read(readBuffer, 0, readBuffer.length)) > 0) {
+            int offset = 0;
+            while (offset < bytesRead && !parser.isComplete()) {
+                offset += parser.parse(readBuffer, offset, bytesRead - offset);
+            }
+        }
+
+        blackhole.consume(parser.getResponseStatus());
+        blackhole.consume(parser.getHeaders());
+        blackhole.consume(bodyBytes);
+    }
+}
@@ -0,0 +1,142 @@
+package com.amazonaws.kinesisvideo.internal.client;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.NullOutputChannel;
+import com.amazonaws.kinesisvideo.internal.mediasource.ProducerStreamSink;
+import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.internal.producer.jni.MockKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregate putFrame throughput of the streams spread over the {@link ProducerShard}s of a client.
+ *
+ * Each shard is a {@link MockKinesisVideoProducerJni} which burns a part of the native call cost under its client lock,
+ * the streams of a shard contend on it as on the lock of the native client. The streams are placed with
+ * {@link ProducerShard#select} as the client places them, each benchmark thread puts into one of the streams.
+ *
+ * A single shard is equivalent to the client without the sharding. Vary the thread count with the JMH "-t" option,
+ * i.e. -Djmh.args="ProducerShardsBenchmark -t 1,4,16"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ProducerShardsBenchmark {
+    private static final long FRAME_DURATION_IN_HUNDREDS_OF_NANOS = 333333L;
+    private static final int KEY_FRAME_INTERVAL = 30;
+    private static final int FRAME_SIZE = 1024;
+
+    /**
+     * Native stream handles are heap pointers so emulate their alignment
+     */
+    private static final long STREAM_HANDLE_BASE = 0x7f0000001000L;
+    private static final long STREAM_HANDLE_ALIGNMENT = 0x200L;
+
+    @Param({"1", "2", "4", "8"})
+    public int shardCount;
+
+    @Param({"8"})
+    public int streamCount;
+
+    /**
+     * Simulated native putFrame cost outside and inside the client lock in JMH tokens
+     */
+    @Param({"100"})
+    public long nativeCallTokens;
+
+    @Param({"100"})
+    public long clientLockTokens;
+
+    private final List<ProducerStreamSink> sinks = new ArrayList<ProducerStreamSink>();
+    private final AtomicInteger nextStream = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws ProducerException {
+        final Log log = new Log(new NullOutputChannel(), LogLevel.INFO, "Benchmark");
+        final List<ProducerShard> shards = new ArrayList<ProducerShard>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ProducerShard(i,
+                    new MockKinesisVideoProducerJni(log, nativeCallTokens, clientLockTokens),
+                    noOp(ServiceCallbacks.class)));
+        }
+
+        sinks.clear();
+        for (int i = 0; i < streamCount; i++) {
+            final StreamInfo streamInfo = MockKinesisVideoProducerJni.createMockStreamInfo("benchmark-stream-" + i);
+            final ProducerShard shard = ProducerShard.select(shards, streamInfo);
+            shard.addStream(streamInfo);
+            final MockKinesisVideoProducerJni producer = (MockKinesisVideoProducerJni) shard.getProducer();
+            sinks.add(new ProducerStreamSink(producer.createMockStream(log, streamInfo,
+                    STREAM_HANDLE_BASE + i * STREAM_HANDLE_ALIGNMENT)));
+        }
+
+        nextStream.set(0);
+    }
+
+    @State(Scope.Thread)
+    public static class StreamState {
+        ProducerStreamSink sink;
+        ByteBuffer frameData;
+        int frameIndex;
+
+        @Setup(Level.Trial)
+        public void setup(final ProducerShardsBenchmark benchmark) {
+            sink = benchmark.sinks.get(benchmark.nextStream.getAndIncrement() % benchmark.streamCount);
+            frameData = ByteBuffer.allocateDirect(FRAME_SIZE);
+            frameIndex = 0;
+        }
+    }
+
+    @Benchmark
+    public void putFrame(final StreamState stream) throws KinesisVideoException {
+        final int index = stream.frameIndex++;
+        final long timestamp = index * FRAME_DURATION_IN_HUNDREDS_OF_NANOS;
+        stream.sink.onFrame(new KinesisVideoFrame(index,
+                index % KEY_FRAME_INTERVAL == 0 ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                timestamp,
+                timestamp,
+                FRAME_DURATION_IN_HUNDREDS_OF_NANOS,
+                stream.frameData));
+    }
+
+    private static <T> T noOp(final Class<T> interfaceClass) {
+        return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+                new Class<?>[] { interfaceClass },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return null;
+                    }
+                }));
+    }
+}
@@ -0,0 +1,260 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.producer.AuthCallbacks;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import com.amazonaws.kinesisvideo.producer.Tag;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.amazonaws.kinesisvideo.producer.StreamInfo.NalAdaptationFlags.NAL_ADAPTATION_FLAG_NONE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_BITRATE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_BUFFER_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_GOP_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_REPLAY_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_STALENESS_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_TIMESCALE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.FRAMERATE_30;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.KEYFRAME_FRAGMENTATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.MAX_LATENCY_ZERO;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.NOT_ADAPTIVE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.NO_KMS_KEY_ID;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RECALCULATE_METRICS;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RECOVER_ON_FAILURE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RELATIVE_TIMECODES;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.REQUEST_FRAGMENT_ACKS;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RETENTION_ONE_HOUR;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.USE_FRAME_TIMECODES;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VERSION_ZERO;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VIDEO_CODEC_ID;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VIDEO_CONTENT_TYPE;
+
+/**
+ * Producer which doesn't load the native library so the Java side of the data path can be benchmarked.
+ *
+ * The native calls of the data path are replaced so the frames and the ACKs which would be handed over to the native
+ * producer are only counted, the producer still takes its stream locks around them. Each frame burns a fixed amount
+ * of CPU to stand in for its JNI transition, a batch still costs one transition per frame. The callbacks passed to the
+ * producer are no-ops.
+ *
+ * Optionally a part of the cost is burnt under a lock of the producer, standing in for the content store allocation
+ * under the lock of the native client which the streams of a producer contend on. The counters are exact with a single
+ * thread or with the client lock.
+ */
+public class MockKinesisVideoProducerJni extends NativeKinesisVideoProducerJni {
+    private static final long STREAM_HANDLE = 0x7f0000001000L;
+    private static final String STREAM_NAME = "benchmark-stream";
+    private static final String TRACK_NAME = "benchmark-track";
+
+    private final KinesisVideoMetrics metrics = new KinesisVideoMetrics();
+    private final long nativeCallTokens;
+    private final long clientLockTokens;
+    private final Lock clientLock = new ReentrantLock();
+    private long nativeCallCount;
+    private long frameCount;
+    private long frameBytes;
+    private long ackCount;
+
+    public MockKinesisVideoProducerJni(@Nonnull final Log log) throws ProducerException {
+        this(log, 0);
+    }
+
+    /**
+     * @param nativeCallTokens simulated cost of a native call in JMH tokens
+     */
+    public MockKinesisVideoProducerJni(@Nonnull final Log log, final long nativeCallTokens)
+            throws ProducerException {
+        this(log, nativeCallTokens, 0);
+    }
+
+    /**
+     * @param nativeCallTokens simulated cost of a native call in JMH tokens
+     * @param clientLockTokens simulated cost of a native call under the client lock in JMH tokens
+     */
+    public MockKinesisVideoProducerJni(@Nonnull final Log log, final long nativeCallTokens,
+                                       final long clientLockTokens) throws ProducerException {
+        this(log, nativeCallTokens, clientLockTokens, StreamLockStripes.DEFAULT_STRIPE_COUNT);
+    }
+
+    /**
+     * @param nativeCallTokens simulated cost of a native call in JMH tokens
+     * @param clientLockTokens simulated cost of a native call under the client lock in JMH tokens
+     * @param streamLockStripeCount number of the stream lock stripes of the producer
+     */
+    public MockKinesisVideoProducerJni(@Nonnull final Log log, final long nativeCallTokens,
+                                       final long clientLockTokens, final int streamLockStripeCount)
+            throws ProducerException {
+        super(noOp(AuthCallbacks.class), noOp(StorageCallbacks.class), noOp(ServiceCallbacks.class), log,
+                new CountDownLatch(1), streamLockStripeCount);
+        this.nativeCallTokens = nativeCallTokens;
+        this.clientLockTokens = clientLockTokens;
+    }
+
+    /**
+     * Creates a realtime H.264 stream without the native stream behind it
+     */
+    @Nonnull
+    public NativeKinesisVideoProducerStream createMockStream(@Nonnull final Log log) {
+        return createMockStream(log, createMockStreamInfo(STREAM_NAME), STREAM_HANDLE);
+    }
+
+    /**
+     * Creates the stream with its own handle so the streams of the producer don't share the stream lock
+     */
+    @Nonnull
+    public NativeKinesisVideoProducerStream createMockStream(@Nonnull final Log log,
+                                                             @Nonnull final StreamInfo streamInfo,
+                                                             final long streamHandle) {
+        // Stand in for the sampler so the key-frames log the metrics
+        getMetricsRegistry().publishClientMetrics(metrics);
+        getMetricsRegistry().publishStreamMetrics(streamHandle, new KinesisVideoStreamMetrics());
+        return new NativeKinesisVideoProducerStream(this, streamInfo, streamHandle, log, null);
+    }
+
+    /**
+     * @return info of a realtime H.264 stream
+     */
+    @Nonnull
+    public static StreamInfo createMockStreamInfo(@Nonnull final String streamName) {
+        return new StreamInfo(VERSION_ZERO,
+                streamName,
+                StreamInfo.StreamingType.STREAMING_TYPE_REALTIME,
+                VIDEO_CONTENT_TYPE,
+                NO_KMS_KEY_ID,
+                RETENTION_ONE_HOUR,
+                NOT_ADAPTIVE,
+                MAX_LATENCY_ZERO,
+                DEFAULT_GOP_DURATION,
+                KEYFRAME_FRAGMENTATION,
+                USE_FRAME_TIMECODES,
+                RELATIVE_TIMECODES,
+                REQUEST_FRAGMENT_ACKS,
+                RECOVER_ON_FAILURE,
+                VIDEO_CODEC_ID,
+                TRACK_NAME,
+                DEFAULT_BITRATE,
+                FRAMERATE_30,
+                DEFAULT_BUFFER_DURATION,
+                DEFAULT_REPLAY_DURATION,
+                DEFAULT_STALENESS_DURATION,
+                DEFAULT_TIMESCALE,
+                RECALCULATE_METRICS,
+                null,
+                new Tag[0],
+                NAL_ADAPTATION_FLAG_NONE);
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return true;
+    }
+
+    @Override
+    protected void finalize() {
+        // Nothing to free
+    }
+
+    @Override
+    void putKinesisVideoFrame(final long clientHandle,
+                              final long streamHandle,
+                              @Nonnull final KinesisVideoFrame kinesisVideoFrame) {
+        nativeCall(kinesisVideoFrame);
+    }
+
+    private void nativeCall(final KinesisVideoFrame kinesisVideoFrame) {
+        if (nativeCallTokens > 0) {
+            Blackhole.consumeCPU(nativeCallTokens);
+        }
+
+        if (clientLockTokens == 0) {
+            nativeCallCount++;
+            countFrame(kinesisVideoFrame);
+            return;
+        }
+
+        clientLock.lock();
+        try {
+            Blackhole.consumeCPU(clientLockTokens);
+            nativeCallCount++;
+            countFrame(kinesisVideoFrame);
+        } finally {
+            clientLock.unlock();
+        }
+    }
+
+    private void countFrame(final KinesisVideoFrame kinesisVideoFrame) {
+        frameCount++;
+        frameBytes += kinesisVideoFrame.getSize();
+    }
+
+    @Override
+    void kinesisVideoStreamFragmentAck(final long clientHandle,
+                                       final long streamHandle,
+                                       final long uploadHandle,
+                                       @Nonnull final KinesisVideoFragmentAck kinesisVideoFragmentAck) {
+        ackCount++;
+    }
+
+    @Override
+    public KinesisVideoMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void getStreamMetrics(final long streamHandle, @Nonnull final KinesisVideoStreamMetrics streamMetrics) {
+        // Nothing to update
+    }
+
+    public long getNativeCallCount() {
+        return nativeCallCount;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getFrameBytes() {
+        return frameBytes;
+    }
+
+    public long getAckCount() {
+        return ackCount;
+    }
+
+    /**
+     * Implements the callback interface with the methods doing nothing and returning the default values
+     */
+    private static <T> T noOp(final Class<T> callbacksClass) {
+        return callbacksClass.cast(Proxy.newProxyInstance(callbacksClass.getClassLoader(),
+                new Class<?>[] { callbacksClass },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        } else if (returnType == int.class) {
+                            return 0;
+                        } else if (returnType == long.class) {
+                            return 0L;
+                        }
+
+                        return null;
+                    }
+                }));
+    }
+}
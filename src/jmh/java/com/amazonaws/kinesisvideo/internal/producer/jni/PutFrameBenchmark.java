@@ -0,0 +1,77 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.NullOutputChannel;
+import com.amazonaws.kinesisvideo.internal.mediasource.ProducerStreamSink;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java side cost of submitting a frame from a media source, i.e. {@link ProducerStreamSink#onFrame} through the
+ * {@link NativeKinesisVideoProducerStream} into the {@link MockKinesisVideoProducerJni} in place of the native
+ * producer.
+ *
+ * Every 30th frame is a key frame which also logs the sampled metrics. Compare the log levels to see the cost of the
+ * per frame debug logging, i.e. -Djmh.args="PutFrameBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutFrameBenchmark {
+    private static final long FRAME_DURATION_IN_HUNDREDS_OF_NANOS = 333333L;
+    private static final int KEY_FRAME_INTERVAL = 30;
+
+    @Param({"INFO", "DEBUG"})
+    public String logLevel;
+
+    @Param({"1024", "65536"})
+    public int frameSize;
+
+    private MockKinesisVideoProducerJni producer;
+    private ProducerStreamSink sink;
+    private ByteBuffer frameData;
+    private int frameIndex;
+
+    @Setup(Level.Trial)
+    public void setup() throws ProducerException {
+        final Log log = new Log(new NullOutputChannel(), LogLevel.valueOf(logLevel), "Benchmark");
+        producer = new MockKinesisVideoProducerJni(log);
+        sink = new ProducerStreamSink(producer.createMockStream(log));
+        frameData = ByteBuffer.allocateDirect(frameSize);
+        frameIndex = 0;
+    }
+
+    @Benchmark
+    public long putFrame() throws KinesisVideoException {
+        final int index = frameIndex++;
+        final long timestamp = index * FRAME_DURATION_IN_HUNDREDS_OF_NANOS;
+        sink.onFrame(new KinesisVideoFrame(index,
+                index % KEY_FRAME_INTERVAL == 0 ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                timestamp,
+                timestamp,
+                FRAME_DURATION_IN_HUNDREDS_OF_NANOS,
+                frameData));
+        return producer.getFrameBytes();
+    }
+}
@@ -0,0 +1,92 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.NullOutputChannel;
+import com.amazonaws.kinesisvideo.internal.mediasource.ProducerStreamSink;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames per second on a single core submitted one by one with {@link ProducerStreamSink#onFrame} compared to the
+ * batches submitted with {@link ProducerStreamSink#onFrames}.
+ *
+ * The frames are small, i.e. AAC audio frames, so the per call overhead dominates. Each frame put into the
+ * {@link MockKinesisVideoProducerJni} burns a fixed amount of CPU standing in for its JNI transition, so the batches
+ * only save the per call work of the sink, the stream and the stream lock. The batch size of 1 is the unbatched submission. The score
+ * is in frames per millisecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutFramesBenchmark {
+    private static final int FRAMES_PER_OPERATION = 96;
+    private static final int AUDIO_FRAME_SIZE = 256;
+    private static final long FRAME_DURATION_IN_HUNDREDS_OF_NANOS = 213333L;
+
+    @Param({"1", "8", "32"})
+    public int batchSize;
+
+    /**
+     * Simulated cost of a native call in JMH tokens
+     */
+    @Param({"100"})
+    public long nativeCallTokens;
+
+    private ProducerStreamSink sink;
+    private KinesisVideoFrame[] frames;
+
+    @Setup(Level.Trial)
+    public void setup() throws ProducerException {
+        final Log log = new Log(new NullOutputChannel(), LogLevel.INFO, "Benchmark");
+        final MockKinesisVideoProducerJni producer = new MockKinesisVideoProducerJni(log, nativeCallTokens);
+        sink = new ProducerStreamSink(producer.createMockStream(log));
+
+        final ByteBuffer frameData = ByteBuffer.allocateDirect(AUDIO_FRAME_SIZE);
+        frames = new KinesisVideoFrame[FRAMES_PER_OPERATION];
+        for (int i = 0; i < FRAMES_PER_OPERATION; i++) {
+            final long timestamp = i * FRAME_DURATION_IN_HUNDREDS_OF_NANOS;
+            frames[i] = new KinesisVideoFrame(i,
+                    i == 0 ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                    timestamp,
+                    timestamp,
+                    FRAME_DURATION_IN_HUNDREDS_OF_NANOS,
+                    frameData);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_PER_OPERATION)
+    public void putFrames() throws KinesisVideoException {
+        if (batchSize == 1) {
+            for (int i = 0; i < FRAMES_PER_OPERATION; i++) {
+                sink.onFrame(frames[i]);
+            }
+        } else {
+            for (int offset = 0; offset < FRAMES_PER_OPERATION; offset += batchSize) {
+                sink.onFrames(frames, offset, Math.min(batchSize, FRAMES_PER_OPERATION - offset));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.NullOutputChannel;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregate putFrame throughput of the data path locking scheme in {@link NativeKinesisVideoProducerJni}.
+ *
+ * The frames go through the producer's putFrame with only its native call replaced by a fixed amount of CPU work, so
+ * the benchmark runs without the native library. A single stripe is equivalent to the former global lock.
+ *
+ * Vary the thread count with the JMH "-t" option, i.e. -Djmh.args="StreamLockStripesBenchmark -t 1,4,16"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class StreamLockStripesBenchmark {
+    /**
+     * Native stream handles are heap pointers so emulate their alignment
+     */
+    private static final long STREAM_HANDLE_BASE = 0x7f0000001000L;
+    private static final long STREAM_HANDLE_ALIGNMENT = 0x200L;
+    private static final int FRAME_SIZE = 1024;
+
+    @Param({"1", "64"})
+    public int stripeCount;
+
+    @Param({"1", "8", "40"})
+    public int streamCount;
+
+    /**
+     * Simulated native putFrame cost in JMH tokens
+     */
+    @Param({"200"})
+    public int nativeWork;
+
+    private MockKinesisVideoProducerJni producer;
+    private final AtomicInteger nextStream = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws ProducerException {
+        final Log log = new Log(new NullOutputChannel(), LogLevel.ERROR, "Benchmark");
+        producer = new MockKinesisVideoProducerJni(log, nativeWork, 0, stripeCount);
+        nextStream.set(0);
+    }
+
+    @State(Scope.Thread)
+    public static class StreamState {
+        long streamHandle;
+        KinesisVideoFrame frame;
+
+        @Setup(Level.Trial)
+        public void setup(final StreamLockStripesBenchmark benchmark) {
+            final int streamIndex = benchmark.nextStream.getAndIncrement() % benchmark.streamCount;
+            streamHandle = STREAM_HANDLE_BASE + streamIndex * STREAM_HANDLE_ALIGNMENT;
+            frame = new KinesisVideoFrame(0, FrameFlags.FRAME_FLAG_NONE, 0, 0, 0,
+                    ByteBuffer.allocateDirect(FRAME_SIZE));
+        }
+    }
+
+    @Benchmark
+    public void putFrame(final StreamState stream) throws ProducerException {
+        producer.putFrame(stream.streamHandle, stream.frame);
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.NullOutputChannel;
+import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.internal.producer.jni.MockKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ACK handling cost of the {@link AckConsumer} for a chunk encoded ACK stream, from the bulk reads through the
+ * {@link FragmentAckParser} to the ACKs handed over to the {@link MockKinesisVideoProducerJni} in place of the
+ * native producer.
+ *
+ * Each operation consumes the whole stream of the given number of ACKs, i.e. a BUFFERING, RECEIVED and PERSISTED
+ * ACK per fragment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AckConsumerBenchmark {
+    private static final long UPLOAD_HANDLE = 1;
+    private static final String[] EVENT_TYPES = {"BUFFERING", "RECEIVED", "PERSISTED"};
+
+    @Param({"3", "300"})
+    public int ackCount;
+
+    private MockKinesisVideoProducerJni producer;
+    private KinesisVideoProducerStream stream;
+    private Log log;
+    private byte[] ackStream;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, ProducerException {
+        log = new Log(new NullOutputChannel(), LogLevel.INFO, "Benchmark");
+        producer = new MockKinesisVideoProducerJni(log);
+        stream = producer.createMockStream(log);
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < ackCount; i++) {
+            final byte[] ack = String.format("{\"EventType\":\"%s\",\"FragmentTimecode\":%d,"
+                            + "\"FragmentNumber\":\"9134385233318143239268206260774392014626477%04d\"}",
+                    EVENT_TYPES[i % EVENT_TYPES.length], 1500000000000L + (i / EVENT_TYPES.length) * 2000L,
+                    i / EVENT_TYPES.length)
+                    .getBytes(StandardCharsets.US_ASCII);
+            outputStream.write(ChunkEncoder.encode(ack, ack.length));
+        }
+
+        ackStream = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public long consumeAcks() {
+        new AckConsumer(UPLOAD_HANDLE, stream, log).accept(new ByteArrayInputStream(ackStream));
+        return producer.getAckCount();
+    }
+}
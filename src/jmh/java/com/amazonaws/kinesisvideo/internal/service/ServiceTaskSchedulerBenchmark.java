@@ -0,0 +1,149 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.java.logging.SysOutLogChannel;
+import com.amazonaws.kinesisvideo.util.VirtualThreads;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stream count scaling of the {@link ServiceTaskScheduler} with all of the tasks running on the scheduled pool,
+ * with a separate control plane pool and with the tasks handed over to the virtual threads.
+ *
+ * Each operation submits a blocking upload task per stream followed by a short control plane task, i.e. a
+ * token refresh, and waits until all of them complete. The controlPlaneLatencyMillis counter shows how long the
+ * refresh waited behind the uploads on average. The scheduled pool has the same size as the one created by the
+ * {@link com.amazonaws.kinesisvideo.java.client.KinesisVideoJavaClientFactory}. The virtual mode requires a
+ * runtime with the virtual threads, i.e. Java 21, and is skipped on the older runtimes, its operations return
+ * right away there.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceTaskSchedulerBenchmark {
+    private static final int NUMBER_OF_THREADS_IN_POOL = 2;
+    private static final int NUMBER_OF_CONTROL_PLANE_THREADS = 2;
+    private static final long UPLOAD_BLOCKING_TIME_IN_MILLISECONDS = 1;
+
+    @Param({"shared", "lanes", "virtual"})
+    public String mode;
+
+    @Param({"8", "64", "512"})
+    public int streamCount;
+
+    private ServiceTaskScheduler scheduler;
+
+    /**
+     * Latency of the control plane tasks reported next to the operation time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ControlPlaneLatency {
+        private long totalNanos;
+        private long tasks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            totalNanos = 0;
+            tasks = 0;
+        }
+
+        public double controlPlaneLatencyMillis() {
+            return tasks == 0 ? 0 : (double) totalNanos / tasks / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        private void record(final long latencyNanos) {
+            totalNanos += latencyNanos;
+            tasks++;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("virtual".equals(mode) && !VirtualThreads.isSupported()) {
+            System.out.println("Skipping the virtual mode, the runtime has no virtual threads");
+            return;
+        }
+
+        final Log log = new Log(new SysOutLogChannel(), LogLevel.ERROR, "Benchmark");
+        if ("virtual".equals(mode)) {
+            scheduler = new ServiceTaskScheduler(Executors.newScheduledThreadPool(NUMBER_OF_THREADS_IN_POOL),
+                    VirtualThreads.newThreadPerTaskExecutor("Benchmark-ControlPlane-"),
+                    VirtualThreads.newThreadPerTaskExecutor("Benchmark-DataPlane-"),
+                    log);
+        } else {
+            scheduler = new ServiceTaskScheduler(Executors.newScheduledThreadPool(NUMBER_OF_THREADS_IN_POOL),
+                    "lanes".equals(mode) ? Executors.newScheduledThreadPool(NUMBER_OF_CONTROL_PLANE_THREADS) : null,
+                    null,
+                    log);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void uploadsWithControlPlaneTask(final ControlPlaneLatency latency) throws InterruptedException {
+        if (scheduler == null) {
+            // Skipped mode
+            return;
+        }
+
+        final CountDownLatch uploadsLatch = new CountDownLatch(streamCount);
+        final CountDownLatch controlPlaneLatch = new CountDownLatch(1);
+        final Runnable upload = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(UPLOAD_BLOCKING_TIME_IN_MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                uploadsLatch.countDown();
+            }
+        };
+
+        for (int i = 0; i < streamCount; i++) {
+            scheduler.scheduleDataPlane(upload, 0);
+        }
+
+        final long submitted = System.nanoTime();
+        final long[] controlPlaneLatency = new long[1];
+        scheduler.scheduleControlPlane(new Runnable() {
+            @Override
+            public void run() {
+                controlPlaneLatency[0] = System.nanoTime() - submitted;
+                controlPlaneLatch.countDown();
+            }
+        }, 0);
+
+        controlPlaneLatch.await();
+        uploadsLatch.await();
+        latency.record(controlPlaneLatency[0]);
+    }
+}
@@ -0,0 +1,47 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bookkeeping cost of {@link BandwidthThrottlerImpl#getAllowedBytes(int)} per write.
+ *
+ * The bandwidth is set high enough for the throttler to never sleep so the benchmark measures the accounting done
+ * for every write of the {@link BandwidthThrottledOutputStream}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BandwidthThrottlerBenchmark {
+    private static final long UNLIMITED_BPS = Long.MAX_VALUE / 2;
+
+    @Param({"1500", "65536"})
+    public int writeSize;
+
+    private BandwidthThrottlerImpl throttler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        throttler = new BandwidthThrottlerImpl(UNLIMITED_BPS);
+    }
+
+    @Benchmark
+    public int getAllowedBytes() {
+        return throttler.getAllowedBytes(writeSize);
+    }
+}
@@ -2,7 +2,12 @@ package com.amazonaws.kinesisvideo.client;
 
 import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
 import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.internal.mediasource.FrameAdmissionController;
 import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+import com.amazonaws.kinesisvideo.storage.FrameSpillStore;
+import com.amazonaws.kinesisvideo.stream.throttling.UplinkBandwidthScheduler;
+
+import java.io.File;
 
 /**
  * Configuration for KinesisVideoClient.
@@ -13,6 +18,23 @@ public final class KinesisVideoClientConfiguration {
     private final StorageCallbacks storageCallbacks;
     private final String endpoint;
     private final OutputChannel logChannel;
+    private final int nioEventLoopThreads;
+    private final boolean virtualThreadsEnabled;
+    private final int controlPlaneThreads;
+    private final int dataPlaneThreads;
+    private final boolean connectionPrewarmingEnabled;
+    private final long streamMetadataCacheTtlInMillis;
+    private final File streamMetadataCacheFile;
+    private final boolean adaptiveRateControlEnabled;
+    private final UplinkBandwidthScheduler uplinkBandwidthScheduler;
+    private final long frameSpillQuota;
+    private final File frameSpillDirectory;
+    private final FrameSpillStore.EvictionPolicy frameSpillEvictionPolicy;
+    private final long fragmentJournalQuota;
+    private final File fragmentJournalDirectory;
+    private final long fragmentJournalReplayBitsPerSecond;
+    private final FrameAdmissionController.DegradationPolicy frameAdmissionPolicy;
+    private final int producerShards;
 
     private KinesisVideoClientConfiguration(final Builder builder) {
         this.region = builder.region;
@@ -20,6 +42,23 @@ public final class KinesisVideoClientConfiguration {
         this.storageCallbacks = builder.storageCallbacks;
         this.endpoint = builder.endpoint;
         this.logChannel = builder.logChannel;
+        this.nioEventLoopThreads = builder.nioEventLoopThreads;
+        this.virtualThreadsEnabled = builder.virtualThreadsEnabled;
+        this.controlPlaneThreads = builder.controlPlaneThreads;
+        this.dataPlaneThreads = builder.dataPlaneThreads;
+        this.connectionPrewarmingEnabled = builder.connectionPrewarmingEnabled;
+        this.streamMetadataCacheTtlInMillis = builder.streamMetadataCacheTtlInMillis;
+        this.streamMetadataCacheFile = builder.streamMetadataCacheFile;
+        this.adaptiveRateControlEnabled = builder.adaptiveRateControlEnabled;
+        this.uplinkBandwidthScheduler = builder.uplinkBandwidthScheduler;
+        this.frameSpillQuota = builder.frameSpillQuota;
+        this.frameSpillDirectory = builder.frameSpillDirectory;
+        this.frameSpillEvictionPolicy = builder.frameSpillEvictionPolicy;
+        this.fragmentJournalQuota = builder.fragmentJournalQuota;
+        this.fragmentJournalDirectory = builder.fragmentJournalDirectory;
+        this.fragmentJournalReplayBitsPerSecond = builder.fragmentJournalReplayBitsPerSecond;
+        this.frameAdmissionPolicy = builder.frameAdmissionPolicy;
+        this.producerShards = builder.producerShards;
     }
 
     public static Builder builder() {
@@ -43,6 +82,10 @@ public final class KinesisVideoClientConfiguration {
         if (endpoint == null) {
             builder.withEndpoint(constructEndpoint(region));
         }
+
+        if (builder.producerShards < 1) {
+            builder.withProducerShards(1);
+        }
     }
 
     private static String constructEndpoint(final String region) {
@@ -73,6 +116,127 @@ public final class KinesisVideoClientConfiguration {
         return this.logChannel;
     }
 
+    /**
+     * @return number of the event loop threads multiplexing the PutMedia connections or 0 if each connection
+     * uses its own blocking sender and receiver threads
+     */
+    public int getNioEventLoopThreads() {
+        return this.nioEventLoopThreads;
+    }
+
+    /**
+     * @return whether the blocking service, upload and ACK tasks run on virtual threads
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return this.virtualThreadsEnabled;
+    }
+
+    /**
+     * @return number of the threads running the control plane calls, i.e. describeStream or getStreamingToken,
+     * or 0 if they share the scheduled executor
+     */
+    public int getControlPlaneThreads() {
+        return this.controlPlaneThreads;
+    }
+
+    /**
+     * @return number of the threads starting the PutMedia uploads or 0 if they share the scheduled executor
+     */
+    public int getDataPlaneThreads() {
+        return this.dataPlaneThreads;
+    }
+
+    /**
+     * @return whether a spare connection to the data endpoint is kept ready for the next PutMedia call
+     */
+    public boolean isConnectionPrewarmingEnabled() {
+        return this.connectionPrewarmingEnabled;
+    }
+
+    /**
+     * @return time the stream descriptions and the data endpoints are cached for or 0 if they are not cached
+     */
+    public long getStreamMetadataCacheTtlInMillis() {
+        return this.streamMetadataCacheTtlInMillis;
+    }
+
+    /**
+     * @return file the stream metadata cache is persisted into or null if it's kept in memory only
+     */
+    public File getStreamMetadataCacheFile() {
+        return this.streamMetadataCacheFile;
+    }
+
+    /**
+     * @return whether the upload rate of the streams adapts to the fragment ACK latency and the buffer pressure
+     */
+    public boolean isAdaptiveRateControlEnabled() {
+        return this.adaptiveRateControlEnabled;
+    }
+
+    /**
+     * @return scheduler sharing the uplink between the streams or null if each stream uploads independently
+     */
+    public UplinkBandwidthScheduler getUplinkBandwidthScheduler() {
+        return this.uplinkBandwidthScheduler;
+    }
+
+    /**
+     * @return disk space each stream can spill the frames into or 0 if the frames aren't spilled
+     */
+    public long getFrameSpillQuota() {
+        return this.frameSpillQuota;
+    }
+
+    /**
+     * @return directory the frames are spilled into, one sub-directory per stream
+     */
+    public File getFrameSpillDirectory() {
+        return this.frameSpillDirectory;
+    }
+
+    /**
+     * @return what is dropped when the spill quota of a stream is used up
+     */
+    public FrameSpillStore.EvictionPolicy getFrameSpillEvictionPolicy() {
+        return this.frameSpillEvictionPolicy;
+    }
+
+    /**
+     * @return disk space of the fragment journal of each stream or 0 if the fragments aren't journaled
+     */
+    public long getFragmentJournalQuota() {
+        return this.fragmentJournalQuota;
+    }
+
+    /**
+     * @return directory the fragments are journaled into, one sub-directory per stream
+     */
+    public File getFragmentJournalDirectory() {
+        return this.fragmentJournalDirectory;
+    }
+
+    /**
+     * @return rate the journaled fragments are replayed at after a restart or 0 for twice the stream bandwidth
+     */
+    public long getFragmentJournalReplayBitsPerSecond() {
+        return this.fragmentJournalReplayBitsPerSecond;
+    }
+
+    /**
+     * @return how far the frames are degraded under buffer pressure or null if they are all put into the stream
+     */
+    public FrameAdmissionController.DegradationPolicy getFrameAdmissionPolicy() {
+        return this.frameAdmissionPolicy;
+    }
+
+    /**
+     * @return number of the native producer instances the streams are spread over
+     */
+    public int getProducerShards() {
+        return this.producerShards;
+    }
+
     public static class Builder {
         private String region;
         private KinesisVideoCredentialsProvider credentialsProvider;
@@ -80,6 +244,23 @@ public final class KinesisVideoClientConfiguration {
                 KinesisVideoClientConfigurationDefaults.NO_OP_STORAGE_CALLBACKS;
         private String endpoint;
         private OutputChannel logChannel;
+        private int nioEventLoopThreads = 0;
+        private boolean virtualThreadsEnabled = false;
+        private int controlPlaneThreads = KinesisVideoClientConfigurationDefaults.DEFAULT_CONTROL_PLANE_THREADS;
+        private int dataPlaneThreads = 0;
+        private boolean connectionPrewarmingEnabled = false;
+        private long streamMetadataCacheTtlInMillis = 0;
+        private File streamMetadataCacheFile;
+        private boolean adaptiveRateControlEnabled = false;
+        private UplinkBandwidthScheduler uplinkBandwidthScheduler;
+        private long frameSpillQuota = 0;
+        private File frameSpillDirectory;
+        private FrameSpillStore.EvictionPolicy frameSpillEvictionPolicy = FrameSpillStore.EvictionPolicy.DROP_OLDEST;
+        private long fragmentJournalQuota = 0;
+        private File fragmentJournalDirectory;
+        private long fragmentJournalReplayBitsPerSecond = 0;
+        private FrameAdmissionController.DegradationPolicy frameAdmissionPolicy;
+        private int producerShards = 1;
 
         public Builder withRegion(final String region) {
             this.region = region;
@@ -106,6 +287,172 @@ public final class KinesisVideoClientConfiguration {
             return this;
         }
 
+        /**
+         * Streams the media over the non-blocking transport multiplexing all of the PutMedia connections on the
+         * specified number of the event loop threads. 0 uses the blocking transport with two threads per connection.
+         */
+        public Builder withNioEventLoopThreads(final int nioEventLoopThreads) {
+            this.nioEventLoopThreads = nioEventLoopThreads;
+            return this;
+        }
+
+        /**
+         * Runs the blocking service calls, PutMedia uploads and ACK processing on virtual threads leaving the
+         * scheduled executor for the timers only. Requires Java 21 or newer, ignored on the older runtimes.
+         */
+        public Builder withVirtualThreads(final boolean virtualThreadsEnabled) {
+            this.virtualThreadsEnabled = virtualThreadsEnabled;
+            return this;
+        }
+
+        /**
+         * Runs the control plane calls on their own pool of daemon threads so they don't wait behind the PutMedia
+         * uploads. 0 runs them on the scheduled executor.
+         */
+        public Builder withControlPlaneThreads(final int controlPlaneThreads) {
+            this.controlPlaneThreads = controlPlaneThreads;
+            return this;
+        }
+
+        /**
+         * Runs the PutMedia uploads on their own pool of daemon threads. 0 runs them on the scheduled executor.
+         */
+        public Builder withDataPlaneThreads(final int dataPlaneThreads) {
+            this.dataPlaneThreads = dataPlaneThreads;
+            return this;
+        }
+
+        /**
+         * Keeps a connected and TLS handshaken spare connection to the data endpoint while streaming so the token
+         * rotation and the connection reset don't wait for a new connection. Used by the blocking transport.
+         * Disabled by default.
+         */
+        public Builder withConnectionPrewarming(final boolean connectionPrewarmingEnabled) {
+            this.connectionPrewarmingEnabled = connectionPrewarmingEnabled;
+            return this;
+        }
+
+        /**
+         * Caches the active stream descriptions and the data endpoints for the specified time. A stream deleted or
+         * recreated by another client is only noticed once its entries expire or a call for it fails, so keep the
+         * time short. 0 disables the cache. Disabled by default.
+         */
+        public Builder withStreamMetadataCacheTtl(final long streamMetadataCacheTtlInMillis) {
+            this.streamMetadataCacheTtlInMillis = streamMetadataCacheTtlInMillis;
+            return this;
+        }
+
+        /**
+         * Persists the stream metadata cache into the file so the streams restarted by a new process skip the
+         * describeStream and getDataEndpoint calls too.
+         */
+        public Builder withStreamMetadataCacheFile(final File streamMetadataCacheFile) {
+            this.streamMetadataCacheFile = streamMetadataCacheFile;
+            return this;
+        }
+
+        /**
+         * Adapts the upload rate of each stream to the fragment ACK latency and the buffer pressure instead of
+         * uploading as fast as possible. The media sources implementing
+         * {@link com.amazonaws.kinesisvideo.stream.throttling.AdaptiveRateController.Listener} also get the
+         * recommended encoder bitrate.
+         */
+        public Builder withAdaptiveRateControl(final boolean adaptiveRateControlEnabled) {
+            this.adaptiveRateControlEnabled = adaptiveRateControlEnabled;
+            return this;
+        }
+
+        /**
+         * Uploads the streams through their shares of the scheduler's total bandwidth. The scheduler can be shared
+         * by several clients to cap the uplink of the whole process.
+         */
+        public Builder withUplinkBandwidthScheduler(final UplinkBandwidthScheduler uplinkBandwidthScheduler) {
+            this.uplinkBandwidthScheduler = uplinkBandwidthScheduler;
+            return this;
+        }
+
+        /**
+         * Spills the frames which don't fit into the content store, i.e. while the uplink is down, into
+         * memory-mapped files under the frame spill directory and uploads them once the content store has the room.
+         * The frames are spilled when the content store has less than the part of the storage size not covered by
+         * the spill ratio available. 0 disables spilling.
+         *
+         * @param frameSpillQuota disk space of each stream, at least two spill segments
+         */
+        public Builder withFrameSpillQuota(final long frameSpillQuota) {
+            this.frameSpillQuota = frameSpillQuota;
+            return this;
+        }
+
+        /**
+         * Directory the frames are spilled into, required with the frame spill quota. The leftover spill files of
+         * the stream are deleted when it's created.
+         */
+        public Builder withFrameSpillDirectory(final File frameSpillDirectory) {
+            this.frameSpillDirectory = frameSpillDirectory;
+            return this;
+        }
+
+        /**
+         * Drops either the oldest spilled frames or the new ones once the spill quota is used up
+         */
+        public Builder withFrameSpillEvictionPolicy(final FrameSpillStore.EvictionPolicy frameSpillEvictionPolicy) {
+            this.frameSpillEvictionPolicy = frameSpillEvictionPolicy;
+            return this;
+        }
+
+        /**
+         * Journals the frames and the fragment ACKs of each stream into memory-mapped files under the fragment
+         * journal directory. When the stream is registered again after a restart, the fragments which were never persisted
+         * are uploaded before the new frames. Requires the absolute fragment times. 0 disables the journal.
+         *
+         * @param fragmentJournalQuota disk space of each stream, at least two journal segments
+         */
+        public Builder withFragmentJournalQuota(final long fragmentJournalQuota) {
+            this.fragmentJournalQuota = fragmentJournalQuota;
+            return this;
+        }
+
+        /**
+         * Directory the fragments are journaled into, required with the fragment journal quota. It has to outlive
+         * the process for the fragments to be replayed after a restart.
+         */
+        public Builder withFragmentJournalDirectory(final File fragmentJournalDirectory) {
+            this.fragmentJournalDirectory = fragmentJournalDirectory;
+            return this;
+        }
+
+        /**
+         * Limits the rate the journaled fragments are replayed at after a restart. 0 replays at twice the average
+         * bandwidth of the stream.
+         */
+        public Builder withFragmentJournalReplayRate(final long fragmentJournalReplayBitsPerSecond) {
+            this.fragmentJournalReplayBitsPerSecond = fragmentJournalReplayBitsPerSecond;
+            return this;
+        }
+
+        /**
+         * Drops the frames of each stream by their key-frame and discardable flags before they reach the producer
+         * when the buffer fills up: first the discardable frames, then all but the key-frames, then whole GOPs, up to
+         * the given policy. Keeps the uploaded stream decodable rather than the producer dropping frames blindly.
+         * Null puts all the frames into the stream.
+         */
+        public Builder withFrameAdmissionPolicy(
+                final FrameAdmissionController.DegradationPolicy frameAdmissionPolicy) {
+            this.frameAdmissionPolicy = frameAdmissionPolicy;
+            return this;
+        }
+
+        /**
+         * Spreads the streams over several native producer instances, each with an equal slice of the device storage
+         * and its own service callback threads, so the streams don't all contend on the lock and the content store of
+         * a single producer. A stream goes to the shard with the least average bandwidth registered. 1 by default.
+         */
+        public Builder withProducerShards(final int producerShards) {
+            this.producerShards = producerShards;
+            return this;
+        }
+
         public KinesisVideoClientConfiguration build() {
             sanitizeBuilder(this);
             return new KinesisVideoClientConfiguration(this);
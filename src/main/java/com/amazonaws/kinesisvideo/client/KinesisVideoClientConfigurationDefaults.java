@@ -15,6 +15,7 @@ public final class KinesisVideoClientConfigurationDefaults {
     static final int STORAGE_SIZE_256_MEGS = 256 * 1024 * 1024;
 
     public static final int DEFAULT_SERVICE_CALL_TIMEOUT_IN_MILLIS = 5000;
+    static final int DEFAULT_CONTROL_PLANE_THREADS = 2;
 
     static final StorageCallbacks NO_OP_STORAGE_CALLBACKS = new DefaultStorageCallbacks();
 
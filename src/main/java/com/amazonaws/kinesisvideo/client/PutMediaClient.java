@@ -4,26 +4,41 @@ import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.encoding.ChunkedGatheringWriter;
+import com.amazonaws.kinesisvideo.encoding.MkvFragmentIndex;
+import com.amazonaws.kinesisvideo.http.ChannelOutputStream;
+import com.amazonaws.kinesisvideo.http.HttpClient;
+import com.amazonaws.kinesisvideo.http.NioEventLoopGroup;
+import com.amazonaws.kinesisvideo.http.NioHttpClient;
+import com.amazonaws.kinesisvideo.http.NonBlockingResponseHandler;
 import com.amazonaws.kinesisvideo.http.ParallelSimpleHttpClient;
+import com.amazonaws.kinesisvideo.http.PollableInputStream;
 import com.amazonaws.kinesisvideo.signing.KinesisVideoSigner;
+import com.amazonaws.kinesisvideo.socket.ConnectionManager;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthMeasuringOutputStream;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottledOutputStream;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
 import com.amazonaws.kinesisvideo.stream.throttling.OpsPerSecondMeasurer;
+import com.amazonaws.kinesisvideo.util.ByteBufferPool;
 import com.amazonaws.kinesisvideo.util.VersionUtil;
 
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
 import static com.amazonaws.kinesisvideo.http.HttpMethodName.POST;
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Client for making a PutMedia API call on Kinesis Video Streams.
@@ -40,11 +55,21 @@ public final class PutMediaClient {
     private static final String KEEP_ALIVE = "keep-alive";
     private static final String USER_AGENT = "user-agent";
     private static final int BUFFER_SIZE = 1024 * 1024; // 1MB
+    private static final int MAX_POOLED_BUFFERS = 16;
+    /**
+     * Send buffers with the head and tail room for the in place chunk framing. These are heap buffers as
+     * the MKV stream can only be read into an array.
+     */
+    private static final ByteBufferPool BUFFER_POOL = new ByteBufferPool(
+            ChunkEncoder.MAX_CHUNK_HEADER_SIZE + BUFFER_SIZE + ChunkEncoder.CHUNK_TRAILER_SIZE,
+            MAX_POOLED_BUFFERS,
+            false);
+    private static final byte[] LAST_CHUNK = ChunkEncoder.encode(new byte[0], 0);
     private static final double MILLI_TO_SEC = 1000;
     private static final int LOGGING_INTERVAL = 250; // Rougly every 10 seconds in 25 fps
     private final Builder mBuilder;
     private final Log log;
-    private ParallelSimpleHttpClient httpClient;
+    private HttpClient httpClient;
 
     private PutMediaClient(final Builder builder) {
         mBuilder = builder;
@@ -56,46 +81,88 @@ public final class PutMediaClient {
     }
 
     public void putMediaInBackground() {
-        putMediaWithSender(sendChunkEncodedMvkStream(0));
+        if (mBuilder.mEventLoopGroup != null) {
+            putMediaNonBlocking();
+        } else if (mBuilder.mMkvFilePath != null) {
+            putMediaWithSender(sendMkvFile(0));
+        } else {
+            putMediaWithSender(sendChunkEncodedMvkStream(0));
+        }
     }
 
     public void putMediaInBackgroundWithSleep(final int sleepTime) {
-        putMediaWithSender(sendChunkEncodedMvkStream(sleepTime));
+        putMediaWithSender(mBuilder.mMkvFilePath != null
+                ? sendMkvFile(sleepTime)
+                : sendChunkEncodedMvkStream(sleepTime));
     }
 
     private void putMediaWithSender(final Consumer<OutputStream> sender) {
         final ParallelSimpleHttpClient.Builder clientBuilder = ParallelSimpleHttpClient.builder()
             .uri(mBuilder.mUri).method(POST)
-            .log(log)
-            .header(STREAM_NAME_HEADER, mBuilder.mStreamName)
-            .header(TRANSFER_ENCODING, CHUNKED)
-            .header(CONNECTION, KEEP_ALIVE)
-            .header(USER_AGENT, VersionUtil.getUserAgent());
+            .log(log);
+        for (final Map.Entry<String, String> header : getRequestHeaders().entrySet()) {
+            clientBuilder.header(header.getKey(), header.getValue());
+        }
+        // add additional unsigned headers
+        if (mBuilder.unsignedHeaders != null) {
+            for (final Map.Entry<String, String> header : mBuilder.unsignedHeaders.entrySet()) {
+                clientBuilder.unsignedHeader(header.getKey(), header.getValue());
+            }
+        }
         clientBuilder.setReceiverCallback(mBuilder.mAcksReceiver);
-        clientBuilder.header(PRODUCER_START_TIMESTAMP_HEADER,
-                             String.format(Locale.US, "%.3f", mBuilder.mTimestamp / MILLI_TO_SEC));
-        clientBuilder.header(FRAGMENT_TIME_CODE_TYPE_HEADER, mBuilder.mFragmentTimecodeType);
         clientBuilder.completionCallback(mBuilder.mCompletion);
         clientBuilder.setSenderCallback(sender);
         // Timeout if no response is received from the server for put(i.e., acks)
         // Socket will/should be closed by the consumer by throwing the SocketTimeoutException
         clientBuilder.setTimeout(mBuilder.mReceiveTimeout);
-        httpClient = clientBuilder.build();
-        sign(httpClient);
-        // add additional unsigned headers
+        clientBuilder.threadFactory(mBuilder.mThreadFactory);
+        clientBuilder.connectionManager(mBuilder.mConnectionManager);
+        final ParallelSimpleHttpClient parallelClient = clientBuilder.build();
+        httpClient = parallelClient;
+        sign(parallelClient);
+        parallelClient.connectAndProcessInBackground();
+    }
+
+    private void putMediaNonBlocking() {
+        final NioHttpClient.Builder clientBuilder = NioHttpClient.builder()
+                .uri(mBuilder.mUri).method(POST)
+                .log(log)
+                .payload(mBuilder.mPollableMkvStream)
+                .responseHandler(mBuilder.mResponseHandler)
+                .eventLoopGroup(mBuilder.mEventLoopGroup)
+                .completionCallback(mBuilder.mCompletion)
+                .setTimeout(mBuilder.mReceiveTimeout);
+        for (final Map.Entry<String, String> header : getRequestHeaders().entrySet()) {
+            clientBuilder.header(header.getKey(), header.getValue());
+        }
         if (mBuilder.unsignedHeaders != null) {
-            for (final String headerName : mBuilder.unsignedHeaders.keySet()) {
-                clientBuilder.header(headerName, mBuilder.unsignedHeaders.get(headerName));
+            for (final Map.Entry<String, String> header : mBuilder.unsignedHeaders.entrySet()) {
+                clientBuilder.unsignedHeader(header.getKey(), header.getValue());
             }
         }
-        httpClient.connectAndProcessInBackground();
+        final NioHttpClient nioClient = clientBuilder.build();
+        httpClient = nioClient;
+        sign(nioClient);
+        nioClient.connectInBackground();
+    }
+
+    private Map<String, String> getRequestHeaders() {
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put(STREAM_NAME_HEADER, mBuilder.mStreamName);
+        headers.put(TRANSFER_ENCODING, CHUNKED);
+        headers.put(CONNECTION, KEEP_ALIVE);
+        headers.put(USER_AGENT, VersionUtil.getUserAgent());
+        headers.put(PRODUCER_START_TIMESTAMP_HEADER,
+                String.format(Locale.US, "%.3f", mBuilder.mTimestamp / MILLI_TO_SEC));
+        headers.put(FRAGMENT_TIME_CODE_TYPE_HEADER, mBuilder.mFragmentTimecodeType);
+        return headers;
     }
 
     public void close() throws IOException {
         this.httpClient.close();
     }
 
-    private void sign(final ParallelSimpleHttpClient client) {
+    private void sign(final HttpClient client) {
         if (mBuilder.mSigner != null) {
             mBuilder.mSigner.sign(client);
         }
@@ -106,15 +173,23 @@ public final class PutMediaClient {
             @Override
             public void accept(final OutputStream rawOutputStream) {
                 FileOutputStream outputFileStream = null;
+                final ByteBuffer pooledBuffer = BUFFER_POOL.acquire();
                 try {
                     final OutputStream throttledOutputStream = throttleAndMeasureOutput(rawOutputStream);
+                    // Frame the chunks with gathering writes straight into the socket channel unless the output
+                    // needs to be throttled or measured in which case the chunk is framed in place in the buffer.
+                    final ChunkedGatheringWriter channelWriter =
+                            throttledOutputStream == rawOutputStream && rawOutputStream instanceof ChannelOutputStream
+                                    ? new ChunkedGatheringWriter(((ChannelOutputStream) rawOutputStream).getChannel())
+                                    : null;
                     outputFileStream = createOutputFileStream();
-                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    final byte[] buffer = pooledBuffer.array();
+                    final int payloadOffset = pooledBuffer.arrayOffset() + ChunkEncoder.MAX_CHUNK_HEADER_SIZE;
                     int mkvBytesRead;
                     long counter = 0;
                     boolean continueLoop = true;
                     while (continueLoop) {
-                        mkvBytesRead = mBuilder.mMkvStream.read(buffer);
+                        mkvBytesRead = mBuilder.mMkvStream.read(buffer, payloadOffset, BUFFER_SIZE);
                         counter++;
                         if (counter % LOGGING_INTERVAL == 0) {
                             log.debug("Sending data, counter : " + counter);
@@ -123,14 +198,27 @@ public final class PutMediaClient {
                             log.info("End-of-stream is reported. Terminating...");
                             continueLoop = false;
                         } else {
-                            throttledOutputStream.write(ChunkEncoder.encode(buffer, mkvBytesRead));
-                            tryWriteToFile(outputFileStream, buffer, mkvBytesRead);
+                            if (channelWriter != null) {
+                                pooledBuffer.limit(ChunkEncoder.MAX_CHUNK_HEADER_SIZE + mkvBytesRead);
+                                pooledBuffer.position(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+                                channelWriter.writeChunk(pooledBuffer);
+                                pooledBuffer.clear();
+                            } else if (mkvBytesRead > 0) {
+                                final int chunkOffset = ChunkEncoder.encodeInPlace(buffer, payloadOffset, mkvBytesRead);
+                                throttledOutputStream.write(buffer, chunkOffset,
+                                        payloadOffset + mkvBytesRead + ChunkEncoder.CHUNK_TRAILER_SIZE - chunkOffset);
+                            }
+                            tryWriteToFile(outputFileStream, buffer, payloadOffset, mkvBytesRead);
                             if (fragmentThrottle > 0) {
                                 Thread.sleep(fragmentThrottle);
                             }
                         }
                     }
-                    throttledOutputStream.write(ChunkEncoder.encode(buffer, 0));
+                    if (channelWriter != null) {
+                        channelWriter.writeLastChunk();
+                    } else {
+                        throttledOutputStream.write(LAST_CHUNK);
+                    }
                     rawOutputStream.flush();
                     log.debug("Data sent. counter : " + counter);
                 } catch (final Exception e) {
@@ -138,22 +226,179 @@ public final class PutMediaClient {
                     throw new RuntimeException("Exception while sending encoded chunk in MKV stream ! ", e);
                 } finally {
                     tryCloseOutputFileStream(outputFileStream);
+                    BUFFER_POOL.release(pooledBuffer);
                 }
             }
         };
     }
 
+    /**
+     * Sends the pre-muxed MKV file. The chunks never span the fragments and the fragment throttle sleep is applied
+     * after each fragment.
+     */
+    private Consumer<OutputStream> sendMkvFile(final int fragmentThrottle) {
+        return new Consumer<OutputStream>() {
+            @Override
+            public void accept(final OutputStream rawOutputStream) {
+                RandomAccessFile mkvFile = null;
+                FileOutputStream outputFileStream = null;
+                try {
+                    mkvFile = new RandomAccessFile(mBuilder.mMkvFilePath, "r");
+                    final FileChannel fileChannel = mkvFile.getChannel();
+                    final MkvFragmentIndex fragments = MkvFragmentIndex.scan(fileChannel);
+                    final long[] ranges = mkvFileRanges(fragments);
+                    log.debug("Sending MKV file " + mBuilder.mMkvFilePath + " of " + fragments.getFileSize()
+                            + " bytes with " + fragments.getBoundaryCount() + " fragment boundaries from "
+                            + mBuilder.mMkvFileOffset);
+                    outputFileStream = createOutputFileStream();
+
+                    // The payload is only transferred from the file into the socket in the kernel on the plain
+                    // connections. The TLS socket encrypts from the arrays so the payload is read from the file
+                    // straight into the send buffer instead.
+                    final long chunks = rawOutputStream instanceof ChannelOutputStream && !mBuilder.mLogUsedBandwidth
+                            ? transferMkvFile(fileChannel, fragments, ranges,
+                                    new ChunkedGatheringWriter(((ChannelOutputStream) rawOutputStream).getChannel()),
+                                    outputFileStream, fragmentThrottle)
+                            : copyMkvFile(fileChannel, fragments, ranges, throttleAndMeasureOutput(rawOutputStream),
+                                    outputFileStream, fragmentThrottle);
+                    rawOutputStream.flush();
+                    log.debug("MKV file sent. chunks : " + chunks);
+                } catch (final Exception e) {
+                    log.debug("Exception while sending MKV file.", e);
+                    throw new RuntimeException("Exception while sending encoded chunk in MKV file ! ", e);
+                } finally {
+                    tryCloseOutputFileStream(outputFileStream);
+                    tryCloseMkvFile(mkvFile);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the start and the end pairs of the file ranges to send. A resumed upload sends the header the fragment
+     * at the offset belongs to and the rest of the file from the fragment.
+     */
+    private long[] mkvFileRanges(final MkvFragmentIndex fragments) throws IOException {
+        final long offset = mBuilder.mMkvFileOffset;
+        final long fileSize = fragments.getFileSize();
+        if (offset == 0) {
+            return new long[] { 0, fileSize };
+        }
+
+        if (offset > fileSize || fragments.getFragmentEnd(offset - 1) != offset) {
+            throw new IOException("No fragment of the MKV file starts at " + offset);
+        }
+
+        final long headerStart = fragments.getHeaderStart(offset);
+        return headerStart == offset
+                ? new long[] { offset, fileSize }
+                : new long[] { headerStart, fragments.getFragmentEnd(headerStart), offset, fileSize };
+    }
+
+    private long transferMkvFile(final FileChannel fileChannel,
+                                 final MkvFragmentIndex fragments,
+                                 final long[] ranges,
+                                 final ChunkedGatheringWriter channelWriter,
+                                 final FileOutputStream outputFileStream,
+                                 final int fragmentThrottle) throws IOException, InterruptedException {
+        final BandwidthThrottler throttler = createBandwidthThrottler();
+        long chunks = 0;
+        for (int range = 0; range < ranges.length; range += 2) {
+            long position = ranges[range];
+            while (position < ranges[range + 1]) {
+                final long fragmentEnd = fragments.getFragmentEnd(position);
+                while (position < fragmentEnd) {
+                    final int chunkSize = (int) Math.min(BUFFER_SIZE, fragmentEnd - position);
+                    final int allowedBytes = throttler == null ? chunkSize : throttler.getAllowedBytes(chunkSize);
+                    channelWriter.transferChunk(fileChannel, position, allowedBytes);
+                    tryTransferToFile(outputFileStream, fileChannel, position, allowedBytes);
+                    position += allowedBytes;
+                    chunks++;
+                }
+
+                if (fragmentThrottle > 0) {
+                    Thread.sleep(fragmentThrottle);
+                }
+            }
+        }
+
+        channelWriter.writeLastChunk();
+        return chunks;
+    }
+
+    private long copyMkvFile(final FileChannel fileChannel,
+                             final MkvFragmentIndex fragments,
+                             final long[] ranges,
+                             final OutputStream throttledOutputStream,
+                             final FileOutputStream outputFileStream,
+                             final int fragmentThrottle) throws IOException, InterruptedException {
+        final ByteBuffer pooledBuffer = BUFFER_POOL.acquire();
+        try {
+            final byte[] buffer = pooledBuffer.array();
+            final int payloadOffset = pooledBuffer.arrayOffset() + ChunkEncoder.MAX_CHUNK_HEADER_SIZE;
+            long chunks = 0;
+            for (int range = 0; range < ranges.length; range += 2) {
+                long position = ranges[range];
+                while (position < ranges[range + 1]) {
+                    final long fragmentEnd = fragments.getFragmentEnd(position);
+                    while (position < fragmentEnd) {
+                        final int chunkSize = (int) Math.min(BUFFER_SIZE, fragmentEnd - position);
+                        readFully(fileChannel, ByteBuffer.wrap(buffer, payloadOffset, chunkSize), position);
+                        final int chunkOffset = ChunkEncoder.encodeInPlace(buffer, payloadOffset, chunkSize);
+                        throttledOutputStream.write(buffer, chunkOffset,
+                                payloadOffset + chunkSize + ChunkEncoder.CHUNK_TRAILER_SIZE - chunkOffset);
+                        tryWriteToFile(outputFileStream, buffer, payloadOffset, chunkSize);
+                        position += chunkSize;
+                        chunks++;
+                    }
+
+                    if (fragmentThrottle > 0) {
+                        Thread.sleep(fragmentThrottle);
+                    }
+                }
+            }
+
+            throttledOutputStream.write(LAST_CHUNK);
+            return chunks;
+        } finally {
+            BUFFER_POOL.release(pooledBuffer);
+        }
+    }
+
+    /**
+     * Reads at the position without moving the file position. Unlike mapping the file there are no mappings to be
+     * released once the file is sent.
+     */
+    private static void readFully(final FileChannel fileChannel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        final int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            final int bytesRead = fileChannel.read(buffer, position + length - buffer.remaining());
+            if (bytesRead < 0) {
+                throw new EOFException("MKV file ended before the end of the chunk");
+            }
+        }
+    }
+
     private OutputStream throttleAndMeasureOutput(final OutputStream rawOutputStream) {
         final OutputStream throttledOutputStream = throttleStream(rawOutputStream);
         return mBuilder.mLogUsedBandwidth ? logBytesPerSecond(throttledOutputStream) : throttledOutputStream;
     }
 
     private OutputStream throttleStream(final OutputStream rawOutputStream) {
+        final BandwidthThrottler throttler = createBandwidthThrottler();
+        return throttler == null ? rawOutputStream : new BandwidthThrottledOutputStream(rawOutputStream, throttler);
+    }
+
+    private BandwidthThrottler createBandwidthThrottler() {
+        if (mBuilder.mBandwidthThrottler != null) {
+            return mBuilder.mBandwidthThrottler;
+        }
+
         if (mBuilder.upstreamKbps != null) {
-            final BandwidthThrottler throttler = new BandwidthThrottlerImpl(mBuilder.upstreamKbps * BITS_IN_A_KILOBIT);
-            return new BandwidthThrottledOutputStream(rawOutputStream, throttler);
+            return new BandwidthThrottlerImpl(mBuilder.upstreamKbps * BITS_IN_A_KILOBIT);
         }
-        return rawOutputStream;
+        return null;
     }
 
     private OutputStream logBytesPerSecond(final OutputStream outputStream) {
@@ -179,18 +424,53 @@ public final class PutMediaClient {
         }
     }
 
-    private void tryWriteToFile(final FileOutputStream fileOutputStream, final byte[] buffer, final int bytesToWrite) {
+    private void tryWriteToFile(final FileOutputStream fileOutputStream, final byte[] buffer, final int offset,
+                                final int bytesToWrite) {
         if (fileOutputStream == null) {
             return;
         }
         try {
-            fileOutputStream.write(buffer, 0, bytesToWrite);
+            fileOutputStream.write(buffer, offset, bytesToWrite);
             fileOutputStream.flush();
         } catch (final IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void tryTransferToFile(final FileOutputStream fileOutputStream, final FileChannel fileChannel,
+                                   final long position, final int bytesToTransfer) {
+        if (fileOutputStream == null) {
+            return;
+        }
+        try {
+            long transferred = 0;
+            while (transferred < bytesToTransfer) {
+                final long bytes = fileChannel.transferTo(position + transferred, bytesToTransfer - transferred,
+                        fileOutputStream.getChannel());
+                if (bytes <= 0) {
+                    // Nothing is transferred into a file only past the end of the source
+                    log.error("MKV file ended at %d while copying it to the output file", position + transferred);
+                    return;
+                }
+
+                transferred += bytes;
+            }
+        } catch (final IOException e) {
+            log.exception(e, "Failed to copy the MKV file to the output file");
+        }
+    }
+
+    private void tryCloseMkvFile(final RandomAccessFile mkvFile) {
+        if (mkvFile == null) {
+            return;
+        }
+        try {
+            mkvFile.close();
+        } catch (final IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
     private void tryCloseOutputFileStream(final FileOutputStream outputFileStream) {
         if (outputFileStream == null) {
             return;
@@ -211,6 +491,13 @@ public final class PutMediaClient {
         private URI mUri;
         private String mStreamName;
         private InputStream mMkvStream;
+        private String mMkvFilePath;
+        private long mMkvFileOffset;
+        private PollableInputStream mPollableMkvStream;
+        private NonBlockingResponseHandler mResponseHandler;
+        private NioEventLoopGroup mEventLoopGroup;
+        private ThreadFactory mThreadFactory;
+        private ConnectionManager mConnectionManager;
         private long mTimestamp;
         private Consumer<InputStream> mAcksReceiver;
         private KinesisVideoSigner mSigner;
@@ -219,6 +506,7 @@ public final class PutMediaClient {
         private boolean mLogUsedBandwidth;
         private String mFileOutputPath;
         private Long upstreamKbps;
+        private BandwidthThrottler mBandwidthThrottler;
         private Consumer<Exception> mCompletion;
         // TODO: Set to correct output channel
         private Log mLog = new Log(Log.SYSTEM_OUT);
@@ -239,6 +527,53 @@ public final class PutMediaClient {
             return this;
         }
 
+        /**
+         * Uploads a pre-muxed MKV file, i.e. a recorded stream, instead of the MKV stream. The chunks are sent
+         * straight from the file with sendfile on the plain http connections and read from the file into the send
+         * buffer on the TLS ones. A chunk never spans two fragments.
+         * <p>
+         * NOTE: Only used by the blocking transport.
+         *
+         * @param mkvFilePath MKV file path
+         * @return Builder object
+         */
+        public Builder mkvFile(final String mkvFilePath) {
+            mMkvFilePath = mkvFilePath;
+            return this;
+        }
+
+        /**
+         * Resumes the upload of the MKV file at the fragment starting at the offset, i.e. after the fragments already
+         * persisted. The EBML header and the segment start the fragment belongs to are sent first.
+         *
+         * @param mkvFileOffset offset of a fragment start, 0 by default
+         * @return Builder object
+         */
+        public Builder mkvFileOffset(final long mkvFileOffset) {
+            Preconditions.checkArgument(mkvFileOffset >= 0, "MKV file offset should not be negative");
+            mMkvFileOffset = mkvFileOffset;
+            return this;
+        }
+
+        /**
+         * Streams over the non-blocking transport instead of the dedicated sender and receiver threads.
+         * <p>
+         * NOTE: The local file output and the upstream throttling are not applied in this mode.
+         *
+         * @param mkvStream Non-blocking MKV stream
+         * @param responseHandler Handler of the response and the ACKs
+         * @param eventLoopGroup Event loops to run the connection on
+         * @return Builder object
+         */
+        public Builder nonBlocking(final PollableInputStream mkvStream,
+                                   final NonBlockingResponseHandler responseHandler,
+                                   final NioEventLoopGroup eventLoopGroup) {
+            mPollableMkvStream = mkvStream;
+            mResponseHandler = responseHandler;
+            mEventLoopGroup = eventLoopGroup;
+            return this;
+        }
+
         public Builder receiveAcks(final Consumer<InputStream> acksReceiver) {
             mAcksReceiver = acksReceiver;
             return this;
@@ -292,6 +627,32 @@ public final class PutMediaClient {
             return this;
         }
 
+        /**
+         * Throttles the upload with the given throttler, i.e. an
+         * {@link com.amazonaws.kinesisvideo.stream.throttling.UplinkBandwidthShare}, instead of creating one for the
+         * {@link #upstreamKbps(long)}. Only used by the blocking transport.
+         */
+        public Builder bandwidthThrottler(final BandwidthThrottler bandwidthThrottler) {
+            mBandwidthThrottler = bandwidthThrottler;
+            return this;
+        }
+
+        /**
+         * Factory of the threads sending the data and receiving the ACKs. Defaults to the platform threads.
+         */
+        public Builder threadFactory(final ThreadFactory threadFactory) {
+            mThreadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Reuses the pre-warmed connections of the manager. Only used by the blocking transport.
+         */
+        public Builder connectionManager(final ConnectionManager connectionManager) {
+            mConnectionManager = connectionManager;
+            return this;
+        }
+
         public Builder log(final Log log) {
             mLog = Preconditions.checkNotNull(log);
             return this;
@@ -315,8 +676,15 @@ public final class PutMediaClient {
         public PutMediaClient build() {
             checkNotNull(mUri);
             checkNotNull(mStreamName);
-            checkNotNull(mMkvStream);
-            checkNotNull(mAcksReceiver);
+            if (mEventLoopGroup != null) {
+                checkNotNull(mPollableMkvStream);
+                checkNotNull(mResponseHandler);
+            } else {
+                if (mMkvFilePath == null) {
+                    checkNotNull(mMkvStream);
+                }
+                checkNotNull(mAcksReceiver);
+            }
             return new PutMediaClient(this);
         }
     }
@@ -0,0 +1,131 @@
+package com.amazonaws.kinesisvideo.client.stream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Append-only journal of the progress of the backfilled files, so a restarted backfill resumes each file after its
+ * last persisted fragment and skips the completed ones. An entry is the stream name, the file path, the file size and
+ * the offset the persisted fragments end at separated by tabs, i.e. a file which has changed since is uploaded again.
+ * Each entry is synced to the disk before the upload goes on.
+ *
+ * The entries are lines, only the complete ones are loaded and an append after a torn last line starts on a new line.
+ */
+@ThreadSafe
+class BackfillCheckpoint {
+    private static final String SEPARATOR = "\t";
+    private static final byte NEW_LINE = '\n';
+
+    private final Map<String, Long> persistedOffsets = new HashMap<String, Long>();
+    private final FileOutputStream journal;
+
+    /**
+     * @param journalFile the journal to resume from and to append to or null to not checkpoint
+     */
+    BackfillCheckpoint(@Nullable final File journalFile) throws IOException {
+        if (journalFile == null) {
+            journal = null;
+            return;
+        }
+
+        boolean torn = false;
+        if (journalFile.exists()) {
+            final byte[] content = Files.readAllBytes(journalFile.toPath());
+            int lineStart = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == NEW_LINE) {
+                    load(new String(content, lineStart, i - lineStart, UTF_8));
+                    lineStart = i + 1;
+                }
+            }
+
+            // The last line is torn by a crash while it was being written
+            torn = lineStart < content.length;
+        }
+
+        journal = new FileOutputStream(journalFile, true);
+        if (torn) {
+            journal.write(NEW_LINE);
+        }
+    }
+
+    /**
+     * @return the offset the persisted fragments of the file end at, 0 if none is persisted
+     */
+    synchronized long getPersistedOffset(@Nonnull final String streamName, @Nonnull final File file) {
+        final Long offset = persistedOffsets.get(key(streamName, file));
+        return offset == null ? 0 : offset;
+    }
+
+    synchronized boolean isCompleted(@Nonnull final String streamName, @Nonnull final File file) {
+        final Long offset = persistedOffsets.get(key(streamName, file));
+        return offset != null && offset == file.length();
+    }
+
+    /**
+     * Records the fragments of the file persisted up to the offset
+     */
+    synchronized void markPersisted(@Nonnull final String streamName,
+                                    @Nonnull final File file,
+                                    final long offset) throws IOException {
+        final String key = key(streamName, file);
+        final Long persistedOffset = persistedOffsets.get(key);
+        if (persistedOffset != null && persistedOffset >= offset) {
+            return;
+        }
+
+        persistedOffsets.put(key, offset);
+        if (journal == null) {
+            return;
+        }
+
+        journal.write((key + SEPARATOR + offset + "\n").getBytes(UTF_8));
+        journal.getFD().sync();
+    }
+
+    synchronized void markCompleted(@Nonnull final String streamName, @Nonnull final File file) throws IOException {
+        markPersisted(streamName, file, file.length());
+    }
+
+    synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Loads the entry unless it's malformed, the later entries of a file are further on
+     */
+    private void load(@Nonnull final String entry) {
+        final int offsetStart = entry.lastIndexOf(SEPARATOR);
+        final int sizeStart = offsetStart > 0 ? entry.lastIndexOf(SEPARATOR, offsetStart - 1) : -1;
+        if (sizeStart <= 0) {
+            return;
+        }
+
+        try {
+            final long size = Long.parseLong(entry.substring(sizeStart + 1, offsetStart));
+            final long offset = Long.parseLong(entry.substring(offsetStart + 1));
+            if (offset >= 0 && offset <= size) {
+                final String key = entry.substring(0, offsetStart);
+                final Long persistedOffset = persistedOffsets.get(key);
+                persistedOffsets.put(key, persistedOffset == null ? offset : Math.max(offset, persistedOffset));
+            }
+        } catch (final NumberFormatException e) {
+            // Not an entry
+        }
+    }
+
+    private static String key(final String streamName, final File file) {
+        return streamName + SEPARATOR + file.getAbsolutePath() + SEPARATOR + file.length();
+    }
+}
@@ -0,0 +1,596 @@
+package com.amazonaws.kinesisvideo.client.stream;
+
+import com.amazonaws.kinesisvideo.client.PutMediaClient;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.encoding.HttpResponseParser;
+import com.amazonaws.kinesisvideo.encoding.MkvFragmentIndex;
+import com.amazonaws.kinesisvideo.internal.service.FragmentAckParser;
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.signing.KinesisVideoSigner;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads the locally recorded MKV files of many streams, i.e. after a site outage, with PutMedia.
+ *
+ * The files are uploaded concurrently, at most {@link Builder#globalParallelism(int)} in total and
+ * {@link Builder#perStreamParallelism(int)} per stream, taking the streams in turns. The files of a stream are
+ * uploaded in the order they were added. A file is completed once the service has sent the PERSISTED ACK for each of
+ * its fragments. The persisted fragments are recorded in the checkpoint journal, so a restarted backfill skips the
+ * completed files and resumes the others after their last persisted fragment. A file rejected by the service, with an
+ * ERROR ACK or which didn't get all the ACKs is resumed the same way up to {@link Builder#maxAttempts(int)} times.
+ *
+ * Typical usage:
+ * <pre>
+ *     final BackfillUploader uploader = BackfillUploader.builder()
+ *             .signWith(signer)
+ *             .log(log)
+ *             .checkpointFile(new File("backfill.checkpoint"))
+ *             .globalParallelism(16)
+ *             .build();
+ *     uploader.addDirectory("front-door", putMediaUri, new File("/recordings/front-door"));
+ *     uploader.run();
+ * </pre>
+ */
+@ThreadSafe
+public final class BackfillUploader {
+    public static final int DEFAULT_GLOBAL_PARALLELISM = 8;
+    public static final int DEFAULT_PER_STREAM_PARALLELISM = 1;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final String MKV_EXTENSION = ".mkv";
+    private static final String ABSOLUTE = "ABSOLUTE";
+    private static final String WORKER_THREAD_NAME_PREFIX = "KinesisVideo-Backfill-";
+    private static final long PROGRESS_LOG_INTERVAL_IN_MILLIS = 10000;
+    private static final int ACK_BUFFER_SIZE = 4096;
+    private static final int HTTP_OK = 200;
+    private static final double BYTES_IN_MB = 1024.0 * 1024.0;
+
+    private final Builder mBuilder;
+    private final Log log;
+    private final Map<String, StreamFiles> mStreams = new LinkedHashMap<String, StreamFiles>();
+    private final AtomicInteger mFilesCompleted = new AtomicInteger();
+    private final AtomicInteger mFilesSkipped = new AtomicInteger();
+    private final AtomicInteger mFilesFailed = new AtomicInteger();
+    private final AtomicLong mPersistedBytes = new AtomicLong();
+    private BackfillCheckpoint mCheckpoint;
+    private int mFilesTotal;
+    private int mNextStream;
+    private boolean mRunning;
+    private volatile long mStartNanos;
+
+    private BackfillUploader(final Builder builder) {
+        mBuilder = builder;
+        log = builder.mLog;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds a file to upload into the stream
+     */
+    public synchronized void addFile(@Nonnull final String streamName,
+                                     @Nonnull final URI putMediaUri,
+                                     @Nonnull final File mkvFile) {
+        Preconditions.checkState(!mRunning, "Backfill is already running");
+        StreamFiles stream = mStreams.get(Preconditions.checkNotNull(streamName));
+        if (stream == null) {
+            stream = new StreamFiles(streamName, Preconditions.checkNotNull(putMediaUri));
+            mStreams.put(streamName, stream);
+        }
+
+        stream.pending.add(Preconditions.checkNotNull(mkvFile));
+        mFilesTotal++;
+    }
+
+    /**
+     * Adds the MKV files in the directory ordered by name, i.e. by the recording time for the time-stamped names
+     */
+    public synchronized void addDirectory(@Nonnull final String streamName,
+                                          @Nonnull final URI putMediaUri,
+                                          @Nonnull final File directory) {
+        Preconditions.checkArgument(directory.isDirectory(), "Not a directory: " + directory);
+        final File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().endsWith(MKV_EXTENSION);
+            }
+        });
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files);
+        for (final File file : files) {
+            addFile(streamName, putMediaUri, file);
+        }
+    }
+
+    /**
+     * Uploads the added files and returns when all of them are completed or failed
+     *
+     * @return whether all the files are completed
+     * @throws IOException if the checkpoint journal can't be opened
+     * @throws InterruptedException if interrupted while waiting for the uploads
+     */
+    public boolean run() throws IOException, InterruptedException {
+        synchronized (this) {
+            Preconditions.checkState(!mRunning, "Backfill is already running");
+            mRunning = true;
+            mCheckpoint = new BackfillCheckpoint(mBuilder.mCheckpointFile);
+        }
+
+        mStartNanos = System.nanoTime();
+        final int workerCount = Math.max(1, Math.min(mBuilder.mGlobalParallelism, mFilesTotal));
+        final ExecutorService workers = Executors.newFixedThreadPool(workerCount, newThreadFactory());
+        final CountDownLatch finished = new CountDownLatch(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            uploadFiles();
+                        } finally {
+                            finished.countDown();
+                        }
+                    }
+                });
+            }
+
+            while (!finished.await(PROGRESS_LOG_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.info("Backfill progress: " + this);
+            }
+        } finally {
+            workers.shutdownNow();
+            mCheckpoint.close();
+        }
+
+        log.info("Backfill finished: " + this);
+        return mFilesFailed.get() == 0;
+    }
+
+    public synchronized int getFilesTotal() {
+        return mFilesTotal;
+    }
+
+    public int getFilesCompleted() {
+        return mFilesCompleted.get();
+    }
+
+    /**
+     * @return number of the files skipped as completed by a previous run
+     */
+    public int getFilesSkipped() {
+        return mFilesSkipped.get();
+    }
+
+    public int getFilesFailed() {
+        return mFilesFailed.get();
+    }
+
+    /**
+     * @return bytes of the files up to the end of the fragments persisted since the start
+     */
+    public long getPersistedBytes() {
+        return mPersistedBytes.get();
+    }
+
+    /**
+     * @return the aggregate rate of the persisted fragments since the start in megabytes per second
+     */
+    public double getMegabytesPerSecond() {
+        final long elapsedNanos = System.nanoTime() - mStartNanos;
+        return mStartNanos == 0 || elapsedNanos <= 0
+                ? 0
+                : mPersistedBytes.get() / BYTES_IN_MB * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d files completed, %d skipped, %d failed, %.1f MB persisted at %.2f MB/s",
+                getFilesCompleted(), getFilesTotal(), getFilesSkipped(), getFilesFailed(),
+                getPersistedBytes() / BYTES_IN_MB, getMegabytesPerSecond());
+    }
+
+    private void uploadFiles() {
+        PendingFile file;
+        try {
+            while ((file = nextFile()) != null) {
+                try {
+                    upload(file);
+                } finally {
+                    fileDone(file);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the next file of the next stream with less than the per stream parallelism files being uploaded
+     *
+     * @return the file to upload or null if there are no files left
+     */
+    @Nullable
+    private synchronized PendingFile nextFile() throws InterruptedException {
+        final List<StreamFiles> streams = new ArrayList<StreamFiles>(mStreams.values());
+        while (true) {
+            boolean pending = false;
+            for (int i = 0; i < streams.size(); i++) {
+                final StreamFiles stream = streams.get((mNextStream + i) % streams.size());
+                if (stream.pending.isEmpty()) {
+                    continue;
+                }
+
+                pending = true;
+                if (stream.active < mBuilder.mPerStreamParallelism) {
+                    stream.active++;
+                    mNextStream = (mNextStream + i + 1) % streams.size();
+                    return new PendingFile(stream, stream.pending.poll());
+                }
+            }
+
+            if (!pending) {
+                return null;
+            }
+
+            // All the streams with files left are at their parallelism
+            wait();
+        }
+    }
+
+    private synchronized void fileDone(@Nonnull final PendingFile file) {
+        file.stream.active--;
+        notifyAll();
+    }
+
+    private void upload(@Nonnull final PendingFile file) throws InterruptedException {
+        if (mCheckpoint.isCompleted(file.stream.name, file.file)) {
+            mFilesSkipped.incrementAndGet();
+            return;
+        }
+
+        for (int attempt = 1; attempt <= mBuilder.mMaxAttempts; attempt++) {
+            // Resumes after the fragments persisted by the previous attempts
+            final String failure = uploadOnce(file, mCheckpoint.getPersistedOffset(file.stream.name, file.file));
+            if (failure == null) {
+                try {
+                    mCheckpoint.markCompleted(file.stream.name, file.file);
+                } catch (final IOException e) {
+                    log.exception(e, "Failed to checkpoint %s", file.file);
+                }
+
+                mFilesCompleted.incrementAndGet();
+                log.debug("Backfilled %s into %s", file.file, file.stream.name);
+                return;
+            }
+
+            log.warn("Backfill attempt %d of %s into %s failed: %s", attempt, file.file, file.stream.name, failure);
+        }
+
+        mFilesFailed.incrementAndGet();
+        log.error("Failed to backfill %s into %s", file.file, file.stream.name);
+    }
+
+    /**
+     * @param offset the offset to resume the file at
+     * @return the reason of the failure or null if all the fragments are persisted
+     */
+    @Nullable
+    private String uploadOnce(@Nonnull final PendingFile file, final long offset) throws InterruptedException {
+        final MkvFragmentIndex fragments;
+        try {
+            fragments = scan(file.file);
+        } catch (final IOException e) {
+            return "unable to read the file " + e.getMessage();
+        }
+
+        if (fragments.getClusterCount() == 0) {
+            return "no fragments in the file";
+        }
+
+        if (fragments.getClustersBefore(offset) == fragments.getClusterCount()) {
+            // All the fragments were persisted, only the elements following them are left
+            return null;
+        }
+
+        final UploadAttempt attempt = new UploadAttempt(file, fragments, offset);
+        final PutMediaClient client = PutMediaClient.builder()
+                .putMediaDestinationUri(file.stream.putMediaUri)
+                .mkvFile(file.file.getPath())
+                .mkvFileOffset(offset)
+                .streamName(file.stream.name)
+                .fragmentTimecodeType(ABSOLUTE)
+                .timestamp(System.currentTimeMillis())
+                .signWith(mBuilder.mSigner)
+                .receiveAcks(attempt)
+                .receiveCompletion(attempt.completion)
+                .receiveTimeout(mBuilder.mReceiveTimeout)
+                .threadFactory(mBuilder.mThreadFactory)
+                .log(log)
+                .build();
+        try {
+            client.putMediaInBackground();
+            return attempt.await();
+        } catch (final RuntimeException e) {
+            return e.getMessage();
+        } finally {
+            closeQuietly(client);
+        }
+    }
+
+    private static MkvFragmentIndex scan(@Nonnull final File file) throws IOException {
+        final RandomAccessFile mkvFile = new RandomAccessFile(file, "r");
+        try {
+            return MkvFragmentIndex.scan(mkvFile.getChannel());
+        } finally {
+            mkvFile.close();
+        }
+    }
+
+    private void closeQuietly(@Nonnull final PutMediaClient client) {
+        try {
+            client.close();
+        } catch (final Exception e) {
+            // Already closed by the completed upload
+        }
+    }
+
+    private ThreadFactory newThreadFactory() {
+        final AtomicInteger workerIndex = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, WORKER_THREAD_NAME_PREFIX + workerIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static final class StreamFiles {
+        private final String name;
+        private final URI putMediaUri;
+        private final Queue<File> pending = new ArrayDeque<File>();
+        private int active;
+
+        private StreamFiles(final String name, final URI putMediaUri) {
+            this.name = name;
+            this.putMediaUri = putMediaUri;
+        }
+    }
+
+    private static final class PendingFile {
+        private final StreamFiles stream;
+        private final File file;
+
+        private PendingFile(final StreamFiles stream, final File file) {
+            this.stream = stream;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Checkpoints the fragments of a file upload as their PERSISTED ACKs arrive in order. Runs on the receiving thread
+     * of the upload.
+     */
+    private final class UploadAttempt implements Consumer<InputStream> {
+        private final PendingFile file;
+        private final MkvFragmentIndex fragments;
+        private final int firstCluster;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String failure;
+        private int persisted;
+        private long persistedOffset;
+
+        private final Consumer<Exception> completion = new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception exception) {
+                finish(exception == null
+                        ? "upload completed with " + persisted + " of " + (fragments.getClusterCount() - firstCluster)
+                            + " fragments persisted"
+                        : "upload failed with " + exception.getMessage());
+            }
+        };
+
+        private UploadAttempt(final PendingFile file, final MkvFragmentIndex fragments, final long offset) {
+            this.file = file;
+            this.fragments = fragments;
+            firstCluster = fragments.getClustersBefore(offset);
+            persistedOffset = offset;
+        }
+
+        @Override
+        public void accept(final InputStream inputStream) {
+            final FragmentAckParser ackParser = new FragmentAckParser();
+            final byte[] buffer = new byte[ACK_BUFFER_SIZE];
+            try {
+                final HttpResponseParser responseParser = new HttpResponseParser();
+                final InputStream bodyStream = responseParser.parseHead(inputStream);
+                final ResponseStatus status = responseParser.getResponseStatus();
+                if (status.getStatusCode() != HTTP_OK) {
+                    finish("PutMedia returned status " + status.getStatusCode() + " " + status.getReason());
+                    return;
+                }
+
+                int bytesRead;
+                while ((bytesRead = bodyStream.read(buffer)) > 0) {
+                    ackParser.feed(buffer, 0, bytesRead);
+                    KinesisVideoFragmentAck ack;
+                    while ((ack = ackParser.nextAck()) != null) {
+                        if (onAck(ack)) {
+                            return;
+                        }
+                    }
+
+                    if (ackParser.isEndOfStream()) {
+                        break;
+                    }
+                }
+            } catch (final IOException e) {
+                finish("ACK stream failed with " + e.getMessage());
+            }
+        }
+
+        /**
+         * @return whether the attempt is finished
+         */
+        private boolean onAck(@Nonnull final KinesisVideoFragmentAck ack) {
+            switch (ack.getAckType().getIntType()) {
+                case FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED:
+                    // The retry resumes after the fragment
+                    final long offset = fragments.getFragmentEnd(fragments.getClusterOffset(firstCluster + persisted));
+                    persisted++;
+                    mPersistedBytes.addAndGet(offset - persistedOffset);
+                    persistedOffset = offset;
+                    checkpoint(offset);
+                    if (firstCluster + persisted >= fragments.getClusterCount()) {
+                        finish(null);
+                        return true;
+                    }
+
+                    return false;
+                case FragmentAckType.FRAGMENT_ACK_TYPE_ERROR:
+                    finish("ERROR ACK " + ack.getResult() + " for the fragment " + ack.getTimestamp());
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private void checkpoint(final long offset) {
+            try {
+                mCheckpoint.markPersisted(file.stream.name, file.file, offset);
+            } catch (final IOException e) {
+                log.exception(e, "Failed to checkpoint %s", file.file);
+            }
+        }
+
+        private void finish(@Nullable final String reason) {
+            if (done.getCount() == 0) {
+                return;
+            }
+
+            failure = reason;
+            done.countDown();
+        }
+
+        /**
+         * @return the reason of the failure or null if all the fragments are persisted
+         */
+        @Nullable
+        private String await() throws InterruptedException {
+            done.await();
+            return failure;
+        }
+    }
+
+    public static class Builder {
+        private KinesisVideoSigner mSigner;
+        private File mCheckpointFile;
+        private int mGlobalParallelism = DEFAULT_GLOBAL_PARALLELISM;
+        private int mPerStreamParallelism = DEFAULT_PER_STREAM_PARALLELISM;
+        private int mMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private Integer mReceiveTimeout;
+        private ThreadFactory mThreadFactory;
+        private Log mLog;
+
+        public Builder signWith(final KinesisVideoSigner signer) {
+            mSigner = signer;
+            return this;
+        }
+
+        /**
+         * Journal of the completed files to resume from. Not checkpointed by default.
+         */
+        public Builder checkpointFile(final File checkpointFile) {
+            mCheckpointFile = checkpointFile;
+            return this;
+        }
+
+        /**
+         * Number of the files uploaded at the same time
+         */
+        public Builder globalParallelism(final int globalParallelism) {
+            Preconditions.checkArgument(globalParallelism > 0, "Parallelism should be positive");
+            mGlobalParallelism = globalParallelism;
+            return this;
+        }
+
+        /**
+         * Number of the files of a stream uploaded at the same time. The fragment timecodes of the files uploaded
+         * into the same stream at the same time shouldn't overlap.
+         */
+        public Builder perStreamParallelism(final int perStreamParallelism) {
+            Preconditions.checkArgument(perStreamParallelism > 0, "Parallelism should be positive");
+            mPerStreamParallelism = perStreamParallelism;
+            return this;
+        }
+
+        public Builder maxAttempts(final int maxAttempts) {
+            Preconditions.checkArgument(maxAttempts > 0, "Attempts should be positive");
+            mMaxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Fails the upload if no ACK is received within the timeout
+         */
+        public Builder receiveTimeout(final Integer timeout) {
+            mReceiveTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Factory of the threads sending the data and receiving the ACKs of the uploads
+         */
+        public Builder threadFactory(final ThreadFactory threadFactory) {
+            mThreadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Log of the progress and the failures. Required.
+         */
+        public Builder log(final Log log) {
+            mLog = Preconditions.checkNotNull(log);
+            return this;
+        }
+
+        public BackfillUploader build() {
+            Preconditions.checkNotNull(mLog, "Log is required");
+            return new BackfillUploader(this);
+        }
+    }
+}
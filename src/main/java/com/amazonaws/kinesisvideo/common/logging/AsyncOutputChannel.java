@@ -0,0 +1,264 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Output channel which queues the messages into a pre-allocated ring buffer and formats and prints them to the
+ * underlying channel on its own thread so the logging threads neither format nor block on the I/O.
+ *
+ * The logging threads never wait. When the ring buffer is full the message is dropped and counted, and the count is
+ * reported with the next printed message. The printing thread parks while the buffer is empty and is unparked by the
+ * logging thread which queues the next message. Messages the underlying channel fails to print are reported through
+ * the fallback channel, the standard error by default. The channel is meant to be shared by the loggers, i.e.
+ * {@code withLogChannel(new AsyncOutputChannel(new SysOutLogChannel()))}, and should be closed when done to flush
+ * the queued messages.
+ */
+@ThreadSafe
+public class AsyncOutputChannel implements DeferredOutputChannel, Closeable {
+    /**
+     * Default number of the queued messages
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final String THREAD_NAME = "KinesisVideo-AsyncLog";
+
+    /**
+     * How long {@link #close()} waits for the queued messages to be printed
+     */
+    public static final long DEFAULT_CLOSE_TIMEOUT_IN_MILLIS = 5000;
+
+    private static final String TAG = "AsyncOutputChannel";
+
+    /**
+     * Prints the messages the underlying channel failed to print to the standard error
+     */
+    private static final OutputChannel STANDARD_ERROR = new OutputChannel() {
+        @Override
+        public void print(final int level, final String tag, final String message) {
+            System.err.println(String.format("%s: %s\t%s", LogLevel.fromInt(level).toString(), tag, message));
+        }
+    };
+
+    /**
+     * Ring buffer slot. The fields are written by the claiming thread before publishing the sequence.
+     */
+    private static final class Slot {
+        private volatile long mSequence = -1;
+        private int mLevel;
+        private String mTag;
+        private String mTemplate;
+        private Object[] mArgs;
+    }
+
+    private final OutputChannel mOutputChannel;
+    private final OutputChannel mFallbackChannel;
+    private final Slot[] mSlots;
+    private final int mMask;
+
+    /**
+     * Next sequence to be claimed by the logging threads
+     */
+    private final AtomicLong mClaimSequence = new AtomicLong();
+
+    /**
+     * Next sequence to be printed
+     */
+    private volatile long mPrintSequence = 0;
+
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final Thread mPrintThread;
+    private volatile boolean mClosed = false;
+
+    /**
+     * Set by the printing thread before it parks so only then the logging threads need to unpark it
+     */
+    private volatile boolean mPrintThreadParked = false;
+
+    public AsyncOutputChannel(@Nonnull final OutputChannel outputChannel) {
+        this(outputChannel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param outputChannel
+     *         Channel to print the messages to
+     * @param capacity
+     *         Number of the messages which can be queued, power of 2
+     */
+    public AsyncOutputChannel(@Nonnull final OutputChannel outputChannel, final int capacity) {
+        this(outputChannel, capacity, STANDARD_ERROR);
+    }
+
+    /**
+     * @param outputChannel
+     *         Channel to print the messages to
+     * @param capacity
+     *         Number of the messages which can be queued, power of 2
+     * @param fallbackChannel
+     *         Channel to report the messages the output channel failed to print to
+     */
+    public AsyncOutputChannel(@Nonnull final OutputChannel outputChannel,
+                              final int capacity,
+                              @Nonnull final OutputChannel fallbackChannel) {
+        Preconditions.checkArgument(capacity > 0 && (capacity & (capacity - 1)) == 0,
+                "Capacity should be a power of 2");
+        mOutputChannel = Preconditions.checkNotNull(outputChannel);
+        mFallbackChannel = Preconditions.checkNotNull(fallbackChannel);
+        mSlots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mSlots[i] = new Slot();
+        }
+
+        mMask = capacity - 1;
+
+        mPrintThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                printLoop();
+            }
+        }, THREAD_NAME);
+        mPrintThread.setDaemon(true);
+        mPrintThread.start();
+    }
+
+    @Override
+    public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        enqueue(level, tag, message, null);
+    }
+
+    @Override
+    public void print(final int level,
+                      @Nonnull final String tag,
+                      @Nonnull final String template,
+                      @Nullable final Object[] args) {
+        enqueue(level, tag, template, args);
+    }
+
+    /**
+     * @return number of the messages dropped because the ring buffer was full
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Prints out the queued messages waiting up to {@link #DEFAULT_CLOSE_TIMEOUT_IN_MILLIS} and stops the printing
+     * thread. The messages logged afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT_IN_MILLIS);
+    }
+
+    /**
+     * Prints out the queued messages and stops the printing thread. The messages logged afterwards are dropped.
+     *
+     * @param timeoutInMillis
+     *         How long to wait for the queued messages to be printed
+     */
+    public void close(final long timeoutInMillis) {
+        mClosed = true;
+        LockSupport.unpark(mPrintThread);
+        try {
+            mPrintThread.join(timeoutInMillis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(final int level,
+                         final String tag,
+                         final String template,
+                         final Object[] args) {
+        if (mClosed) {
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = mClaimSequence.get();
+            if (sequence - mPrintSequence >= mSlots.length) {
+                // Full - don't hold up the logging thread
+                mDroppedCount.incrementAndGet();
+                return;
+            }
+        } while (!mClaimSequence.compareAndSet(sequence, sequence + 1));
+
+        final Slot slot = mSlots[(int) (sequence & mMask)];
+        slot.mLevel = level;
+        slot.mTag = tag;
+        slot.mTemplate = template;
+        slot.mArgs = args;
+
+        // Publish
+        slot.mSequence = sequence;
+        if (mPrintThreadParked) {
+            LockSupport.unpark(mPrintThread);
+        }
+    }
+
+    private void printLoop() {
+        long reportedDroppedCount = 0;
+        while (true) {
+            final long sequence = mPrintSequence;
+            final Slot slot = mSlots[(int) (sequence & mMask)];
+            if (slot.mSequence != sequence) {
+                if (mClosed && mClaimSequence.get() == sequence) {
+                    return;
+                }
+
+                // Re-check after announcing the park so a message published meanwhile unparks the thread
+                mPrintThreadParked = true;
+                if (slot.mSequence != sequence && !mClosed) {
+                    LockSupport.park(this);
+                }
+
+                mPrintThreadParked = false;
+                continue;
+            }
+
+            final int level = slot.mLevel;
+            final String tag = slot.mTag;
+            final String template = slot.mTemplate;
+            final Object[] args = slot.mArgs;
+            slot.mTag = null;
+            slot.mTemplate = null;
+            slot.mArgs = null;
+
+            // Free up the slot before the formatting and the I/O
+            mPrintSequence = sequence + 1;
+
+            final long droppedCount = mDroppedCount.get();
+            if (droppedCount != reportedDroppedCount) {
+                printMessage(LogLevel.WARN.getLogLevel(), TAG, "%d log messages dropped",
+                        new Object[] { droppedCount - reportedDroppedCount });
+                reportedDroppedCount = droppedCount;
+            }
+
+            printMessage(level, tag, template, args);
+        }
+    }
+
+    private void printMessage(final int level, final String tag, final String template, final Object[] args) {
+        String message = template;
+        try {
+            message = args == null ? template : String.format(template, args);
+            mOutputChannel.print(level, tag, message);
+        } catch (final RuntimeException e) {
+            // Keep printing the rest of the messages
+            try {
+                mFallbackChannel.print(LogLevel.ERROR.getLogLevel(), TAG,
+                        String.format("Printing a log message failed with %s: %s %s", e, tag, message));
+            } catch (final RuntimeException fallbackException) {
+                // Nowhere left to report it
+            }
+        }
+    }
+}
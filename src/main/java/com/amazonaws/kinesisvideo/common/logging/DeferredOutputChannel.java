@@ -0,0 +1,26 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Output channel which takes the template and the arguments instead of the formatted message so the formatting
+ * can be done off the calling thread.
+ *
+ * NOTE: The arguments are formatted after the call returns so they should not be modified by the caller afterwards.
+ */
+public interface DeferredOutputChannel extends OutputChannel {
+    /**
+     * Prints out the message formatted with {@link String#format(String, Object...)}
+     *
+     * @param level
+     *         Log level
+     * @param tag
+     *         Tag to be used with the message
+     * @param template
+     *         String template
+     * @param args
+     *         Arguments or null if the template is the message
+     */
+    void print(int level, final @Nonnull String tag, final @Nonnull String template, final @Nullable Object[] args);
+}
@@ -54,14 +54,29 @@ public class Log {
     };
 
     /**
-     * Output channel to use.
+     * Used to build the log message. The loggers are shared between the threads.
      */
-    private final OutputChannel mOutputChannel;
+    private static final ThreadLocal<StringBuilder> STRING_BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(DEFAULT_MESSAGE_BUFFER);
+        }
+    };
 
     /**
-     * Used to build the log message
+     * Used to format the message date
      */
-    private final StringBuilder mStringBuilder;
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z' ");
+        }
+    };
+
+    /**
+     * Output channel to use.
+     */
+    private final OutputChannel mOutputChannel;
 
     /**
      * Current tag value
@@ -97,7 +112,6 @@ public class Log {
         mOutputChannel = Preconditions.checkNotNull(outputChannel);
         mTag = Preconditions.checkNotNull(tag);
         mCurrentLogLevel = currentLogLevel;
-        mStringBuilder = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
     }
 
     /**
@@ -120,6 +134,17 @@ public class Log {
         mTag = String.format("%s%s%s", BASE_TAG, TAG_DELIMITER, packageName);
     }
 
+    /**
+     * Whether the messages of the given level are logged. Can be used to skip building expensive arguments.
+     *
+     * @param logLevel
+     *         Log level
+     * @return true if the level is enabled
+     */
+    public boolean isEnabled(final LogLevel logLevel) {
+        return logLevel.getLogLevel() >= mCurrentLogLevel.getLogLevel();
+    }
+
     /**
      * Basic logging function with a single string message
      *
@@ -129,13 +154,15 @@ public class Log {
      *         Message to log
      */
     public void log(final LogLevel logLevel, final String message) {
-        if (logLevel.getLogLevel() >= mCurrentLogLevel.getLogLevel()) {
+        if (isEnabled(logLevel)) {
             mOutputChannel.print(logLevel.getLogLevel(), mTag, message);
         }
     }
 
     /**
-     * Parameterized versions of the logging functions
+     * Parameterized versions of the logging functions. The message is formatted only if the level is enabled and
+     * on the channel's thread if the channel is a {@link DeferredOutputChannel}. Check {@link #isEnabled(LogLevel)}
+     * first to avoid boxing the arguments on the hot paths.
      *
      * @param logLevel
      *         Log level
@@ -145,7 +172,15 @@ public class Log {
      *         Arguments
      */
     public void log(final LogLevel logLevel, final String template, final Object... args) {
-        log(logLevel, String.format(template, args));
+        if (!isEnabled(logLevel)) {
+            return;
+        }
+
+        if (mOutputChannel instanceof DeferredOutputChannel) {
+            ((DeferredOutputChannel) mOutputChannel).print(logLevel.getLogLevel(), mTag, template, args);
+        } else {
+            mOutputChannel.print(logLevel.getLogLevel(), mTag, String.format(template, args));
+        }
     }
 
     /**
@@ -292,6 +327,10 @@ public class Log {
     }
 
     public void exception(final Throwable e, final String template, final Object... args) {
+        if (!isEnabled(LogLevel.ERROR)) {
+            return;
+        }
+
         log(LogLevel.ERROR, createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER,
                 String.format(template, args), MESSAGE_DELIMITER, e.getMessage()));
     }
@@ -311,34 +350,35 @@ public class Log {
         }
 
         // Clear the buffer
-        mStringBuilder.setLength(0);
+        final StringBuilder stringBuilder = STRING_BUILDER.get();
+        stringBuilder.setLength(0);
 
         // Add the date
-        mStringBuilder.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z' ").format(new Date()));
+        stringBuilder.append(DATE_FORMAT.get().format(new Date()));
 
         // Add the thread
-        mStringBuilder.append("T").append(Thread.currentThread().getId()).append(MESSAGE_DELIMITER);
+        stringBuilder.append("T").append(Thread.currentThread().getId()).append(MESSAGE_DELIMITER);
 
         // Append the rest
-        addFlattenedArray(args);
+        addFlattenedArray(stringBuilder, args);
 
-        return mStringBuilder.toString();
+        return stringBuilder.toString();
     }
 
     /**
      * Converts an Object array to a flat string representation, recursively expanding subarrays,
      * and appends the result to the StringBuilder.
      */
-    private void addFlattenedArray(final Object[] args) {
+    private static void addFlattenedArray(final StringBuilder stringBuilder, final Object[] args) {
         for (final Object item : args) {
             if (null == item) {
-                mStringBuilder.append("null");
+                stringBuilder.append("null");
             } else if (item instanceof byte[]) {
-                addHexString((byte[]) item);
+                addHexString(stringBuilder, (byte[]) item);
             } else if (item instanceof Object[]) {
-                addFlattenedArray((Object[]) item);
+                addFlattenedArray(stringBuilder, (Object[]) item);
             } else {
-                mStringBuilder.append(item.toString());
+                stringBuilder.append(item.toString());
             }
         }
     }
@@ -349,14 +389,14 @@ public class Log {
      * @param bytes
      *         Array of types to represent
      */
-    private void addHexString(final byte[] bytes) {
+    private static void addHexString(final StringBuilder stringBuilder, final byte[] bytes) {
         for (int i = 0; i < bytes.length; i++) {
             final int unsignedByte = bytes[i] & 0xff; // Need to cast up to int to preserve unsignedness of each byte
             if (unsignedByte < 16) {
-                mStringBuilder.append('0'); // so we have two characters per digit
+                stringBuilder.append('0'); // so we have two characters per digit
             }
 
-            mStringBuilder.append(Integer.toHexString(unsignedByte));
+            stringBuilder.append(Integer.toHexString(unsignedByte));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of messages logged from a call site within a period, i.e. the per read or per frame debug
+ * logging. Meant to be checked together with the level before building the arguments:
+ *
+ * <pre>
+ * if (log.isEnabled(LogLevel.DEBUG) &amp;&amp; rateLimiter.tryAcquire()) {
+ *     log.debug(...);
+ * }
+ * </pre>
+ */
+@ThreadSafe
+public class LogRateLimiter {
+    private final int mMaxMessages;
+    private final long mPeriodNanos;
+    private final AtomicLong mPeriodStartNanos;
+    private final AtomicInteger mMessageCount = new AtomicInteger();
+    private final AtomicLong mSuppressedCount = new AtomicLong();
+
+    /**
+     * @param maxMessages
+     *         Number of the messages allowed within the period
+     * @param period
+     *         Period duration
+     * @param unit
+     *         Period time unit
+     */
+    public LogRateLimiter(final int maxMessages, final long period, final TimeUnit unit) {
+        Preconditions.checkArgument(maxMessages > 0, "Max messages should be positive");
+        Preconditions.checkArgument(period > 0, "Period should be positive");
+        mMaxMessages = maxMessages;
+        mPeriodNanos = unit.toNanos(period);
+        mPeriodStartNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return whether the message can be logged
+     */
+    public boolean tryAcquire() {
+        final long now = System.nanoTime();
+        final long periodStart = mPeriodStartNanos.get();
+        if (now - periodStart >= mPeriodNanos && mPeriodStartNanos.compareAndSet(periodStart, now)) {
+            mMessageCount.set(0);
+        }
+
+        if (mMessageCount.get() < mMaxMessages && mMessageCount.incrementAndGet() <= mMaxMessages) {
+            return true;
+        }
+
+        mSuppressedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return number of the messages suppressed so far
+     */
+    public long getSuppressedCount() {
+        return mSuppressedCount.get();
+    }
+}
@@ -1,10 +1,24 @@
 package com.amazonaws.kinesisvideo.encoding;
 
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 public final class ChunkEncoder {
+    /**
+     * Max size of the chunk header - 8 hex digits for the chunk size followed by CRLF.
+     */
+    public static final int MAX_CHUNK_HEADER_SIZE = 10;
+
+    /**
+     * Size of the CRLF following the chunk payload.
+     */
+    public static final int CHUNK_TRAILER_SIZE = 2;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
 
     public static byte[] encode(final byte[] bytes, final int count) {
         try {
@@ -21,6 +35,53 @@ public final class ChunkEncoder {
         }
     }
 
+    /**
+     * Frames the payload as a chunk in place without copying it. The buffer should have at least
+     * {@link #MAX_CHUNK_HEADER_SIZE} bytes of head room before the payload and {@link #CHUNK_TRAILER_SIZE}
+     * bytes after it.
+     *
+     * @param buffer buffer containing the payload
+     * @param payloadOffset offset of the payload in the buffer
+     * @param count payload size
+     * @return offset of the encoded chunk in the buffer. The chunk ends right after the trailing CRLF.
+     */
+    public static int encodeInPlace(final byte[] buffer, final int payloadOffset, final int count) {
+        Preconditions.checkArgument(count >= 0, "Chunk size should not be negative");
+        Preconditions.checkArgument(payloadOffset >= MAX_CHUNK_HEADER_SIZE, "Not enough head room for chunk header");
+        Preconditions.checkArgument(payloadOffset + count + CHUNK_TRAILER_SIZE <= buffer.length,
+                "Not enough room for chunk trailer");
+
+        int offset = payloadOffset;
+        buffer[--offset] = '\n';
+        buffer[--offset] = '\r';
+        int remaining = count;
+        do {
+            buffer[--offset] = HEX_DIGITS[remaining & 0xf];
+            remaining >>>= 4;
+        } while (remaining != 0);
+
+        buffer[payloadOffset + count] = '\r';
+        buffer[payloadOffset + count + 1] = '\n';
+        return offset;
+    }
+
+    /**
+     * Puts the chunk header - hex chunk size followed by CRLF into the buffer at its position.
+     *
+     * @param buffer buffer with at least {@link #MAX_CHUNK_HEADER_SIZE} bytes remaining
+     * @param count payload size
+     */
+    public static void putChunkHeader(final ByteBuffer buffer, final int count) {
+        Preconditions.checkArgument(count >= 0, "Chunk size should not be negative");
+
+        final int digits = count == 0 ? 1 : (Integer.SIZE - Integer.numberOfLeadingZeros(count) + 3) / 4;
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            buffer.put(HEX_DIGITS[(count >>> shift) & 0xf]);
+        }
+
+        buffer.put((byte) '\r').put((byte) '\n');
+    }
+
     private static void writeChunkSize(final OutputStream socketWrite, final int count) throws Exception {
         final String hexCount = Integer.toHexString(count);
         socketWrite.write(hexCount.getBytes(StandardCharsets.US_ASCII));
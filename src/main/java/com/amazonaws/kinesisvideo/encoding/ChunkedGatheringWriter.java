@@ -0,0 +1,111 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import javax.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Writes HTTP chunked transfer encoded data into a channel.
+ *
+ * The chunk header and the trailing CRLF are kept in separate small direct buffers and written together with the
+ * payload in a single gathering write so the payload bytes are never copied into an intermediate chunk.
+ */
+public final class ChunkedGatheringWriter {
+    private static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0);
+
+    private final GatheringByteChannel mChannel;
+    private final ByteBuffer mHeader = ByteBuffer.allocateDirect(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+    private final ByteBuffer mTrailer = ByteBuffer.allocateDirect(ChunkEncoder.CHUNK_TRAILER_SIZE);
+    private final ByteBuffer[] mBuffers = new ByteBuffer[3];
+
+    public ChunkedGatheringWriter(@Nonnull final GatheringByteChannel channel) {
+        mChannel = checkNotNull(channel);
+        mTrailer.put((byte) '\r').put((byte) '\n').flip();
+        mBuffers[0] = mHeader;
+        mBuffers[2] = mTrailer;
+    }
+
+    /**
+     * Writes the remaining bytes of the payload as a single chunk. Empty payloads are skipped as the empty chunk
+     * terminates the stream.
+     *
+     * @param payload payload buffer. Its position is advanced to the limit on return.
+     * @throws IOException if writing into the channel fails
+     */
+    public void writeChunk(@Nonnull final ByteBuffer payload) throws IOException {
+        if (payload.hasRemaining()) {
+            write(payload);
+        }
+    }
+
+    /**
+     * Writes a region of the file as a single chunk. The payload is transferred from the file into the channel with
+     * {@link FileChannel#transferTo}, i.e. sendfile, so it's never copied into the user space.
+     *
+     * @param file file to send from
+     * @param position offset of the payload in the file
+     * @param count payload size
+     * @throws IOException if the file ends before the payload or writing into the channel fails
+     */
+    public void transferChunk(@Nonnull final FileChannel file, final long position, final int count)
+            throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        mHeader.clear();
+        ChunkEncoder.putChunkHeader(mHeader, count);
+        mHeader.flip();
+        writeFully(mHeader);
+
+        long transferred = 0;
+        while (transferred < count) {
+            final long bytes = file.transferTo(position + transferred, count - transferred, mChannel);
+            if (bytes <= 0 && position + transferred >= file.size()) {
+                throw new EOFException("File ended before the end of the chunk");
+            }
+
+            transferred += bytes;
+        }
+
+        mTrailer.rewind();
+        writeFully(mTrailer);
+    }
+
+    /**
+     * Writes the terminating empty chunk.
+     *
+     * @throws IOException if writing into the channel fails
+     */
+    public void writeLastChunk() throws IOException {
+        write(EMPTY_PAYLOAD.duplicate());
+    }
+
+    private void write(final ByteBuffer payload) throws IOException {
+        mHeader.clear();
+        ChunkEncoder.putChunkHeader(mHeader, payload.remaining());
+        mHeader.flip();
+        mTrailer.rewind();
+        mBuffers[1] = payload;
+
+        try {
+            long remaining = mHeader.remaining() + payload.remaining() + mTrailer.remaining();
+            while (remaining > 0) {
+                remaining -= mChannel.write(mBuffers);
+            }
+        } finally {
+            mBuffers[1] = null;
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import com.amazonaws.kinesisvideo.model.ResponseStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Incremental HTTP/1.1 response parser.
+ *
+ * The bytes can be fed in any portions as they arrive, i.e. from the bulk reads of a blocking stream or from the
+ * NIO buffers. The parser keeps its position in the status line, the headers and the chunked body between the calls
+ * so every byte is looked at once. Only the status line and the headers are copied; the body is handed to the
+ * {@link Listener} as slices of the fed buffers with the chunk framing removed.
+ *
+ * Parsing stops at the end of the headers and at the end of the response so the caller can hand the rest of the
+ * bytes over to another consumer. The parser can be reused after {@link #reset()}.
+ */
+@NotThreadSafe
+public final class HttpResponseParser {
+    /**
+     * Receives the decoded response body
+     */
+    public interface Listener {
+        /**
+         * Called with a slice of the body. The slice is only valid during the call.
+         */
+        void onBody(@Nonnull byte[] buffer, int offset, int length);
+
+        /**
+         * Called once the whole body has been received
+         */
+        void onComplete();
+    }
+
+    public static final int DEFAULT_MAX_HEADER_SIZE = 64 * 1024;
+
+    private static final int INITIAL_LINE_BUFFER_SIZE = 256;
+    private static final int READ_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_CHUNK_SIZE_DIGITS = 7;
+    private static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CHUNKED = "chunked";
+
+    private enum State {
+        STATUS_LINE,
+        HEADER_LINE,
+        CHUNK_SIZE_LINE,
+        CHUNK_DATA,
+        CHUNK_DATA_END_LINE,
+        TRAILER_LINE,
+        FIXED_LENGTH_BODY,
+        BODY_UNTIL_CLOSE,
+        COMPLETE
+    }
+
+    private final Listener listener;
+    private final int maxHeaderSize;
+    private final Map<String, String> headers = new HashMap<String, String>();
+    private byte[] lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+    private byte[] scratchBuffer;
+    private int lineLength;
+    private int headerSize;
+    private State state;
+    private long remainingBodyBytes;
+    private ResponseStatus responseStatus;
+
+    public HttpResponseParser() {
+        this(null, DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    public HttpResponseParser(@Nullable final Listener listener) {
+        this(listener, DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    public HttpResponseParser(@Nullable final Listener listener, final int maxHeaderSize) {
+        this.listener = listener;
+        this.maxHeaderSize = maxHeaderSize;
+        reset();
+    }
+
+    /**
+     * Prepares the parser for the next response
+     */
+    public void reset() {
+        headers.clear();
+        lineLength = 0;
+        headerSize = 0;
+        state = State.STATUS_LINE;
+        remainingBodyBytes = 0;
+        responseStatus = null;
+    }
+
+    /**
+     * Parses the bytes
+     *
+     * @return number of the bytes consumed. Less than the length if the headers or the response have been completed.
+     */
+    public int parse(@Nonnull final byte[] buffer, final int offset, final int length) {
+        final int end = offset + length;
+        int position = offset;
+        while (position < end && state != State.COMPLETE) {
+            final State previousState = state;
+            switch (state) {
+                case CHUNK_DATA:
+                case FIXED_LENGTH_BODY:
+                    position = consumeBody(buffer, position, end);
+                    break;
+                case BODY_UNTIL_CLOSE:
+                    onBody(buffer, position, end - position);
+                    position = end;
+                    break;
+                default:
+                    position = consumeLine(buffer, position, end);
+                    break;
+            }
+
+            if (previousState == State.HEADER_LINE && state != State.HEADER_LINE) {
+                // Let the caller take over after the headers
+                break;
+            }
+        }
+
+        return position - offset;
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer advancing its position by the number of the consumed bytes
+     *
+     * @return number of the bytes consumed
+     */
+    public int parse(@Nonnull final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            final int consumed = parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.position() + consumed);
+            return consumed;
+        }
+
+        if (scratchBuffer == null) {
+            scratchBuffer = new byte[READ_BUFFER_SIZE];
+        }
+
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            final int length = Math.min(buffer.remaining(), scratchBuffer.length);
+            final int position = buffer.position();
+            buffer.get(scratchBuffer, 0, length);
+            final int consumed = parse(scratchBuffer, 0, length);
+            total += consumed;
+            if (consumed < length) {
+                buffer.position(position + consumed);
+                break;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Reads the status line and the headers from the blocking stream in bulk.
+     *
+     * @return stream of the response body, including the bytes which have been read past the headers
+     */
+    @Nonnull
+    public InputStream parseHead(@Nonnull final InputStream inputStream) throws IOException {
+        checkNotNull(inputStream);
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        while (!isHeadersComplete()) {
+            final int bytesRead = inputStream.read(buffer);
+            if (bytesRead < 0) {
+                throw new IOException("End of stream before the end of the response headers");
+            }
+
+            final int consumed = parse(buffer, 0, bytesRead);
+            if (consumed < bytesRead) {
+                return new SequenceInputStream(
+                        new ByteArrayInputStream(Arrays.copyOfRange(buffer, consumed, bytesRead)), inputStream);
+            }
+        }
+
+        return inputStream;
+    }
+
+    public boolean isHeadersComplete() {
+        return state != State.STATUS_LINE && state != State.HEADER_LINE;
+    }
+
+    public boolean isComplete() {
+        return state == State.COMPLETE;
+    }
+
+    @Nullable
+    public ResponseStatus getResponseStatus() {
+        return responseStatus;
+    }
+
+    @Nonnull
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    private int consumeBody(final byte[] buffer, final int position, final int end) {
+        final int length = (int) Math.min(remainingBodyBytes, end - position);
+        onBody(buffer, position, length);
+        remainingBodyBytes -= length;
+        if (remainingBodyBytes == 0) {
+            if (state == State.CHUNK_DATA) {
+                state = State.CHUNK_DATA_END_LINE;
+            } else {
+                complete();
+            }
+        }
+
+        return position + length;
+    }
+
+    /**
+     * Accumulates the line until the line feed and processes it
+     */
+    private int consumeLine(final byte[] buffer, final int position, final int end) {
+        int index = position;
+        while (index < end && buffer[index] != '\n') {
+            index++;
+        }
+
+        final int length = index - position;
+        final int limit = isHeadersComplete() ? maxHeaderSize : maxHeaderSize - headerSize;
+        if (lineLength + length > limit) {
+            throw new RuntimeException("HTTP response line exceeds " + limit + " bytes");
+        }
+
+        ensureLineCapacity(lineLength + length);
+        System.arraycopy(buffer, position, lineBuffer, lineLength, length);
+        lineLength += length;
+
+        if (index == end) {
+            return end;
+        }
+
+        // Skip the line feed and drop the carriage return
+        if (lineLength > 0 && lineBuffer[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+
+        if (!isHeadersComplete()) {
+            headerSize += lineLength + 2;
+        }
+
+        processLine();
+        lineLength = 0;
+        return index + 1;
+    }
+
+    private void processLine() {
+        switch (state) {
+            case STATUS_LINE:
+                if (lineLength > 0) {
+                    responseStatus = parseStatusLine();
+                    state = State.HEADER_LINE;
+                }
+                break;
+            case HEADER_LINE:
+                if (lineLength == 0) {
+                    startBody();
+                } else {
+                    parseHeaderLine();
+                }
+                break;
+            case CHUNK_SIZE_LINE:
+                remainingBodyBytes = parseChunkSize();
+                state = remainingBodyBytes == 0 ? State.TRAILER_LINE : State.CHUNK_DATA;
+                break;
+            case CHUNK_DATA_END_LINE:
+                if (lineLength != 0) {
+                    throw new RuntimeException("Malformed chunk: missing CRLF after the chunk data");
+                }
+                state = State.CHUNK_SIZE_LINE;
+                break;
+            case TRAILER_LINE:
+                if (lineLength == 0) {
+                    complete();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected line in state " + state);
+        }
+    }
+
+    private ResponseStatus parseStatusLine() {
+        final int protocolEnd = indexOf(' ', 0);
+        if (protocolEnd < 0) {
+            throw new RuntimeException("Malformed HTTP status line");
+        }
+
+        int codeEnd = indexOf(' ', protocolEnd + 1);
+        if (codeEnd < 0) {
+            codeEnd = lineLength;
+        }
+
+        int statusCode = 0;
+        for (int i = protocolEnd + 1; i < codeEnd; i++) {
+            final int digit = lineBuffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new RuntimeException("Malformed HTTP status code");
+            }
+            statusCode = statusCode * 10 + digit;
+        }
+
+        return ResponseStatus.builder()
+                .protocol(toString(0, protocolEnd))
+                .statusCode(statusCode)
+                .reason(codeEnd < lineLength ? toString(codeEnd + 1, lineLength) : "")
+                .build();
+    }
+
+    private void parseHeaderLine() {
+        final int separator = indexOf(':', 0);
+        if (separator < 0) {
+            // Same as the ChunkDecoder, lines without the separator are ignored
+            return;
+        }
+
+        headers.put(trimmedString(0, separator), trimmedString(separator + 1, lineLength));
+    }
+
+    private void startBody() {
+        final String transferEncoding = getHeaderIgnoreCase(TRANSFER_ENCODING);
+        final String contentLength = getHeaderIgnoreCase(CONTENT_LENGTH);
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.US).contains(CHUNKED)) {
+            state = State.CHUNK_SIZE_LINE;
+        } else if (contentLength != null) {
+            remainingBodyBytes = Long.parseLong(contentLength);
+            state = State.FIXED_LENGTH_BODY;
+            if (remainingBodyBytes == 0) {
+                complete();
+            }
+        } else {
+            state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private String getHeaderIgnoreCase(final String name) {
+        final String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the hex chunk size ignoring the chunk extensions
+     */
+    private int parseChunkSize() {
+        int size = 0;
+        int digits = 0;
+        for (int i = 0; i < lineLength; i++) {
+            final byte b = lineBuffer[i];
+            final int digit = Character.digit(b, 16);
+            if (digit >= 0) {
+                if (++digits > MAX_CHUNK_SIZE_DIGITS) {
+                    throw new RuntimeException("Chunk size is too large");
+                }
+                size = (size << 4) | digit;
+            } else if (b == ';' || (digits > 0 && (b == ' ' || b == '\t'))) {
+                break;
+            } else if (b != ' ' && b != '\t') {
+                throw new RuntimeException("Malformed chunk size");
+            }
+        }
+
+        if (digits == 0) {
+            throw new RuntimeException("Missing chunk size");
+        }
+
+        return size;
+    }
+
+    private void onBody(final byte[] buffer, final int offset, final int length) {
+        if (listener != null && length > 0) {
+            listener.onBody(buffer, offset, length);
+        }
+    }
+
+    private void complete() {
+        state = State.COMPLETE;
+        if (listener != null) {
+            listener.onComplete();
+        }
+    }
+
+    private void ensureLineCapacity(final int capacity) {
+        if (capacity > lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(capacity, lineBuffer.length * 2));
+        }
+    }
+
+    private int indexOf(final char c, final int from) {
+        for (int i = from; i < lineLength; i++) {
+            if (lineBuffer[i] == c) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private String trimmedString(final int from, final int to) {
+        int start = from;
+        int end = to;
+        while (start < end && lineBuffer[start] <= ' ') {
+            start++;
+        }
+
+        while (end > start && lineBuffer[end - 1] <= ' ') {
+            end--;
+        }
+
+        return toString(start, end);
+    }
+
+    private String toString(final int from, final int to) {
+        return new String(lineBuffer, from, to - from, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,262 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Offsets of the fragments in a pre-muxed MKV file, i.e. a recorded stream, so it can be uploaded without splitting a
+ * chunk across the fragments.
+ *
+ * The fragments start with the EBML header or with a cluster. The file is walked element by element, reading only the
+ * element IDs and sizes, so the bytes of the frames are never mistaken for an element. The segments and the clusters
+ * are entered rather than skipped as the recordings may contain them with an unknown size, all the other elements
+ * are skipped by their size.
+ */
+public final class MkvFragmentIndex {
+    private static final int EBML_HEADER_ID = 0x1A45DFA3;
+    private static final int SEGMENT_ID = 0x18538067;
+    private static final int CLUSTER_ID = 0x1F43B675;
+
+    private static final int MAX_ID_SIZE = 4;
+    private static final int MAX_DATA_SIZE_SIZE = 8;
+    private static final long UNKNOWN_DATA_SIZE = -1;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final long[] mFragmentOffsets;
+    private final long[] mClusterOffsets;
+    private final long[] mHeaderOffsets;
+    private final long mFileSize;
+
+    private MkvFragmentIndex(@Nonnull final long[] fragmentOffsets,
+                             @Nonnull final long[] clusterOffsets,
+                             @Nonnull final long[] headerOffsets,
+                             final long fileSize) {
+        mFragmentOffsets = fragmentOffsets;
+        mClusterOffsets = clusterOffsets;
+        mHeaderOffsets = headerOffsets;
+        mFileSize = fileSize;
+    }
+
+    /**
+     * Walks the elements of the file for the fragment starts. A truncated last element ends the walk.
+     *
+     * @param file the file to scan, its position isn't changed
+     * @return the index of the fragments
+     * @throws IOException if reading the file fails or it isn't a valid MKV file
+     */
+    @Nonnull
+    public static MkvFragmentIndex scan(@Nonnull final FileChannel file) throws IOException {
+        checkNotNull(file);
+        final long size = file.size();
+        final ElementReader reader = new ElementReader(file, size);
+        final OffsetList offsets = new OffsetList();
+        final OffsetList clusterOffsets = new OffsetList();
+        final OffsetList headerOffsets = new OffsetList();
+        long position = 0;
+        while (position < size && reader.readHeader(position)) {
+            final int id = reader.mId;
+            if (id == CLUSTER_ID) {
+                clusterOffsets.add(position);
+            } else if (id == EBML_HEADER_ID) {
+                headerOffsets.add(position);
+            }
+
+            if ((id == CLUSTER_ID || id == EBML_HEADER_ID) && position > 0) {
+                offsets.add(position);
+            }
+
+            final long dataStart = position + reader.mHeaderSize;
+            if (id == SEGMENT_ID || id == CLUSTER_ID) {
+                // The children follow the header
+                position = dataStart;
+            } else if (reader.mDataSize == UNKNOWN_DATA_SIZE) {
+                throw new IOException(String.format("Element 0x%X of unknown size at %d", id, position));
+            } else {
+                position = reader.mDataSize > size - dataStart ? size : dataStart + reader.mDataSize;
+            }
+        }
+
+        return new MkvFragmentIndex(offsets.toArray(), clusterOffsets.toArray(), headerOffsets.toArray(), size);
+    }
+
+    /**
+     * @return number of the fragment boundaries found, not counting the start of the file
+     */
+    public int getBoundaryCount() {
+        return mFragmentOffsets.length;
+    }
+
+    /**
+     * @return the offset the fragment containing the position ends at, i.e. the next fragment start or the file size
+     */
+    public long getFragmentEnd(final long position) {
+        final int index = Arrays.binarySearch(mFragmentOffsets, position + 1);
+        final int next = index >= 0 ? index : -index - 1;
+        return next < mFragmentOffsets.length ? mFragmentOffsets[next] : mFileSize;
+    }
+
+    /**
+     * @return number of the clusters, i.e. the fragments the service acknowledges
+     */
+    public int getClusterCount() {
+        return mClusterOffsets.length;
+    }
+
+    /**
+     * @param index index of the cluster in the file
+     * @return the offset the cluster starts at
+     */
+    public long getClusterOffset(final int index) {
+        return mClusterOffsets[index];
+    }
+
+    /**
+     * @return number of the clusters starting before the position, i.e. the index of the first cluster from it
+     */
+    public int getClustersBefore(final long position) {
+        final int index = Arrays.binarySearch(mClusterOffsets, position);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @return the offset of the last EBML header at or before the position, i.e. the header the fragment at the
+     * position belongs to, or 0 if there is none
+     */
+    public long getHeaderStart(final long position) {
+        final int index = Arrays.binarySearch(mHeaderOffsets, position);
+        final int header = index >= 0 ? index : -index - 2;
+        return header >= 0 ? mHeaderOffsets[header] : 0;
+    }
+
+    public long getFileSize() {
+        return mFileSize;
+    }
+
+    /**
+     * Growing array of the offsets in the order of the file
+     */
+    private static final class OffsetList {
+        private long[] mOffsets = new long[INITIAL_CAPACITY];
+        private int mCount;
+
+        private void add(final long offset) {
+            if (mCount == mOffsets.length) {
+                mOffsets = Arrays.copyOf(mOffsets, mCount * 2);
+            }
+
+            mOffsets[mCount++] = offset;
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(mOffsets, mCount);
+        }
+    }
+
+    /**
+     * Reads the element headers through a buffer refilled at the header position so the headers of the small
+     * elements, i.e. the frames, don't cost a read each.
+     */
+    private static final class ElementReader {
+        private final FileChannel mFile;
+        private final long mFileSize;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private long mBufferStart = 0;
+
+        private int mId;
+        private int mHeaderSize;
+        private long mDataSize;
+
+        private ElementReader(final FileChannel file, final long fileSize) {
+            mFile = file;
+            mFileSize = fileSize;
+            mBuffer.limit(0);
+        }
+
+        /**
+         * @return false if the file ends within the header
+         */
+        private boolean readHeader(final long position) throws IOException {
+            if (!fill(position, 1)) {
+                return false;
+            }
+
+            final int idSize = vintSize(byteAt(position));
+            if (idSize > MAX_ID_SIZE) {
+                throw new IOException("Invalid element ID at " + position);
+            }
+
+            if (!fill(position, idSize + 1)) {
+                return false;
+            }
+
+            final int sizeSize = vintSize(byteAt(position + idSize));
+            if (sizeSize > MAX_DATA_SIZE_SIZE) {
+                throw new IOException("Invalid element size at " + position);
+            }
+
+            if (!fill(position, idSize + sizeSize)) {
+                return false;
+            }
+
+            // The IDs keep the length marker
+            int id = 0;
+            for (int i = 0; i < idSize; i++) {
+                id = (id << Byte.SIZE) | byteAt(position + i);
+            }
+
+            long dataSize = byteAt(position + idSize) & (0xFF >> sizeSize);
+            for (int i = 1; i < sizeSize; i++) {
+                dataSize = (dataSize << Byte.SIZE) | byteAt(position + idSize + i);
+            }
+
+            mId = id;
+            mHeaderSize = idSize + sizeSize;
+            // All the value bits set mean the size is unknown
+            mDataSize = dataSize == (1L << (7 * sizeSize)) - 1 ? UNKNOWN_DATA_SIZE : dataSize;
+            return true;
+        }
+
+        /**
+         * @return the number of bytes of the variable size integer, more than 8 if the first byte is 0
+         */
+        private static int vintSize(final int firstByte) {
+            return Integer.numberOfLeadingZeros(firstByte) - (Integer.SIZE - Byte.SIZE) + 1;
+        }
+
+        private int byteAt(final long position) {
+            return mBuffer.get((int) (position - mBufferStart)) & 0xFF;
+        }
+
+        /**
+         * Makes the bytes from the position buffered
+         *
+         * @return false if the file ends before them
+         */
+        private boolean fill(final long position, final int length) throws IOException {
+            if (position >= mBufferStart && position + length <= mBufferStart + mBuffer.limit()) {
+                return true;
+            }
+
+            if (position + length > mFileSize) {
+                return false;
+            }
+
+            mBuffer.clear();
+            mBufferStart = position;
+            while (mBuffer.position() < length) {
+                if (mFile.read(mBuffer, position + mBuffer.position()) < 0) {
+                    return false;
+                }
+            }
+
+            mBuffer.flip();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.amazonaws.kinesisvideo.http;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Output stream which writes straight into a blocking socket channel.
+ *
+ * NOTE: Unlike the streams of the channel socket adaptor it doesn't take the channel blocking lock so the socket
+ * can be written into while another thread is blocked reading the response from it.
+ */
+public final class ChannelOutputStream extends OutputStream {
+    private final SocketChannel mChannel;
+
+    // This is so that we don't have to allocate it all the time. Just one byte!
+    private final ByteBuffer mOneByteBuffer = ByteBuffer.allocate(1);
+
+    public ChannelOutputStream(@Nonnull final SocketChannel channel) {
+        mChannel = checkNotNull(channel);
+    }
+
+    /**
+     * @return the underlying channel for the gathering writes
+     */
+    @Nonnull
+    public SocketChannel getChannel() {
+        return mChannel;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        mOneByteBuffer.clear();
+        mOneByteBuffer.put((byte) b).flip();
+        writeFully(mOneByteBuffer);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        writeFully(ByteBuffer.wrap(b, off, len));
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.amazonaws.kinesisvideo.http;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * Handler of a channel registered with {@link NioEventLoop}. All of the methods are invoked on the loop thread.
+ */
+interface NioChannelHandler {
+    /**
+     * Invoked when the channel is ready for the operations the handler is interested in.
+     */
+    void onSelected(SelectionKey key);
+
+    /**
+     * Invoked periodically for the housekeeping, i.e. checking the timeouts.
+     */
+    void onTick(long nowNanos);
+
+    /**
+     * Invoked when the loop is shutting down or when the handler has thrown.
+     */
+    void onClose(Throwable cause);
+}
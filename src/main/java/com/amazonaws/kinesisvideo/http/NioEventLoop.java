@@ -0,0 +1,239 @@
+package com.amazonaws.kinesisvideo.http;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Single threaded selector loop. The channels registered with the loop as well as the submitted and the scheduled
+ * tasks are only ever touched by the loop thread so the handlers need no synchronization.
+ */
+final class NioEventLoop implements Runnable {
+    private static final long TICK_INTERVAL_IN_MILLISECONDS = 1000;
+
+    /**
+     * Task to run on the loop thread once its deadline passes
+     */
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        private final long mDeadlineNanos;
+        private final long mSequence;
+        private final Runnable mTask;
+
+        private ScheduledTask(final long deadlineNanos, final long sequence, final Runnable task) {
+            mDeadlineNanos = deadlineNanos;
+            mSequence = sequence;
+            mTask = task;
+        }
+
+        @Override
+        public int compareTo(@Nonnull final ScheduledTask other) {
+            final long difference = mDeadlineNanos - other.mDeadlineNanos;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+
+            // Same deadline - keep the scheduling order
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+
+    private final Selector mSelector;
+    private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<Runnable>();
+    private final PriorityQueue<ScheduledTask> mScheduledTasks = new PriorityQueue<ScheduledTask>();
+    private long mScheduledTaskSequence;
+    private final AtomicBoolean mWakeupPending = new AtomicBoolean();
+    private final Log mLog;
+    private final Thread mThread;
+    private volatile boolean mShutdown = false;
+
+    NioEventLoop(@Nonnull final String name, @Nonnull final Log log) throws IOException {
+        mLog = checkNotNull(log);
+        mSelector = Selector.open();
+        mThread = new Thread(this, name);
+        mThread.setDaemon(true);
+    }
+
+    void start() {
+        mThread.start();
+    }
+
+    /**
+     * Runs the task on the loop thread.
+     */
+    void execute(@Nonnull final Runnable task) {
+        mTasks.offer(checkNotNull(task));
+        if (Thread.currentThread() != mThread && mWakeupPending.compareAndSet(false, true)) {
+            mSelector.wakeup();
+        }
+    }
+
+    /**
+     * Runs the task on the loop thread after the delay. Should be called on the loop thread.
+     */
+    void schedule(@Nonnull final Runnable task, final long delayNanos) {
+        checkState(inEventLoop(), "Tasks should be scheduled on the loop thread");
+        mScheduledTasks.add(new ScheduledTask(System.nanoTime() + Math.max(0, delayNanos),
+                mScheduledTaskSequence++, checkNotNull(task)));
+    }
+
+    /**
+     * Registers the channel with the loop. Should be called on the loop thread.
+     */
+    @Nonnull
+    SelectionKey register(@Nonnull final SelectableChannel channel,
+                          final int interestOps,
+                          @Nonnull final NioChannelHandler handler) throws ClosedChannelException {
+        checkState(inEventLoop(), "Channels should be registered on the loop thread");
+        return channel.register(mSelector, interestOps, handler);
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == mThread;
+    }
+
+    void shutdown() {
+        mShutdown = true;
+        mSelector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long nextTickNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TICK_INTERVAL_IN_MILLISECONDS);
+        while (!mShutdown) {
+            try {
+                final long selectTimeout = selectTimeoutMillis(nextTickNanos);
+                if (selectTimeout > 0) {
+                    mSelector.select(selectTimeout);
+                } else {
+                    mSelector.selectNow();
+                }
+
+                mWakeupPending.set(false);
+                processSelectedKeys();
+                runTasks();
+
+                final long now = System.nanoTime();
+                runScheduledTasks(now);
+                if (now - nextTickNanos >= 0) {
+                    nextTickNanos = now + TimeUnit.MILLISECONDS.toNanos(TICK_INTERVAL_IN_MILLISECONDS);
+                    tick(now);
+                }
+            } catch (final Throwable e) {
+                mLog.exception(e, "Event loop iteration threw an exception. Continuing...");
+            }
+        }
+
+        closeAll();
+    }
+
+    private void processSelectedKeys() {
+        final Iterator<SelectionKey> iterator = mSelector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            final SelectionKey key = iterator.next();
+            iterator.remove();
+
+            final NioChannelHandler handler = (NioChannelHandler) key.attachment();
+            try {
+                if (key.isValid()) {
+                    handler.onSelected(key);
+                }
+            } catch (final Throwable e) {
+                handler.onClose(e);
+            }
+        }
+    }
+
+    /**
+     * @return how long to wait for the selected keys until the next scheduled task or the tick, 0 if one is due
+     */
+    private long selectTimeoutMillis(final long nextTickNanos) {
+        long deadline = nextTickNanos;
+        final ScheduledTask scheduledTask = mScheduledTasks.peek();
+        if (scheduledTask != null && scheduledTask.mDeadlineNanos - deadline < 0) {
+            deadline = scheduledTask.mDeadlineNanos;
+        }
+
+        final long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            return 0;
+        }
+
+        // Round up so the task isn't run early
+        return (remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private void runScheduledTasks(final long nowNanos) {
+        ScheduledTask scheduledTask;
+        while ((scheduledTask = mScheduledTasks.peek()) != null && nowNanos - scheduledTask.mDeadlineNanos >= 0) {
+            mScheduledTasks.poll();
+            try {
+                scheduledTask.mTask.run();
+            } catch (final Throwable e) {
+                mLog.exception(e, "Event loop scheduled task threw an exception.");
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = mTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (final Throwable e) {
+                mLog.exception(e, "Event loop task threw an exception.");
+            }
+        }
+    }
+
+    private void tick(final long nowNanos) {
+        for (final NioChannelHandler handler : registeredHandlers()) {
+            try {
+                handler.onTick(nowNanos);
+            } catch (final Throwable e) {
+                handler.onClose(e);
+            }
+        }
+    }
+
+    private void closeAll() {
+        runTasks();
+        mScheduledTasks.clear();
+        for (final NioChannelHandler handler : registeredHandlers()) {
+            handler.onClose(new IOException("Event loop has been shut down"));
+        }
+
+        try {
+            mSelector.close();
+        } catch (final IOException e) {
+            mLog.exception(e, "Closing the selector threw an exception.");
+        }
+    }
+
+    private List<NioChannelHandler> registeredHandlers() {
+        // Copy as the handlers cancel their keys while being iterated
+        final List<NioChannelHandler> handlers = new ArrayList<NioChannelHandler>(mSelector.keys().size());
+        for (final SelectionKey key : mSelector.keys()) {
+            if (key.isValid()) {
+                handlers.add((NioChannelHandler) key.attachment());
+            }
+        }
+
+        return handlers;
+    }
+}
@@ -0,0 +1,93 @@
+package com.amazonaws.kinesisvideo.http;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of the selector loop threads shared by the {@link NioHttpClient} connections. The connections are
+ * assigned to the loops round robin.
+ *
+ * The request payloads are read on a separate pool so a payload read which blocks, i.e. on the producer lock of a
+ * contended stream, doesn't stall the I/O of the other connections of the loop. The pool is bounded, the reads of the
+ * ready payloads queue up once all the readers are busy, and the idle readers exit.
+ */
+@ThreadSafe
+public final class NioEventLoopGroup {
+    private static final String THREAD_NAME_PREFIX = "KinesisVideo-NioEventLoop-";
+    private static final String PAYLOAD_READER_THREAD_NAME_PREFIX = "KinesisVideo-NioPayloadReader-";
+    private static final int PAYLOAD_READERS_PER_EVENT_LOOP = 4;
+    private static final long PAYLOAD_READER_KEEP_ALIVE_IN_SECONDS = 60;
+
+    private final NioEventLoop[] mEventLoops;
+    private final AtomicInteger mNextEventLoop = new AtomicInteger();
+    private final ExecutorService mPayloadReaders;
+
+    public NioEventLoopGroup(final int threadCount, @Nonnull final Log log) throws IOException {
+        Preconditions.checkArgument(threadCount > 0, "Event loop thread count should be positive");
+        Preconditions.checkNotNull(log);
+
+        mEventLoops = new NioEventLoop[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            mEventLoops[i] = new NioEventLoop(THREAD_NAME_PREFIX + i, log);
+        }
+
+        for (final NioEventLoop eventLoop : mEventLoops) {
+            eventLoop.start();
+        }
+
+        final AtomicInteger readerCount = new AtomicInteger();
+        final int payloadReaderCount = threadCount * PAYLOAD_READERS_PER_EVENT_LOOP;
+        final ThreadPoolExecutor payloadReaders = new ThreadPoolExecutor(payloadReaderCount, payloadReaderCount,
+                PAYLOAD_READER_KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@Nonnull final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                PAYLOAD_READER_THREAD_NAME_PREFIX + readerCount.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        payloadReaders.allowCoreThreadTimeOut(true);
+        mPayloadReaders = payloadReaders;
+    }
+
+    @Nonnull
+    NioEventLoop next() {
+        return mEventLoops[(mNextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % mEventLoops.length];
+    }
+
+    /**
+     * @return executor of the request payload reads
+     */
+    @Nonnull
+    Executor payloadReaders() {
+        return mPayloadReaders;
+    }
+
+    public int getThreadCount() {
+        return mEventLoops.length;
+    }
+
+    /**
+     * Stops the loops. The connections which are still open are closed with an exception.
+     */
+    public void shutdown() {
+        for (final NioEventLoop eventLoop : mEventLoops) {
+            eventLoop.shutdown();
+        }
+
+        mPayloadReaders.shutdown();
+    }
+}
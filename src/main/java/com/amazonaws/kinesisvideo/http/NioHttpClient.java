@@ -0,0 +1,716 @@
+package com.amazonaws.kinesisvideo.http;
+
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.socket.SocketFactory;
+import com.amazonaws.kinesisvideo.util.ByteBufferPool;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Non-blocking HTTP client streaming a chunk encoded request payload and handing the response bytes to a handler.
+ *
+ * Unlike {@link ParallelSimpleHttpClient} which dedicates a sender and a receiver thread to every connection,
+ * the connections are multiplexed over the selector threads of a shared {@link NioEventLoopGroup}. The payload is
+ * pulled from a {@link PollableInputStream} whenever it notifies about the new data and the socket is writable.
+ * The payload reads run on the payload reader pool of the group, one at a time per connection, as they might block
+ * on the producer. TLS is handled with an {@link SSLEngine}.
+ *
+ * All of the connection state is only touched by the assigned event loop thread, except for the payload buffer
+ * which is handed to the reader while a read is in flight.
+ */
+public final class NioHttpClient implements HttpClient, NioChannelHandler {
+    private static final String SPACE = " ";
+    private static final String CLRF = "\r\n";
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HEADER_SEPARATOR = ": ";
+    private static final String HOST_HEADER = "Host";
+    private static final int PAYLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int DEFAULT_RESPONSE_BUFFER_SIZE = 16 * 1024;
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    /**
+     * Send buffers with the head and tail room for the in place chunk framing
+     */
+    private static final ByteBufferPool BUFFER_POOL = new ByteBufferPool(
+            ChunkEncoder.MAX_CHUNK_HEADER_SIZE + PAYLOAD_BUFFER_SIZE + ChunkEncoder.CHUNK_TRAILER_SIZE,
+            MAX_POOLED_BUFFERS,
+            false);
+
+    private static final Consumer<Exception> NO_OP_COMPLETION = new Consumer<Exception>() {
+        @Override
+        public void accept(final Exception object) {
+            // No op;
+        }
+    };
+
+    private final Log log;
+    private final Builder mBuilder;
+    private final NioEventLoop mEventLoop;
+    private final Executor mPayloadReaders;
+    private final AtomicBoolean mClosed = new AtomicBoolean(false);
+    private final AtomicBoolean mProcessScheduled = new AtomicBoolean(false);
+
+    /**
+     * Whether the payload might have new data since the last read which returned nothing
+     */
+    private final AtomicBoolean mPayloadAvailable = new AtomicBoolean(true);
+
+    private final Runnable mProcessTask = new Runnable() {
+        @Override
+        public void run() {
+            mProcessScheduled.set(false);
+            try {
+                process();
+            } catch (final Throwable e) {
+                onClose(e);
+            }
+        }
+    };
+
+    private final Runnable mDataAvailableListener = new Runnable() {
+        @Override
+        public void run() {
+            mPayloadAvailable.set(true);
+            if (mProcessScheduled.compareAndSet(false, true)) {
+                mEventLoop.execute(mProcessTask);
+            }
+        }
+    };
+
+    /**
+     * Reads the payload on the reader pool and hands the result back to the event loop
+     */
+    private final Runnable mReadPayloadTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                final byte[] buffer = mPayloadBuffer.array();
+                final int payloadOffset = mPayloadBuffer.arrayOffset() + ChunkEncoder.MAX_CHUNK_HEADER_SIZE;
+                mPayloadBytesRead = mBuilder.mPayload.readNonBlocking(buffer, payloadOffset, PAYLOAD_BUFFER_SIZE);
+                mPayloadRetryDelayNanos = mPayloadBytesRead == 0 ? mBuilder.mPayload.getRetryDelayNanos() : 0;
+            } catch (final Throwable e) {
+                mPayloadReadError = e;
+            }
+
+            mEventLoop.execute(mPayloadReadCompletion);
+        }
+    };
+
+    private final Runnable mPayloadReadCompletion = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                onPayloadRead();
+            } catch (final Throwable e) {
+                onClose(e);
+            }
+        }
+    };
+
+    /**
+     * Reads the payload held back by the upload rate limit once the limit lets it through
+     */
+    private final Runnable mRetryPayloadTask = new Runnable() {
+        @Override
+        public void run() {
+            mPayloadRetryScheduled = false;
+            mPayloadAvailable.set(true);
+            try {
+                process();
+            } catch (final Throwable e) {
+                onClose(e);
+            }
+        }
+    };
+
+    // Event loop thread state
+    private SocketChannel mChannel;
+    private SelectionKey mKey;
+    private SSLEngine mSslEngine;
+    private ByteBuffer mPending;
+    private ByteBuffer mPayloadBuffer;
+    private ByteBuffer mNetOut;
+    private ByteBuffer mNetIn;
+    private ByteBuffer mAppIn;
+    private boolean mPayloadComplete;
+    private boolean mPayloadReadPending;
+    private boolean mPayloadRetryScheduled;
+    private long mLastReadNanos;
+
+    // Result of the payload read, published to the event loop by its task queue
+    private int mPayloadBytesRead;
+    private long mPayloadRetryDelayNanos;
+    private Throwable mPayloadReadError;
+
+    private NioHttpClient(final Builder builder) {
+        mBuilder = builder;
+        log = mBuilder.mLog;
+        mEventLoop = mBuilder.mEventLoopGroup.next();
+        mPayloadReaders = mBuilder.mEventLoopGroup.payloadReaders();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Connects to the server and starts streaming the payload in the background. The completion callback is
+     * invoked when the connection is closed.
+     */
+    public void connectInBackground() {
+        try {
+            final SocketFactory socketFactory = new SocketFactory();
+            final InetSocketAddress address = socketFactory.createSocketAddress(mBuilder.mUri);
+            final SSLEngine sslEngine = socketFactory.createSslEngine(mBuilder.mUri);
+            final ByteBuffer request = ByteBuffer.wrap(getRequestString().getBytes(StandardCharsets.UTF_8));
+
+            mEventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        open(address, sslEngine, request);
+                    } catch (final Throwable e) {
+                        onClose(e);
+                    }
+                }
+            });
+        } catch (final Throwable e) {
+            throw new RuntimeException("Exception while connecting to the server ! ", e);
+        }
+    }
+
+    @Override
+    public HttpMethodName getMethod() {
+        return mBuilder.mMethod;
+    }
+
+    @Override
+    public URI getUri() {
+        return mBuilder.mUri;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return mBuilder.mHeaders;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                finish(null);
+            }
+        });
+    }
+
+    @Override
+    public void onSelected(final SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                if (!mChannel.finishConnect()) {
+                    return;
+                }
+
+                log.debug("Connected to " + mBuilder.mUri);
+                if (mSslEngine != null) {
+                    mSslEngine.beginHandshake();
+                }
+            }
+
+            process();
+        } catch (final Throwable e) {
+            onClose(e);
+        }
+    }
+
+    @Override
+    public void onTick(final long nowNanos) {
+        if (mBuilder.mTimeout != null
+                && nowNanos - mLastReadNanos > TimeUnit.MILLISECONDS.toNanos(mBuilder.mTimeout)) {
+            finish(new SocketTimeoutException("Read timed out"));
+        }
+    }
+
+    @Override
+    public void onClose(final Throwable cause) {
+        finish(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+    }
+
+    private void open(final InetSocketAddress address,
+                      final SSLEngine sslEngine,
+                      final ByteBuffer request) throws IOException {
+        if (mClosed.get()) {
+            return;
+        }
+
+        mSslEngine = sslEngine;
+        mPending = request;
+        mLastReadNanos = System.nanoTime();
+        if (mSslEngine != null) {
+            mNetOut = ByteBuffer.allocate(mSslEngine.getSession().getPacketBufferSize());
+            mNetOut.flip();
+            mNetIn = ByteBuffer.allocate(mSslEngine.getSession().getPacketBufferSize());
+            mAppIn = ByteBuffer.allocate(mSslEngine.getSession().getApplicationBufferSize());
+        } else {
+            mAppIn = ByteBuffer.allocate(DEFAULT_RESPONSE_BUFFER_SIZE);
+        }
+
+        mChannel = SocketChannel.open();
+        mChannel.configureBlocking(false);
+        if (mChannel.connect(address)) {
+            mKey = mEventLoop.register(mChannel, SelectionKey.OP_READ, this);
+            if (mSslEngine != null) {
+                mSslEngine.beginHandshake();
+            }
+        } else {
+            mKey = mEventLoop.register(mChannel, SelectionKey.OP_CONNECT, this);
+        }
+
+        if (mBuilder.mPayload != null) {
+            mPayloadBuffer = BUFFER_POOL.acquire();
+            mBuilder.mPayload.setDataAvailableListener(mDataAvailableListener);
+        }
+
+        process();
+    }
+
+    private void process() throws IOException {
+        if (mClosed.get() || mChannel == null || !mChannel.isConnected()) {
+            return;
+        }
+
+        final boolean handshakeComplete = handshake();
+        if (handshakeComplete && readResponse()) {
+            writeRequest();
+        }
+
+        if (!mClosed.get()) {
+            final int interestOps = isOutboundPending(handshakeComplete)
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ;
+            if (mKey.interestOps() != interestOps) {
+                mKey.interestOps(interestOps);
+            }
+        }
+    }
+
+    /**
+     * Drives the TLS handshake.
+     *
+     * @return whether the handshake is complete
+     */
+    private boolean handshake() throws IOException {
+        if (mSslEngine == null) {
+            return true;
+        }
+
+        while (true) {
+            switch (mSslEngine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+                case NEED_WRAP:
+                    if (!flushNetOut()) {
+                        return false;
+                    }
+
+                    mNetOut.clear();
+                    final SSLEngineResult wrapResult = mSslEngine.wrap(EMPTY_BUFFER, mNetOut);
+                    mNetOut.flip();
+                    if (wrapResult.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("TLS engine closed during handshake");
+                    }
+                    break;
+                case NEED_UNWRAP:
+                    final SSLEngineResult.Status status = unwrap();
+                    if (status == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("TLS engine closed during handshake");
+                    }
+
+                    if (status == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                        final int bytesRead = mChannel.read(mNetIn);
+                        if (bytesRead < 0) {
+                            throw new EOFException("Connection closed during TLS handshake");
+                        }
+
+                        if (bytesRead == 0) {
+                            // Flush the pending handshake data before waiting for the peer
+                            flushNetOut();
+                            return false;
+                        }
+
+                        mLastReadNanos = System.nanoTime();
+                    }
+                    break;
+                default:
+                    // Handshake complete
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Reads and hands over the response bytes.
+     *
+     * @return false if the connection has been closed
+     */
+    private boolean readResponse() throws IOException {
+        while (true) {
+            final int bytesRead = mChannel.read(mSslEngine == null ? mAppIn : mNetIn);
+            if (bytesRead > 0) {
+                mLastReadNanos = System.nanoTime();
+            }
+
+            boolean inboundClosed = bytesRead < 0;
+            if (mSslEngine != null) {
+                SSLEngineResult.Status status;
+                do {
+                    status = unwrap();
+                } while (status == SSLEngineResult.Status.OK && mNetIn.position() > 0);
+
+                inboundClosed |= status == SSLEngineResult.Status.CLOSED;
+            }
+
+            if (mAppIn.position() > 0) {
+                mAppIn.flip();
+                final boolean expectMore;
+                try {
+                    expectMore = mBuilder.mResponseHandler.onResponseData(mAppIn);
+                } finally {
+                    mAppIn.clear();
+                }
+
+                if (!expectMore) {
+                    log.debug("Received all data, close");
+                    finish(null);
+                    return false;
+                }
+            }
+
+            if (inboundClosed) {
+                log.debug("Connection closed by the server");
+                finish(null);
+                return false;
+            }
+
+            if (bytesRead == 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Unwraps the received TLS data into the application buffer
+     */
+    private SSLEngineResult.Status unwrap() throws IOException {
+        mNetIn.flip();
+        final SSLEngineResult result;
+        try {
+            result = mSslEngine.unwrap(mNetIn, mAppIn);
+        } finally {
+            mNetIn.compact();
+        }
+
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW:
+                mAppIn = grow(mAppIn, mSslEngine.getSession().getApplicationBufferSize());
+                return SSLEngineResult.Status.OK;
+            case BUFFER_UNDERFLOW:
+                if (!mNetIn.hasRemaining()) {
+                    // No room left to receive the rest of the record
+                    mNetIn = grow(mNetIn, mSslEngine.getSession().getPacketBufferSize());
+                }
+                return SSLEngineResult.Status.BUFFER_UNDERFLOW;
+            default:
+                if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                    runDelegatedTasks();
+                }
+                return result.getStatus();
+        }
+    }
+
+    private void writeRequest() throws IOException {
+        if (!flushOutbound() || mPayloadComplete || mBuilder.mPayload == null || mPayloadReadPending) {
+            return;
+        }
+
+        if (!mPayloadAvailable.getAndSet(false)) {
+            // Wait for the data availability notification
+            return;
+        }
+
+        mPayloadReadPending = true;
+        mPayloadReaders.execute(mReadPayloadTask);
+    }
+
+    /**
+     * Frames the payload read by the reader pool as a chunk
+     */
+    private void onPayloadRead() throws IOException {
+        mPayloadReadPending = false;
+        if (mClosed.get()) {
+            releasePayloadBuffer();
+            return;
+        }
+
+        final Throwable error = mPayloadReadError;
+        if (error != null) {
+            mPayloadReadError = null;
+            onClose(error);
+            return;
+        }
+
+        final int bytesRead = mPayloadBytesRead;
+        if (bytesRead < 0) {
+            log.debug("End-of-stream is reported for the payload. Sending the last chunk");
+            mPending = ByteBuffer.wrap(LAST_CHUNK);
+            mPayloadComplete = true;
+        } else if (bytesRead > 0) {
+            // The read might have been capped by the buffer size
+            mPayloadAvailable.set(true);
+            final byte[] buffer = mPayloadBuffer.array();
+            final int payloadOffset = mPayloadBuffer.arrayOffset() + ChunkEncoder.MAX_CHUNK_HEADER_SIZE;
+            final int chunkOffset = ChunkEncoder.encodeInPlace(buffer, payloadOffset, bytesRead);
+            mPayloadBuffer.limit(payloadOffset + bytesRead + ChunkEncoder.CHUNK_TRAILER_SIZE
+                    - mPayloadBuffer.arrayOffset());
+            mPayloadBuffer.position(chunkOffset - mPayloadBuffer.arrayOffset());
+            mPending = mPayloadBuffer;
+        } else if (mPayloadRetryDelayNanos > 0 && !mPayloadRetryScheduled) {
+            // Throttled - no notification comes for the held back data
+            mPayloadRetryScheduled = true;
+            mEventLoop.schedule(mRetryPayloadTask, mPayloadRetryDelayNanos);
+        }
+
+        process();
+    }
+
+    /**
+     * Writes out the pending request bytes.
+     *
+     * @return whether everything has been written
+     */
+    private boolean flushOutbound() throws IOException {
+        if (mSslEngine == null) {
+            mChannel.write(mPending);
+            return !mPending.hasRemaining();
+        }
+
+        while (flushNetOut()) {
+            if (!mPending.hasRemaining()) {
+                return true;
+            }
+
+            mNetOut.clear();
+            final SSLEngineResult result = mSslEngine.wrap(mPending, mNetOut);
+            mNetOut.flip();
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("TLS engine has been closed");
+            }
+        }
+
+        return false;
+    }
+
+    private boolean flushNetOut() throws IOException {
+        if (mNetOut.hasRemaining()) {
+            mChannel.write(mNetOut);
+        }
+
+        return !mNetOut.hasRemaining();
+    }
+
+    private boolean isOutboundPending(final boolean handshakeComplete) {
+        return (handshakeComplete && mPending.hasRemaining()) || (mNetOut != null && mNetOut.hasRemaining());
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = mSslEngine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    private void finish(@Nullable final Exception exception) {
+        if (!mClosed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (mBuilder.mPayload != null) {
+            mBuilder.mPayload.setDataAvailableListener(null);
+        }
+
+        if (mKey != null) {
+            mKey.cancel();
+        }
+
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (final IOException e) {
+                log.exception(e, "Closing the channel threw an exception");
+            }
+        }
+
+        if (!mPayloadReadPending) {
+            // Otherwise released once the read completes
+            releasePayloadBuffer();
+        }
+
+        if (exception != null) {
+            log.exception(exception, "Connection to " + mBuilder.mUri + " failed");
+        }
+
+        mBuilder.mCompletion.accept(exception);
+    }
+
+    private void releasePayloadBuffer() {
+        if (mPayloadBuffer != null) {
+            BUFFER_POOL.release(mPayloadBuffer);
+            mPayloadBuffer = null;
+        }
+    }
+
+    private String getRequestString() {
+        final StringBuilder request = new StringBuilder()
+                .append(mBuilder.mMethod).append(SPACE).append(mBuilder.mUri.getPath()).append(SPACE)
+                .append(HTTP_1_1).append(CLRF);
+        appendHeaders(request, mBuilder.mHeaders);
+        appendHeaders(request, mBuilder.mUnsignedHeaders);
+        return request.append(CLRF).toString();
+    }
+
+    private static void appendHeaders(final StringBuilder request, final Map<String, String> headers) {
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            request.append(header.getKey()).append(HEADER_SEPARATOR).append(header.getValue()).append(CLRF);
+        }
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer, final int minRemaining) {
+        final ByteBuffer grown = ByteBuffer.allocate(buffer.position() + Math.max(minRemaining, buffer.capacity()));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    public static final class Builder {
+        private final Map<String, String> mHeaders;
+        private final Map<String, String> mUnsignedHeaders;
+        private URI mUri;
+        private HttpMethodName mMethod;
+        private PollableInputStream mPayload;
+        private NonBlockingResponseHandler mResponseHandler;
+        private NioEventLoopGroup mEventLoopGroup;
+        private Integer mTimeout;
+        private Consumer<Exception> mCompletion;
+        private Log mLog;
+
+        private Builder() {
+            mHeaders = new HashMap<String, String>();
+            mUnsignedHeaders = new HashMap<String, String>();
+            mCompletion = NO_OP_COMPLETION;
+        }
+
+        public Builder uri(final URI uri) {
+            mUri = uri;
+            mHeaders.put(HOST_HEADER, uri.getHost());
+            return this;
+        }
+
+        public Builder method(final HttpMethodName method) {
+            mMethod = method;
+            return this;
+        }
+
+        public Builder header(final String key, final String value) {
+            mHeaders.put(key, value);
+            return this;
+        }
+
+        /**
+         * Adds a header which isn't signed, i.e. it's sent but not returned by {@link #getHeaders()}
+         */
+        public Builder unsignedHeader(final String key, final String value) {
+            mUnsignedHeaders.put(key, value);
+            return this;
+        }
+
+        /**
+         * Payload to stream as the chunk encoded request body
+         */
+        public Builder payload(final PollableInputStream payload) {
+            mPayload = payload;
+            return this;
+        }
+
+        public Builder responseHandler(final NonBlockingResponseHandler responseHandler) {
+            mResponseHandler = responseHandler;
+            return this;
+        }
+
+        public Builder eventLoopGroup(final NioEventLoopGroup eventLoopGroup) {
+            mEventLoopGroup = eventLoopGroup;
+            return this;
+        }
+
+        public Builder completionCallback(final Consumer<Exception> completion) {
+            // Make sure we don't override the default no-op
+            if (completion != null) {
+                mCompletion = completion;
+            }
+            return this;
+        }
+
+        /**
+         * Timeout in milliseconds if no response data is received
+         */
+        public Builder setTimeout(final Integer timeout) {
+            mTimeout = timeout;
+            return this;
+        }
+
+        public Builder log(final Log log) {
+            mLog = checkNotNull(log);
+            return this;
+        }
+
+        public NioHttpClient build() {
+            checkNotNull(mUri);
+            checkNotNull(mMethod);
+            checkNotNull(mResponseHandler);
+            checkNotNull(mEventLoopGroup);
+            checkNotNull(mLog);
+            return new NioHttpClient(this);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.amazonaws.kinesisvideo.http;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer of the response bytes received by {@link NioHttpClient}. Invoked on the event loop thread so it
+ * should never block.
+ */
+public interface NonBlockingResponseHandler {
+    /**
+     * Processes the next portion of the raw response bytes.
+     *
+     * @param data the received bytes. The handler should consume all of them.
+     * @return false if the handler has seen the end of the response and the connection can be closed
+     */
+    boolean onResponseData(@Nonnull ByteBuffer data);
+}
@@ -2,6 +2,7 @@ package com.amazonaws.kinesisvideo.http;
 
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.socket.ConnectionManager;
 import com.amazonaws.kinesisvideo.socket.SocketFactory;
 
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
@@ -18,6 +19,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class ParallelSimpleHttpClient implements HttpClient {
     private static final String SPACE = " ";
@@ -44,6 +47,7 @@ public final class ParallelSimpleHttpClient implements HttpClient {
     private OutputStream mOutputStream;
     private ExecutorService payloadSender;
     private ExecutorService responseReceiver;
+    private final AtomicBoolean mSocketReleased = new AtomicBoolean();
 
     private ParallelSimpleHttpClient(final Builder builder) {
         mBuilder = builder;
@@ -65,12 +69,24 @@ public final class ParallelSimpleHttpClient implements HttpClient {
     }
 
     private void initSocket() throws IOException {
-        mSocket = new SocketFactory().createSocket(mBuilder.mUri);
-        if (mBuilder.mTimeout != null) {
-            mSocket.setSoTimeout(mBuilder.mTimeout);
+        mSocket = mBuilder.mConnectionManager != null
+                ? mBuilder.mConnectionManager.acquire(mBuilder.mUri)
+                : new SocketFactory().createSocket(mBuilder.mUri);
+        try {
+            if (mBuilder.mTimeout != null) {
+                mSocket.setSoTimeout(mBuilder.mTimeout);
+            }
+            mInputStream = mSocket.getInputStream();
+            // Write into the channel directly if there is one as the adaptor output stream would contend with the
+            // blocked response reader on the channel blocking lock
+            mOutputStream = mSocket.getChannel() != null
+                    ? new ChannelOutputStream(mSocket.getChannel())
+                    : mSocket.getOutputStream();
+        } catch (final IOException | RuntimeException e) {
+            releaseSocket();
+            mSocket.close();
+            throw e;
         }
-        mInputStream = mSocket.getInputStream();
-        mOutputStream = mSocket.getOutputStream();
     }
 
     public InputStream connectAndGetResponse() {
@@ -124,18 +140,23 @@ public final class ParallelSimpleHttpClient implements HttpClient {
 
     private String getHeadersString() {
         final StringBuilder builder = new StringBuilder();
-        for (final Map.Entry<String, String> header : mBuilder.mHeaders.entrySet()) {
+        appendHeaders(builder, mBuilder.mHeaders);
+        appendHeaders(builder, mBuilder.mUnsignedHeaders);
+        final String allHeaders = builder.toString();
+        return allHeaders.isEmpty() ? CLRF : allHeaders;
+    }
+
+    private static void appendHeaders(final StringBuilder builder, final Map<String, String> headers) {
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
             final String headerString = String.format(HEADER_FORMAT, header.getKey(), header.getValue());
             builder.append(headerString);
             builder.append(CLRF);
         }
-        final String allHeaders = builder.toString();
-        return allHeaders.isEmpty() ? CLRF : allHeaders;
     }
 
     private void sendPayloadInBackground() {
         if (mBuilder.mSender != null) {
-            payloadSender = Executors.newFixedThreadPool(1);
+            payloadSender = newSingleThreadExecutor();
             payloadSender.execute(new Runnable() {
                 @Override
                 public void run() {
@@ -162,7 +183,7 @@ public final class ParallelSimpleHttpClient implements HttpClient {
 
     private void receiveResponseInBackground() {
         if (mBuilder.mReceiver != null) {
-            responseReceiver = Executors.newFixedThreadPool(1);
+            responseReceiver = newSingleThreadExecutor();
             responseReceiver.execute(new Runnable() {
                 @Override
                 public void run() {
@@ -184,7 +205,24 @@ public final class ParallelSimpleHttpClient implements HttpClient {
         }
     }
 
+    /**
+     * Returns the connection acquired from the connection manager, once
+     */
+    private void releaseSocket() {
+        if (mBuilder.mConnectionManager != null && mSocketReleased.compareAndSet(false, true)) {
+            mBuilder.mConnectionManager.release(mBuilder.mUri);
+        }
+    }
+
+    private ExecutorService newSingleThreadExecutor() {
+        return mBuilder.mThreadFactory == null
+                ? Executors.newFixedThreadPool(1)
+                : Executors.newFixedThreadPool(1, mBuilder.mThreadFactory);
+    }
+
     public void closeSocket() {
+        releaseSocket();
+
         try {
             mSocket.close();
             //Ideally socket close should close this but also explicitly closing the streams
@@ -208,17 +246,21 @@ public final class ParallelSimpleHttpClient implements HttpClient {
 
     public static final class Builder {
         private final Map<String, String> mHeaders;
+        private final Map<String, String> mUnsignedHeaders;
         private URI mUri;
         private HttpMethodName mMethod;
         private Consumer<OutputStream> mSender;
         private Consumer<InputStream> mReceiver;
         private Integer mTimeout;
         private Consumer<Exception> mCompletion;
+        private ThreadFactory mThreadFactory;
+        private ConnectionManager mConnectionManager;
         // TODO: Set to correct output channel
         private Log mLog = new Log(Log.SYSTEM_OUT);
 
         private Builder() {
             mHeaders = new HashMap<String, String>();
+            mUnsignedHeaders = new HashMap<String, String>();
             mSender = NO_OP_SENDER;
             mCompletion = NO_OP_COMPLETION;
         }
@@ -239,6 +281,14 @@ public final class ParallelSimpleHttpClient implements HttpClient {
             return this;
         }
 
+        /**
+         * Adds a header which isn't signed, i.e. it's sent but not returned by {@link #getHeaders()}
+         */
+        public Builder unsignedHeader(final String key, final String value) {
+            mUnsignedHeaders.put(key, value);
+            return this;
+        }
+
         public Builder completionCallback(final Consumer<Exception> completion) {
             // Make sure we don't override the default no-op
             if (completion != null) {
@@ -262,6 +312,22 @@ public final class ParallelSimpleHttpClient implements HttpClient {
             return this;
         }
 
+        /**
+         * Factory of the sender and receiver threads, i.e. to run them on virtual threads
+         */
+        public Builder threadFactory(final ThreadFactory threadFactory) {
+            mThreadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Takes the connections from the manager so the pre-warmed ones are reused
+         */
+        public Builder connectionManager(final ConnectionManager connectionManager) {
+            mConnectionManager = connectionManager;
+            return this;
+        }
+
         public Builder log( final Log log) {
             if (log == null) {
                 throw new NullPointerException("log");
@@ -0,0 +1,38 @@
+package com.amazonaws.kinesisvideo.http;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Input stream which can be read without blocking and which notifies when more data becomes available.
+ * Used by the non-blocking transport to drive many uploads from a few threads.
+ */
+public interface PollableInputStream {
+    /**
+     * Reads whatever data is available without blocking.
+     *
+     * @param b buffer to read into
+     * @param off offset in the buffer
+     * @param len max number of the bytes to read
+     * @return number of the bytes read, 0 if there is no data available right now or -1 on end-of-stream
+     * @throws IOException if reading fails
+     */
+    int readNonBlocking(@Nonnull byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Tells when to read again after {@link #readNonBlocking} returned 0 with the data held back by the upload rate
+     * limit. There is no data availability notification when the rate limit lets the data through.
+     *
+     * @return nanoseconds until the held back data can be read or 0 if the reader should wait for the notification
+     */
+    long getRetryDelayNanos();
+
+    /**
+     * Sets the listener to be invoked when more data might have become available. The listener is invoked on the
+     * notifying thread and should be cheap.
+     *
+     * @param listener listener or null to remove it
+     */
+    void setDataAvailableListener(@Nullable Runnable listener);
+}
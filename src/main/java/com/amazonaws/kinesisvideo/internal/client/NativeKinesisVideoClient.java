@@ -3,6 +3,9 @@ package com.amazonaws.kinesisvideo.internal.client;
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
 import static com.amazonaws.kinesisvideo.internal.producer.ReadResult.INVALID_UPLOAD_HANDLE_VALUE;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -10,6 +13,7 @@ import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.amazonaws.kinesisvideo.auth.DefaultAuthCallbacks;
 import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
@@ -19,18 +23,29 @@ import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.internal.mediasource.FragmentJournalReplay;
+import com.amazonaws.kinesisvideo.internal.mediasource.FrameAdmissionController;
+import com.amazonaws.kinesisvideo.internal.mediasource.FrameAdmissionMetrics;
 import com.amazonaws.kinesisvideo.internal.mediasource.ProducerStreamSink;
 import com.amazonaws.kinesisvideo.producer.AuthCallbacks;
 import com.amazonaws.kinesisvideo.producer.DeviceInfo;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetrics;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducer;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
 import com.amazonaws.kinesisvideo.producer.ProducerException;
 import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
 import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+import com.amazonaws.kinesisvideo.producer.StorageInfo;
 import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
 import com.amazonaws.kinesisvideo.internal.producer.client.KinesisVideoServiceClient;
 import com.amazonaws.kinesisvideo.internal.producer.jni.NativeKinesisVideoProducerJni;
 import com.amazonaws.kinesisvideo.internal.service.DefaultServiceCallbacksImpl;
+import com.amazonaws.kinesisvideo.internal.service.ServiceTaskLaneMetrics;
+import com.amazonaws.kinesisvideo.storage.FragmentJournal;
+import com.amazonaws.kinesisvideo.storage.FrameSpillStore;
+import com.amazonaws.kinesisvideo.stream.throttling.AdaptiveRateController;
+import com.amazonaws.kinesisvideo.stream.throttling.UplinkBandwidthScheduler;
+import com.amazonaws.kinesisvideo.stream.throttling.UplinkBandwidthShare;
 import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
 
 /**
@@ -52,6 +67,32 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
      */
     private static final String TAG = "NativeKinesisVideoClient";
 
+    /**
+     * Range of the adaptive upload rate relative to the average bandwidth of the stream. The rate can go above the
+     * average to catch up with the buffered data.
+     */
+    private static final int MIN_UPLOAD_RATE_DIVISOR = 4;
+    private static final int MAX_UPLOAD_RATE_MULTIPLIER = 4;
+
+    private static final int PERCENT = 100;
+
+    /**
+     * The content store kept available when spilling with the spill ratio of 100%
+     */
+    private static final int MIN_SPILL_RESERVE_PERCENT = 1;
+
+    private static final int DEFAULT_REPLAY_BANDWIDTH_MULTIPLIER = 2;
+
+    /**
+     * Directory of the file based content store of each producer shard under the storage root
+     */
+    private static final String PRODUCER_SHARD_DIRECTORY_PREFIX = "kinesisvideo-shard-";
+
+    /**
+     * The smallest content store the native producer accepts, MIN_STORAGE_ALLOCATION_SIZE of the native client
+     */
+    private static final long MIN_SHARD_STORAGE_SIZE = 64 * 1024;
+
     /**
      * Map of the media source to KVS producer stream
      */
@@ -63,12 +104,84 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
     private final AuthCallbacks mAuthCallbacks;
     private final StorageCallbacks mStorageCallbacks;
     private final StreamCallbacks mStreamCallbacks;
-    private final ServiceCallbacks mServiceCallbacks;
 
     /**
-     * Underlying Kinesis Video producer object.
+     * Service callbacks of each producer shard
+     */
+    private final List<ServiceCallbacks> mServiceCallbacks;
+
+    /**
+     * Map of the media source to the producer shard its stream is created in
+     */
+    private final Map<MediaSource, ProducerShard> mMediaSourceToShardMap;
+
+    /**
+     * Whether the upload rate of the streams adapts to the network conditions
+     */
+    private final boolean mAdaptiveRateControlEnabled;
+
+    /**
+     * Shares the uplink between the streams or null if they upload independently
+     */
+    @Nullable
+    private final UplinkBandwidthScheduler mUplinkBandwidthScheduler;
+
+    /**
+     * Map of the media source to its share of the uplink
+     */
+    private final Map<MediaSource, UplinkBandwidthShare> mMediaSourceToBandwidthShareMap;
+
+    /**
+     * Disk space each stream can spill the frames into or 0 if the frames aren't spilled
+     */
+    private final long mFrameSpillQuota;
+    private final FrameSpillStore.EvictionPolicy mFrameSpillEvictionPolicy;
+
+    /**
+     * Directory of the spilled frames, one sub-directory per stream
+     */
+    private final File mFrameSpillDirectory;
+
+    /**
+     * Map of the media source to the store its frames are spilled into
+     */
+    private final Map<MediaSource, FrameSpillStore> mMediaSourceToSpillStoreMap;
+
+    /**
+     * Disk space of the fragment journal of each stream or 0 if the fragments aren't journaled
+     */
+    private final long mFragmentJournalQuota;
+
+    /**
+     * Directory of the fragment journals, one sub-directory per stream
      */
-    private KinesisVideoProducer kinesisVideoProducer;
+    private final File mFragmentJournalDirectory;
+    private final long mFragmentJournalReplayBitsPerSecond;
+
+    /**
+     * Map of the media source to the journal of its fragments
+     */
+    private final Map<MediaSource, FragmentJournal> mMediaSourceToJournalMap;
+
+    /**
+     * Map of the media source to the controller dropping its frames under the buffer pressure
+     */
+    private final Map<MediaSource, FrameAdmissionController> mMediaSourceToAdmissionControllerMap;
+
+    /**
+     * How far the frames are degraded under buffer pressure or null if they are all put into the stream
+     */
+    private final FrameAdmissionController.DegradationPolicy mFrameAdmissionPolicy;
+
+    /**
+     * Storage the client has been initialized with
+     */
+    private StorageInfo mStorageInfo;
+
+    /**
+     * Underlying Kinesis Video producer objects the streams are spread over.
+     */
+    private final List<ProducerShard> mProducerShards = new ArrayList<ProducerShard>();
 
     public NativeKinesisVideoClient(
             @Nonnull final KinesisVideoClientConfiguration configuration,
@@ -90,8 +203,9 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
                         executor,
                         log),
                 configuration.getStorageCallbacks(),
-                new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient),
-                new DefaultStreamCallbacks());
+                createServiceCallbacks(log, executor, configuration, serviceClient),
+                new DefaultStreamCallbacks(),
+                configuration);
     }
 
     public NativeKinesisVideoClient(
@@ -100,15 +214,60 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
             @Nonnull final StorageCallbacks storageCallbacks,
             @Nonnull final ServiceCallbacks serviceCallbacks,
             @Nonnull final StreamCallbacks streamCallbacks) {
+        this(log, authCallbacks, storageCallbacks, serviceCallbacks, streamCallbacks, null);
+    }
+
+    public NativeKinesisVideoClient(
+            @Nonnull final Log log,
+            @Nonnull final AuthCallbacks authCallbacks,
+            @Nonnull final StorageCallbacks storageCallbacks,
+            @Nonnull final ServiceCallbacks serviceCallbacks,
+            @Nonnull final StreamCallbacks streamCallbacks,
+            @Nullable final KinesisVideoClientConfiguration configuration) {
+        this(log, authCallbacks, storageCallbacks, Collections.singletonList(serviceCallbacks), streamCallbacks,
+                configuration);
+    }
+
+    /**
+     * @param serviceCallbacks service callbacks of each producer shard, the streams are spread over as many native
+     *                         producers
+     */
+    public NativeKinesisVideoClient(
+            @Nonnull final Log log,
+            @Nonnull final AuthCallbacks authCallbacks,
+            @Nonnull final StorageCallbacks storageCallbacks,
+            @Nonnull final List<ServiceCallbacks> serviceCallbacks,
+            @Nonnull final StreamCallbacks streamCallbacks,
+            @Nullable final KinesisVideoClientConfiguration configuration) {
 
         super(log);
 
+        Preconditions.checkArgument(!serviceCallbacks.isEmpty(), "Service callbacks of a producer shard are required");
         mAuthCallbacks = checkNotNull(authCallbacks);
         mStorageCallbacks = checkNotNull(storageCallbacks);
-        mServiceCallbacks = checkNotNull(serviceCallbacks);
+        mServiceCallbacks = new ArrayList<ServiceCallbacks>(serviceCallbacks);
         mStreamCallbacks = checkNotNull(streamCallbacks);
+        mAdaptiveRateControlEnabled = configuration != null && configuration.isAdaptiveRateControlEnabled();
+        mUplinkBandwidthScheduler = configuration == null ? null : configuration.getUplinkBandwidthScheduler();
+        mFrameSpillQuota = configuration == null ? 0 : configuration.getFrameSpillQuota();
+        mFrameSpillDirectory = configuration == null ? null : configuration.getFrameSpillDirectory();
+        Preconditions.checkArgument(mFrameSpillQuota == 0 || mFrameSpillDirectory != null,
+                "Frame spill directory is required with the frame spill quota");
+        mFrameSpillEvictionPolicy = configuration == null ? null : configuration.getFrameSpillEvictionPolicy();
+        mFragmentJournalQuota = configuration == null ? 0 : configuration.getFragmentJournalQuota();
+        mFragmentJournalDirectory = configuration == null ? null : configuration.getFragmentJournalDirectory();
+        Preconditions.checkArgument(mFragmentJournalQuota == 0 || mFragmentJournalDirectory != null,
+                "Fragment journal directory is required with the fragment journal quota");
+        mFragmentJournalReplayBitsPerSecond =
+                configuration == null ? 0 : configuration.getFragmentJournalReplayBitsPerSecond();
+        mFrameAdmissionPolicy = configuration == null ? null : configuration.getFrameAdmissionPolicy();
 
         mMediaSourceToStreamMap = new HashMap<MediaSource, KinesisVideoProducerStream>();
+        mMediaSourceToShardMap = new HashMap<MediaSource, ProducerShard>();
+        mMediaSourceToBandwidthShareMap = new HashMap<MediaSource, UplinkBandwidthShare>();
+        mMediaSourceToSpillStoreMap = new HashMap<MediaSource, FrameSpillStore>();
+        mMediaSourceToJournalMap = new HashMap<MediaSource, FragmentJournal>();
+        mMediaSourceToAdmissionControllerMap = new HashMap<MediaSource, FrameAdmissionController>();
     }
 
     /**
@@ -116,7 +275,26 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
      */
     @Override
     public void initialize(@Nonnull final DeviceInfo deviceInfo) throws KinesisVideoException {
-        kinesisVideoProducer = initializeNewKinesisVideoProducer(deviceInfo);
+        final int shardCount = mServiceCallbacks.size();
+        Preconditions.checkArgument(deviceInfo.getStorageSize() / shardCount >= MIN_SHARD_STORAGE_SIZE,
+                "Storage size %d is too small for %d producer shards, each shard needs at least %d bytes",
+                deviceInfo.getStorageSize(), shardCount, MIN_SHARD_STORAGE_SIZE);
+        mStorageInfo = deviceInfo.getStorageInfo();
+        try {
+            for (int i = 0; i < mServiceCallbacks.size(); i++) {
+                final KinesisVideoProducer kinesisVideoProducer =
+                        initializeNewKinesisVideoProducer(getShardDeviceInfo(deviceInfo, i), mServiceCallbacks.get(i));
+                mProducerShards.add(new ProducerShard(i, kinesisVideoProducer, mServiceCallbacks.get(i)));
+            }
+        } catch (final KinesisVideoException e) {
+            for (final ProducerShard shard : mProducerShards) {
+                shard.getProducer().free();
+            }
+
+            mProducerShards.clear();
+            throw e;
+        }
+
         super.initialize(deviceInfo);
     }
 
@@ -128,11 +306,86 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
             streamCallbacks = mStreamCallbacks;
         }
 
-        final KinesisVideoProducerStream producerStream = kinesisVideoProducer.createStreamSync(mediaSource.getStreamInfo(), streamCallbacks);
-        mediaSource.initialize(new ProducerStreamSink(producerStream));
-        mServiceCallbacks.addStream(producerStream);
-        mMediaSourceToStreamMap.put(mediaSource, producerStream);
-        super.registerMediaSource(mediaSource);
+        final ProducerShard shard = ProducerShard.select(mProducerShards, mediaSource.getStreamInfo());
+        final KinesisVideoProducerStream producerStream =
+                shard.getProducer().createStreamSync(mediaSource.getStreamInfo(), streamCallbacks);
+        shard.addStream(mediaSource.getStreamInfo());
+        mMediaSourceToShardMap.put(mediaSource, shard);
+        if (mProducerShards.size() > 1) {
+            mLog.debug("Created stream %s in producer shard %d with %d streams of %d bps",
+                    producerStream.getStreamName(), shard.getIndex(), shard.getStreamCount(),
+                    shard.getBandwidthBps());
+        }
+
+        boolean registered = false;
+        try {
+            if (mUplinkBandwidthScheduler != null) {
+                final UplinkBandwidthShare bandwidthShare =
+                        mUplinkBandwidthScheduler.register(producerStream.getStreamName());
+                producerStream.setUploadThrottler(bandwidthShare);
+                mMediaSourceToBandwidthShareMap.put(mediaSource, bandwidthShare);
+            }
+
+            if (mAdaptiveRateControlEnabled) {
+                producerStream.setUploadRateController(createRateController(mediaSource));
+            }
+
+            if (mFrameSpillQuota > 0) {
+                final FrameSpillStore spillStore = createSpillStore(producerStream.getStreamName());
+                producerStream.setFrameSpillStore(spillStore, getSpillReserve());
+                mMediaSourceToSpillStoreMap.put(mediaSource, spillStore);
+            }
+
+            FragmentJournalReplay journalReplay = null;
+            if (mFragmentJournalQuota > 0) {
+                if (mediaSource.getStreamInfo().isAbsoluteFragmentTimes()) {
+                    final FragmentJournal journal = createJournal(producerStream.getStreamName(),
+                            mediaSource.getStreamInfo().getTimecodeScale());
+                    mMediaSourceToJournalMap.put(mediaSource, journal);
+                    producerStream.setFragmentJournal(journal);
+                    journalReplay = replayJournal(producerStream, journal,
+                            mediaSource.getStreamInfo().getAvgBandwidthBps());
+                } else {
+                    mLog.warn("Not journaling stream %s as it doesn't use the absolute fragment times",
+                            producerStream.getStreamName());
+                }
+            }
+
+            FrameAdmissionController admissionController = null;
+            if (mFrameAdmissionPolicy != null) {
+                admissionController = new FrameAdmissionController(producerStream, mFrameAdmissionPolicy, mLog);
+                mMediaSourceToAdmissionControllerMap.put(mediaSource, admissionController);
+            }
+
+            mediaSource.initialize(new ProducerStreamSink(producerStream, admissionController, journalReplay));
+            shard.getServiceCallbacks().addStream(producerStream);
+            mMediaSourceToStreamMap.put(mediaSource, producerStream);
+            super.registerMediaSource(mediaSource);
+            registered = true;
+        } finally {
+            if (!registered) {
+                releaseFailedRegistration(mediaSource, producerStream);
+            }
+        }
+    }
+
+    /**
+     * Frees the stream and everything created for the media source which failed to register
+     */
+    private void releaseFailedRegistration(@Nonnull final MediaSource mediaSource,
+                                           @Nonnull final KinesisVideoProducerStream producerStream) {
+        mMediaSourceToStreamMap.remove(mediaSource);
+        releaseBandwidthShare(mediaSource);
+        releaseJournal(mediaSource);
+        releaseAdmissionController(mediaSource);
+        try {
+            releaseShardStream(mediaSource, producerStream);
+        } catch (final KinesisVideoException e) {
+            mLog.exception(e, "Failed to free stream %s of the media source which failed to register",
+                    producerStream.getStreamName());
+        } finally {
+            releaseSpillStore(mediaSource);
+        }
     }
 
     @Override
@@ -146,8 +399,11 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
             // The following call will blocked till the stopped event completes
             producerStream.stopStreamSync();
         } finally {
-            kinesisVideoProducer.freeStream(producerStream);
-            mServiceCallbacks.removeStream(producerStream);
+            releaseShardStream(mediaSource, producerStream);
+            releaseBandwidthShare(mediaSource);
+            releaseSpillStore(mediaSource);
+            releaseJournal(mediaSource);
+            releaseAdmissionController(mediaSource);
         }
     }
 
@@ -161,8 +417,11 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
             // The following call will not blocked during the stopped event
             producerStream.streamClosed(INVALID_UPLOAD_HANDLE_VALUE);
         } finally {
-            kinesisVideoProducer.freeStream(producerStream);
-            mServiceCallbacks.removeStream(producerStream);
+            releaseShardStream(mediaSource, producerStream);
+            releaseBandwidthShare(mediaSource);
+            releaseSpillStore(mediaSource);
+            releaseJournal(mediaSource);
+            releaseAdmissionController(mediaSource);
         }
     }
 
@@ -197,26 +456,318 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
         if (isInitialized()) {
             super.free();
 
-            mServiceCallbacks.free();
-            kinesisVideoProducer.stopStreams();
-            kinesisVideoProducer.free();
+            // Stop the streams of every shard before the service resources the shards share are freed
+            for (final ProducerShard shard : mProducerShards) {
+                shard.getProducer().stopStreams();
+            }
+
+            for (final ProducerShard shard : mProducerShards) {
+                shard.getServiceCallbacks().free();
+            }
+
+            for (final ProducerShard shard : mProducerShards) {
+                shard.getProducer().free();
+            }
+
+            mProducerShards.clear();
+            mMediaSourceToShardMap.clear();
+
+            for (final UplinkBandwidthShare bandwidthShare : mMediaSourceToBandwidthShareMap.values()) {
+                bandwidthShare.close();
+            }
+
+            mMediaSourceToBandwidthShareMap.clear();
+
+            for (final FrameSpillStore spillStore : mMediaSourceToSpillStoreMap.values()) {
+                spillStore.close();
+            }
+
+            mMediaSourceToSpillStoreMap.clear();
+
+            for (final FragmentJournal journal : mMediaSourceToJournalMap.values()) {
+                journal.close();
+            }
+
+            mMediaSourceToJournalMap.clear();
+            logFrameAdmissionMetrics();
+            mMediaSourceToAdmissionControllerMap.clear();
 
             mIsInitialized = false;
         }
     }
 
+    /**
+     * Sums up the content store and rate metrics of the producer shards
+     *
+     * @return metrics of the whole client
+     */
+    @Nonnull
+    public KinesisVideoMetrics getMetrics() throws KinesisVideoException {
+        Preconditions.checkState(isInitialized(), "Client is not initialized");
+        long contentStoreSize = 0;
+        long contentStoreAllocatedSize = 0;
+        long contentStoreAvailableSize = 0;
+        long totalContentViewSize = 0;
+        long totalFrameRate = 0;
+        long totalTransferRate = 0;
+        for (final ProducerShard shard : mProducerShards) {
+            final KinesisVideoMetrics shardMetrics = shard.getProducer().getMetrics();
+            contentStoreSize += shardMetrics.getContentStoreSize();
+            contentStoreAllocatedSize += shardMetrics.getContentStoreAllocatedSize();
+            contentStoreAvailableSize += shardMetrics.getContentStoreAvailableSize();
+            totalContentViewSize += shardMetrics.getTotalContentViewSize();
+            totalFrameRate += shardMetrics.getTotalFrameRate();
+            totalTransferRate += shardMetrics.getTotalTransferRate();
+        }
+
+        final KinesisVideoMetrics metrics = new KinesisVideoMetrics();
+        metrics.setMetrics(contentStoreSize, contentStoreAllocatedSize, contentStoreAvailableSize,
+                totalContentViewSize, totalFrameRate, totalTransferRate);
+        return metrics;
+    }
+
+    /**
+     * Returns the scheduling metrics of the control plane and the data plane service task lanes of the
+     * {@link DefaultServiceCallbacksImpl}. The lanes shared by the producer shards are reported once.
+     *
+     * @return lane metrics, two per set of the lanes
+     */
+    @Nonnull
+    public List<ServiceTaskLaneMetrics> getServiceTaskLaneMetrics() {
+        final List<ServiceTaskLaneMetrics> metrics = new ArrayList<ServiceTaskLaneMetrics>();
+        for (final ServiceCallbacks serviceCallbacks : mServiceCallbacks) {
+            if (serviceCallbacks instanceof DefaultServiceCallbacksImpl
+                    && !((DefaultServiceCallbacksImpl) serviceCallbacks).isSharingResources()) {
+                final DefaultServiceCallbacksImpl defaultServiceCallbacks =
+                        (DefaultServiceCallbacksImpl) serviceCallbacks;
+                metrics.add(defaultServiceCallbacks.getControlPlaneMetrics());
+                metrics.add(defaultServiceCallbacks.getDataPlaneMetrics());
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Returns the frames admitted into and dropped from the streams by the frame admission policy
+     *
+     * @return admission metrics, one per stream or none if the policy isn't set
+     */
+    @Nonnull
+    public List<FrameAdmissionMetrics> getFrameAdmissionMetrics() {
+        final List<FrameAdmissionMetrics> metrics = new ArrayList<FrameAdmissionMetrics>();
+        for (final FrameAdmissionController admissionController : mMediaSourceToAdmissionControllerMap.values()) {
+            metrics.add(admissionController.getMetrics());
+        }
+
+        return metrics;
+    }
+
+    private void releaseShardStream(@Nonnull final MediaSource mediaSource,
+                                    @Nonnull final KinesisVideoProducerStream producerStream)
+            throws KinesisVideoException {
+        final ProducerShard shard = mMediaSourceToShardMap.remove(mediaSource);
+        if (shard == null) {
+            return;
+        }
+
+        shard.removeStream(mediaSource.getStreamInfo());
+        try {
+            shard.getProducer().freeStream(producerStream);
+        } finally {
+            shard.getServiceCallbacks().removeStream(producerStream);
+        }
+    }
+
+    private void releaseBandwidthShare(@Nonnull final MediaSource mediaSource) {
+        final UplinkBandwidthShare bandwidthShare = mMediaSourceToBandwidthShareMap.remove(mediaSource);
+        if (bandwidthShare != null) {
+            bandwidthShare.close();
+        }
+    }
+
+    private void releaseSpillStore(@Nonnull final MediaSource mediaSource) {
+        final FrameSpillStore spillStore = mMediaSourceToSpillStoreMap.remove(mediaSource);
+        if (spillStore != null) {
+            spillStore.close();
+        }
+    }
+
+    @Nonnull
+    private FrameSpillStore createSpillStore(@Nonnull final String streamName) throws KinesisVideoException {
+        final File directory = new File(mFrameSpillDirectory, streamName);
+        try {
+            return new FrameSpillStore(directory,
+                    Math.min(FrameSpillStore.DEFAULT_SEGMENT_SIZE, mFrameSpillQuota / 2),
+                    mFrameSpillQuota,
+                    mFrameSpillEvictionPolicy,
+                    mLog);
+        } catch (final IOException e) {
+            throw new KinesisVideoException("Failed to create the frame spill store in " + directory, e);
+        }
+    }
+
+    private void releaseAdmissionController(@Nonnull final MediaSource mediaSource) {
+        final FrameAdmissionController admissionController = mMediaSourceToAdmissionControllerMap.remove(mediaSource);
+        if (admissionController != null) {
+            logFrameAdmissionMetrics(admissionController.getMetrics());
+        }
+    }
+
+    private void logFrameAdmissionMetrics() {
+        for (final FrameAdmissionMetrics metrics : getFrameAdmissionMetrics()) {
+            logFrameAdmissionMetrics(metrics);
+        }
+    }
+
+    private void logFrameAdmissionMetrics(@Nonnull final FrameAdmissionMetrics metrics) {
+        if (metrics.getDroppedFrames() > 0) {
+            mLog.info("Dropped %d frames of stream %s under the buffer pressure: %s", metrics.getDroppedFrames(),
+                    metrics.getStreamName(), metrics);
+        }
+    }
+
+    private void releaseJournal(@Nonnull final MediaSource mediaSource) {
+        final FragmentJournal journal = mMediaSourceToJournalMap.remove(mediaSource);
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Nonnull
+    private FragmentJournal createJournal(@Nonnull final String streamName, final long timecodeScale)
+            throws KinesisVideoException {
+        final File directory = new File(mFragmentJournalDirectory, streamName);
+        try {
+            return new FragmentJournal(directory,
+                    Math.min(FragmentJournal.DEFAULT_SEGMENT_SIZE, mFragmentJournalQuota / 2),
+                    mFragmentJournalQuota,
+                    timecodeScale,
+                    mLog);
+        } catch (final IOException e) {
+            throw new KinesisVideoException("Failed to open the fragment journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Starts putting the recovered frames which were never persisted into the stream. The media source waits for the
+     * replay so the stream timestamps keep increasing.
+     *
+     * @return the replay or null if there is nothing to replay
+     */
+    @Nullable
+    private FragmentJournalReplay replayJournal(@Nonnull final KinesisVideoProducerStream producerStream,
+                                                @Nonnull final FragmentJournal journal,
+                                                final long avgBandwidthBps) {
+        if (journal.getReplayFrameCount() == 0) {
+            journal.completeReplay();
+            return null;
+        }
+
+        final long bitsPerSecond = mFragmentJournalReplayBitsPerSecond > 0
+                ? mFragmentJournalReplayBitsPerSecond
+                : DEFAULT_REPLAY_BANDWIDTH_MULTIPLIER * avgBandwidthBps;
+        final FragmentJournalReplay journalReplay = new FragmentJournalReplay(producerStream, journal,
+                Math.max(1, bitsPerSecond / Byte.SIZE), mLog);
+        journalReplay.start();
+        return journalReplay;
+    }
+
+    /**
+     * @return the content store size not covered by the spill ratio, i.e. 10% of the storage for the ratio of 90%
+     */
+    private long getSpillReserve() {
+        final int reservePercent = Math.max(MIN_SPILL_RESERVE_PERCENT, PERCENT - mStorageInfo.getSpillRatio());
+        return mStorageInfo.getStorageSize() / mProducerShards.size() / PERCENT * reservePercent;
+    }
+
+    /**
+     * @return the device info with an equal slice of the storage for the producer shard. The file based content
+     * stores of the shards are kept in separate directories.
+     */
+    @Nonnull
+    private DeviceInfo getShardDeviceInfo(@Nonnull final DeviceInfo deviceInfo, final int shardIndex)
+            throws KinesisVideoException {
+        final int shardCount = mServiceCallbacks.size();
+        if (shardCount == 1) {
+            return deviceInfo;
+        }
+
+        final StorageInfo.DeviceStorageType storageType =
+                StorageInfo.DeviceStorageType.values()[deviceInfo.getDeviceStorageType()];
+        String rootDirectory = deviceInfo.getRootDirectory();
+        if (storageType == StorageInfo.DeviceStorageType.DEVICE_STORAGE_TYPE_HYBRID_FILE) {
+            final File directory = new File(rootDirectory, PRODUCER_SHARD_DIRECTORY_PREFIX + shardIndex);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new KinesisVideoException("Failed to create the storage directory " + directory);
+            }
+
+            rootDirectory = directory.getPath();
+        }
+
+        final StorageInfo storageInfo = new StorageInfo(deviceInfo.getStorageInfoVersion(),
+                storageType,
+                deviceInfo.getStorageSize() / shardCount,
+                deviceInfo.getSpillRatio(),
+                rootDirectory);
+        return new DeviceInfo(deviceInfo.getVersion(), deviceInfo.getName(), storageInfo,
+                deviceInfo.getStreamCount(), deviceInfo.getTags());
+    }
+
+    /**
+     * Creates the upload rate controller for the stream of the media source. The media sources which can change
+     * their encoder bitrate get notified about the recommended one.
+     */
+    @Nonnull
+    private static AdaptiveRateController createRateController(@Nonnull final MediaSource mediaSource)
+            throws KinesisVideoException {
+        final long avgBandwidthBps = mediaSource.getStreamInfo().getAvgBandwidthBps();
+        final AdaptiveRateController rateController = new AdaptiveRateController(
+                Math.max(1, avgBandwidthBps / MIN_UPLOAD_RATE_DIVISOR),
+                Math.max(1, avgBandwidthBps * MAX_UPLOAD_RATE_MULTIPLIER),
+                Math.max(1, avgBandwidthBps));
+        if (mediaSource instanceof AdaptiveRateController.Listener) {
+            rateController.addListener((AdaptiveRateController.Listener) mediaSource);
+        }
+
+        return rateController;
+    }
+
     /**
      * Initialize a new native {@link com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducer}.
-     * Used internally by {@link #initialize} and visible for testing.
+     * Used internally by {@link #initialize} for each producer shard and visible for testing.
      */
     @Nonnull
-    KinesisVideoProducer initializeNewKinesisVideoProducer(final DeviceInfo deviceInfo) throws ProducerException {
+    KinesisVideoProducer initializeNewKinesisVideoProducer(final DeviceInfo deviceInfo,
+                                                           final ServiceCallbacks serviceCallbacks)
+            throws ProducerException {
         final KinesisVideoProducer kinesisVideoProducer = new NativeKinesisVideoProducerJni(
                 mAuthCallbacks,
                 mStorageCallbacks,
-                mServiceCallbacks,
+                serviceCallbacks,
                 mLog);
         kinesisVideoProducer.createSync(deviceInfo);
         return kinesisVideoProducer;
     }
+
+    /**
+     * Creates the service callbacks of each producer shard of the configuration. They share the service client, the
+     * service task lanes and the event loops.
+     */
+    @Nonnull
+    protected static List<ServiceCallbacks> createServiceCallbacks(
+            @Nonnull final Log log,
+            @Nonnull final ScheduledExecutorService executor,
+            @Nonnull final KinesisVideoClientConfiguration configuration,
+            @Nonnull final KinesisVideoServiceClient serviceClient) {
+        final List<ServiceCallbacks> serviceCallbacks = new ArrayList<ServiceCallbacks>();
+        final DefaultServiceCallbacksImpl firstShardCallbacks =
+                new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient);
+        serviceCallbacks.add(firstShardCallbacks);
+        for (int i = 1; i < configuration.getProducerShards(); i++) {
+            serviceCallbacks.add(firstShardCallbacks.createShardCallbacks());
+        }
+
+        return serviceCallbacks;
+    }
 }
@@ -0,0 +1,87 @@
+package com.amazonaws.kinesisvideo.internal.client;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducer;
+import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.List;
+
+/**
+ * One of the native producer instances the streams of a client are spread over. Each shard has its own slice of the
+ * content store and its own service callbacks, so the streams of different shards don't contend on the same producer.
+ */
+@NotThreadSafe
+class ProducerShard {
+    private final int mIndex;
+    private final KinesisVideoProducer mProducer;
+    private final ServiceCallbacks mServiceCallbacks;
+
+    /**
+     * Load of the shard, the number of the streams and the sum of their average bandwidth
+     */
+    private int mStreamCount;
+    private long mBandwidthBps;
+
+    ProducerShard(final int index,
+                  @Nonnull final KinesisVideoProducer producer,
+                  @Nonnull final ServiceCallbacks serviceCallbacks) {
+        mIndex = index;
+        mProducer = Preconditions.checkNotNull(producer);
+        mServiceCallbacks = Preconditions.checkNotNull(serviceCallbacks);
+    }
+
+    /**
+     * Selects the shard with the least bandwidth and then the least streams. The ties go to the shard the stream name
+     * hashes to, so the streams land on the same shards across the restarts when the load is even.
+     */
+    @Nonnull
+    static ProducerShard select(@Nonnull final List<ProducerShard> shards, @Nonnull final StreamInfo streamInfo) {
+        Preconditions.checkArgument(!shards.isEmpty(), "No producer shards");
+        final int preferred = (streamInfo.getName().hashCode() & Integer.MAX_VALUE) % shards.size();
+        ProducerShard selected = shards.get(preferred);
+        for (int i = 1; i < shards.size(); i++) {
+            final ProducerShard shard = shards.get((preferred + i) % shards.size());
+            if (shard.mBandwidthBps < selected.mBandwidthBps
+                    || (shard.mBandwidthBps == selected.mBandwidthBps && shard.mStreamCount < selected.mStreamCount)) {
+                selected = shard;
+            }
+        }
+
+        return selected;
+    }
+
+    void addStream(@Nonnull final StreamInfo streamInfo) {
+        mStreamCount++;
+        mBandwidthBps += streamInfo.getAvgBandwidthBps();
+    }
+
+    void removeStream(@Nonnull final StreamInfo streamInfo) {
+        mStreamCount--;
+        mBandwidthBps -= streamInfo.getAvgBandwidthBps();
+    }
+
+    int getIndex() {
+        return mIndex;
+    }
+
+    @Nonnull
+    KinesisVideoProducer getProducer() {
+        return mProducer;
+    }
+
+    @Nonnull
+    ServiceCallbacks getServiceCallbacks() {
+        return mServiceCallbacks;
+    }
+
+    int getStreamCount() {
+        return mStreamCount;
+    }
+
+    long getBandwidthBps() {
+        return mBandwidthBps;
+    }
+}
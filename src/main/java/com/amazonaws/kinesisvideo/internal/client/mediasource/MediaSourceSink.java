@@ -18,6 +18,17 @@ public interface MediaSourceSink {
      */
     void onFrame(final @Nonnull KinesisVideoFrame kinesisVideoFrame) throws KinesisVideoException;
 
+    /**
+     * Offers a batch of frames from the source. Sources producing many small frames, i.e. audio, should prefer
+     * this to offering the frames one by one.
+     */
+    default void onFrames(final @Nonnull KinesisVideoFrame[] kinesisVideoFrames, final int offset, final int count)
+            throws KinesisVideoException {
+        for (int i = offset; i < offset + count; i++) {
+            onFrame(kinesisVideoFrames[i]);
+        }
+    }
+
     void onCodecPrivateData(final @Nullable byte[] codecPrivateData) throws KinesisVideoException;
 
     void onCodecPrivateData(final @Nullable byte[] codecPrivateData, final int trackId) throws KinesisVideoException;
@@ -0,0 +1,112 @@
+package com.amazonaws.kinesisvideo.internal.mediasource;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.storage.FragmentJournal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts the recovered frames of the {@link FragmentJournal} which were never persisted into the stream on a thread of
+ * its own, paced so the replay doesn't overflow the content store. The frames of the media source wait for the replay
+ * in {@link #awaitCompletion()} so the stream timestamps keep increasing.
+ *
+ * A failed replay keeps the recovered segments, the next process replays them again.
+ */
+@ThreadSafe
+public class FragmentJournalReplay implements Runnable {
+    private static final String THREAD_NAME_PREFIX = "KinesisVideo-JournalReplay-";
+
+    private final KinesisVideoProducerStream producerStream;
+    private final FragmentJournal journal;
+    private final long bytesPerSecond;
+    private final Log log;
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    /**
+     * @param bytesPerSecond the rate the frames are replayed at
+     */
+    public FragmentJournalReplay(@Nonnull final KinesisVideoProducerStream producerStream,
+                                 @Nonnull final FragmentJournal journal,
+                                 final long bytesPerSecond,
+                                 @Nonnull final Log log) {
+        Preconditions.checkArgument(bytesPerSecond > 0, "Replay rate should be positive");
+        this.producerStream = Preconditions.checkNotNull(producerStream);
+        this.journal = Preconditions.checkNotNull(journal);
+        this.bytesPerSecond = bytesPerSecond;
+        this.log = Preconditions.checkNotNull(log);
+    }
+
+    /**
+     * Starts the replay on a daemon thread
+     */
+    public void start() {
+        final Thread thread = new Thread(this, THREAD_NAME_PREFIX + producerStream.getStreamName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        log.info("Replaying %d fragments, %d bytes of stream %s at %d bytes per second",
+                journal.getReplayFragmentCount(), journal.getReplayBytes(), producerStream.getStreamName(),
+                bytesPerSecond);
+
+        final long startNanos = System.nanoTime();
+        long replayedBytes = 0;
+        KinesisVideoFrame frame;
+        try {
+            while ((frame = journal.nextReplayFrame()) != null) {
+                final long waitNanos = startNanos + replayedBytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond
+                        - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+
+                producerStream.putFrame(frame);
+                replayedBytes += frame.getSize();
+            }
+
+            journal.completeReplay();
+            log.info("Replayed the fragment journal of stream %s in %d ms", producerStream.getStreamName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Replaying the fragment journal of stream %s was interrupted", producerStream.getStreamName());
+        } catch (final KinesisVideoException e) {
+            log.exception(e, "Failed to replay the fragment journal of stream %s", producerStream.getStreamName());
+        } catch (final RuntimeException e) {
+            log.exception(e, "Failed to replay the fragment journal of stream %s", producerStream.getStreamName());
+        } finally {
+            completed.countDown();
+        }
+    }
+
+    /**
+     * Waits for the replay to finish, successfully or not
+     *
+     * @throws KinesisVideoException if the waiting thread is interrupted
+     */
+    public void awaitCompletion() throws KinesisVideoException {
+        if (completed.getCount() == 0) {
+            return;
+        }
+
+        try {
+            completed.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KinesisVideoException("Interrupted waiting for the fragment journal replay", e);
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed.getCount() == 0;
+    }
+}
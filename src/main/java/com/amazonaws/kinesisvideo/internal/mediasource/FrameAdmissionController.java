@@ -0,0 +1,271 @@
+package com.amazonaws.kinesisvideo.internal.mediasource;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drops the frames of a stream deliberately before they reach the producer when its buffer fills up, so the uploaded
+ * stream stays decodable at a lower frame rate rather than the producer dropping the frames the others depend on.
+ *
+ * The buffer pressure is the used part of the content store or of the stream's buffer duration, whichever is higher,
+ * according to the latest sampled metrics. The degradation deepens with the pressure up to the level allowed by the
+ * {@link DegradationPolicy}:
+ * <ul>
+ *     <li>{@link Level#DROP_NON_REFERENCE} drops the discardable frames no other frames depend on</li>
+ *     <li>{@link Level#KEY_FRAMES_ONLY} drops all but the key-frames</li>
+ *     <li>{@link Level#DROP_GOPS} drops whole GOPs starting from their key-frame</li>
+ * </ul>
+ * A GOP which lost a frame the others depend on is dropped up to the next key-frame, and the degradation only eases at
+ * a key-frame. The tracks without key-frames, i.e. audio, are always admitted.
+ *
+ * Called on the thread pushing the frames of the media source. The counters can be read on any thread, see
+ * {@link #getMetrics()}.
+ */
+@NotThreadSafe
+public class FrameAdmissionController {
+    public enum DegradationPolicy {
+        /**
+         * Only drops the discardable frames
+         */
+        DROP_NON_REFERENCE(Level.DROP_NON_REFERENCE),
+
+        /**
+         * Degrades down to the key-frames only
+         */
+        KEY_FRAMES_ONLY(Level.KEY_FRAMES_ONLY),
+
+        /**
+         * Degrades down to dropping whole GOPs
+         */
+        DROP_GOPS(Level.DROP_GOPS);
+
+        private final Level maxLevel;
+
+        DegradationPolicy(final Level maxLevel) {
+            this.maxLevel = maxLevel;
+        }
+    }
+
+    public enum Level {
+        ADMIT_ALL,
+        DROP_NON_REFERENCE,
+        KEY_FRAMES_ONLY,
+        DROP_GOPS
+    }
+
+    /**
+     * Buffer pressure each level starts at
+     */
+    public static final double DEFAULT_DROP_NON_REFERENCE_PRESSURE = 0.7;
+    public static final double DEFAULT_KEY_FRAMES_ONLY_PRESSURE = 0.85;
+    public static final double DEFAULT_DROP_GOPS_PRESSURE = 0.95;
+
+    /**
+     * How much the pressure has to fall below the start of a level to leave it
+     */
+    private static final double HYSTERESIS = 0.05;
+
+    private final KinesisVideoProducerStream producerStream;
+    private final DegradationPolicy policy;
+    private final double[] levelPressures;
+    private final Log log;
+    private final Map<Long, TrackState> tracks = new HashMap<Long, TrackState>();
+
+    // Written by the frame thread only
+    private volatile Level level = Level.ADMIT_ALL;
+    private volatile long admittedFrames;
+    private volatile long droppedNonReferenceFrames;
+    private volatile long droppedNonKeyFrames;
+    private volatile long droppedDependentFrames;
+    private volatile long droppedGops;
+    private volatile long droppedBytes;
+
+    public FrameAdmissionController(@Nonnull final KinesisVideoProducerStream producerStream,
+                                    @Nonnull final DegradationPolicy policy,
+                                    @Nonnull final Log log) {
+        this(producerStream, policy, DEFAULT_DROP_NON_REFERENCE_PRESSURE, DEFAULT_KEY_FRAMES_ONLY_PRESSURE,
+                DEFAULT_DROP_GOPS_PRESSURE, log);
+    }
+
+    public FrameAdmissionController(@Nonnull final KinesisVideoProducerStream producerStream,
+                                    @Nonnull final DegradationPolicy policy,
+                                    final double dropNonReferencePressure,
+                                    final double keyFramesOnlyPressure,
+                                    final double dropGopsPressure,
+                                    @Nonnull final Log log) {
+        Preconditions.checkArgument(0 < dropNonReferencePressure && dropNonReferencePressure <= keyFramesOnlyPressure
+                && keyFramesOnlyPressure <= dropGopsPressure && dropGopsPressure <= 1, "Invalid level pressures");
+        this.producerStream = Preconditions.checkNotNull(producerStream);
+        this.policy = Preconditions.checkNotNull(policy);
+        this.levelPressures = new double[] {0, dropNonReferencePressure, keyFramesOnlyPressure, dropGopsPressure};
+        this.log = Preconditions.checkNotNull(log);
+    }
+
+    /**
+     * @return whether the frame should be put into the stream
+     */
+    public boolean admit(@Nonnull final KinesisVideoFrame frame) {
+        final int flags = frame.getFlags();
+        final boolean keyFrame = FrameFlags.isKeyFrame(flags);
+        TrackState track = tracks.get(frame.getTrackId());
+        if (track == null) {
+            if (!keyFrame) {
+                // Not a track with key-frames, or the first GOP started before the stream
+                return admitted();
+            }
+
+            track = new TrackState();
+            tracks.put(frame.getTrackId(), track);
+        }
+
+        if (keyFrame) {
+            updateLevel(true);
+            if (level == Level.DROP_GOPS) {
+                droppedGops++;
+                track.gopDropped = true;
+                return dropped(frame);
+            }
+
+            track.gopDropped = false;
+            return admitted();
+        }
+
+        if (track.gopDropped) {
+            droppedDependentFrames++;
+            return dropped(frame);
+        }
+
+        updateLevel(false);
+        switch (level) {
+            case ADMIT_ALL:
+                return admitted();
+            case DROP_NON_REFERENCE:
+                if (FrameFlags.isDiscardableFrame(flags)) {
+                    droppedNonReferenceFrames++;
+                    return dropped(frame);
+                }
+
+                return admitted();
+            default:
+                // The rest of the GOP depends on the dropped frame
+                track.gopDropped = !FrameFlags.isDiscardableFrame(flags);
+                droppedNonKeyFrames++;
+                return dropped(frame);
+        }
+    }
+
+    @Nonnull
+    public Level getLevel() {
+        return level;
+    }
+
+    public long getAdmittedFrames() {
+        return admittedFrames;
+    }
+
+    /**
+     * @return number of the discardable frames dropped
+     */
+    public long getDroppedNonReferenceFrames() {
+        return droppedNonReferenceFrames;
+    }
+
+    /**
+     * @return number of the frames dropped to keep the key-frames only
+     */
+    public long getDroppedNonKeyFrames() {
+        return droppedNonKeyFrames;
+    }
+
+    /**
+     * @return number of the frames dropped as they depend on a dropped frame
+     */
+    public long getDroppedDependentFrames() {
+        return droppedDependentFrames;
+    }
+
+    public long getDroppedGops() {
+        return droppedGops;
+    }
+
+    /**
+     * @return number of the frames dropped in total
+     */
+    public long getDroppedFrames() {
+        return droppedNonReferenceFrames + droppedNonKeyFrames + droppedDependentFrames + droppedGops;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    /**
+     * @return snapshot of the counters
+     */
+    @Nonnull
+    public FrameAdmissionMetrics getMetrics() {
+        return new FrameAdmissionMetrics(producerStream.getStreamName(), level, admittedFrames,
+                droppedNonReferenceFrames, droppedNonKeyFrames, droppedDependentFrames, droppedGops, droppedBytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{level: %s, admitted: %d, dropped: %d non-reference, %d non-key, %d dependent, "
+                        + "%d GOPs, %d bytes}",
+                getClass().getSimpleName(), level, admittedFrames, droppedNonReferenceFrames, droppedNonKeyFrames,
+                droppedDependentFrames, droppedGops, droppedBytes);
+    }
+
+    /**
+     * Deepens the degradation as the pressure rises. Eases it at the key-frames only, so a GOP is either admitted
+     * from its key-frame or degraded from the frame the level was raised at.
+     */
+    private void updateLevel(final boolean atKeyFrame) {
+        final double pressure = producerStream.getBufferPressure();
+        Level target = Level.ADMIT_ALL;
+        for (final Level candidate : Level.values()) {
+            if (candidate.ordinal() > policy.maxLevel.ordinal()) {
+                break;
+            }
+
+            final double start = levelPressures[candidate.ordinal()];
+            // Stay at the current level until the pressure falls below its start less the hysteresis
+            if (pressure >= start || (candidate.ordinal() <= level.ordinal() && pressure >= start - HYSTERESIS)) {
+                target = candidate;
+            }
+        }
+
+        if (target == level || (target.ordinal() < level.ordinal() && !atKeyFrame)) {
+            return;
+        }
+
+        log.info("Frame admission of stream %s changed from %s to %s at the buffer pressure of %.2f: %s",
+                producerStream.getStreamName(), level, target, pressure, this);
+        level = target;
+    }
+
+    private boolean admitted() {
+        admittedFrames++;
+        return true;
+    }
+
+    private boolean dropped(@Nonnull final KinesisVideoFrame frame) {
+        droppedBytes += frame.getSize();
+        return false;
+    }
+
+    private static final class TrackState {
+        /**
+         * Whether the rest of the current GOP is dropped
+         */
+        private boolean gopDropped;
+    }
+}
@@ -0,0 +1,101 @@
+package com.amazonaws.kinesisvideo.internal.mediasource;
+
+/**
+ * Snapshot of the frames a {@link FrameAdmissionController} admitted into and dropped from a stream.
+ */
+public class FrameAdmissionMetrics {
+    private final String streamName;
+    private final FrameAdmissionController.Level level;
+    private final long admittedFrames;
+    private final long droppedNonReferenceFrames;
+    private final long droppedNonKeyFrames;
+    private final long droppedDependentFrames;
+    private final long droppedGops;
+    private final long droppedBytes;
+
+    FrameAdmissionMetrics(final String streamName,
+                          final FrameAdmissionController.Level level,
+                          final long admittedFrames,
+                          final long droppedNonReferenceFrames,
+                          final long droppedNonKeyFrames,
+                          final long droppedDependentFrames,
+                          final long droppedGops,
+                          final long droppedBytes) {
+        this.streamName = streamName;
+        this.level = level;
+        this.admittedFrames = admittedFrames;
+        this.droppedNonReferenceFrames = droppedNonReferenceFrames;
+        this.droppedNonKeyFrames = droppedNonKeyFrames;
+        this.droppedDependentFrames = droppedDependentFrames;
+        this.droppedGops = droppedGops;
+        this.droppedBytes = droppedBytes;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * Returns the degradation level the stream was at
+     * @return admission level
+     */
+    public FrameAdmissionController.Level getLevel() {
+        return level;
+    }
+
+    public long getAdmittedFrames() {
+        return admittedFrames;
+    }
+
+    /**
+     * Returns the number of the discardable frames dropped
+     * @return dropped non-reference frames
+     */
+    public long getDroppedNonReferenceFrames() {
+        return droppedNonReferenceFrames;
+    }
+
+    /**
+     * Returns the number of the frames dropped to keep the key-frames only
+     * @return dropped non-key frames
+     */
+    public long getDroppedNonKeyFrames() {
+        return droppedNonKeyFrames;
+    }
+
+    /**
+     * Returns the number of the frames dropped as they depend on a dropped frame
+     * @return dropped dependent frames
+     */
+    public long getDroppedDependentFrames() {
+        return droppedDependentFrames;
+    }
+
+    /**
+     * Returns the number of the GOPs dropped from their key-frame
+     * @return dropped GOPs
+     */
+    public long getDroppedGops() {
+        return droppedGops;
+    }
+
+    /**
+     * Returns the number of the frames dropped in total
+     * @return dropped frames
+     */
+    public long getDroppedFrames() {
+        return droppedNonReferenceFrames + droppedNonKeyFrames + droppedDependentFrames + droppedGops;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s frame admission: level %s, admitted %d, dropped %d non-reference, %d non-key, "
+                        + "%d dependent, %d GOPs, %d bytes",
+                streamName, level, admittedFrames, droppedNonReferenceFrames, droppedNonKeyFrames,
+                droppedDependentFrames, droppedGops, droppedBytes);
+    }
+}
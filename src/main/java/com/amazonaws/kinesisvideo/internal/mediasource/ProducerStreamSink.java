@@ -22,20 +22,75 @@ import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
  *
  * It's then media source's job to produce the frames and push them into the sink
  * it has been initialized with
+ *
+ * When given a FrameAdmissionController, the frames it doesn't admit are dropped before reaching the producer stream.
+ * When given a FragmentJournalReplay, the frames and the fragment metadata wait for the replay to finish.
  */
 public class ProducerStreamSink implements MediaSourceSink {
     private final KinesisVideoProducerStream producerStream;
+    private final FrameAdmissionController admissionController;
+    private final FragmentJournalReplay journalReplay;
 
     public ProducerStreamSink(final KinesisVideoProducerStream producerStream) {
+        this(producerStream, null);
+    }
+
+    public ProducerStreamSink(final KinesisVideoProducerStream producerStream,
+                              @Nullable final FrameAdmissionController admissionController) {
+        this(producerStream, admissionController, null);
+    }
+
+    public ProducerStreamSink(final KinesisVideoProducerStream producerStream,
+                              @Nullable final FrameAdmissionController admissionController,
+                              @Nullable final FragmentJournalReplay journalReplay) {
         this.producerStream = producerStream;
+        this.admissionController = admissionController;
+        this.journalReplay = journalReplay;
     }
 
     @Override
     public void onFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws KinesisVideoException {
         checkNotNull(kinesisVideoFrame);
+        awaitJournalReplay();
+        if (admissionController != null && !admissionController.admit(kinesisVideoFrame)) {
+            return;
+        }
+
         producerStream.putFrame(kinesisVideoFrame);
     }
 
+    @Override
+    public void onFrames(@Nonnull final KinesisVideoFrame[] kinesisVideoFrames, final int offset, final int count)
+            throws KinesisVideoException {
+        checkNotNull(kinesisVideoFrames);
+        awaitJournalReplay();
+        if (admissionController == null) {
+            producerStream.putFrames(kinesisVideoFrames, offset, count);
+            return;
+        }
+
+        // Put the admitted frames in contiguous runs to keep the batching
+        int runStart = offset;
+        for (int i = offset; i < offset + count; i++) {
+            if (!admissionController.admit(kinesisVideoFrames[i])) {
+                if (i > runStart) {
+                    producerStream.putFrames(kinesisVideoFrames, runStart, i - runStart);
+                }
+
+                runStart = i + 1;
+            }
+        }
+
+        if (offset + count > runStart) {
+            producerStream.putFrames(kinesisVideoFrames, runStart, offset + count - runStart);
+        }
+    }
+
+    @Nullable
+    public FrameAdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
     @Override
     public void onCodecPrivateData(@Nullable final byte[] codecPrivateData) throws KinesisVideoException {
         onCodecPrivateData(codecPrivateData, DEFAULT_TRACK_ID);
@@ -49,6 +104,7 @@ public class ProducerStreamSink implements MediaSourceSink {
     @Override
     public void onFragmentMetadata(final String metadataName, final String metadataValue, final boolean persistent)
             throws KinesisVideoException {
+        awaitJournalReplay();
         producerStream.putFragmentMetadata(metadataName, metadataValue, persistent);
     }
 
@@ -56,4 +112,10 @@ public class ProducerStreamSink implements MediaSourceSink {
     public KinesisVideoProducerStream getProducerStream() {
         return producerStream;
     }
+
+    private void awaitJournalReplay() throws KinesisVideoException {
+        if (journalReplay != null) {
+            journalReplay.awaitCompletion();
+        }
+    }
 }
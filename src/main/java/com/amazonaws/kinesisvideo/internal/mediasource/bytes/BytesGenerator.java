@@ -3,12 +3,10 @@ package com.amazonaws.kinesisvideo.internal.mediasource.bytes;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.internal.mediasource.OnStreamDataAvailable;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
-import com.amazonaws.kinesisvideo.stream.throttling.DiscreteTimePeriodsThrottler;
+import com.amazonaws.kinesisvideo.stream.throttling.FramePacingScheduler;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -18,15 +16,14 @@ import static com.amazonaws.kinesisvideo.producer.FrameFlags.FRAME_FLAG_NONE;
 import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
 
 public class BytesGenerator {
-    private static final int DISCRETENESS_10HZ = 10;
     private static final int MAX_FRAME_SIZE_BYTES_1024 = 1024;
     private static final int KEY_FRAME_EVERY_60_FRAMES = 60;
     private static final long DEFAULT_FRAME_DURATION_33MS = 33L;
 
     private OnStreamDataAvailable streamDataAvailable;
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(1);
-    private final DiscreteTimePeriodsThrottler throttler;
+    private final FramePacingScheduler pacingScheduler = FramePacingScheduler.getDefault();
+    private final int fps;
     private final byte[][] framesData = new byte[][]{
             new byte[MAX_FRAME_SIZE_BYTES_1024],
             new byte[MAX_FRAME_SIZE_BYTES_1024],
@@ -38,11 +35,12 @@ public class BytesGenerator {
 
     private final Log log = LogFactory.getLog(BytesGenerator.class);
     private volatile boolean isRunning;
+    private FramePacingScheduler.Registration pacing;
     private int frameCounter;
 
     public BytesGenerator(final int fps) {
         frameCounter = 0;
-        throttler = new DiscreteTimePeriodsThrottler(fps, DISCRETENESS_10HZ);
+        this.fps = fps;
     }
 
     public void onStreamDataAvailable(final OnStreamDataAvailable streamDataAvailable) {
@@ -61,34 +59,38 @@ public class BytesGenerator {
 
     public synchronized void stop() {
         isRunning = false;
+        if (pacing != null) {
+            pacing.cancel();
+            log.info("Stopped frame pacing " + pacing);
+            pacing = null;
+        }
     }
 
     private void startGeneratorInBackground() {
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    generateBytesAndNotifyListener();
-                } catch (final KinesisVideoException e) {
-                    log.error("Failed to keep generating frames with Exception", e);
-                }
-            }
-        });
+        pacing = pacingScheduler.register(BytesGenerator.class.getSimpleName(), fps,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        try {
+                            generateBytesAndNotifyListener();
+                            return true;
+                        } catch (final KinesisVideoException e) {
+                            log.error("Failed to keep generating frames with Exception", e);
+                            return false;
+                        }
+                    }
+                });
     }
 
     private void generateBytesAndNotifyListener() throws KinesisVideoException {
-        while (isRunning) {
-            fillArrayWithDigitsOfFramesCounter();
-
-            if (streamDataAvailable != null) {
-                streamDataAvailable
-                        .onFrameDataAvailable(createKinesisVideoFrame());
-            }
+        fillArrayWithDigitsOfFramesCounter();
 
-            frameCounter++;
-
-            throttler.throttle();
+        if (streamDataAvailable != null) {
+            streamDataAvailable
+                    .onFrameDataAvailable(createKinesisVideoFrame());
         }
+
+        frameCounter++;
     }
 
     private KinesisVideoFrame createKinesisVideoFrame() {
@@ -3,14 +3,12 @@ package com.amazonaws.kinesisvideo.internal.mediasource.multitrack;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.internal.mediasource.OnStreamDataAvailable;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.stream.throttling.FramePacingScheduler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import static com.amazonaws.kinesisvideo.producer.FrameFlags.FRAME_FLAG_KEY_FRAME;
 import static com.amazonaws.kinesisvideo.producer.FrameFlags.FRAME_FLAG_NONE;
@@ -24,7 +22,7 @@ public class MultiTrackFrameSource {
     private OnStreamDataAvailable streamDataAvailable;
     private final int fps;
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private final FramePacingScheduler pacingScheduler = FramePacingScheduler.getDefault();
     private final byte[][] framesData = new byte[][]{
             new byte[MAX_FRAME_SIZE_BYTES_1024],
             new byte[MAX_FRAME_SIZE_BYTES_1024],
@@ -36,6 +34,7 @@ public class MultiTrackFrameSource {
 
     private final Log log = LogFactory.getLog(MultiTrackFrameSource.class);
     private volatile boolean isRunning;
+    private FramePacingScheduler.Registration pacing;
     private int frameCounter;
 
     public MultiTrackFrameSource(final MultiTrackMediaSourceConfiguration configuration) {
@@ -59,38 +58,38 @@ public class MultiTrackFrameSource {
 
     public synchronized void stop() {
         isRunning = false;
+        if (pacing != null) {
+            pacing.cancel();
+            log.info("Stopped frame pacing " + pacing);
+            pacing = null;
+        }
     }
 
     private void startGeneratorInBackground() {
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    generateBytesAndNotifyListener();
-                } catch (final KinesisVideoException e) {
-                    log.error("Failed to keep generating frames with Exception", e);
-                }
-            }
-        });
+        pacing = pacingScheduler.register(MultiTrackFrameSource.class.getSimpleName(), fps,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        try {
+                            generateBytesAndNotifyListener();
+                            return true;
+                        } catch (final KinesisVideoException e) {
+                            log.error("Failed to keep generating frames with Exception", e);
+                            return false;
+                        }
+                    }
+                });
     }
 
     private void generateBytesAndNotifyListener() throws KinesisVideoException {
-        while (isRunning) {
-            fillArrayWithDigitsOfFramesCounter();
-
-            if (streamDataAvailable != null) {
-                streamDataAvailable
-                        .onFrameDataAvailable(createKinesisVideoFrame());
-            }
+        fillArrayWithDigitsOfFramesCounter();
 
-            frameCounter++;
-
-            try {
-                Thread.sleep(Duration.ofSeconds(1L).toMillis() / fps);
-            } catch (final InterruptedException e) {
-                log.error("Frame interval wait interrupted by Exception ", e);
-            }
+        if (streamDataAvailable != null) {
+            streamDataAvailable
+                    .onFrameDataAvailable(createKinesisVideoFrame());
         }
+
+        frameCounter++;
     }
 
     private KinesisVideoFrame createKinesisVideoFrame() {
@@ -0,0 +1,117 @@
+package com.amazonaws.kinesisvideo.internal.producer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latest sampled client and stream metrics.
+ *
+ * The metrics are sampled off the data path and published as new objects which are never modified afterwards so
+ * the readers, i.e. the putFrame path, get a consistent snapshot without locking or calling into the native code.
+ */
+@ThreadSafe
+public class KinesisVideoMetricsRegistry {
+    private final ConcurrentMap<Long, KinesisVideoStreamMetrics> mStreamMetrics =
+            new ConcurrentHashMap<Long, KinesisVideoStreamMetrics>();
+    private volatile KinesisVideoMetrics mClientMetrics;
+    private volatile long mSampledAtMillis;
+    private volatile long mStorageOverflowRemainingSize = -1;
+    private final AtomicLong mFramesPutSinceSample = new AtomicLong();
+
+    /**
+     * @return latest client metrics or null if they haven't been sampled yet
+     */
+    @Nullable
+    public KinesisVideoMetrics getClientMetrics() {
+        return mClientMetrics;
+    }
+
+    /**
+     * @param streamHandle the handle of the stream
+     * @return latest metrics of the stream or null if they haven't been sampled yet
+     */
+    @Nullable
+    public KinesisVideoStreamMetrics getStreamMetrics(final long streamHandle) {
+        return mStreamMetrics.get(streamHandle);
+    }
+
+    /**
+     * @return time of the latest sample in milliseconds since the epoch or 0 if nothing has been sampled yet
+     */
+    public long getSampledAtMillis() {
+        return mSampledAtMillis;
+    }
+
+    /**
+     * @return the content store size available according to the latest sample or the storage overflow pressure
+     * reported since, whichever is less, or -1 if unknown
+     */
+    public long getAvailableStorageSize() {
+        final KinesisVideoMetrics clientMetrics = mClientMetrics;
+        final long remainingSize = mStorageOverflowRemainingSize;
+        if (clientMetrics == null) {
+            return remainingSize;
+        }
+
+        return remainingSize < 0
+                ? clientMetrics.getContentStoreAvailableSize()
+                : Math.min(remainingSize, clientMetrics.getContentStoreAvailableSize());
+    }
+
+    /**
+     * Records the size of the frames put into the content store, which the available size doesn't include until the
+     * next sample. Shared by all the streams of the content store.
+     */
+    public void recordFramesPut(final long size) {
+        mFramesPutSinceSample.addAndGet(size);
+    }
+
+    /**
+     * @return size of the frames put into the content store since the available size was reported
+     */
+    public long getFramesPutSinceSample() {
+        return mFramesPutSinceSample.get();
+    }
+
+    /**
+     * Publishes the client metrics. The object must not be modified afterwards.
+     */
+    public void publishClientMetrics(@Nonnull final KinesisVideoMetrics clientMetrics) {
+        mClientMetrics = clientMetrics;
+        mStorageOverflowRemainingSize = -1;
+        mFramesPutSinceSample.set(0);
+        mSampledAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Publishes the remaining storage size reported by the storage overflow pressure callback. Superseded by the
+     * next sample.
+     */
+    public void publishStorageOverflowPressure(final long remainingSize) {
+        mStorageOverflowRemainingSize = remainingSize;
+        mFramesPutSinceSample.set(0);
+    }
+
+    /**
+     * Publishes the stream metrics. The object must not be modified afterwards.
+     */
+    public void publishStreamMetrics(final long streamHandle, @Nonnull final KinesisVideoStreamMetrics streamMetrics) {
+        mStreamMetrics.put(streamHandle, streamMetrics);
+    }
+
+    public void removeStreamMetrics(final long streamHandle) {
+        mStreamMetrics.remove(streamHandle);
+    }
+
+    public void clear() {
+        mStreamMetrics.clear();
+        mClientMetrics = null;
+        mStorageOverflowRemainingSize = -1;
+        mFramesPutSinceSample.set(0);
+        mSampledAtMillis = 0;
+    }
+}
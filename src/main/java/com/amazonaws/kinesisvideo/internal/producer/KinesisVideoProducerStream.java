@@ -4,6 +4,10 @@ import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 import com.amazonaws.kinesisvideo.producer.ProducerException;
 import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
+import com.amazonaws.kinesisvideo.storage.FragmentJournal;
+import com.amazonaws.kinesisvideo.storage.FrameSpillStore;
+import com.amazonaws.kinesisvideo.stream.throttling.AdaptiveRateController;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
 
 import java.io.InputStream;
 
@@ -42,6 +46,49 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
     @Nonnull
     InputStream getDataStream(final long uploadHandle) throws ProducerException;
 
+    /**
+     * Limits the upload rate of the stream, i.e. to its share of the uplink.
+     *
+     * @param throttler Throttler to upload through or null to upload without a limit.
+     */
+    void setUploadThrottler(@Nullable final BandwidthThrottler throttler);
+
+    /**
+     * Adapts the upload rate of the stream, and the encoder bitrate through the controller's listeners, to the
+     * fragment ACK latency and the buffer pressure.
+     *
+     * @param rateController Controller to drive the upload throttler or null to stop adapting.
+     */
+    void setUploadRateController(@Nullable final AdaptiveRateController rateController);
+
+    /**
+     * Spills the frames which don't fit into the content store into the spill store and puts them back once the
+     * content store has the room. The batched frames are put one by one while spilling is enabled.
+     *
+     * @param spillStore Store to spill the frames into or null to stop spilling.
+     * @param spillReserve Content store size to keep available, the frames are spilled below it.
+     */
+    void setFrameSpillStore(@Nullable final FrameSpillStore spillStore, final long spillReserve);
+
+    /**
+     * Journals the frames put into the stream and the received fragment ACKs so the fragments which were not
+     * persisted can be replayed after a restart.
+     *
+     * @param journal Journal to append to or null to stop journaling.
+     */
+    void setFragmentJournal(@Nullable final FragmentJournal journal);
+
+    /**
+     * Returns the histogram of the delay between the data availability notification and the data being read out
+     * of the stream returned by {@link #getDataStream(long)}. The histogram is also logged when the upload session
+     * ends.
+     *
+     * @param uploadHandle Client stream upload handle.
+     * @return Read latency histogram or null if there is no such upload handle
+     */
+    @Nullable
+    LatencyHistogram getReadLatencyHistogram(final long uploadHandle);
+
     /**
      * Get stream data from the buffer.
      *
@@ -61,6 +108,17 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
      */
     void putFrame(final @Nonnull KinesisVideoFrame kinesisVideoFrame) throws ProducerException;
 
+    /**
+     * Puts a batch of frames into the stream under a single stream lock acquisition.
+     *
+     * @param kinesisVideoFrames The frames
+     * @param offset Index of the first frame to put
+     * @param count Number of the frames to put
+     * @throws ProducerException
+     */
+    void putFrames(final @Nonnull KinesisVideoFrame[] kinesisVideoFrames, int offset, int count)
+            throws ProducerException;
+
     /**
      * Puts a metadata into the stream.
      */
@@ -130,6 +188,13 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
     @Nonnull
     KinesisVideoStreamMetrics getMetrics() throws ProducerException;
 
+    /**
+     * Returns the used part of the content store or of the stream's buffer duration, whichever is higher, according to
+     * the latest sampled metrics. Cheap enough to be called on every frame.
+     * @return buffer pressure between 0 and 1, 0 if the metrics haven't been sampled yet
+     */
+    double getBufferPressure();
+
     /**
      * Free the Kinesis Video stream.
      */
@@ -0,0 +1,127 @@
+package com.amazonaws.kinesisvideo.internal.producer;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.amazonaws.kinesisvideo.producer.Time.NANOS_IN_A_MILLISECOND;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets.
+ *
+ * Bucket i holds the samples in the [2^i, 2^(i+1)) nanoseconds range so the reported percentiles are accurate
+ * within a factor of two which is enough for spotting the latency regressions without allocating on record.
+ */
+@ThreadSafe
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = Long.SIZE;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    /**
+     * Records a latency sample
+     *
+     * @param latencyNanos latency in nanoseconds. Negative values are clamped to 0.
+     */
+    public void record(final long latencyNanos) {
+        final long latency = Math.max(0, latencyNanos);
+        mBuckets.incrementAndGet(bucketFor(latency));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(latency);
+
+        long max;
+        while (latency > (max = mMaxNanos.get())) {
+            if (mMaxNanos.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return number of the recorded samples
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @return max recorded latency in nanoseconds
+     */
+    public long getMaxNanos() {
+        return mMaxNanos.get();
+    }
+
+    /**
+     * @return mean recorded latency in nanoseconds or 0 if nothing has been recorded
+     */
+    public long getMeanNanos() {
+        final long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the specified percentile.
+     *
+     * @param percentile percentile in the (0, 100] range
+     * @return latency in nanoseconds or 0 if nothing has been recorded
+     */
+    public long getPercentileNanos(final double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 100, "Percentile should be in (0, 100] range");
+
+        final long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        final long threshold = (long) Math.ceil(count * percentile / 100);
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += mBuckets.get(i);
+            if (accumulated >= threshold) {
+                return Math.min(upperBoundOf(i), mMaxNanos.get());
+            }
+        }
+
+        return mMaxNanos.get();
+    }
+
+    /**
+     * Clears the recorded samples
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %d, mean: %.3f ms, p50: %.3f ms, p99: %.3f ms, max: %.3f ms",
+                getCount(),
+                toMillis(getMeanNanos()),
+                toMillis(getPercentileNanos(50)),
+                toMillis(getPercentileNanos(99)),
+                toMillis(getMaxNanos()));
+    }
+
+    private static int bucketFor(final long latencyNanos) {
+        return latencyNanos == 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(latencyNanos);
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        return bucket >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+
+    private static double toMillis(final long nanos) {
+        return (double) nanos / NANOS_IN_A_MILLISECOND;
+    }
+}
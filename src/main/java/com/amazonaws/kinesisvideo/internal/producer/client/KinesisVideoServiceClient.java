@@ -4,6 +4,9 @@ import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
 import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.http.NioEventLoopGroup;
+import com.amazonaws.kinesisvideo.http.NonBlockingResponseHandler;
+import com.amazonaws.kinesisvideo.http.PollableInputStream;
 import com.amazonaws.kinesisvideo.producer.StreamDescription;
 
 import javax.annotation.Nonnull;
@@ -130,4 +133,44 @@ public interface KinesisVideoServiceClient {
                   @Nonnull final Consumer<InputStream> acksConsumer,
                   @Nullable final Consumer<Exception> completionCallback)
             throws KinesisVideoException;
+
+    /**
+     * Puts media as a long-running operation over the non-blocking transport.
+     * <p>
+     * NOTE: The call will be 'prompt'. The data is pulled from the stream and the response is handed to the handler
+     * on the event loop threads.
+     *
+     * @param streamName                - Name of the stream
+     * @param containerType             - Container type
+     * @param streamStartTimeInMillis   - Stream start time
+     * @param absoluteFragmentTimes     - Whether to use absolute fragment times
+     * @param ackRequired               - Whether acks are required
+     * @param dataEndpoint              - The data endpoint to use
+     * @param timeoutInMillis           - Timeout in milliseconds
+     * @param kinesisVideoCredentialsProvider - Credentials to use
+     * @param dataStream                - Non-blocking data stream
+     * @param responseHandler           - Handler of the response and the ACKs
+     * @param completionCallback        - Consumer of an Exception for reporting stream termination
+     * @param eventLoopGroup            - Event loops to run the connection on
+     */
+    void putMedia(@Nonnull final String streamName,
+                  @Nonnull final String containerType,
+                  final long streamStartTimeInMillis,
+                  final boolean absoluteFragmentTimes,
+                  final boolean ackRequired,
+                  @Nonnull final String dataEndpoint,
+                  long timeoutInMillis,
+                  @Nullable final KinesisVideoCredentialsProvider kinesisVideoCredentialsProvider,
+                  @Nonnull final PollableInputStream dataStream,
+                  @Nonnull final NonBlockingResponseHandler responseHandler,
+                  @Nullable final Consumer<Exception> completionCallback,
+                  @Nonnull final NioEventLoopGroup eventLoopGroup)
+            throws KinesisVideoException;
+
+    /**
+     * Releases the resources held by the client, i.e. the pre-warmed connections. Can be called more than once.
+     */
+    default void free() {
+        // No resources held by default
+    }
 }
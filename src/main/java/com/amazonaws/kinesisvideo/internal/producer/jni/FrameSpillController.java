@@ -0,0 +1,263 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogRateLimiter;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetricsRegistry;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.storage.FrameSpillStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.producer.ProducerException.STATUS_OUT_OF_MEMORY;
+
+/**
+ * Puts the frames of a stream into the producer or, when the content store is short of space, into the
+ * {@link FrameSpillStore}. Once a frame is spilled, the following ones are spilled too until the store is drained so
+ * the producer gets the frames in order.
+ *
+ * The store is drained on a shared background thread while the content store has at least twice the reserve
+ * available. The available size is taken from the latest metrics sample or the storage overflow pressure callback
+ * less the frames all the streams put since, as querying the native metrics on every frame would be too costly.
+ * The drained frame is put without holding the lock so the stream keeps spilling meanwhile.
+ */
+@ThreadSafe
+class FrameSpillController {
+    private static final String THREAD_NAME = "KinesisVideo-FrameSpillDrain";
+    private static final long DRAIN_PERIOD_IN_MILLIS = 20;
+
+    /**
+     * Frames drained in one go so the putFrame calls of the stream don't wait for the whole backlog
+     */
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+    private static final int DROP_LOGS_PER_SECOND = 1;
+
+    private static final ScheduledExecutorService DRAIN_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@Nonnull final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final NativeKinesisVideoProducerJni mKinesisVideoProducerJni;
+    private final long mStreamHandle;
+    private final String mStreamName;
+    private final FrameSpillStore mSpillStore;
+    private final long mSpillReserve;
+    private final KinesisVideoMetricsRegistry mMetricsRegistry;
+    private final Log mLog;
+    private final LogRateLimiter mDropLogRateLimiter =
+            new LogRateLimiter(DROP_LOGS_PER_SECOND, 1, TimeUnit.SECONDS);
+
+    private ScheduledFuture<?> mDrainTask;
+    private boolean mDraining;
+    private boolean mClosed;
+
+    /**
+     * @param spillReserve the content store size to keep available, the frames are spilled below it
+     */
+    FrameSpillController(@Nonnull final NativeKinesisVideoProducerJni kinesisVideoProducerJni,
+                         final long streamHandle,
+                         @Nonnull final String streamName,
+                         @Nonnull final FrameSpillStore spillStore,
+                         final long spillReserve,
+                         @Nonnull final Log log) {
+        Preconditions.checkArgument(spillReserve >= 0, "Spill reserve can't be negative");
+        mKinesisVideoProducerJni = Preconditions.checkNotNull(kinesisVideoProducerJni);
+        mStreamHandle = streamHandle;
+        mStreamName = Preconditions.checkNotNull(streamName);
+        mSpillStore = Preconditions.checkNotNull(spillStore);
+        mSpillReserve = spillReserve;
+        mMetricsRegistry = kinesisVideoProducerJni.getMetricsRegistry();
+        mLog = Preconditions.checkNotNull(log);
+    }
+
+    synchronized void putFrame(@Nonnull final KinesisVideoFrame frame) throws ProducerException {
+        Preconditions.checkState(!mClosed, "Frame spilling is stopped");
+        if (!isSpilling() && hasRoomFor(frame.getSize(), mSpillReserve)) {
+            try {
+                mKinesisVideoProducerJni.putFrame(mStreamHandle, frame);
+                return;
+            } catch (final ProducerException e) {
+                if (e.getStatusCode() != STATUS_OUT_OF_MEMORY) {
+                    throw e;
+                }
+            }
+        }
+
+        spill(frame);
+    }
+
+    /**
+     * Puts the batch with a single stream lock acquisition while it fits into the content store, spilling the rest
+     */
+    synchronized void putFrames(@Nonnull final KinesisVideoFrame[] frames, final int offset, final int count)
+            throws ProducerException {
+        Preconditions.checkState(!mClosed, "Frame spilling is stopped");
+        long batchSize = 0;
+        for (int i = offset; i < offset + count; i++) {
+            batchSize += frames[i].getSize();
+        }
+
+        if (isSpilling() || !hasRoomFor(batchSize, mSpillReserve)) {
+            // Some of the frames might still fit
+            for (int i = offset; i < offset + count; i++) {
+                putFrame(frames[i]);
+            }
+
+            return;
+        }
+
+        final int put = mKinesisVideoProducerJni.putFramesUntilFull(mStreamHandle, frames, offset, count);
+        for (int i = offset + put; i < offset + count; i++) {
+            spill(frames[i]);
+        }
+    }
+
+    @Nonnull
+    FrameSpillStore getSpillStore() {
+        return mSpillStore;
+    }
+
+    /**
+     * Stops draining and waits for the frame being drained. The frames left in the store are not put into the
+     * producer.
+     */
+    synchronized void close() {
+        mClosed = true;
+        cancelDrain();
+        while (mDraining) {
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (!mSpillStore.isEmpty()) {
+            mLog.warn("Discarding %d spilled frames of stream %s", mSpillStore.getDepthFrames(), mStreamName);
+        }
+    }
+
+    private void spill(@Nonnull final KinesisVideoFrame frame) throws ProducerException {
+        if (mSpillStore.isEmpty()) {
+            mLog.info("Content store is short of space, spilling the frames of stream %s", mStreamName);
+        }
+
+        try {
+            if (!mSpillStore.append(frame) && mDropLogRateLimiter.tryAcquire()) {
+                mLog.warn("Spill store of stream %s is full, dropping frames: %s", mStreamName, mSpillStore);
+            }
+        } catch (final IOException e) {
+            throw new ProducerException(e);
+        }
+
+        if (mDrainTask == null && !mSpillStore.isEmpty()) {
+            mDrainTask = DRAIN_EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, DRAIN_PERIOD_IN_MILLIS, DRAIN_PERIOD_IN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_FRAMES_PER_DRAIN; i++) {
+            final KinesisVideoFrame frame;
+            final long headSequence;
+            synchronized (this) {
+                if (mClosed) {
+                    return;
+                }
+
+                frame = mSpillStore.peek();
+                if (frame == null) {
+                    mLog.info("Drained the spilled frames of stream %s: %s", mStreamName, mSpillStore);
+                    cancelDrain();
+                    return;
+                }
+
+                // Drain with a hysteresis so the stream doesn't flip between spilling and draining
+                if (!hasRoomFor(frame.getSize(), 2 * mSpillReserve)) {
+                    return;
+                }
+
+                headSequence = mSpillStore.getHeadSequence();
+                mDraining = true;
+            }
+
+            boolean put = false;
+            boolean failed = false;
+            try {
+                mKinesisVideoProducerJni.putFrame(mStreamHandle, frame);
+                put = true;
+            } catch (final ProducerException e) {
+                // The frame is retried once the content store has room again, any other failure would repeat
+                failed = e.getStatusCode() != STATUS_OUT_OF_MEMORY;
+                if (failed && mDropLogRateLimiter.tryAcquire()) {
+                    mLog.exception(e, "Dropping a spilled frame of stream %s", mStreamName);
+                }
+            } catch (final RuntimeException e) {
+                // Keep the periodic task scheduled
+                failed = true;
+                if (mDropLogRateLimiter.tryAcquire()) {
+                    mLog.exception(e, "Dropping a spilled frame of stream %s", mStreamName);
+                }
+            } finally {
+                synchronized (this) {
+                    // The frame is gone already if the stream evicted it while it was being put
+                    if (put) {
+                        mSpillStore.remove(headSequence);
+                    } else if (failed) {
+                        mSpillStore.drop(headSequence);
+                    }
+
+                    mDraining = false;
+                    notifyAll();
+                }
+            }
+
+            if (!put && !failed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether the frames go into the spill store to keep them in order
+     */
+    private boolean isSpilling() {
+        return mDraining || !mSpillStore.isEmpty();
+    }
+
+    private boolean hasRoomFor(final long frameSize, final long reserve) {
+        final long availableSize = mMetricsRegistry.getAvailableStorageSize();
+        if (availableSize < 0) {
+            // Not sampled yet, the producer fails the frame if it doesn't fit
+            return true;
+        }
+
+        // The sample doesn't include the frames put since by any of the streams
+        return availableSize - mMetricsRegistry.getFramesPutSinceSample() - frameSize >= reserve;
+    }
+
+    private void cancelDrain() {
+        if (mDrainTask != null) {
+            mDrainTask.cancel(false);
+            mDrainTask = null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetricsRegistry;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically queries the native client and stream metrics on its own thread and publishes them into the
+ * {@link KinesisVideoMetricsRegistry} so the frame submission doesn't have to.
+ *
+ * Only the streams with a consumer of the sampled metrics are sampled, i.e. the frame spilling, the buffer pressure
+ * or the debug logging. The sampling thread only runs while the client is started and there is such a stream.
+ */
+@ThreadSafe
+class MetricsSampler {
+    private static final String THREAD_NAME = "KinesisVideo-MetricsSampler";
+
+    private final NativeKinesisVideoProducerJni mKinesisVideoProducerJni;
+    private final KinesisVideoMetricsRegistry mRegistry;
+    private final long mPeriodInMillis;
+    private final Log mLog;
+    private final Set<Long> mSampledStreams = new HashSet<Long>();
+    private ScheduledExecutorService mExecutor;
+    private boolean mStarted;
+
+    MetricsSampler(@Nonnull final NativeKinesisVideoProducerJni kinesisVideoProducerJni,
+                   @Nonnull final KinesisVideoMetricsRegistry registry,
+                   final long periodInMillis,
+                   @Nonnull final Log log) {
+        Preconditions.checkArgument(periodInMillis > 0, "Sampling period should be positive");
+        mKinesisVideoProducerJni = Preconditions.checkNotNull(kinesisVideoProducerJni);
+        mRegistry = Preconditions.checkNotNull(registry);
+        mPeriodInMillis = periodInMillis;
+        mLog = Preconditions.checkNotNull(log);
+    }
+
+    /**
+     * Starts sampling once there is a stream to sample
+     */
+    synchronized void start() {
+        mStarted = true;
+        updateSampling();
+    }
+
+    /**
+     * Samples the stream until {@link #removeStream(long)}
+     */
+    synchronized void addStream(final long streamHandle) {
+        if (mSampledStreams.add(streamHandle)) {
+            updateSampling();
+        }
+    }
+
+    /**
+     * Stops sampling the stream. Doesn't wait for the sample in progress so it can be called with the stream lock
+     * held.
+     */
+    synchronized void removeStream(final long streamHandle) {
+        if (mSampledStreams.remove(streamHandle)) {
+            updateSampling();
+        }
+    }
+
+    /**
+     * Stops the sampling and waits for the sample in progress so the native client can be freed
+     */
+    void stop() {
+        final ScheduledExecutorService executor;
+        synchronized (this) {
+            mStarted = false;
+            executor = mExecutor;
+            mExecutor = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(mPeriodInMillis, TimeUnit.MILLISECONDS)) {
+                    mLog.warn("Metrics sampler didn't stop in time");
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        mRegistry.clear();
+    }
+
+    /**
+     * Starts or stops the sampling thread depending on whether there is anything to sample. Called with the lock held.
+     */
+    private void updateSampling() {
+        final boolean needed = mStarted && !mSampledStreams.isEmpty();
+        if (!needed) {
+            if (mExecutor != null) {
+                mExecutor.shutdownNow();
+                mExecutor = null;
+            }
+
+            return;
+        }
+
+        if (mExecutor != null) {
+            return;
+        }
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, 0, mPeriodInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sample() {
+        try {
+            final KinesisVideoMetrics clientMetrics = new KinesisVideoMetrics();
+            if (!mKinesisVideoProducerJni.sampleMetrics(clientMetrics)) {
+                return;
+            }
+
+            mRegistry.publishClientMetrics(clientMetrics);
+
+            final List<Long> streamHandles;
+            synchronized (this) {
+                streamHandles = new ArrayList<Long>(mSampledStreams);
+            }
+
+            for (final long streamHandle : streamHandles) {
+                final KinesisVideoStreamMetrics streamMetrics = new KinesisVideoStreamMetrics();
+                if (mKinesisVideoProducerJni.sampleStreamMetrics(streamHandle, streamMetrics)) {
+                    mRegistry.publishStreamMetrics(streamHandle, streamMetrics);
+                } else {
+                    mRegistry.removeStreamMetrics(streamHandle);
+                }
+            }
+        } catch (final ProducerException e) {
+            mLog.exception(e, "Sampling the metrics failed");
+        } catch (final RuntimeException e) {
+            // Keep the periodic task scheduled
+            mLog.exception(e, "Sampling the metrics failed");
+        }
+    }
+}
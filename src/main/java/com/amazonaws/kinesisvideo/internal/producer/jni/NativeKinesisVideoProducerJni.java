@@ -23,18 +23,21 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import static com.amazonaws.kinesisvideo.producer.ProducerException.STATUS_INVALID_OPERATION;
+import static com.amazonaws.kinesisvideo.producer.ProducerException.STATUS_OUT_OF_MEMORY;
 import static com.amazonaws.kinesisvideo.producer.ProducerException.STATUS_SUCCESS;
 
 /**
  * JNI interface to the native Producer SDK library wrapper
  *
- *
+ * NOTE: The client lifecycle calls are serialized on a single lock whereas the per-stream data path calls
+ * (frames, stream data, ACKs, metrics) are only serialized with the calls for the same stream.
  */
 @ThreadSafe
 @SuppressFBWarnings("UPM_UNCALLED_PRIVATE_METHOD")
@@ -59,10 +62,15 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      */
     private static final String EXPECTED_LIBRARY_VERSION = "1.11";
 
+    /**
+     * How often the client and stream metrics are sampled
+     */
+    private static final long METRICS_SAMPLING_PERIOD_IN_MILLISECONDS = 1000;
+
     /**
      * The manifest handle will be set after call to parse()
      */
-    private long mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
+    private volatile long mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
 
     /**
      * Will store whether the library has been initialized
@@ -75,10 +83,15 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     private volatile boolean mIsReady = false;
 
     /**
-     * Used for synchronization of calls into the client
+     * Used for synchronization of the client lifecycle calls into the client
      */
     private final Object mSyncObject = new Object();
 
+    /**
+     * Used for synchronization of the per-stream data path calls into the client
+     */
+    private final StreamLockStripes mStreamLocks;
+
     /**
      * Used for synchronization of the callback calls
      */
@@ -87,7 +100,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     /**
      * Keeps the mapping between the stream handle and the Kinesis Video stream object
      */
-    private final Map<Long, KinesisVideoProducerStream> mKinesisVideoHandleMap = new HashMap<Long, KinesisVideoProducerStream>();
+    private final Map<Long, KinesisVideoProducerStream> mKinesisVideoHandleMap = new ConcurrentHashMap<Long, KinesisVideoProducerStream>();
 
     /**
      * Callbacks for integration with the device auth subsystem.
@@ -124,6 +137,16 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      */
     private final KinesisVideoMetrics mKinesisVideoMetrics;
 
+    /**
+     * Latest sampled metrics for the data path
+     */
+    private final KinesisVideoMetricsRegistry mMetricsRegistry = new KinesisVideoMetricsRegistry();
+
+    /**
+     * Samples the metrics into the registry while the client is initialized and a stream needs them
+     */
+    private final MetricsSampler mMetricsSampler;
+
     /**
      * Public constructor.
      * @param authCallbacks Authentication callbacks
@@ -174,6 +197,31 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
                                          final @Nonnull ServiceCallbacks serviceCallbacks,
                                          final @Nonnull Log log,
                                          final @Nonnull CountDownLatch readyLatch) throws ProducerException {
+        this(authCallbacks,
+                storageCallbacks,
+                serviceCallbacks,
+                log,
+                readyLatch,
+                StreamLockStripes.DEFAULT_STRIPE_COUNT);
+    }
+
+    /**
+     * Constructor with the number of the stream lock stripes, i.e. for the benchmarks
+     * @param authCallbacks Authentication callbacks
+     * @param storageCallbacks Storage callbacks
+     * @param serviceCallbacks Service call callbacks
+     * @param log Log object to use for logging
+     * @param readyLatch Ready latch for synch creation
+     * @param streamLockStripeCount Number of the stream lock stripes, a power of two
+     * @throws ProducerException
+     */
+    NativeKinesisVideoProducerJni(final @Nonnull AuthCallbacks authCallbacks,
+                                  final @Nonnull StorageCallbacks storageCallbacks,
+                                  final @Nonnull ServiceCallbacks serviceCallbacks,
+                                  final @Nonnull Log log,
+                                  final @Nonnull CountDownLatch readyLatch,
+                                  final int streamLockStripeCount) throws ProducerException {
+        mStreamLocks = new StreamLockStripes(streamLockStripeCount);
         mLog = Preconditions.checkNotNull(log);
         mAuthCallbacks = Preconditions.checkNotNull(authCallbacks);
         mStorageCallbacks = Preconditions.checkNotNull(storageCallbacks);
@@ -182,6 +230,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         mLibraryLoader = new NativeLibraryLoader(mLog);
         mServiceCallbacks.initialize(this);
         mKinesisVideoMetrics = new KinesisVideoMetrics();
+        mMetricsSampler = new MetricsSampler(this, mMetricsRegistry, METRICS_SAMPLING_PERIOD_IN_MILLISECONDS, mLog);
     }
 
     @Override
@@ -233,6 +282,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             }
 
             mClientHandle = createKinesisVideoClient(deviceInfo);
+            mMetricsSampler.start();
         }
     }
 
@@ -263,9 +313,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public boolean isInitialized()
     {
-        synchronized (mSyncObject) {
-            return mClientHandle != INVALID_CLIENT_HANDLE_VALUE;
-        }
+        return mClientHandle != INVALID_CLIENT_HANDLE_VALUE;
     }
 
     /**
@@ -275,9 +323,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     @Override
     public boolean isReady()
     {
-        synchronized (mSyncObject) {
-            return mIsReady;
-        }
+        return mIsReady;
     }
 
     @Override
@@ -301,9 +347,19 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     public void free() throws ProducerException
     {
         Preconditions.checkState(isInitialized());
+
+        // Stop sampling before taking the lock the sampler needs
+        mMetricsSampler.stop();
+
         synchronized (mSyncObject) {
-            freeKinesisVideoClient(mClientHandle);
-            mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
+            // Make sure there are no in-flight data path calls
+            mStreamLocks.lockAll();
+            try {
+                freeKinesisVideoClient(mClientHandle);
+                mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
+            } finally {
+                mStreamLocks.unlockAll();
+            }
         }
     }
 
@@ -429,12 +485,17 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
 
         synchronized (mSyncObject) {
             final long streamHandle = stream.getStreamHandle();
-            stream.streamFreed();
+            final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+            streamLock.lock();
             try {
+                stream.streamFreed();
                 // Stop the streams
                 freeKinesisVideoStream(mClientHandle, streamHandle);
             } finally {
                 mKinesisVideoHandleMap.remove(streamHandle);
+                mMetricsSampler.removeStream(streamHandle);
+                mMetricsRegistry.removeStreamMetrics(streamHandle);
+                streamLock.unlock();
             }
         }
     }
@@ -453,9 +514,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             return;
         }
 
-        synchronized (mSyncObject) {
-            // Stop the streams
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             kinesisVideoStreamTerminated(mClientHandle, streamHandle, uploadHandle, statusCode);
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -470,8 +534,71 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     {
         Preconditions.checkState(isInitialized());
 
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
+            getKinesisVideoStreamMetrics(mClientHandle, streamHandle, streamMetrics);
+        } finally {
+            streamLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the latest sampled metrics. Unlike {@link #getMetrics()} and
+     * {@link #getStreamMetrics(long, KinesisVideoStreamMetrics)} it doesn't call into the native code so it's fine to
+     * use on the data path.
+     * @return the metrics registry
+     */
+    @Nonnull
+    public KinesisVideoMetricsRegistry getMetricsRegistry()
+    {
+        return mMetricsRegistry;
+    }
+
+    /**
+     * Keeps the client and the stream metrics in the {@link #getMetricsRegistry()} up to date until the stream is
+     * freed. The metrics are only sampled for the streams which need them.
+     * @param streamHandle the handle of the stream
+     */
+    void requestMetricsSampling(final long streamHandle)
+    {
+        mMetricsSampler.addStream(streamHandle);
+    }
+
+    /**
+     * Fills in the client metrics for the sampler
+     * @return whether the client is still initialized
+     */
+    boolean sampleMetrics(@Nonnull final KinesisVideoMetrics metrics) throws ProducerException
+    {
         synchronized (mSyncObject) {
+            if (!isInitialized()) {
+                return false;
+            }
+
+            getKinesisVideoMetrics(mClientHandle, metrics);
+            return true;
+        }
+    }
+
+    /**
+     * Fills in the stream metrics for the sampler
+     * @return whether the stream still exists
+     */
+    boolean sampleStreamMetrics(final long streamHandle, @Nonnull final KinesisVideoStreamMetrics streamMetrics)
+            throws ProducerException
+    {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
+            if (!isInitialized() || !mKinesisVideoHandleMap.containsKey(streamHandle)) {
+                return false;
+            }
+
             getKinesisVideoStreamMetrics(mClientHandle, streamHandle, streamMetrics);
+            return true;
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -487,11 +614,101 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkState(isInitialized());
         Preconditions.checkNotNull(kinesisVideoFrame);
 
-        synchronized (mSyncObject) {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             putKinesisVideoFrame(mClientHandle, streamHandle, kinesisVideoFrame);
+        } finally {
+            streamLock.unlock();
+        }
+
+        mMetricsRegistry.recordFramesPut(kinesisVideoFrame.getSize());
+    }
+
+    /**
+     * Put a batch of frames with a single stream lock acquisition.
+     *
+     * The frames are put one by one while the stream lock is held so the batch costs one lock handoff instead of
+     * one per frame. The frames are put in order and the first failing frame stops the batch, the preceding frames
+     * remain in the stream.
+     *
+     * @param streamHandle the handle of the stream
+     * @param kinesisVideoFrames the frames
+     * @param offset index of the first frame to put
+     * @param count number of the frames to put
+     * @throws ProducerException
+     */
+    public void putFrames(final long streamHandle,
+                          final @Nonnull KinesisVideoFrame[] kinesisVideoFrames,
+                          final int offset,
+                          final int count) throws ProducerException
+    {
+        Preconditions.checkState(isInitialized());
+        Preconditions.checkNotNull(kinesisVideoFrames);
+        Preconditions.checkArgument(offset >= 0 && count >= 0 && offset + count <= kinesisVideoFrames.length,
+                "Invalid frame batch range");
+
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        long size = 0;
+        streamLock.lock();
+        try {
+            for (int i = offset; i < offset + count; i++) {
+                putKinesisVideoFrame(mClientHandle, streamHandle, kinesisVideoFrames[i]);
+                size += kinesisVideoFrames[i].getSize();
+            }
+        } finally {
+            streamLock.unlock();
+            mMetricsRegistry.recordFramesPut(size);
         }
     }
 
+    /**
+     * Put a batch of frames with a single stream lock acquisition until the content store runs out of space.
+     *
+     * @param streamHandle the handle of the stream
+     * @param kinesisVideoFrames the frames
+     * @param offset index of the first frame to put
+     * @param count number of the frames to put
+     * @return number of the frames put, the following ones didn't fit into the content store
+     * @throws ProducerException if a frame fails for another reason
+     */
+    int putFramesUntilFull(final long streamHandle,
+                           final @Nonnull KinesisVideoFrame[] kinesisVideoFrames,
+                           final int offset,
+                           final int count) throws ProducerException
+    {
+        Preconditions.checkState(isInitialized());
+        Preconditions.checkNotNull(kinesisVideoFrames);
+        Preconditions.checkArgument(offset >= 0 && count >= 0 && offset + count <= kinesisVideoFrames.length,
+                "Invalid frame batch range");
+
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        int put = 0;
+        long size = 0;
+        streamLock.lock();
+        try {
+            for (; put < count; put++) {
+                final KinesisVideoFrame frame = kinesisVideoFrames[offset + put];
+                try {
+                    putKinesisVideoFrame(mClientHandle, streamHandle, frame);
+                } catch (final ProducerException e) {
+                    if (e.getStatusCode() != STATUS_OUT_OF_MEMORY) {
+                        throw e;
+                    }
+
+                    break;
+                }
+
+                size += frame.getSize();
+            }
+        } finally {
+            streamLock.unlock();
+            mMetricsRegistry.recordFramesPut(size);
+        }
+
+        return put;
+    }
+
     /**
      * Put a fragment metadata.
      *
@@ -508,8 +725,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkNotNull(metadataName);
         Preconditions.checkNotNull(metadataValue);
 
-        synchronized (mSyncObject) {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             putKinesisVideoFragmentMetadata(mClientHandle, streamHandle, metadataName, metadataValue, persistent);
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -525,8 +746,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkState(isInitialized());
         Preconditions.checkNotNull(kinesisVideoFragmentAck);
 
-        synchronized (mSyncObject) {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             kinesisVideoStreamFragmentAck(mClientHandle, streamHandle, uploadHandle, kinesisVideoFragmentAck);
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -542,8 +767,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkState(isInitialized());
         Preconditions.checkNotNull(kinesisVideoFragmentAck);
 
-        synchronized (mSyncObject) {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             kinesisVideoStreamParseFragmentAck(mClientHandle, streamHandle, uploadHandle, kinesisVideoFragmentAck);
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -571,9 +800,13 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         Preconditions.checkNotNull(fillBuffer);
         Preconditions.checkNotNull(readResult);
 
-        synchronized (mSyncObject) {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             getKinesisVideoStreamData(mClientHandle, streamHandle, uploadHandle, fillBuffer, offset, length,
                     readResult);
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -589,8 +822,12 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     {
         Preconditions.checkState(isInitialized());
 
-        synchronized (mSyncObject) {
+        final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+        streamLock.lock();
+        try {
             kinesisVideoStreamFormatChanged(mClientHandle, streamHandle, codecPrivateData, trackId);
+        } finally {
+            streamLock.unlock();
         }
     }
 
@@ -655,6 +892,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      */
     private void storageOverflowPressure(final long remainingSize)
     {
+        // Lets the streams spilling the frames react before the next metrics sample
+        mMetricsRegistry.publishStorageOverflowPressure(remainingSize);
         synchronized (mCallbackSyncObject) {
             mStorageCallbacks.storageOverflowPressure(remainingSize);
         }
@@ -770,18 +1009,19 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     }
 
     /**
-     * Reports stream data is available
+     * Reports stream data is available.
+     *
+     * NOTE: This is fired on every frame put from within the data path call so it is not serialized with the rest
+     * of the callbacks on the global callback lock.
      */
     private void streamDataAvailable(final long streamHandle, final String streamName, final long uploadHandle, final long duration, final long availableSize) throws ProducerException
     {
-        synchronized (mCallbackSyncObject) {
-            if (!mKinesisVideoHandleMap.containsKey(streamHandle)) {
-                throw new ProducerException("Invalid stream handle.", STATUS_INVALID_OPERATION);
-            }
-
-            final KinesisVideoProducerStream kinesisVideoProducerStream = mKinesisVideoHandleMap.get(streamHandle);
-            kinesisVideoProducerStream.streamDataAvailable(uploadHandle, duration, availableSize);
+        final KinesisVideoProducerStream kinesisVideoProducerStream = mKinesisVideoHandleMap.get(streamHandle);
+        if (kinesisVideoProducerStream == null) {
+            throw new ProducerException("Invalid stream handle.", STATUS_INVALID_OPERATION);
         }
+
+        kinesisVideoProducerStream.streamDataAvailable(uploadHandle, duration, availableSize);
     }
 
     /**
@@ -1303,15 +1543,16 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             throws ProducerException;
 
     /**
-     * Puts a frame into the frame buffer.
+     * Puts a frame into the frame buffer. Package-private so the producers without the native library can stand in
+     * for it under the stream lock.
      *
      * @param clientHandle Client handle
      * @param streamHandle Stream handle
      * @param kinesisVideoFrame Kinesis Video frame to put
      * @throws ProducerException
      */
-    private native void putKinesisVideoFrame(long clientHandle, long streamHandle,
-                                             final @Nonnull KinesisVideoFrame kinesisVideoFrame)
+    native void putKinesisVideoFrame(long clientHandle, long streamHandle,
+                                     final @Nonnull KinesisVideoFrame kinesisVideoFrame)
             throws ProducerException;
 
     /**
@@ -1330,7 +1571,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             throws ProducerException;
 
     /**
-     * Reports a stream fragment ACK.
+     * Reports a stream fragment ACK. Package-private so the producers without the native library can stand in for
+     * it under the stream lock.
      *
      * @param clientHandle Client handle
      * @param streamHandle Stream handle
@@ -1338,8 +1580,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      * @param kinesisVideoFragmentAck Kinesis Video fragment ack to report for the stream
      * @throws ProducerException
      */
-    private native void kinesisVideoStreamFragmentAck(long clientHandle, long streamHandle, long uploadHandle,
-                                                      final @Nonnull KinesisVideoFragmentAck kinesisVideoFragmentAck)
+    native void kinesisVideoStreamFragmentAck(long clientHandle, long streamHandle, long uploadHandle,
+                                              final @Nonnull KinesisVideoFragmentAck kinesisVideoFragmentAck)
             throws ProducerException;
 
     /**
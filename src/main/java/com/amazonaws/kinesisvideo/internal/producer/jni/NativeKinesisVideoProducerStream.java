@@ -1,26 +1,40 @@
 package com.amazonaws.kinesisvideo.internal.producer.jni;
 
 import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.LogRateLimiter;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.http.PollableInputStream;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
 import com.amazonaws.kinesisvideo.producer.FrameFlags;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetricsRegistry;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.LatencyHistogram;
 import com.amazonaws.kinesisvideo.producer.ProducerException;
 import com.amazonaws.kinesisvideo.internal.producer.ReadResult;
 import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
 import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import com.amazonaws.kinesisvideo.storage.FragmentJournal;
+import com.amazonaws.kinesisvideo.storage.FrameSpillStore;
+import com.amazonaws.kinesisvideo.stream.throttling.AdaptiveRateController;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Implementation of {@link KinesisVideoProducerStream}
@@ -29,16 +43,71 @@ import java.util.concurrent.TimeUnit;
  */
 public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStream
 {
-    private class NativeDataInputStream extends InputStream {
+    private class NativeDataInputStream extends InputStream implements PollableInputStream {
         /**
          * Whether the stream has been closed
          */
         private volatile boolean mStreamClosed = false;
 
-        // Set the notification values
-        private final Object mMonitor = new Object();
-        private boolean mDataAvailable = false;
-        private long mAvailableDataSize = 0;
+        /**
+         * Data availability notification sequence. Incremented by the notifying thread on every notification
+         * so the coalesced notifications are never lost.
+         */
+        private final AtomicLong mNotificationSequence = new AtomicLong();
+
+        /**
+         * The last notification sequence which has been completely drained by the reader.
+         */
+        private long mConsumedSequence = 0;
+
+        /**
+         * The notification sequence the current pending size was taken for.
+         */
+        private long mPendingSequence = 0;
+
+        /**
+         * Bytes which are still to be drained for the pending notification.
+         */
+        private long mPendingDataSize = 0;
+
+        /**
+         * Available data size reported by the latest notification
+         */
+        private volatile long mAvailableDataSize = 0;
+
+        /**
+         * Time of the oldest notification which hasn't been served by the reader yet or 0 if none.
+         */
+        private final AtomicLong mOldestPendingNotificationNanos = new AtomicLong();
+
+        /**
+         * The thread blocked in read awaiting the notification
+         */
+        private volatile Thread mReaderThread;
+
+        /**
+         * How long the non-blocking reader should wait for the rate limit after the last read returned nothing
+         */
+        private volatile long mRetryDelayNanos = 0;
+
+        /**
+         * Listener notified about the data availability for the non-blocking readers
+         */
+        private volatile Runnable mDataAvailableListener;
+
+        /**
+         * Limits the per read debug logging
+         */
+        private final LogRateLimiter mReadLogRateLimiter =
+                new LogRateLimiter(DEBUG_LOGS_PER_SECOND, 1, TimeUnit.SECONDS);
+
+        private final LatencyHistogram mReadLatencyHistogram = new LatencyHistogram();
+
+        /**
+         * Whether the read latency has been reported for the upload session
+         */
+        private final AtomicBoolean mReadLatencyReported = new AtomicBoolean();
+
         private final ReadResult mReadResult;
         final long mUploadHandle;
 
@@ -58,81 +127,139 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
                         final int off,
                         final int len)
                 throws IOException {
+            return read(b, off, len, true);
+        }
+
+        @Override
+        public int readNonBlocking(@Nonnull final byte[] b,
+                                   final int off,
+                                   final int len)
+                throws IOException {
+            return read(b, off, len, false);
+        }
+
+        @Override
+        public long getRetryDelayNanos() {
+            return mRetryDelayNanos;
+        }
+
+        @Override
+        public void setDataAvailableListener(@Nullable final Runnable listener) {
+            mDataAvailableListener = listener;
+        }
+
+        private int read(final byte[] b,
+                         final int off,
+                         final int len,
+                         final boolean blocking)
+                throws IOException {
             if (mStreamClosed) {
                 mLog.warn("Stream %s with uploadHandle %d has been closed", mStreamInfo.getName(), mUploadHandle);
             }
 
-            // Read from the KinesisVideo Producer
-            // NOTE: This implementation is a blocking call and the blocking
-            // is handled by simply spin-locking until the data is available.
-            int bytesRead = -1;
-
-            while (!mStreamClosed) {
-                synchronized (mMonitor) {
-                    while (!mDataAvailable) {
-                        try {
-                            mLog.debug("no data for stream %s with uploadHandle %d, waiting", mStreamInfo.getName(),
-                                    mUploadHandle);
-                            mMonitor.wait();
-                        } catch (final InterruptedException e) {
-                            mLog.exception(e, "Waiting for the data availability with uploadHandle %d"
-                                    + "threw an interrupted exception. Continuing...", mUploadHandle);
-                        }
-                    }
+            // Read from the KinesisVideo Producer.
+            // NOTE: In the blocking mode the reader parks until the next data availability notification and then
+            // drains all of the available data into the buffer in one pass. The non-blocking reader returns 0 instead.
+            int bytesRead = 0;
+            mRetryDelayNanos = 0;
 
-                    // Clear the availability indicator for now
-                    mDataAvailable = false;
-                    if (mStreamClosed) {
-                        // Indicate the EOS
-                        bytesRead = -1;
-                        mLog.debug("Being notified to close stream %s with uploadHandle %d",
-                                mStreamInfo.getName(), mUploadHandle);
-                        return bytesRead;
+            while (bytesRead < len) {
+                if (mStreamClosed) {
+                    if (bytesRead > 0) {
+                        break;
                     }
-                }
 
-                try {
-                    mKinesisVideoProducerJni.getStreamData(mStreamHandle, mUploadHandle, b, off, len, mReadResult);
-                    bytesRead = mReadResult.getReadBytes();
-                    mLog.debug("getStreamData fill %d bytes for stream %s with uploadHandle %d", bytesRead,
+                    // Indicate the EOS
+                    mLog.debug("Being notified to close stream %s with uploadHandle %d",
                             mStreamInfo.getName(), mUploadHandle);
+                    return -1;
+                }
 
-                    if (mReadResult.isEndOfStream()) {
-                        // EOS for current session
-                        mLog.info("Received end-of-stream indicator for %s, uploadHandle %d",
-                                mStreamInfo.getName(), mUploadHandle);
-
-                        // Set the flag so the stream is not valid any longer
-                        mStreamClosed = true;
+                final long sequence = mNotificationSequence.get();
+                if (sequence == mConsumedSequence) {
+                    if (bytesRead > 0) {
+                        // Drained everything we have been notified about
+                        break;
+                    }
 
-                        if (0 == bytesRead) {
-                            // Indicate the EOS
-                            bytesRead = -1;
-                        }
+                    if (!blocking) {
+                        return 0;
                     }
 
-                    synchronized (mMonitor) {
-                        if (bytesRead != 0) {
-                            // Got some bytes - break from the loop.
-                            // Make sure we don't await again if we still have some data
-                            if (bytesRead != -1 && mAvailableDataSize - bytesRead > 0) {
-                                mDataAvailable = true;
-                            }
+                    awaitNotification(sequence);
+                    continue;
+                }
+
+                if (sequence != mPendingSequence) {
+                    mPendingSequence = sequence;
+                    mPendingDataSize = mAvailableDataSize;
+                }
 
-                            break;
-                        }
+                // Take the upload rate tokens only for the data the notifications announced, not for the whole
+                // buffer of the caller
+                final int requestLength = (int) Math.min(len - bytesRead, Math.max(1, mPendingDataSize));
+                final int chunkLength = allowedBytes(requestLength, blocking && bytesRead == 0);
+                if (chunkLength == 0) {
+                    if (bytesRead == 0) {
+                        // Over the upload rate - tell the non-blocking reader when to retry as the data it has
+                        // been notified about won't be notified again
+                        mRetryDelayNanos = Math.max(1, retryDelayNanos(requestLength));
+                        return 0;
                     }
+
+                    break;
+                }
+
+                final int chunkSize;
+                try {
+                    mKinesisVideoProducerJni.getStreamData(mStreamHandle, mUploadHandle, b, off + bytesRead,
+                            chunkLength, mReadResult);
+                    chunkSize = mReadResult.getReadBytes();
                 } catch (final ProducerException e) {
+                    releaseUnusedBytes(chunkLength);
                     mLog.exception(e, "Reader threw an exception");
                     throw new IOException(e);
                 }
+
+                if (chunkSize < chunkLength) {
+                    releaseUnusedBytes(chunkLength - chunkSize);
+                }
+
+                bytesRead += chunkSize;
+                mPendingDataSize -= chunkSize;
+
+                if (mReadResult.isEndOfStream()) {
+                    // EOS for current session
+                    mLog.info("Received end-of-stream indicator for %s, uploadHandle %d",
+                            mStreamInfo.getName(), mUploadHandle);
+
+                    // Set the flag so the stream is not valid any longer
+                    mStreamClosed = true;
+                    reportReadLatency();
+                    if (0 == bytesRead) {
+                        // Indicate the EOS
+                        mLog.debug("Closing stream %s with uploadHandle %d", mStreamInfo.getName(), mUploadHandle);
+                        return -1;
+                    }
+
+                    break;
+                }
+
+                if (chunkSize == 0 || mPendingDataSize <= 0) {
+                    // Nothing left for the notifications up to this sequence
+                    mConsumedSequence = sequence;
+                }
             }
 
-            mLog.debug("Streamed %d bytes for stream %s with uploadHandle %d", bytesRead, mStreamInfo.getName(),
-                    mUploadHandle);
+            recordReadLatency();
+            final AdaptiveRateController rateController = mRateController;
+            if (rateController != null) {
+                rateController.onBytesSent(bytesRead);
+            }
 
-            if (-1 == bytesRead) {
-                mLog.debug("Closing stream %s with uploadHandle %d", mStreamInfo.getName(), mUploadHandle);
+            if (mLog.isEnabled(LogLevel.DEBUG) && mReadLogRateLimiter.tryAcquire()) {
+                mLog.debug("Streamed %d bytes for stream %s with uploadHandle %d", bytesRead, mStreamInfo.getName(),
+                        mUploadHandle);
             }
 
             return bytesRead;
@@ -151,35 +278,144 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         {
             // Set the stream to stopped state
             mStreamClosed = true;
+            reportReadLatency();
 
             // Notify the awaiting thread
             notifyReaderThread(0, 0);
         }
 
-        protected void notifyReaderThread(final long duration, final long availableSize) {
-            // Unblock the awaiting reading code block
-            synchronized (mMonitor) {
-                mAvailableDataSize = availableSize;
-                mLog.debug("Data availability notification. Upload handle: %d, Size: %d, Duration %d ",
-                        mUploadHandle, availableSize, duration);
+        /**
+         * @return Histogram of the time from the data availability notification to the data being read out
+         */
+        @Nonnull
+        LatencyHistogram getReadLatencyHistogram() {
+            return mReadLatencyHistogram;
+        }
 
-                mDataAvailable = true;
+        protected void notifyReaderThread(final long duration, final long availableSize) {
+            mAvailableDataSize = availableSize;
+            mOldestPendingNotificationNanos.compareAndSet(0, System.nanoTime());
+
+            // Publish the notification before unblocking the awaiting reader
+            mNotificationSequence.incrementAndGet();
+            final Thread readerThread = mReaderThread;
+            if (readerThread != null) {
+                LockSupport.unpark(readerThread);
+            }
 
-                mMonitor.notify();
+            final Runnable listener = mDataAvailableListener;
+            if (listener != null) {
+                listener.run();
             }
         }
 
         protected void endOfReaderThread() {
-            // Unblock the awaiting reading code block
-            synchronized (mMonitor) {
-                mDataAvailable = true;
-                mStreamClosed = true;
-                mMonitor.notify();
+            mStreamClosed = true;
+            reportReadLatency();
+            notifyReaderThread(0, 0);
+        }
+
+        private void awaitNotification(final long sequence) {
+            if (mLog.isEnabled(LogLevel.DEBUG) && mReadLogRateLimiter.tryAcquire()) {
+                mLog.debug("no data for stream %s with uploadHandle %d, waiting", mStreamInfo.getName(),
+                        mUploadHandle);
+            }
+
+            mReaderThread = Thread.currentThread();
+            try {
+                // Re-check after publishing the reader thread so the unpark can't slip in between
+                while (mNotificationSequence.get() == sequence && !mStreamClosed) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        mLog.warn("Waiting for the data availability with uploadHandle %d was interrupted. "
+                                + "Continuing...", mUploadHandle);
+                    }
+                }
+            } finally {
+                mReaderThread = null;
+            }
+        }
+
+        private int allowedBytes(final int len, final boolean blocking) {
+            final BandwidthThrottler throttler = mUploadThrottler;
+            if (throttler == null) {
+                return len;
+            }
+
+            return blocking ? throttler.getAllowedBytes(len) : throttler.tryGetAllowedBytes(len);
+        }
+
+        private void releaseUnusedBytes(final int bytes) {
+            final BandwidthThrottler throttler = mUploadThrottler;
+            if (throttler != null) {
+                throttler.releaseUnusedBytes(bytes);
+            }
+        }
+
+        private long retryDelayNanos(final int len) {
+            final BandwidthThrottler throttler = mUploadThrottler;
+            return throttler == null ? 0 : throttler.getNanosUntilAllowed(len);
+        }
+
+        /**
+         * Logs the read latency once the upload session ends
+         */
+        private void reportReadLatency() {
+            if (mReadLatencyHistogram.getCount() > 0 && mReadLatencyReported.compareAndSet(false, true)) {
+                mLog.info("Read latency of stream %s with uploadHandle %d: %s", mStreamInfo.getName(),
+                        mUploadHandle, mReadLatencyHistogram);
+            }
+        }
+
+        private void recordReadLatency() {
+            final long notificationTime = mOldestPendingNotificationNanos.getAndSet(0);
+            if (notificationTime != 0) {
+                mReadLatencyHistogram.record(System.nanoTime() - notificationTime);
             }
         }
     }
 
     private static final int SERVICE_CALL_RESULT_OK = 200;
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+
+    /**
+     * Cap of the per frame and per read debug messages
+     */
+    private static final int DEBUG_LOGS_PER_SECOND = 50;
+
+    /**
+     * Limits the per frame debug logging
+     */
+    private final LogRateLimiter mPutFrameLogRateLimiter =
+            new LogRateLimiter(DEBUG_LOGS_PER_SECOND, 1, TimeUnit.SECONDS);
+
+    /**
+     * Adapts the upload rate if enabled
+     */
+    private volatile AdaptiveRateController mRateController;
+    private volatile AdaptiveRateController.Listener mRateListener;
+    private volatile BandwidthThrottler mUploadThrottler;
+
+    /**
+     * Spills the frames which don't fit into the content store if enabled
+     */
+    private volatile FrameSpillController mSpillController;
+
+    /**
+     * Journals the frames and the ACKs if enabled
+     */
+    private volatile FragmentJournal mFragmentJournal;
+
+    /**
+     * Limits the logging of the journal failures
+     */
+    private final LogRateLimiter mJournalLogRateLimiter = new LogRateLimiter(1, 1, TimeUnit.SECONDS);
+
+    /**
+     * Whether the sampled metrics of the stream have been requested
+     */
+    private volatile boolean mMetricsSamplingRequested;
+
     private final NativeKinesisVideoProducerJni mKinesisVideoProducerJni;
     private volatile long mStreamHandle;
     private final StreamInfo mStreamInfo;
@@ -204,16 +440,85 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         mStoppedLatch = new CountDownLatch(1);
         mLog = Preconditions.checkNotNull(log);
         mStreamMetrics = new KinesisVideoStreamMetrics();
-        mInputStreamMap = new HashMap<Long, NativeDataInputStream>();
+        mInputStreamMap = new ConcurrentHashMap<Long, NativeDataInputStream>();
+
+        if (mLog.isEnabled(LogLevel.DEBUG)) {
+            requestMetricsSampling();
+        }
     }
 
     @Override
     public InputStream getDataStream(final long uploadHandle) throws ProducerException {
         final NativeDataInputStream inputStream = new NativeDataInputStream(uploadHandle);
         mInputStreamMap.put(uploadHandle, inputStream);
+
+        final AdaptiveRateController rateController = mRateController;
+        if (rateController != null) {
+            rateController.onUploadRestarted();
+        }
+
         return inputStream;
     }
 
+    @Override
+    public void setUploadThrottler(@Nullable final BandwidthThrottler throttler) {
+        mUploadThrottler = throttler;
+    }
+
+    @Override
+    public synchronized void setUploadRateController(@Nullable final AdaptiveRateController rateController) {
+        if (mRateController != null) {
+            mRateController.removeListener(mRateListener);
+        }
+
+        mRateController = rateController;
+        if (rateController == null) {
+            mRateListener = null;
+            return;
+        }
+
+        if (mUploadThrottler == null) {
+            mUploadThrottler = new BandwidthThrottlerImpl(rateController.getBitsPerSecond());
+        }
+
+        mRateListener = new AdaptiveRateController.Listener() {
+            @Override
+            public void onRateChanged(final long uploadBitsPerSecond, final long encoderBitsPerSecond) {
+                mLog.info("Upload rate of stream %s changed to %d bps, recommended encoder bitrate %d bps",
+                        mStreamInfo.getName(), uploadBitsPerSecond, encoderBitsPerSecond);
+                final BandwidthThrottler throttler = mUploadThrottler;
+                if (throttler != null) {
+                    throttler.setUpstreamKbps(Math.max(1, uploadBitsPerSecond / BITS_IN_A_KILOBIT));
+                }
+            }
+        };
+
+        rateController.addListener(mRateListener);
+    }
+
+    @Override
+    public synchronized void setFrameSpillStore(@Nullable final FrameSpillStore spillStore, final long spillReserve) {
+        closeSpillController();
+        if (spillStore != null) {
+            Preconditions.checkState(mStreamHandle != NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE);
+            requestMetricsSampling();
+            mSpillController = new FrameSpillController(mKinesisVideoProducerJni, mStreamHandle,
+                    mStreamInfo.getName(), spillStore, spillReserve, mLog);
+        }
+    }
+
+    @Override
+    public void setFragmentJournal(@Nullable final FragmentJournal journal) {
+        mFragmentJournal = journal;
+    }
+
+    @Nullable
+    @Override
+    public LatencyHistogram getReadLatencyHistogram(final long uploadHandle) {
+        final NativeDataInputStream inputStream = mInputStreamMap.get(uploadHandle);
+        return inputStream == null ? null : inputStream.getReadLatencyHistogram();
+    }
+
     @Override
     public void getStreamData(final long uploadHandle,
                               @Nonnull final byte[] fillBuffer,
@@ -229,48 +534,151 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         Preconditions.checkNotNull(kinesisVideoFrame);
         Preconditions.checkState(mStreamHandle != NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE);
 
-        mLog.debug("PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, track: %s",
-                kinesisVideoFrame.getIndex(),
-                kinesisVideoFrame.getPresentationTs(),
-                kinesisVideoFrame.getDecodingTs(),
-                kinesisVideoFrame.getDuration(),
-                FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
-                kinesisVideoFrame.getTrackId());
-
-        // Print out metrics on every key-frame
-        if (FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags())) {
-            final KinesisVideoMetrics kinesisVideoMetrics = mKinesisVideoProducerJni.getMetrics();
-            final KinesisVideoStreamMetrics streamMetrics = getMetrics();
-            mLog.debug("Kinesis Video client and stream metrics"
-                            + "\n\t>> Overall storage size: %s"
-                            + "\n\t>> Available storage size: %s"
-                            + "\n\t>> Allocated storage size: %s"
-                            + "\n\t>> Total view allocation size: %s"
-                            + "\n\t>> Total streams frame rate: %s"
-                            + "\n\t>> Total streams transfer rate: %s"
-                            + "\n\t>> Current view duration: %s"
-                            + "\n\t>> Overall view duration: %s"
-                            + "\n\t>> Current view size: %s"
-                            + "\n\t>> Overall view size: %s"
-                            + "\n\t>> Current frame rate: %s"
-                            + "\n\t>> Current transfer rate: %s",
-                    kinesisVideoMetrics.getContentStoreSize(),
-                    kinesisVideoMetrics.getContentStoreAvailableSize(),
-                    kinesisVideoMetrics.getContentStoreAllocatedSize(),
-                    kinesisVideoMetrics.getTotalContentViewSize(),
-                    kinesisVideoMetrics.getTotalFrameRate(),
-                    kinesisVideoMetrics.getTotalTransferRate(),
-                    streamMetrics.getCurrentViewDurationInTimeUnits(),
-                    streamMetrics.getOverallViewDurationInTimeUnits(),
-                    streamMetrics.getCurrentViewSize(),
-                    streamMetrics.getOverallViewSize(),
-                    streamMetrics.getCurrentFrameRate(),
-                    streamMetrics.getCurrentTransferRate());
+        final AdaptiveRateController rateController = mRateController;
+        if (rateController != null && FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags())) {
+            rateController.onFragmentStarted();
+        }
+
+        // Avoid boxing the arguments when not logging
+        if (mLog.isEnabled(LogLevel.DEBUG) && mPutFrameLogRateLimiter.tryAcquire()) {
+            mLog.debug("PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, track: %s",
+                    kinesisVideoFrame.getIndex(),
+                    kinesisVideoFrame.getPresentationTs(),
+                    kinesisVideoFrame.getDecodingTs(),
+                    kinesisVideoFrame.getDuration(),
+                    FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
+                    kinesisVideoFrame.getTrackId());
+
+            // Print out metrics on every key-frame
+            if (FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags())) {
+                logMetrics();
+            }
+        }
+
+        journalFrame(kinesisVideoFrame);
+        final FrameSpillController spillController = mSpillController;
+        if (spillController != null) {
+            spillController.putFrame(kinesisVideoFrame);
+            return;
         }
 
         mKinesisVideoProducerJni.putFrame(mStreamHandle, kinesisVideoFrame);
     }
 
+    @Override
+    public void putFrames(@Nonnull final KinesisVideoFrame[] kinesisVideoFrames, final int offset, final int count)
+            throws ProducerException {
+        Preconditions.checkNotNull(kinesisVideoFrames);
+        Preconditions.checkArgument(offset >= 0 && count >= 0 && offset + count <= kinesisVideoFrames.length,
+                "Invalid frame batch range");
+        Preconditions.checkState(mStreamHandle != NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE);
+        if (count == 0) {
+            return;
+        }
+
+        final AdaptiveRateController rateController = mRateController;
+        if (rateController != null) {
+            for (int i = offset; i < offset + count; i++) {
+                if (FrameFlags.isKeyFrame(kinesisVideoFrames[i].getFlags())) {
+                    rateController.onFragmentStarted();
+                }
+            }
+        }
+
+        if (mLog.isEnabled(LogLevel.DEBUG) && mPutFrameLogRateLimiter.tryAcquire()) {
+            mLog.debug("PutFrames count: %s, first index: %s, last index: %s",
+                    count,
+                    kinesisVideoFrames[offset].getIndex(),
+                    kinesisVideoFrames[offset + count - 1].getIndex());
+
+            // Print out metrics once per batch with a key-frame
+            for (int i = offset; i < offset + count; i++) {
+                if (FrameFlags.isKeyFrame(kinesisVideoFrames[i].getFlags())) {
+                    logMetrics();
+                    break;
+                }
+            }
+        }
+
+        for (int i = offset; i < offset + count; i++) {
+            journalFrame(kinesisVideoFrames[i]);
+        }
+
+        final FrameSpillController spillController = mSpillController;
+        if (spillController != null) {
+            spillController.putFrames(kinesisVideoFrames, offset, count);
+            return;
+        }
+
+        mKinesisVideoProducerJni.putFrames(mStreamHandle, kinesisVideoFrames, offset, count);
+    }
+
+    private void journalFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) {
+        final FragmentJournal journal = mFragmentJournal;
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.appendFrame(kinesisVideoFrame);
+        } catch (final IOException e) {
+            // Keep streaming, the frame is only lost if the process restarts before it's persisted
+            if (mJournalLogRateLimiter.tryAcquire()) {
+                mLog.exception(e, "Failed to journal the frame of stream %s", mStreamInfo.getName());
+            }
+        }
+    }
+
+    /**
+     * Samples the metrics of the stream from now on as a consumer of them is enabled
+     */
+    private void requestMetricsSampling() {
+        if (!mMetricsSamplingRequested
+                && mStreamHandle != NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE) {
+            mMetricsSamplingRequested = true;
+            mKinesisVideoProducerJni.requestMetricsSampling(mStreamHandle);
+        }
+    }
+
+    /**
+     * Logs the latest sampled metrics. Doesn't call into the native code as it's on the frame submission path.
+     */
+    private void logMetrics() {
+        final KinesisVideoMetricsRegistry metricsRegistry = mKinesisVideoProducerJni.getMetricsRegistry();
+        final KinesisVideoMetrics kinesisVideoMetrics = metricsRegistry.getClientMetrics();
+        final KinesisVideoStreamMetrics streamMetrics = metricsRegistry.getStreamMetrics(mStreamHandle);
+        if (kinesisVideoMetrics == null || streamMetrics == null) {
+            // Not sampled yet
+            return;
+        }
+
+        mLog.debug("Kinesis Video client and stream metrics"
+                        + "\n\t>> Overall storage size: %s"
+                        + "\n\t>> Available storage size: %s"
+                        + "\n\t>> Allocated storage size: %s"
+                        + "\n\t>> Total view allocation size: %s"
+                        + "\n\t>> Total streams frame rate: %s"
+                        + "\n\t>> Total streams transfer rate: %s"
+                        + "\n\t>> Current view duration: %s"
+                        + "\n\t>> Overall view duration: %s"
+                        + "\n\t>> Current view size: %s"
+                        + "\n\t>> Overall view size: %s"
+                        + "\n\t>> Current frame rate: %s"
+                        + "\n\t>> Current transfer rate: %s",
+                kinesisVideoMetrics.getContentStoreSize(),
+                kinesisVideoMetrics.getContentStoreAvailableSize(),
+                kinesisVideoMetrics.getContentStoreAllocatedSize(),
+                kinesisVideoMetrics.getTotalContentViewSize(),
+                kinesisVideoMetrics.getTotalFrameRate(),
+                kinesisVideoMetrics.getTotalTransferRate(),
+                streamMetrics.getCurrentViewDurationInTimeUnits(),
+                streamMetrics.getOverallViewDurationInTimeUnits(),
+                streamMetrics.getCurrentViewSize(),
+                streamMetrics.getOverallViewSize(),
+                streamMetrics.getCurrentFrameRate(),
+                streamMetrics.getCurrentTransferRate());
+    }
+
     @Override
     public void putFragmentMetadata(@Nonnull final String metadataName, @Nonnull final String metadataValue, boolean persistent)
             throws ProducerException {
@@ -288,6 +696,12 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         Preconditions.checkState(mStreamHandle != NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE);
 
         mKinesisVideoProducerJni.fragmentAck(mStreamHandle, uploadHandle, kinesisVideoFragmentAck);
+
+        final AdaptiveRateController rateController = mRateController;
+        if (rateController != null
+                && kinesisVideoFragmentAck.getAckType().getIntType() == FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED) {
+            rateController.onFragmentReceived();
+        }
     }
 
     @Override
@@ -339,6 +753,27 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         return mStreamMetrics;
     }
 
+    @Override
+    public double getBufferPressure() {
+        // No pressure is reported until the first sample
+        requestMetricsSampling();
+        final KinesisVideoMetricsRegistry metricsRegistry = mKinesisVideoProducerJni.getMetricsRegistry();
+        double pressure = 0;
+        final KinesisVideoMetrics clientMetrics = metricsRegistry.getClientMetrics();
+        final long availableSize = metricsRegistry.getAvailableStorageSize();
+        if (clientMetrics != null && clientMetrics.getContentStoreSize() > 0 && availableSize >= 0) {
+            pressure = 1 - (double) availableSize / clientMetrics.getContentStoreSize();
+        }
+
+        final KinesisVideoStreamMetrics streamMetrics = metricsRegistry.getStreamMetrics(mStreamHandle);
+        if (streamMetrics != null && mStreamInfo.getBufferDuration() > 0) {
+            pressure = Math.max(pressure,
+                    (double) streamMetrics.getCurrentViewDurationInTimeUnits() / mStreamInfo.getBufferDuration());
+        }
+
+        return Math.min(1, Math.max(0, pressure));
+    }
+
     @Override
     public String getStreamName() {
         return mStreamInfo.getName();
@@ -352,9 +787,21 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void streamFreed() throws ProducerException {
         streamClosed(ReadResult.INVALID_UPLOAD_HANDLE_VALUE);
+        synchronized (this) {
+            closeSpillController();
+        }
+
         mStreamHandle = NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE;
     }
 
+    private void closeSpillController() {
+        final FrameSpillController spillController = mSpillController;
+        if (spillController != null) {
+            spillController.close();
+            mSpillController = null;
+        }
+    }
+
     @Override
     public void streamUnderflowReport() throws ProducerException
     {
@@ -366,6 +813,11 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void streamLatencyPressure(final long duration) throws ProducerException
     {
+        final AdaptiveRateController rateController = mRateController;
+        if (rateController != null) {
+            rateController.onCongestion();
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.streamLatencyPressure(duration);
         }
@@ -383,6 +835,17 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     public void fragmentAckReceived(final long uploadHandle,
                                     @Nonnull final KinesisVideoFragmentAck fragmentAck) throws ProducerException
     {
+        final FragmentJournal journal = mFragmentJournal;
+        if (journal != null) {
+            try {
+                journal.appendAck(fragmentAck);
+            } catch (final IOException e) {
+                if (mJournalLogRateLimiter.tryAcquire()) {
+                    mLog.exception(e, "Failed to journal the fragment ACK of stream %s", mStreamInfo.getName());
+                }
+            }
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.fragmentAckReceived(uploadHandle, fragmentAck);
         }
@@ -477,6 +940,11 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
 
     @Override
     public void bufferDurationOverflowPressure(final long remainDuration) throws ProducerException {
+        final AdaptiveRateController rateController = mRateController;
+        if (rateController != null) {
+            rateController.onCongestion();
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.bufferDurationOverflowPressure(remainDuration);
         }
@@ -0,0 +1,87 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks guarding the per-stream data path calls into the native producer.
+ *
+ * Calls for different streams map to different stripes with high probability so one stream's
+ * putFrame/getStreamData/ACK processing doesn't stall the others. The client lifecycle operations
+ * can still exclude the whole data path by acquiring all of the stripes.
+ */
+@ThreadSafe
+class StreamLockStripes {
+    /**
+     * Default number of the stripes. Should be a power of two.
+     */
+    static final int DEFAULT_STRIPE_COUNT = 64;
+
+    /**
+     * 64-bit golden ratio used to spread the stream handles which are aligned native pointers.
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final ReentrantLock[] mStripes;
+    private final int mShift;
+
+    StreamLockStripes() {
+        this(DEFAULT_STRIPE_COUNT);
+    }
+
+    StreamLockStripes(final int stripeCount) {
+        Preconditions.checkArgument(stripeCount > 0 && (stripeCount & (stripeCount - 1)) == 0,
+                "Stripe count should be a positive power of two");
+        mStripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            mStripes[i] = new ReentrantLock();
+        }
+
+        mShift = Long.SIZE - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    /**
+     * Returns the lock guarding the specified stream.
+     *
+     * @param streamHandle the handle of the stream
+     * @return lock for the stream
+     */
+    @Nonnull
+    Lock lockFor(final long streamHandle) {
+        return mStripes[indexFor(streamHandle)];
+    }
+
+    /**
+     * Acquires all of the stripes in order. Used by the lifecycle operations which tear down the client.
+     */
+    void lockAll() {
+        for (final ReentrantLock stripe : mStripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Releases all of the stripes acquired by {@link #lockAll()}.
+     */
+    void unlockAll() {
+        for (int i = mStripes.length - 1; i >= 0; i--) {
+            mStripes[i].unlock();
+        }
+    }
+
+    int getStripeCount() {
+        return mStripes.length;
+    }
+
+    private int indexFor(final long streamHandle) {
+        if (mStripes.length == 1) {
+            return 0;
+        }
+
+        return (int) ((streamHandle * HASH_MULTIPLIER) >>> mShift);
+    }
+}
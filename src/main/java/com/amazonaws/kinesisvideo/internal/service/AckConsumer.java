@@ -5,20 +5,19 @@ import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
 import com.amazonaws.kinesisvideo.internal.producer.jni.NativeKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
 import com.amazonaws.kinesisvideo.producer.ProducerException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 class AckConsumer implements Consumer<InputStream> {
     private static final long STOPPED_TIMEOUT_IN_MILLISECONDS = 15000;
     private static final int FOUR_KB = 4096;
-    private static final String END_OF_STREAM_MSG = "0\r\n\r\n";
     private final KinesisVideoProducerStream stream;
     private InputStream ackStream = null;
     private final CountDownLatch stoppedLatch;
@@ -52,6 +51,7 @@ class AckConsumer implements Consumer<InputStream> {
         Preconditions.checkNotNull(stream);
 
         final byte[] buffer = new byte[FOUR_KB];
+        final FragmentAckParser ackParser = new FragmentAckParser();
         int bytesRead;
         log.info("Starting ACK processing");
         try {
@@ -59,24 +59,27 @@ class AckConsumer implements Consumer<InputStream> {
                 // This is a blocking operation
                 bytesRead = ackStream.read(buffer);
 
-                String bytesString = null;
-                if (bytesRead > 0) {
-                    bytesString = new String(buffer, 0, bytesRead, StandardCharsets.UTF_8);
-                }
-
                 // Check for end-of-stream and 0 before processing
                 if (stream.getStreamHandle() == NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE
-                        || bytesRead <= 0 || END_OF_STREAM_MSG.equals(bytesString)) {
+                        || bytesRead <= 0) {
                     // End-of-stream
                     log.debug("Received end-of-stream for ACKs.");
                     closed = true;
-                } else if (bytesRead != 0) {
-                    log.debug("Received ACK bits: " + bytesString);
-                    try {
-                        stream.parseFragmentAck(uploadHandle, bytesString);
-                    } catch (final ProducerException e) {
-                        // Log the exception
-                        log.exception(e, "Processing ACK threw an exception. Logging and continuing. ");
+                } else {
+                    ackParser.feed(buffer, 0, bytesRead);
+                    KinesisVideoFragmentAck fragmentAck;
+                    while ((fragmentAck = ackParser.nextAck()) != null) {
+                        try {
+                            stream.fragmentAck(uploadHandle, fragmentAck);
+                        } catch (final ProducerException e) {
+                            // Log the exception
+                            log.exception(e, "Processing ACK threw an exception. Logging and continuing. ");
+                        }
+                    }
+
+                    if (ackParser.isEndOfStream()) {
+                        log.debug("Received end-of-stream for ACKs.");
+                        closed = true;
                     }
                 }
             }
@@ -3,7 +3,7 @@ package com.amazonaws.kinesisvideo.internal.service;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
-import com.amazonaws.kinesisvideo.encoding.ChunkDecoder;
+import com.amazonaws.kinesisvideo.encoding.HttpResponseParser;
 import com.amazonaws.kinesisvideo.model.ResponseStatus;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
 import com.amazonaws.kinesisvideo.internal.service.exception.AccessDeniedException;
@@ -43,25 +43,13 @@ class BlockingAckConsumer implements Consumer<InputStream> {
         checkNotNull(inputStream);
 
         // Await for the header
+        InputStream bodyStream = inputStream;
         try {
-            final ResponseStatus responseStatus = ChunkDecoder.readStatusLine(inputStream);
-            final int responseCode = responseStatus.getStatusCode();
-            switch (responseCode) {
-                case HTTP_OK:
-                    log.debug(String.format("PutMedia call for stream %s return OK with request id %s",
-                            kinesisVideoProducerStream.getStreamName(), ChunkDecoder.decodeHeaders(inputStream)));
-                    break;
-                case HTTP_BAD_REQUEST:
-                    throw new AmazonServiceException("PutMedia call returned bad request: "
-                            + responseStatus.getReason());
-                case HTTP_NOT_FOUND:
-                    throw new ResourceNotFoundException("Resource not found: " + responseStatus.getReason());
-                case HTTP_ACCESS_DENIED:
-                    throw new AccessDeniedException("Access is denied: " + responseStatus.getReason());
-                default:
-                    throw new AmazonServiceException("PutMedia call returned status code " + responseCode +
-                            " with reason: " + responseStatus.getReason());
-            }
+            final HttpResponseParser responseParser = new HttpResponseParser();
+            bodyStream = responseParser.parseHead(inputStream);
+            checkResponseStatus(responseParser.getResponseStatus());
+            log.debug("PutMedia call for stream %s return OK with request id %s",
+                    kinesisVideoProducerStream.getStreamName(), responseParser.getHeaders());
         } catch (final Exception e) {
             // Store the exception
             storedException = e;
@@ -72,7 +60,28 @@ class BlockingAckConsumer implements Consumer<InputStream> {
 
         // Forward to the origin if no exceptions have been thrown
         if (storedException == null) {
-            inputStreamConsumer.accept(inputStream);
+            inputStreamConsumer.accept(bodyStream);
+        }
+    }
+
+    /**
+     * Throws the exception matching the PutMedia response status if it's not OK.
+     */
+    static void checkResponseStatus(@Nonnull final ResponseStatus responseStatus) {
+        final int responseCode = responseStatus.getStatusCode();
+        switch (responseCode) {
+            case HTTP_OK:
+                break;
+            case HTTP_BAD_REQUEST:
+                throw new AmazonServiceException("PutMedia call returned bad request: "
+                        + responseStatus.getReason());
+            case HTTP_NOT_FOUND:
+                throw new ResourceNotFoundException("Resource not found: " + responseStatus.getReason());
+            case HTTP_ACCESS_DENIED:
+                throw new AccessDeniedException("Access is denied: " + responseStatus.getReason());
+            default:
+                throw new AmazonServiceException("PutMedia call returned status code " + responseCode +
+                        " with reason: " + responseStatus.getReason());
         }
     }
 
@@ -8,6 +8,8 @@ import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.http.NioEventLoopGroup;
+import com.amazonaws.kinesisvideo.http.PollableInputStream;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducer;
 import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
 import com.amazonaws.kinesisvideo.producer.ProducerException;
@@ -17,6 +19,7 @@ import com.amazonaws.kinesisvideo.producer.Tag;
 import com.amazonaws.kinesisvideo.producer.Time;
 import com.amazonaws.kinesisvideo.internal.producer.client.KinesisVideoServiceClient;
 import com.amazonaws.kinesisvideo.internal.producer.jni.NativeKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.util.VirtualThreads;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -25,8 +28,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation of {@link ServiceCallbacks}
@@ -40,6 +46,9 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
     private static final String RESOURCE_NOT_FOUND = "ResourceNotFoundException";
     private static final String RESOURCE_IN_USE = "ResourceInUseException";
     private static final String ACCESS_DENIED = "AccessDeniedException";
+    private static final String SERVICE_TASK_THREAD_PREFIX = "KinesisVideo-ServiceTask-";
+    private static final String CONTROL_PLANE_THREAD_PREFIX = "KinesisVideo-ControlPlane-";
+    private static final String DATA_PLANE_THREAD_PREFIX = "KinesisVideo-DataPlane-";
 
     private class CompletionCallback implements Consumer<Exception> {
         private final KinesisVideoProducerStream stream;
@@ -101,9 +110,9 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
     }
 
     /**
-     * Task executor to schedule long-running tasks in an async way.
+     * Task scheduler to run long-running tasks in an async way.
      */
-    private final ScheduledExecutorService executor;
+    private final ServiceTaskScheduler taskScheduler;
 
     /**
      * Kinesis video service client to make the service calls with.
@@ -120,6 +129,11 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
      */
     private final KinesisVideoClientConfiguration configuration;
 
+    /**
+     * Event loops multiplexing the PutMedia connections or null if the blocking transport is used
+     */
+    private final NioEventLoopGroup nioEventLoopGroup;
+
     /**
      * Implementation of the {@link KinesisVideoProducer} object.
      */
@@ -135,23 +149,130 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
      */
     private long uploadHandle;
 
+    /**
+     * Number of the callbacks sharing the task scheduler, the event loops and the service client, the last one to be
+     * freed releases them
+     */
+    private final AtomicInteger sharedResourceReferences;
+
+    /**
+     * Whether the shared resources were created by other callbacks, see {@link #createShardCallbacks()}
+     */
+    private final boolean sharingResources;
+
+    private boolean freed;
+
     public DefaultServiceCallbacksImpl(
             @Nonnull final Log log,
             @Nonnull final ScheduledExecutorService executor,
             @Nonnull final KinesisVideoClientConfiguration configuration,
             @Nonnull final KinesisVideoServiceClient kinesisVideoServiceClient) {
-        this.executor = Preconditions.checkNotNull(executor);
+        Preconditions.checkNotNull(executor);
         this.kinesisVideoServiceClient = Preconditions.checkNotNull(kinesisVideoServiceClient);
         this.log = Preconditions.checkNotNull(log);
         this.configuration = Preconditions.checkNotNull(configuration);
 
         this.uploadHandle = 0;
+        this.nioEventLoopGroup = createNioEventLoopGroup(configuration, log);
+        this.taskScheduler = new ServiceTaskScheduler(executor,
+                createLaneExecutor(configuration.getControlPlaneThreads(), CONTROL_PLANE_THREAD_PREFIX,
+                        configuration, log),
+                createLaneExecutor(configuration.getDataPlaneThreads(), DATA_PLANE_THREAD_PREFIX,
+                        configuration, log),
+                log);
 
         try {
             this.kinesisVideoServiceClient.initialize(configuration);
         } catch (final KinesisVideoException e) {
             log.exception(e);
         }
+
+        this.sharedResourceReferences = new AtomicInteger(1);
+        this.sharingResources = false;
+    }
+
+    private DefaultServiceCallbacksImpl(@Nonnull final DefaultServiceCallbacksImpl resourceOwner) {
+        this.kinesisVideoServiceClient = resourceOwner.kinesisVideoServiceClient;
+        this.log = resourceOwner.log;
+        this.configuration = resourceOwner.configuration;
+        this.uploadHandle = 0;
+        this.nioEventLoopGroup = resourceOwner.nioEventLoopGroup;
+        this.taskScheduler = resourceOwner.taskScheduler;
+        this.sharedResourceReferences = resourceOwner.sharedResourceReferences;
+        this.sharingResources = true;
+    }
+
+    /**
+     * Creates the callbacks of another producer shard. They share the task scheduler lanes, the event loops and the
+     * service client of these callbacks so the shards don't multiply the threads.
+     *
+     * @return uninitialized callbacks for the native producer of the shard
+     */
+    @Nonnull
+    public DefaultServiceCallbacksImpl createShardCallbacks() {
+        Preconditions.checkState(sharedResourceReferences.getAndIncrement() > 0,
+                "Service callbacks object has already been freed");
+        return new DefaultServiceCallbacksImpl(this);
+    }
+
+    /**
+     * @return whether the service task lanes of these callbacks are reported by the callbacks they were created from
+     */
+    public boolean isSharingResources() {
+        return sharingResources;
+    }
+
+    /**
+     * Creates the executor of a service task lane
+     *
+     * @param threadCount number of the lane threads, 0 to run the lane tasks on the scheduled pool
+     * @param threadNamePrefix name prefix of the lane threads
+     * @return virtual thread per task executor if enabled, otherwise a dedicated scheduled pool of daemon threads or
+     * null if the thread count is 0
+     */
+    @Nullable
+    private static ExecutorService createLaneExecutor(final int threadCount,
+                                                      @Nonnull final String threadNamePrefix,
+                                                      @Nonnull final KinesisVideoClientConfiguration configuration,
+                                                      @Nonnull final Log log) {
+        if (configuration.isVirtualThreadsEnabled()) {
+            try {
+                return VirtualThreads.newThreadPerTaskExecutor(SERVICE_TASK_THREAD_PREFIX);
+            } catch (final UnsupportedOperationException e) {
+                log.warn("Virtual threads are not supported by the runtime. Running the service tasks on the "
+                        + "platform threads.");
+            }
+        }
+
+        if (threadCount <= 0) {
+            return null;
+        }
+
+        // Daemon threads so an idle client doesn't keep the JVM alive
+        final AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newScheduledThreadPool(threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, threadNamePrefix + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Nullable
+    private static NioEventLoopGroup createNioEventLoopGroup(@Nonnull final KinesisVideoClientConfiguration configuration,
+                                                             @Nonnull final Log log) {
+        if (configuration.getNioEventLoopThreads() <= 0) {
+            return null;
+        }
+
+        try {
+            return new NioEventLoopGroup(configuration.getNioEventLoopThreads(), log);
+        } catch (final IOException e) {
+            log.exception(e, "Unable to start the event loops. Falling back to the blocking transport.");
+            return null;
+        }
     }
 
     /**
@@ -220,7 +341,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleControlPlane(task, delay);
     }
 
     @Override
@@ -263,7 +384,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleControlPlane(task, delay);
     }
 
     @Override
@@ -310,7 +431,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleControlPlane(task, delay);
     }
 
     @Override
@@ -377,7 +498,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleControlPlane(task, delay);
     }
 
     @Override
@@ -416,27 +537,13 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
 
                 try {
                     final InputStream dataStream = kinesisVideoProducerStream.getDataStream(clientUploadHandle);
-                    final AckConsumer ackConsumer = new AckConsumer(clientUploadHandle, kinesisVideoProducerStream, log);
-                    final BlockingAckConsumer blockingAckConsumer = new BlockingAckConsumer(ackConsumer, log,
-                            kinesisVideoProducerStream);
-                    final CompletionCallback completionCallback = new CompletionCallback(kinesisVideoProducerStream,
-                            clientUploadHandle);
-
-                    // This will kick-off a long running operation
-                    kinesisVideoServiceClient.putMedia(streamName,
-                            containerType,
-                            streamStartTimeInMillis,
-                            absoluteFragmentTimes,
-                            ackRequired,
-                            dataEndpoint,
-                            timeoutInMillis,
-                            credentialsProvider,
-                            dataStream,
-                            blockingAckConsumer,
-                            completionCallback);
-
-                    // Block until we parse the headers
-                    blockingAckConsumer.awaitResponse();
+                    if (nioEventLoopGroup != null && dataStream instanceof PollableInputStream) {
+                        putMediaNonBlocking((PollableInputStream) dataStream, clientUploadHandle,
+                                credentialsProvider, timeoutInMillis, streamStartTimeInMillis);
+                    } else {
+                        putMediaBlocking(dataStream, clientUploadHandle,
+                                credentialsProvider, timeoutInMillis, streamStartTimeInMillis);
+                    }
                 } catch (final KinesisVideoException e) {
                     statusCode = getStatusCodeFromException(e);
                     log.error("Kinesis Video service client returned an error " + e.getMessage() + ". Reporting to Kinesis Video PIC.");
@@ -449,9 +556,71 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                     throw new RuntimeException(e);
                 }
             }
+
+            private void putMediaBlocking(final InputStream dataStream,
+                                          final long clientUploadHandle,
+                                          final KinesisVideoCredentialsProvider credentialsProvider,
+                                          final long timeoutInMillis,
+                                          final long streamStartTimeInMillis) throws KinesisVideoException {
+                final AckConsumer ackConsumer = new AckConsumer(clientUploadHandle, kinesisVideoProducerStream, log);
+                final BlockingAckConsumer blockingAckConsumer = new BlockingAckConsumer(ackConsumer, log,
+                        kinesisVideoProducerStream);
+                final CompletionCallback completionCallback = new CompletionCallback(kinesisVideoProducerStream,
+                        clientUploadHandle);
+
+                // This will kick-off a long running operation
+                kinesisVideoServiceClient.putMedia(streamName,
+                        containerType,
+                        streamStartTimeInMillis,
+                        absoluteFragmentTimes,
+                        ackRequired,
+                        dataEndpoint,
+                        timeoutInMillis,
+                        credentialsProvider,
+                        dataStream,
+                        blockingAckConsumer,
+                        completionCallback);
+
+                // Block until we parse the headers
+                blockingAckConsumer.awaitResponse();
+            }
+
+            private void putMediaNonBlocking(final PollableInputStream dataStream,
+                                             final long clientUploadHandle,
+                                             final KinesisVideoCredentialsProvider credentialsProvider,
+                                             final long timeoutInMillis,
+                                             final long streamStartTimeInMillis) throws KinesisVideoException {
+                final NonBlockingAckHandler ackHandler = new NonBlockingAckHandler(clientUploadHandle,
+                        kinesisVideoProducerStream, log);
+                final CompletionCallback completionCallback = new CompletionCallback(kinesisVideoProducerStream,
+                        clientUploadHandle);
+
+                // This will kick-off a long running operation on the event loop
+                kinesisVideoServiceClient.putMedia(streamName,
+                        containerType,
+                        streamStartTimeInMillis,
+                        absoluteFragmentTimes,
+                        ackRequired,
+                        dataEndpoint,
+                        timeoutInMillis,
+                        credentialsProvider,
+                        dataStream,
+                        ackHandler,
+                        new Consumer<Exception>() {
+                            @Override
+                            public void accept(@Nullable final Exception exception) {
+                                ackHandler.onCompletion(exception);
+                                completionCallback.accept(exception);
+                            }
+                        },
+                        nioEventLoopGroup);
+
+                // Block until we parse the headers
+                ackHandler.awaitResponse();
+            }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleDataPlane(task, delay);
     }
 
     @Override
@@ -506,7 +675,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleControlPlane(task, delay);
     }
 
     @Override
@@ -536,7 +705,7 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
             }
         };
 
-        executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+        taskScheduler.scheduleControlPlane(task, delay);
     }
 
     @Override
@@ -553,6 +722,26 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         kinesisVideoProducer.deviceCertToTokenResult(customData, null, 0, HTTP_BAD_REQUEST);
     }
 
+    /**
+     * @return scheduling metrics of the control plane calls
+     */
+    @Nonnull
+    public ServiceTaskLaneMetrics getControlPlaneMetrics() {
+        return taskScheduler.getControlPlaneMetrics();
+    }
+
+    /**
+     * @return scheduling metrics of the PutMedia upload tasks
+     */
+    @Nonnull
+    public ServiceTaskLaneMetrics getDataPlaneMetrics() {
+        return taskScheduler.getDataPlaneMetrics();
+    }
+
+    /**
+     * Stops the streams of the producer. The shared resources are released once the callbacks of all the producer
+     * shards are freed.
+     */
     @Override
     public synchronized void free() {
         for (final StreamingInfo streamingInfo : mStreams) {
@@ -561,8 +750,23 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         }
 
         mStreams.clear();
+        if (freed) {
+            return;
+        }
+
+        freed = true;
+        if (sharedResourceReferences.decrementAndGet() > 0) {
+            return;
+        }
+
+        log.info("Service task scheduling: %s; %s", taskScheduler.getControlPlaneMetrics(),
+                taskScheduler.getDataPlaneMetrics());
+        this.taskScheduler.shutdownNow();
+        if (nioEventLoopGroup != null) {
+            nioEventLoopGroup.shutdown();
+        }
 
-        this.executor.shutdownNow();
+        kinesisVideoServiceClient.free();
     }
 
     @Override
@@ -0,0 +1,414 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Incremental parser of the PutMedia ACK stream.
+ *
+ * Works on the raw bytes of the chunk encoded response body. The ACK JSON objects are extracted from the stream and
+ * everything outside of them, i.e. the chunk framing, is skipped the same way as the native ACK parser does. The
+ * objects can be split across the reads in any way.
+ *
+ * The returned ACK is reused by the parser so it's only valid until the next call to {@link #nextAck()}. This is fine
+ * for handing the ACK to the native producer as it's copied into the native structure synchronously.
+ *
+ * Typical usage:
+ * <pre>
+ *     parser.feed(buffer, 0, bytesRead);
+ *     while ((ack = parser.nextAck()) != null) {
+ *         stream.fragmentAck(uploadHandle, ack);
+ *     }
+ * </pre>
+ */
+@NotThreadSafe
+public class FragmentAckParser {
+    /**
+     * Initial size of the ACK object buffer. ACKs are normally around 150 bytes.
+     */
+    private static final int INITIAL_OBJECT_BUFFER_SIZE = 512;
+
+    /**
+     * Objects larger than this are not ACKs and are dropped
+     */
+    private static final int MAX_OBJECT_SIZE = 64 * 1024;
+
+    private static final byte[] EVENT_TYPE_KEY = ascii("EventType");
+    private static final byte[] FRAGMENT_TIMECODE_KEY = ascii("FragmentTimecode");
+    private static final byte[] FRAGMENT_NUMBER_KEY = ascii("FragmentNumber");
+    private static final byte[] ERROR_ID_KEY = ascii("ErrorId");
+
+    private static final byte[] BUFFERING = ascii("BUFFERING");
+    private static final byte[] RECEIVED = ascii("RECEIVED");
+    private static final byte[] PERSISTED = ascii("PERSISTED");
+    private static final byte[] ERROR = ascii("ERROR");
+    private static final byte[] IDLE = ascii("IDLE");
+
+    private static final FragmentAckType[] ACK_TYPES = {
+            new FragmentAckType(FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED),
+            new FragmentAckType(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING),
+            new FragmentAckType(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED),
+            new FragmentAckType(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED),
+            new FragmentAckType(FragmentAckType.FRAGMENT_ACK_TYPE_ERROR),
+            new FragmentAckType(FragmentAckType.FRAGMENT_ACK_TYPE_IDLE),
+    };
+
+    private static final String NO_SEQUENCE_NUMBER = "";
+
+    private final ReusableFragmentAck mFragmentAck = new ReusableFragmentAck();
+
+    // Current input
+    private byte[] mInput;
+    private int mInputPosition;
+    private int mInputLimit;
+
+    // Object extraction state
+    private byte[] mObject = new byte[INITIAL_OBJECT_BUFFER_SIZE];
+    private int mObjectSize;
+    private int mObjectDepth;
+    private boolean mInString;
+    private boolean mEscaped;
+    private boolean mDroppingObject;
+
+    // End-of-stream detection outside of the objects - the terminating chunk size line is "0"
+    private int mLineLength;
+    private boolean mLineIsZero;
+    private boolean mEndOfStream;
+
+    // Parsed field state
+    private int mAckType;
+    private long mTimestamp;
+    private String mSequenceNumber;
+    private int mResult;
+
+    /**
+     * Sets the next portion of the input. The previous input should have been fully consumed by calling
+     * {@link #nextAck()} until it returns null. The bytes are not copied so the buffer can't be modified
+     * until then.
+     */
+    public void feed(@Nonnull final byte[] buffer, final int offset, final int length) {
+        checkNotNull(buffer);
+        checkState(mInputPosition >= mInputLimit, "Previous input has not been consumed");
+        mInput = buffer;
+        mInputPosition = offset;
+        mInputLimit = offset + length;
+    }
+
+    /**
+     * Parses the input until the next ACK is complete.
+     *
+     * @return the parsed ACK which is valid until the next call or null if the input has been consumed
+     */
+    @Nullable
+    public KinesisVideoFragmentAck nextAck() {
+        while (mInputPosition < mInputLimit) {
+            final byte b = mInput[mInputPosition++];
+            if (mObjectDepth == 0) {
+                if (b == '{') {
+                    startObject();
+                } else {
+                    trackLine(b);
+                }
+            } else if (appendToObject(b) && parseObject()) {
+                return mFragmentAck;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return whether the terminating chunk has been seen
+     */
+    public boolean isEndOfStream() {
+        return mEndOfStream;
+    }
+
+    private void trackLine(final byte b) {
+        if (b == '\n') {
+            if (mLineLength == 1 && mLineIsZero) {
+                mEndOfStream = true;
+            }
+
+            mLineLength = 0;
+            mLineIsZero = false;
+        } else if (b != '\r') {
+            mLineIsZero = mLineLength == 0 && b == '0';
+            mLineLength++;
+        }
+    }
+
+    private void startObject() {
+        mObjectDepth = 1;
+        mObjectSize = 0;
+        mInString = false;
+        mEscaped = false;
+        mDroppingObject = false;
+        mLineLength = 0;
+        mLineIsZero = false;
+        append((byte) '{');
+    }
+
+    /**
+     * @return whether the top level object has been completed
+     */
+    private boolean appendToObject(final byte b) {
+        append(b);
+        if (mInString) {
+            if (mEscaped) {
+                mEscaped = false;
+            } else if (b == '\\') {
+                mEscaped = true;
+            } else if (b == '"') {
+                mInString = false;
+            }
+        } else if (b == '"') {
+            mInString = true;
+        } else if (b == '{' || b == '[') {
+            mObjectDepth++;
+        } else if (b == '}' || b == ']') {
+            mObjectDepth--;
+        }
+
+        return mObjectDepth == 0 && !mDroppingObject;
+    }
+
+    private void append(final byte b) {
+        if (mDroppingObject) {
+            return;
+        }
+
+        if (mObjectSize == mObject.length) {
+            if (mObject.length >= MAX_OBJECT_SIZE) {
+                mDroppingObject = true;
+                return;
+            }
+
+            mObject = Arrays.copyOf(mObject, Math.min(mObject.length * 2, MAX_OBJECT_SIZE));
+        }
+
+        mObject[mObjectSize++] = b;
+    }
+
+    /**
+     * Parses the flat ACK object accumulated in the object buffer.
+     *
+     * @return whether the object is a valid ACK
+     */
+    private boolean parseObject() {
+        mAckType = FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED;
+        mTimestamp = 0;
+        mSequenceNumber = NO_SEQUENCE_NUMBER;
+        mResult = 0;
+
+        final byte[] object = mObject;
+        final int end = mObjectSize - 1;
+        int position = 1;
+        while (position < end) {
+            position = skipWhitespace(object, position, end);
+            if (position >= end || object[position] != '"') {
+                // Separator or malformed content - skip it
+                position++;
+                continue;
+            }
+
+            final int keyStart = position + 1;
+            final int keyEnd = skipString(object, position, end);
+            position = skipWhitespace(object, keyEnd + 1, end);
+            if (position >= end || object[position] != ':') {
+                continue;
+            }
+
+            position = skipWhitespace(object, position + 1, end);
+            if (position >= end) {
+                break;
+            }
+
+            final int valueStart;
+            final int valueEnd;
+            if (object[position] == '"') {
+                valueStart = position + 1;
+                valueEnd = skipString(object, position, end);
+                position = valueEnd + 1;
+            } else {
+                valueStart = position;
+                position = skipValue(object, position, end);
+                valueEnd = position;
+            }
+
+            setField(object, keyStart, keyEnd, valueStart, valueEnd);
+        }
+
+        if (mAckType == FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED) {
+            return false;
+        }
+
+        mFragmentAck.set(ACK_TYPES[mAckType], mTimestamp, mSequenceNumber, mResult);
+        return true;
+    }
+
+    private void setField(final byte[] object, final int keyStart, final int keyEnd,
+                          final int valueStart, final int valueEnd) {
+        if (regionEquals(object, keyStart, keyEnd, EVENT_TYPE_KEY)) {
+            mAckType = parseAckType(object, valueStart, valueEnd);
+        } else if (regionEquals(object, keyStart, keyEnd, FRAGMENT_TIMECODE_KEY)) {
+            mTimestamp = parseLong(object, valueStart, valueEnd);
+        } else if (regionEquals(object, keyStart, keyEnd, FRAGMENT_NUMBER_KEY)) {
+            mSequenceNumber = new String(object, valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII);
+        } else if (regionEquals(object, keyStart, keyEnd, ERROR_ID_KEY)) {
+            mResult = (int) parseLong(object, valueStart, valueEnd);
+        }
+    }
+
+    private static int parseAckType(final byte[] object, final int start, final int end) {
+        if (regionEquals(object, start, end, BUFFERING)) {
+            return FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING;
+        } else if (regionEquals(object, start, end, RECEIVED)) {
+            return FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED;
+        } else if (regionEquals(object, start, end, PERSISTED)) {
+            return FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED;
+        } else if (regionEquals(object, start, end, ERROR)) {
+            return FragmentAckType.FRAGMENT_ACK_TYPE_ERROR;
+        } else if (regionEquals(object, start, end, IDLE)) {
+            return FragmentAckType.FRAGMENT_ACK_TYPE_IDLE;
+        }
+
+        return FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED;
+    }
+
+    private static long parseLong(final byte[] object, final int start, final int end) {
+        int position = start;
+        final boolean negative = position < end && object[position] == '-';
+        if (negative) {
+            position++;
+        }
+
+        long value = 0;
+        while (position < end && object[position] >= '0' && object[position] <= '9') {
+            value = value * 10 + (object[position++] - '0');
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return position of the closing quote of the string starting at the specified position or the end
+     */
+    private static int skipString(final byte[] object, final int start, final int end) {
+        int position = start + 1;
+        while (position < end && object[position] != '"') {
+            position += object[position] == '\\' ? 2 : 1;
+        }
+
+        return Math.min(position, end);
+    }
+
+    /**
+     * @return position right after the non-string value starting at the specified position
+     */
+    private static int skipValue(final byte[] object, final int start, final int end) {
+        int position = start;
+        int depth = 0;
+        while (position < end) {
+            final byte b = object[position];
+            if (b == '"') {
+                position = skipString(object, position, end);
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            } else if (depth == 0 && (b == ',' || isWhitespace(b))) {
+                break;
+            }
+
+            position++;
+        }
+
+        return position;
+    }
+
+    private static int skipWhitespace(final byte[] object, final int start, final int end) {
+        int position = start;
+        while (position < end && isWhitespace(object[position])) {
+            position++;
+        }
+
+        return position;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean regionEquals(final byte[] object, final int start, final int end, final byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            if (object[start + i] != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Fragment ACK which is reused for all of the ACKs parsed from the stream. The native layer reads the ACK
+     * through the accessors so overriding them is enough.
+     */
+    private static final class ReusableFragmentAck extends KinesisVideoFragmentAck {
+        private FragmentAckType mAckType = ACK_TYPES[FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED];
+        private long mTimestamp;
+        private String mSequenceNumber = NO_SEQUENCE_NUMBER;
+        private int mResult;
+
+        ReusableFragmentAck() {
+            super(FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED, 0, NO_SEQUENCE_NUMBER, 0);
+        }
+
+        void set(@Nonnull final FragmentAckType ackType, final long timestamp, @Nonnull final String sequenceNumber,
+                 final int result) {
+            mAckType = ackType;
+            mTimestamp = timestamp;
+            mSequenceNumber = sequenceNumber;
+            mResult = result;
+        }
+
+        @Nonnull
+        @Override
+        public FragmentAckType getAckType() {
+            return mAckType;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        @Nonnull
+        @Override
+        public String getSequenceNumber() {
+            return mSequenceNumber;
+        }
+
+        @Override
+        public int getResult() {
+            return mResult;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.encoding.HttpResponseParser;
+import com.amazonaws.kinesisvideo.http.NonBlockingResponseHandler;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.internal.producer.jni.NativeKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Non-blocking counterpart of the {@link BlockingAckConsumer} and {@link AckConsumer} pair for the PutMedia
+ * calls made with the {@link com.amazonaws.kinesisvideo.http.NioHttpClient}.
+ *
+ * Accumulates the response status line and headers, releases the thread awaiting the response and then feeds the
+ * ACK stream into the {@link FragmentAckParser}. Runs on the event loop thread.
+ */
+class NonBlockingAckHandler implements NonBlockingResponseHandler {
+    private static final long RESPONSE_TIMEOUT_IN_MILLISECONDS = 10000;
+
+    private final long uploadHandle;
+    private final KinesisVideoProducerStream stream;
+    private final Log log;
+    private final CountDownLatch responseLatch = new CountDownLatch(1);
+    private final FragmentAckParser ackParser = new FragmentAckParser();
+    private final HttpResponseParser responseParser = new HttpResponseParser();
+    private final byte[] bodyBuffer = new byte[4096];
+    private boolean headersReceived = false;
+    private volatile Exception storedException;
+
+    NonBlockingAckHandler(final long uploadHandle,
+                          @Nonnull final KinesisVideoProducerStream stream,
+                          @Nonnull final Log log) {
+        this.uploadHandle = uploadHandle;
+        this.stream = checkNotNull(stream);
+        this.log = checkNotNull(log);
+    }
+
+    @Override
+    public boolean onResponseData(@Nonnull final ByteBuffer data) {
+        if (!headersReceived && !receiveHeaders(data)) {
+            return storedException == null;
+        }
+
+        if (storedException != null) {
+            // Error response - nothing to process
+            return false;
+        }
+
+        return processAcks(data);
+    }
+
+    /**
+     * Parses the status line and the headers
+     *
+     * @return whether all of the headers have been received
+     */
+    private boolean receiveHeaders(final ByteBuffer data) {
+        try {
+            responseParser.parse(data);
+        } catch (final RuntimeException e) {
+            completeResponse(new KinesisVideoException(e));
+            return false;
+        }
+
+        if (!responseParser.isHeadersComplete()) {
+            return false;
+        }
+
+        headersReceived = true;
+        try {
+            BlockingAckConsumer.checkResponseStatus(responseParser.getResponseStatus());
+            log.debug("PutMedia call for stream %s return OK with request id %s",
+                    stream.getStreamName(), responseParser.getHeaders());
+            completeResponse(null);
+        } catch (final Exception e) {
+            completeResponse(e);
+        }
+
+        return true;
+    }
+
+    private void completeResponse(final Exception exception) {
+        storedException = exception;
+        responseLatch.countDown();
+    }
+
+    /**
+     * @return whether more ACKs are expected
+     */
+    private boolean processAcks(final ByteBuffer data) {
+        if (stream.getStreamHandle() == NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE) {
+            log.debug("Stream has been freed. Stopping ACK processing.");
+            return false;
+        }
+
+        while (data.hasRemaining()) {
+            final int length = Math.min(data.remaining(), bodyBuffer.length);
+            data.get(bodyBuffer, 0, length);
+            ackParser.feed(bodyBuffer, 0, length);
+
+            KinesisVideoFragmentAck fragmentAck;
+            while ((fragmentAck = ackParser.nextAck()) != null) {
+                try {
+                    stream.fragmentAck(uploadHandle, fragmentAck);
+                } catch (final ProducerException e) {
+                    // Log the exception
+                    log.exception(e, "Processing ACK threw an exception. Logging and continuing. ");
+                }
+            }
+        }
+
+        if (ackParser.isEndOfStream()) {
+            log.debug("Received end-of-stream for ACKs.");
+            return false;
+        }
+
+        return true;
+    }
+
+    public void awaitResponse() throws KinesisVideoException {
+        // Block until the headers are received or timed out.
+        try {
+            if (!responseLatch.await(RESPONSE_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                throw new KinesisVideoException("Getting PutMedia Response timed out");
+            }
+        } catch (final InterruptedException e) {
+            throw new KinesisVideoException(e);
+        }
+
+        final Exception exception = storedException;
+        if (exception != null) {
+            if (exception instanceof KinesisVideoException) {
+                throw (KinesisVideoException) exception;
+            } else {
+                throw new KinesisVideoException(exception);
+            }
+        }
+    }
+
+    /**
+     * Releases the thread awaiting the response if the connection fails before the headers are received.
+     */
+    void onCompletion(final Exception exception) {
+        if (responseLatch.getCount() > 0) {
+            completeResponse(exception != null ? exception
+                    : new KinesisVideoException("PutMedia connection closed before the response"));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs one class of the service tasks after the requested delay and keeps track of how long the tasks wait for
+ * a thread once they are due.
+ *
+ * Without a task executor the tasks run on the shared scheduled pool. A scheduled task executor, i.e. a dedicated
+ * pool of the lane, keeps its own timers so the lane doesn't depend on the shared pool at all. With any other task
+ * executor, i.e. a virtual thread per task executor, the shared pool only keeps the timers and the due tasks are
+ * handed over to the task executor.
+ */
+class ServiceTaskLane {
+    private static final long WAIT_WARNING_THRESHOLD_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final ScheduledExecutorService timerExecutor;
+    private final ExecutorService taskExecutor;
+    private final Log log;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong startedTaskCount = new AtomicLong();
+    private final AtomicLong totalWaitTimeInNanos = new AtomicLong();
+    private final AtomicLong maxWaitTimeInNanos = new AtomicLong();
+
+    ServiceTaskLane(@Nonnull final String name,
+                    @Nonnull final ScheduledExecutorService timerExecutor,
+                    @Nullable final ExecutorService taskExecutor,
+                    @Nonnull final Log log) {
+        this.name = Preconditions.checkNotNull(name);
+        this.timerExecutor = Preconditions.checkNotNull(timerExecutor);
+        this.taskExecutor = taskExecutor;
+        this.log = Preconditions.checkNotNull(log);
+    }
+
+    /**
+     * Runs the task after the delay
+     *
+     * @param task task to run
+     * @param delayInNanos delay in nanoseconds
+     */
+    void schedule(@Nonnull final Runnable task, final long delayInNanos) {
+        final Runnable timedTask = timed(task, System.nanoTime() + Math.max(0, delayInNanos));
+        queueDepth.incrementAndGet();
+
+        if (taskExecutor == null) {
+            timerExecutor.schedule(timedTask, delayInNanos, TimeUnit.NANOSECONDS);
+        } else if (taskExecutor instanceof ScheduledExecutorService) {
+            ((ScheduledExecutorService) taskExecutor).schedule(timedTask, delayInNanos, TimeUnit.NANOSECONDS);
+        } else if (delayInNanos <= 0) {
+            taskExecutor.execute(timedTask);
+        } else {
+            timerExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    taskExecutor.execute(timedTask);
+                }
+            }, delayInNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Runnable timed(final Runnable task, final long dueTimeInNanos) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                onTaskStarted(System.nanoTime() - dueTimeInNanos);
+                task.run();
+            }
+        };
+    }
+
+    private void onTaskStarted(final long waitTimeInNanos) {
+        final long waitTime = Math.max(0, waitTimeInNanos);
+        queueDepth.decrementAndGet();
+        startedTaskCount.incrementAndGet();
+        totalWaitTimeInNanos.addAndGet(waitTime);
+
+        long maxWaitTime = maxWaitTimeInNanos.get();
+        while (waitTime > maxWaitTime && !maxWaitTimeInNanos.compareAndSet(maxWaitTime, waitTime)) {
+            maxWaitTime = maxWaitTimeInNanos.get();
+        }
+
+        if (waitTime > WAIT_WARNING_THRESHOLD_IN_NANOS) {
+            log.warn(String.format("Service task waited %d ms for a thread. %s",
+                    TimeUnit.NANOSECONDS.toMillis(waitTime), getMetrics()));
+        }
+    }
+
+    @Nonnull
+    ServiceTaskLaneMetrics getMetrics() {
+        return new ServiceTaskLaneMetrics(name,
+                queueDepth.get(),
+                startedTaskCount.get(),
+                totalWaitTimeInNanos.get(),
+                maxWaitTimeInNanos.get());
+    }
+
+    void shutdownNow() {
+        if (taskExecutor != null) {
+            taskExecutor.shutdownNow();
+        }
+    }
+}
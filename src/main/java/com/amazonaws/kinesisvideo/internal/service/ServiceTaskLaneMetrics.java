@@ -0,0 +1,71 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+/**
+ * Snapshot of the scheduling metrics of a service task lane, i.e. the control plane or the data plane lane.
+ */
+public class ServiceTaskLaneMetrics {
+    private final String laneName;
+    private final int queueDepth;
+    private final long startedTaskCount;
+    private final long totalWaitTimeInNanos;
+    private final long maxWaitTimeInNanos;
+
+    ServiceTaskLaneMetrics(final String laneName,
+                           final int queueDepth,
+                           final long startedTaskCount,
+                           final long totalWaitTimeInNanos,
+                           final long maxWaitTimeInNanos) {
+        this.laneName = laneName;
+        this.queueDepth = queueDepth;
+        this.startedTaskCount = startedTaskCount;
+        this.totalWaitTimeInNanos = totalWaitTimeInNanos;
+        this.maxWaitTimeInNanos = maxWaitTimeInNanos;
+    }
+
+    /**
+     * Returns the name of the lane
+     * @return lane name
+     */
+    public String getLaneName() {
+        return laneName;
+    }
+
+    /**
+     * Returns the number of the tasks which have been scheduled but haven't started yet, including the ones
+     * which are still waiting for their delay to expire
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of the tasks which have started
+     * @return started task count
+     */
+    public long getStartedTaskCount() {
+        return startedTaskCount;
+    }
+
+    /**
+     * Returns the average time the tasks have waited for a thread after they became due
+     * @return average wait time in nanoseconds
+     */
+    public long getAverageWaitTimeInNanos() {
+        return startedTaskCount == 0 ? 0 : totalWaitTimeInNanos / startedTaskCount;
+    }
+
+    /**
+     * Returns the longest time a task has waited for a thread after it became due
+     * @return max wait time in nanoseconds
+     */
+    public long getMaxWaitTimeInNanos() {
+        return maxWaitTimeInNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s lane: queue depth %d, started tasks %d, average wait %d ns, max wait %d ns",
+                laneName, queueDepth, startedTaskCount, getAverageWaitTimeInNanos(), maxWaitTimeInNanos);
+    }
+}
@@ -0,0 +1,70 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Runs the service call tasks after the requested delay on two independent lanes.
+ *
+ * The control plane lane runs the short calls, i.e. describeStream or getStreamingToken, and the data plane lane
+ * starts the PutMedia uploads which can hold their thread for a long time. With a separate control plane executor
+ * a token refresh never waits behind the uploads. A lane without an executor runs its tasks on the scheduled pool.
+ */
+class ServiceTaskScheduler {
+    private static final String CONTROL_PLANE_LANE = "ControlPlane";
+    private static final String DATA_PLANE_LANE = "DataPlane";
+
+    private final ScheduledExecutorService timerExecutor;
+    private final ServiceTaskLane controlPlane;
+    private final ServiceTaskLane dataPlane;
+
+    ServiceTaskScheduler(@Nonnull final ScheduledExecutorService timerExecutor,
+                         @Nullable final ExecutorService controlPlaneExecutor,
+                         @Nullable final ExecutorService dataPlaneExecutor,
+                         @Nonnull final Log log) {
+        this.timerExecutor = Preconditions.checkNotNull(timerExecutor);
+        this.controlPlane = new ServiceTaskLane(CONTROL_PLANE_LANE, timerExecutor, controlPlaneExecutor, log);
+        this.dataPlane = new ServiceTaskLane(DATA_PLANE_LANE, timerExecutor, dataPlaneExecutor, log);
+    }
+
+    /**
+     * Runs the control plane task after the delay
+     *
+     * @param task task to run
+     * @param delayInNanos delay in nanoseconds
+     */
+    void scheduleControlPlane(@Nonnull final Runnable task, final long delayInNanos) {
+        controlPlane.schedule(task, delayInNanos);
+    }
+
+    /**
+     * Runs the data plane task after the delay
+     *
+     * @param task task to run
+     * @param delayInNanos delay in nanoseconds
+     */
+    void scheduleDataPlane(@Nonnull final Runnable task, final long delayInNanos) {
+        dataPlane.schedule(task, delayInNanos);
+    }
+
+    @Nonnull
+    ServiceTaskLaneMetrics getControlPlaneMetrics() {
+        return controlPlane.getMetrics();
+    }
+
+    @Nonnull
+    ServiceTaskLaneMetrics getDataPlaneMetrics() {
+        return dataPlane.getMetrics();
+    }
+
+    void shutdownNow() {
+        timerExecutor.shutdownNow();
+        controlPlane.shutdownNow();
+        dataPlane.shutdownNow();
+    }
+}
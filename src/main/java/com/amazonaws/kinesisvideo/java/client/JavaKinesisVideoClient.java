@@ -6,7 +6,6 @@ import com.amazonaws.kinesisvideo.internal.client.NativeKinesisVideoClient;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
 import com.amazonaws.kinesisvideo.internal.producer.client.KinesisVideoServiceClient;
-import com.amazonaws.kinesisvideo.internal.service.DefaultServiceCallbacksImpl;
 
 import javax.annotation.Nonnull;
 import java.util.concurrent.ScheduledExecutorService;
@@ -48,7 +47,8 @@ public final class JavaKinesisVideoClient extends NativeKinesisVideoClient {
                         executor,
                         log),
                 configuration.getStorageCallbacks(),
-                new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient),
-                streamCallbacks);
+                createServiceCallbacks(log, executor, configuration, serviceClient),
+                streamCallbacks,
+                configuration);
     }
 }
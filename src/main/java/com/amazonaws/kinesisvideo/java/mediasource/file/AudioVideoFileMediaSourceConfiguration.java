@@ -18,6 +18,13 @@ public class AudioVideoFileMediaSourceConfiguration extends MultiTrackMediaSourc
         return builder.dir;
     }
 
+    /**
+     * @return whether the frame files are read into memory once instead of being mapped
+     */
+    public boolean isCachedLoop() {
+        return builder.cachedLoop;
+    }
+
     public static class AudioVideoBuilder extends Builder<AudioVideoBuilder> {
         public AudioVideoBuilder() {
             super(AudioVideoBuilder.class);
@@ -27,6 +34,7 @@ public class AudioVideoFileMediaSourceConfiguration extends MultiTrackMediaSourc
     protected static class Builder<T extends Builder<T>>
             extends MultiTrackMediaSourceConfiguration.Builder<T> {
         private String dir;
+        private boolean cachedLoop;
 
         public Builder(final Class<?> builder) {
             super();
@@ -37,6 +45,11 @@ public class AudioVideoFileMediaSourceConfiguration extends MultiTrackMediaSourc
             return (T) this;
         }
 
+        public T withCachedLoop(final boolean cachedLoop) {
+            this.cachedLoop = cachedLoop;
+            return (T) this;
+        }
+
         @Override
         public AudioVideoFileMediaSourceConfiguration build() {
             if (contentType == null) {
@@ -0,0 +1,309 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.AUDIO_TRACK_ID;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_TRACK_ID;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VIDEO_TRACK_ID;
+
+/**
+ * Index of the frames stored one per file, built once when the source is started so the frame sources don't touch
+ * the file system or parse the file names while pacing the frames.
+ *
+ * The frames are served as read-only slices of the memory-mapped files, which are direct buffers and are handed to
+ * the producer without copying. The pages of the next {@link #READ_AHEAD_FRAMES} frames are loaded by a shared
+ * background thread ahead of the frames being served so the page faults don't add to the frame jitter. In the cached
+ * mode all the frames are read once into a single direct buffer, i.e. for the replay and the load tests looping over
+ * the same frames.
+ *
+ * The index is closed when the source is stopped. There is no public API to unmap a file before Java 9 so closing
+ * drops the references to the mapped and cached buffers and the memory is released once they are collected.
+ */
+@ThreadSafe
+public class FrameFileIndex implements Closeable {
+    /**
+     * Number of the frames loaded ahead of the one being served
+     */
+    public static final int READ_AHEAD_FRAMES = 16;
+
+    private static final String READ_AHEAD_THREAD_NAME = "KinesisVideo-FrameReadAhead";
+    private static final String AUDIO_VIDEO_DELIMITER = "-";
+    private static final int AUDIO_VIDEO_INFO_LENGTH = 4;
+    private static final String VIDEO_TYPE = "video";
+
+    private static final ExecutorService READ_AHEAD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@Nonnull final Runnable runnable) {
+            final Thread thread = new Thread(runnable, READ_AHEAD_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Log log = LogFactory.getLog(FrameFileIndex.class);
+
+    private final long[] timecodes;
+    private final long[] trackIds;
+    private final boolean[] keyFrames;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /**
+     * The buffer each frame is a slice of - a mapped file or the single cached buffer
+     */
+    private final ByteBuffer[] buffers;
+    private final boolean cached;
+    private final AtomicBoolean readAheadScheduled = new AtomicBoolean();
+    private volatile int loadedUpTo = -1;
+    private volatile boolean closed = false;
+
+    private FrameFileIndex(@Nonnull final List<File> files,
+                           @Nonnull final long[] timecodes,
+                           @Nonnull final long[] trackIds,
+                           @Nonnull final boolean[] keyFrames,
+                           final boolean cached) throws KinesisVideoException {
+        Preconditions.checkArgument(!files.isEmpty(), "No frame files found");
+        this.timecodes = timecodes;
+        this.trackIds = trackIds;
+        this.keyFrames = keyFrames;
+        this.cached = cached;
+        offsets = new int[files.size()];
+        lengths = new int[files.size()];
+        buffers = new ByteBuffer[files.size()];
+
+        try {
+            if (cached) {
+                cacheFiles(files);
+            } else {
+                mapFiles(files);
+            }
+        } catch (final IOException e) {
+            throw new KinesisVideoException("Failed to index the frame files", e);
+        }
+    }
+
+    /**
+     * Indexes the image files named by the format from the start index to the end one
+     */
+    @Nonnull
+    public static FrameFileIndex forImageFiles(@Nonnull final String dir,
+                                               @Nonnull final String filenameFormat,
+                                               final int startIndex,
+                                               final int endIndex,
+                                               final boolean cached) throws KinesisVideoException {
+        Preconditions.checkState(endIndex >= startIndex);
+        final int count = endIndex - startIndex + 1;
+        final List<File> files = new ArrayList<File>(count);
+        for (int i = startIndex; i <= endIndex; i++) {
+            files.add(new File(dir + String.format(filenameFormat, i)));
+        }
+
+        final long[] trackIds = new long[count];
+        Arrays.fill(trackIds, DEFAULT_TRACK_ID);
+        return new FrameFileIndex(files, new long[count], trackIds, new boolean[count], cached);
+    }
+
+    /**
+     * Indexes the audio and video frame files in the directory named timecode-mediaType-isKeyFrame-frame, i.e.
+     * 10000-audio-false-frame or 10999-video-true-frame, ordered by the timecode in nanoseconds
+     */
+    @Nonnull
+    public static FrameFileIndex forAudioVideoFiles(@Nonnull final String dir, final boolean cached)
+            throws KinesisVideoException {
+        final File directory = new File(dir);
+        Preconditions.checkState(directory.isDirectory());
+
+        final String[] fileNameList = directory.list();
+        final List<String> fileNames = Arrays.asList(fileNameList == null ? new String[0] : fileNameList);
+        Collections.sort(fileNames, new Comparator<String>() {
+            @Override
+            public int compare(final String first, final String second) {
+                return Long.compare(parseTimecode(first), parseTimecode(second));
+            }
+        });
+
+        final int count = fileNames.size();
+        final List<File> files = new ArrayList<File>(count);
+        final long[] timecodes = new long[count];
+        final long[] trackIds = new long[count];
+        final boolean[] keyFrames = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            final String fileName = fileNames.get(i);
+            final String[] infos = fileName.split(AUDIO_VIDEO_DELIMITER);
+            Preconditions.checkState(infos.length == AUDIO_VIDEO_INFO_LENGTH);
+
+            final boolean video = VIDEO_TYPE.equals(infos[1]);
+            files.add(new File(directory, fileName));
+            timecodes[i] = Long.parseLong(infos[0]);
+            trackIds[i] = video ? VIDEO_TRACK_ID : AUDIO_TRACK_ID;
+            keyFrames[i] = video && Boolean.parseBoolean(infos[2]);
+        }
+
+        return new FrameFileIndex(files, timecodes, trackIds, keyFrames, cached);
+    }
+
+    public int getFrameCount() {
+        return lengths.length;
+    }
+
+    /**
+     * @return the timecode in nanoseconds parsed from the file name or 0 for the image files
+     */
+    public long getTimecode(final int index) {
+        return timecodes[index];
+    }
+
+    public long getTrackId(final int index) {
+        return trackIds[index];
+    }
+
+    public boolean isKeyFrame(final int index) {
+        return keyFrames[index];
+    }
+
+    public int getLength(final int index) {
+        return lengths[index];
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Returns the frame data and loads the following frames in the background
+     *
+     * @return read-only slice of the mapped or cached frame data
+     */
+    @Nonnull
+    public ByteBuffer getFrameData(final int index) {
+        final ByteBuffer buffer = buffers[index];
+        Preconditions.checkState(!closed && buffer != null, "Frame file index is closed");
+
+        final ByteBuffer data = buffer.duplicate();
+        data.limit(offsets[index] + lengths[index]);
+        data.position(offsets[index]);
+
+        if (!cached) {
+            scheduleReadAhead(index);
+        }
+
+        return data.slice();
+    }
+
+    /**
+     * Releases the frame buffers, the frames already served stay valid until they are collected
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Arrays.fill(buffers, null);
+    }
+
+    private void cacheFiles(@Nonnull final List<File> files) throws IOException {
+        long totalLength = 0;
+        for (final File file : files) {
+            totalLength += file.length();
+        }
+
+        Preconditions.checkState(totalLength <= Integer.MAX_VALUE, "The frame files are too big to cache");
+        final ByteBuffer cache = ByteBuffer.allocateDirect((int) totalLength);
+        for (int i = 0; i < files.size(); i++) {
+            final RandomAccessFile file = new RandomAccessFile(files.get(i), "r");
+            try {
+                final FileChannel channel = file.getChannel();
+                final long size = channel.size();
+                offsets[i] = cache.position();
+                while (cache.position() - offsets[i] < size && channel.read(cache) >= 0) {
+                    // Read until the whole file is cached
+                }
+
+                lengths[i] = cache.position() - offsets[i];
+            } finally {
+                file.close();
+            }
+        }
+
+        final ByteBuffer readOnlyCache = cache.asReadOnlyBuffer();
+        Arrays.fill(buffers, readOnlyCache);
+        loadedUpTo = files.size() - 1;
+    }
+
+    private void mapFiles(@Nonnull final List<File> files) throws IOException {
+        for (int i = 0; i < files.size(); i++) {
+            final RandomAccessFile file = new RandomAccessFile(files.get(i), "r");
+            try {
+                // The mapping stays valid after the channel is closed
+                final FileChannel channel = file.getChannel();
+                Preconditions.checkState(channel.size() <= Integer.MAX_VALUE, "The frame file is too big");
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                lengths[i] = (int) channel.size();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private void scheduleReadAhead(final int index) {
+        final int last = Math.min(buffers.length - 1, index + READ_AHEAD_FRAMES);
+        final int loaded = loadedUpTo;
+        if (loaded >= index && (loaded - index >= READ_AHEAD_FRAMES / 2 || loaded == last)) {
+            // Enough frames loaded ahead, loading in batches of at least half of the read-ahead
+            return;
+        }
+
+        // Start over after looping back to the beginning or skipping frames
+        final int first = loaded >= index ? loaded + 1 : index + 1;
+        if (first > last || closed || !readAheadScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            READ_AHEAD_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = first; i <= last && !closed; i++) {
+                            final ByteBuffer buffer = buffers[i];
+                            if (buffer != null) {
+                                ((MappedByteBuffer) buffer).load();
+                            }
+                        }
+
+                        loadedUpTo = last;
+                    } finally {
+                        readAheadScheduled.set(false);
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            log.error("Failed to schedule the frame read-ahead", e);
+            readAheadScheduled.set(false);
+        }
+    }
+
+    private static long parseTimecode(@Nonnull final String fileName) {
+        return Long.parseLong(fileName.split(AUDIO_VIDEO_DELIMITER)[0]);
+    }
+}
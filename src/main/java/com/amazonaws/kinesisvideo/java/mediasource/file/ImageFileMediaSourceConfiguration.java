@@ -10,6 +10,7 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
     private final String filenameFormat;
     private final int startFileIndex;
     private final int endFileIndex;
+    private final boolean cachedLoop;
 
     public ImageFileMediaSourceConfiguration(final Builder builder) {
         this.fps = builder.fps;
@@ -17,6 +18,7 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         this.filenameFormat = builder.filenameFormat;
         this.startFileIndex = builder.startFileIndex;
         this.endFileIndex = builder.endFileIndex;
+        this.cachedLoop = builder.cachedLoop;
     }
 
     public int getFps() {
@@ -39,6 +41,13 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         return endFileIndex;
     }
 
+    /**
+     * @return whether the image files are read into memory once instead of being mapped
+     */
+    public boolean isCachedLoop() {
+        return cachedLoop;
+    }
+
     @Override
     public String getMediaSourceType() {
         return null;
@@ -55,6 +64,7 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         private String filenameFormat;
         private int startFileIndex;
         private int endFileIndex;
+        private boolean cachedLoop;
 
         public Builder fps(final int fps) {
             this.fps = fps;
@@ -84,6 +94,11 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
             return this;
         }
 
+        public Builder cachedLoop(final boolean cachedLoop) {
+            this.cachedLoop = cachedLoop;
+            return this;
+        }
+
         @Override
         public ImageFileMediaSourceConfiguration build() {
             return new ImageFileMediaSourceConfiguration(this);
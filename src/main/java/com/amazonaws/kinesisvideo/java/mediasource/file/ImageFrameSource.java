@@ -1,22 +1,14 @@
 package com.amazonaws.kinesisvideo.java.mediasource.file;
 
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
-import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import com.amazonaws.kinesisvideo.internal.mediasource.OnStreamDataAvailable;
 
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.stream.throttling.FramePacingScheduler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.annotation.concurrent.NotThreadSafe;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.Duration;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import static com.amazonaws.kinesisvideo.producer.FrameFlags.FRAME_FLAG_KEY_FRAME;
 import static com.amazonaws.kinesisvideo.producer.FrameFlags.FRAME_FLAG_NONE;
@@ -29,13 +21,15 @@ import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MI
 public class ImageFrameSource {
     public static final int METADATA_INTERVAL = 8;
     private static final long FRAME_DURATION_20_MS = 20L;
-    private final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private final FramePacingScheduler pacingScheduler = FramePacingScheduler.getDefault();
     private final int fps;
     private final ImageFileMediaSourceConfiguration configuration;
 
-    private final int totalFiles;
+    private int totalFiles;
+    private volatile FrameFileIndex frameFileIndex;
     private OnStreamDataAvailable mkvDataAvailableCallback;
-    private boolean isRunning = false;
+    private volatile boolean isRunning = false;
+    private FramePacingScheduler.Registration pacing;
     private int frameCounter;
     private final Log log = LogFactory.getLog(ImageFrameSource.class);
     private final String metadataName = "ImageLoop";
@@ -43,20 +37,22 @@ public class ImageFrameSource {
 
     public ImageFrameSource(final ImageFileMediaSourceConfiguration configuration) {
         this.configuration = configuration;
-        this.totalFiles = getTotalFiles(configuration.getStartFileIndex(), configuration.getEndFileIndex());
         this.fps = configuration.getFps();
     }
 
-    private int getTotalFiles(final int startIndex, final int endIndex) {
-        Preconditions.checkState(endIndex >= startIndex);
-        return endIndex - startIndex + 1;
-    }
-
-    public void start() {
+    /**
+     * Indexes the image files and starts emitting the frames
+     *
+     * @throws KinesisVideoException if the image files can't be read
+     */
+    public void start() throws KinesisVideoException {
         if (isRunning) {
             throw new IllegalStateException("Frame source is already running");
         }
 
+        frameFileIndex = FrameFileIndex.forImageFiles(configuration.getDir(), configuration.getFilenameFormat(),
+                configuration.getStartFileIndex(), configuration.getEndFileIndex(), configuration.isCachedLoop());
+        totalFiles = frameFileIndex.getFrameCount();
         isRunning = true;
         startFrameGenerator();
     }
@@ -64,6 +60,10 @@ public class ImageFrameSource {
     public void stop() {
         isRunning = false;
         stopFrameGenerator();
+        if (frameFileIndex != null) {
+            frameFileIndex.close();
+            frameFileIndex = null;
+        }
     }
 
     public void onStreamDataAvailable(final OnStreamDataAvailable onMkvDataAvailable) {
@@ -71,64 +71,62 @@ public class ImageFrameSource {
     }
 
     private void startFrameGenerator() {
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    generateFrameAndNotifyListener();
-                } catch (final KinesisVideoException e) {
-                    log.error("Failed to keep generating frames with Exception", e);
-                }
-            }
-        });
+        pacing = pacingScheduler.register(ImageFrameSource.class.getSimpleName(), fps,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        try {
+                            generateFrameAndNotifyListener();
+                            return true;
+                        } catch (final KinesisVideoException e) {
+                            log.error("Failed to keep generating frames with Exception", e);
+                            return false;
+                        } catch (final IllegalStateException e) {
+                            if (isRunning) {
+                                throw e;
+                            }
+
+                            // The frame index was closed by stop() while emitting
+                            return false;
+                        }
+                    }
+                });
     }
 
     private void generateFrameAndNotifyListener() throws KinesisVideoException {
-        while (isRunning) {
-            if (mkvDataAvailableCallback != null) {
-                mkvDataAvailableCallback.onFrameDataAvailable(createKinesisVideoFrameFromImage(frameCounter));
-                if (isMetadataReady()) {
-                    mkvDataAvailableCallback.onFragmentMetadataAvailable(metadataName + metadataCount,
-                            Integer.toString(metadataCount++), false);
-                }
-            }
+        final FrameFileIndex frameFileIndex = this.frameFileIndex;
+        if (!isRunning || frameFileIndex == null) {
+            return;
+        }
 
-            frameCounter++;
-            try {
-                Thread.sleep(Duration.ofSeconds(1L).toMillis() / fps);
-            } catch (final InterruptedException e) {
-                log.error("Frame interval wait interrupted by Exception ", e);
+        if (mkvDataAvailableCallback != null) {
+            mkvDataAvailableCallback.onFrameDataAvailable(
+                    createKinesisVideoFrameFromImage(frameFileIndex, frameCounter));
+            if (isMetadataReady()) {
+                mkvDataAvailableCallback.onFragmentMetadataAvailable(metadataName + metadataCount,
+                        Integer.toString(metadataCount++), false);
             }
         }
+
+        frameCounter++;
     }
 
     private boolean isMetadataReady() {
         return frameCounter % METADATA_INTERVAL == 0;
     }
 
-    private KinesisVideoFrame createKinesisVideoFrameFromImage(final long index) {
-        final String filename = String.format(
-                configuration.getFilenameFormat(),
-                index % totalFiles + configuration.getStartFileIndex());
-        final Path path = Paths.get(configuration.getDir() + filename);
+    private KinesisVideoFrame createKinesisVideoFrameFromImage(final FrameFileIndex frameFileIndex,
+                                                               final long index) {
         final long currentTimeMs = System.currentTimeMillis();
-
         final int flags = isKeyFrame() ? FRAME_FLAG_KEY_FRAME : FRAME_FLAG_NONE;
 
-        try {
-            final byte[] data = Files.readAllBytes(path);
-            return new KinesisVideoFrame(
-                    frameCounter,
-                    flags,
-                    currentTimeMs * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
-                    currentTimeMs * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
-                    FRAME_DURATION_20_MS * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
-                    ByteBuffer.wrap(data));
-        } catch (final IOException e) {
-            log.error("Read file failed with Exception ", e);
-        }
-
-        return null;
+        return new KinesisVideoFrame(
+                frameCounter,
+                flags,
+                currentTimeMs * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                currentTimeMs * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                FRAME_DURATION_20_MS * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                frameFileIndex.getFrameData((int) (index % totalFiles)));
     }
 
     private boolean isKeyFrame() {
@@ -137,6 +135,10 @@ public class ImageFrameSource {
 
 
     private void stopFrameGenerator() {
-
+        if (pacing != null) {
+            pacing.cancel();
+            log.info("Stopped frame pacing " + pacing);
+            pacing = null;
+        }
     }
 }
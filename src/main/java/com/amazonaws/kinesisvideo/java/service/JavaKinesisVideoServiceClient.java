@@ -1,6 +1,7 @@
 package com.amazonaws.kinesisvideo.java.service;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Protocol;
 import com.amazonaws.auth.AWSCredentials;
@@ -16,10 +17,16 @@ import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.common.function.Consumer;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.http.NioEventLoopGroup;
+import com.amazonaws.kinesisvideo.http.NonBlockingResponseHandler;
+import com.amazonaws.kinesisvideo.http.PollableInputStream;
 import com.amazonaws.kinesisvideo.producer.StreamDescription;
 import com.amazonaws.kinesisvideo.producer.StreamStatus;
 import com.amazonaws.kinesisvideo.internal.producer.client.KinesisVideoServiceClient;
+import com.amazonaws.kinesisvideo.socket.ConnectionManager;
+import com.amazonaws.kinesisvideo.socket.SocketFactory;
 import com.amazonaws.kinesisvideo.util.VersionUtil;
+import com.amazonaws.kinesisvideo.util.VirtualThreads;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kinesisvideo.AmazonKinesisVideo;
@@ -40,6 +47,7 @@ import javax.annotation.Nullable;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import static com.amazonaws.ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
@@ -47,22 +55,15 @@ import static com.amazonaws.util.StringUtils.isNullOrEmpty;
 
 public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceClient {
     private static final int RECEIVE_TIMEOUT_1HR = 60 * 60 * 1000;
+    private static final String PUT_MEDIA_THREAD_PREFIX = "KinesisVideo-PutMedia-";
     private static final String ABSOLUTE_TIMECODE = "ABSOLUTE";
     private static final String RELATIVE_TIMECODE = "RELATIVE";
 
     private final Log log;
     private KinesisVideoClientConfiguration configuration;
-
-    private static AmazonKinesisVideo createAmazonKinesisVideoClient(
-            final KinesisVideoCredentialsProvider credentialsProvider,
-            final Region region,
-            final String endpoint,
-            final int timeoutInMillis)
-            throws KinesisVideoException {
-
-        final AWSCredentials credentials = createAwsCredentials(credentialsProvider);
-        return createAwsKinesisVideoClient(credentials, region, endpoint, timeoutInMillis);
-    }
+    private ConnectionManager connectionManager;
+    private StreamMetadataCache streamMetadataCache;
+    private final Map<Integer, AmazonKinesisVideo> sharedServiceClients = new HashMap<Integer, AmazonKinesisVideo>();
 
     private static AmazonKinesisVideo createAmazonKinesisVideoClient(
             final AWSCredentialsProvider awsCredentialsProvider,
@@ -104,49 +105,20 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         return amazonKinesisVideoClient;
     }
 
-    private static AWSCredentials createAwsCredentials(
-            @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
-            throws KinesisVideoException {
-        if (null == credentialsProvider) {
-            return null;
-        }
-
-        final KinesisVideoCredentials kinesisVideoCredentials = credentialsProvider.getCredentials();
-
-        AWSCredentials credentials = null;
-
-        if (kinesisVideoCredentials.getSessionToken() == null) {
-            credentials = new AWSCredentials() {
-                @Override
-                public String getAWSAccessKeyId() {
-                    return kinesisVideoCredentials.getAccessKey();
-                }
-
-                @Override
-                public String getAWSSecretKey() {
-                    return kinesisVideoCredentials.getSecretKey();
-                }
-            };
-        } else {
-            credentials = new AWSSessionCredentials() {
-                @Override
-                public String getSessionToken() {
-                    return kinesisVideoCredentials.getSessionToken();
-                }
-
-                @Override
-                public String getAWSAccessKeyId() {
-                    return kinesisVideoCredentials.getAccessKey();
-                }
-
-                @Override
-                public String getAWSSecretKey() {
-                    return kinesisVideoCredentials.getSecretKey();
-                }
-            };
-        }
-
-        return credentials;
+    /**
+     * Creates the client shared by the service calls with the same timeout. The credentials provider is queried
+     * on every call rather than once at the construction.
+     */
+    private static AmazonKinesisVideo createSharedAwsKinesisVideoClient(
+            @Nullable final AWSCredentialsProvider awsCredentialsProvider,
+            final Region region,
+            final String endpoint,
+            final int timeoutInMillis) {
+        return AmazonKinesisVideoClient.builder()
+                .withClientConfiguration(createClientConfiguration(timeoutInMillis))
+                .withCredentials(awsCredentialsProvider)
+                .withEndpointConfiguration(new EndpointConfiguration(endpoint, region.getName()))
+                .build();
     }
 
     private static AWSCredentialsProvider createAwsCredentialsProvider(
@@ -245,6 +217,56 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             throws KinesisVideoException {
         // We already got the configuration
         this.configuration = Preconditions.checkNotNull(kinesisVideoClientConfiguration);
+        if (configuration.isConnectionPrewarmingEnabled() && connectionManager == null) {
+            connectionManager = new ConnectionManager(new SocketFactory(), log);
+        }
+
+        if (configuration.getStreamMetadataCacheTtlInMillis() > 0 && streamMetadataCache == null) {
+            streamMetadataCache = new StreamMetadataCache(configuration.getStreamMetadataCacheTtlInMillis(),
+                    configuration.getStreamMetadataCacheFile(),
+                    log);
+        }
+    }
+
+    /**
+     * Returns the client shared by the service calls with the timeout so its connection pool is reused. The
+     * connection and socket timeouts are client settings, hence a client per timeout. The native layer only uses
+     * a few distinct timeouts. The calls pass their own credentials with the request.
+     */
+    private synchronized AmazonKinesisVideo getServiceClient(final long timeoutInMillis)
+            throws KinesisVideoException {
+        final int timeout = (int) Math.min(timeoutInMillis, Integer.MAX_VALUE);
+        AmazonKinesisVideo serviceClient = sharedServiceClients.get(timeout);
+        if (serviceClient == null) {
+            serviceClient = createSharedAwsKinesisVideoClient(
+                    createAwsCredentialsProvider(configuration.getCredentialsProvider(), log),
+                    Region.getRegion(Regions.fromName(configuration.getRegion())),
+                    configuration.getEndpoint(),
+                    timeout);
+            sharedServiceClients.put(timeout, serviceClient);
+        }
+
+        return serviceClient;
+    }
+
+    private <T extends AmazonWebServiceRequest> T withCallSettings(
+            @Nonnull final T request,
+            final long timeoutInMillis,
+            @Nullable final KinesisVideoCredentialsProvider credentialsProvider) throws KinesisVideoException {
+        final AWSCredentialsProvider awsCredentialsProvider = createAwsCredentialsProvider(credentialsProvider, log);
+        if (awsCredentialsProvider != null) {
+            request.setRequestCredentialsProvider(awsCredentialsProvider);
+        }
+
+        request.setSdkRequestTimeout((int) Math.min(timeoutInMillis, Integer.MAX_VALUE));
+        request.setSdkClientExecutionTimeout((int) Math.min(timeoutInMillis, Integer.MAX_VALUE));
+        return request;
+    }
+
+    private void invalidateCachedMetadata(@Nonnull final String streamName) {
+        if (streamMetadataCache != null) {
+            streamMetadataCache.invalidate(streamName);
+        }
     }
 
     @Override
@@ -256,17 +278,17 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
+        final AmazonKinesisVideo serviceClient = getServiceClient(timeoutInMillis);
+        invalidateCachedMetadata(streamName);
 
-        final CreateStreamRequest createStreamRequest = new CreateStreamRequest()
+        final CreateStreamRequest createStreamRequest = withCallSettings(new CreateStreamRequest()
                 .withStreamName(streamName)
                 .withDeviceName(deviceName)
                 .withMediaType(contentType)
                 .withKmsKeyId(isNullOrEmpty(kmsKeyId) ? null : kmsKeyId)
-                .withDataRetentionInHours((int) retentionPeriodInHours);
+                .withDataRetentionInHours((int) retentionPeriodInHours),
+                timeoutInMillis,
+                credentialsProvider);
 
         log.debug("calling create stream: " + createStreamRequest.toString());
 
@@ -289,13 +311,20 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
+        if (streamMetadataCache != null) {
+            final StreamDescription cachedDescription = streamMetadataCache.getStreamDescription(streamName);
+            if (cachedDescription != null) {
+                log.debug("describe stream result for " + streamName + " returned from the cache");
+                return cachedDescription;
+            }
+        }
 
-        final DescribeStreamRequest describeStreamRequest = new DescribeStreamRequest()
-                .withStreamName(streamName);
+        final AmazonKinesisVideo serviceClient = getServiceClient(timeoutInMillis);
+
+        final DescribeStreamRequest describeStreamRequest = withCallSettings(new DescribeStreamRequest()
+                .withStreamName(streamName),
+                timeoutInMillis,
+                credentialsProvider);
 
         log.debug("calling describe stream: " + describeStreamRequest.toString());
 
@@ -303,6 +332,7 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         try {
             describeStreamResult = serviceClient.describeStream(describeStreamRequest);
         } catch (final AmazonClientException e) {
+            invalidateCachedMetadata(streamName);
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
         }
@@ -313,7 +343,12 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         }
 
         log.debug("describe stream result: " + describeStreamResult.toString());
-        return toStreamDescription(describeStreamResult);
+        final StreamDescription streamDescription = toStreamDescription(describeStreamResult);
+        if (streamMetadataCache != null) {
+            streamMetadataCache.putStreamDescription(streamDescription);
+        }
+
+        return streamDescription;
     }
 
     @Override
@@ -322,16 +357,18 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final Date creationTime,
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider) throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
+        final AmazonKinesisVideo serviceClient = getServiceClient(timeoutInMillis);
 
+        // The cached version could be stale
+        invalidateCachedMetadata(streamName);
         final StreamDescription streamDescription = describeStream(streamName, timeoutInMillis, credentialsProvider);
+        invalidateCachedMetadata(streamName);
 
-        final DeleteStreamRequest deleteStreamRequest = new DeleteStreamRequest()
+        final DeleteStreamRequest deleteStreamRequest = withCallSettings(new DeleteStreamRequest()
                 .withStreamARN(streamDescription.getStreamArn())
-                .withCurrentVersion(streamDescription.getUpdateVersion());
+                .withCurrentVersion(streamDescription.getUpdateVersion()),
+                timeoutInMillis,
+                credentialsProvider);
 
         log.debug("calling delete stream: " + deleteStreamRequest.toString());
 
@@ -352,14 +389,13 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
+        final AmazonKinesisVideo serviceClient = getServiceClient(timeoutInMillis);
 
-        final TagStreamRequest tagStreamRequest = new TagStreamRequest()
+        final TagStreamRequest tagStreamRequest = withCallSettings(new TagStreamRequest()
                 .withStreamARN(streamArn)
-                .withTags(tags);
+                .withTags(tags),
+                timeoutInMillis,
+                credentialsProvider);
 
         log.debug("calling tag resource: " + tagStreamRequest.toString());
 
@@ -380,14 +416,21 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             final long timeoutInMillis,
             @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
             throws KinesisVideoException {
-        final AmazonKinesisVideo serviceClient = createAmazonKinesisVideoClient(credentialsProvider,
-                Region.getRegion(Regions.fromName(configuration.getRegion())),
-                configuration.getEndpoint(),
-                (int) timeoutInMillis);
+        if (streamMetadataCache != null) {
+            final String cachedEndpoint = streamMetadataCache.getDataEndpoint(streamName, apiName);
+            if (cachedEndpoint != null) {
+                log.debug("get data endpoint result for " + streamName + " returned from the cache");
+                return cachedEndpoint;
+            }
+        }
+
+        final AmazonKinesisVideo serviceClient = getServiceClient(timeoutInMillis);
 
-        final GetDataEndpointRequest getDataEndpointRequest = new GetDataEndpointRequest()
+        final GetDataEndpointRequest getDataEndpointRequest = withCallSettings(new GetDataEndpointRequest()
                 .withStreamName(streamName)
-                .withAPIName(apiName);
+                .withAPIName(apiName),
+                timeoutInMillis,
+                credentialsProvider);
 
         log.debug("calling get data endpoint: " + getDataEndpointRequest.toString());
 
@@ -396,11 +439,15 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         try {
             getDataEndpointResult = serviceClient.getDataEndpoint(getDataEndpointRequest);
         } catch (final AmazonClientException e) {
+            invalidateCachedMetadata(streamName);
             log.exception(e, "Service call failed.");
             throw new KinesisVideoException(e);
         }
 
         log.debug("get data endpoint result: " + getDataEndpointResult.toString());
+        if (streamMetadataCache != null) {
+            streamMetadataCache.putDataEndpoint(streamName, apiName, getDataEndpointResult.getDataEndpoint());
+        }
 
         return getDataEndpointResult.getDataEndpoint();
     }
@@ -419,6 +466,114 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
             @Nonnull final Consumer<InputStream> acksConsumer,
             @Nullable final Consumer<Exception> completionCallback)
             throws KinesisVideoException {
+        final PutMediaClient.Builder putMediaClientBuilder = createPutMediaClientBuilder(streamName,
+                streamStartTimeInMillis,
+                absoluteFragmentTimes,
+                dataEndpoint,
+                credentialsProvider,
+                completionCallback)
+                .receiveAcks(acksConsumer)
+                .mkvStream(dataInputStream)
+                .connectionManager(connectionManager);
+
+        if (configuration.isVirtualThreadsEnabled() && VirtualThreads.isSupported()) {
+            putMediaClientBuilder.threadFactory(VirtualThreads.newThreadFactory(PUT_MEDIA_THREAD_PREFIX));
+        }
+
+        final PutMediaClient putMediaClient = putMediaClientBuilder.build();
+
+        // Kick off execution
+        try {
+            putMediaClient.putMediaInBackground();
+        } catch (final RuntimeException e) {
+            invalidateCachedMetadata(streamName);
+            throw e;
+        }
+    }
+
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    @Override
+    public void putMedia(@Nonnull final String streamName,
+            @Nonnull final String containerType,
+            final long streamStartTimeInMillis,
+            final boolean absoluteFragmentTimes,
+            final boolean ackRequired,
+            @Nonnull final String dataEndpoint,
+            final long timeoutInMillis,
+            @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
+            @Nonnull final PollableInputStream dataStream,
+            @Nonnull final NonBlockingResponseHandler responseHandler,
+            @Nullable final Consumer<Exception> completionCallback,
+            @Nonnull final NioEventLoopGroup eventLoopGroup)
+            throws KinesisVideoException {
+        final PutMediaClient.Builder putMediaClientBuilder = createPutMediaClientBuilder(streamName,
+                streamStartTimeInMillis,
+                absoluteFragmentTimes,
+                dataEndpoint,
+                credentialsProvider,
+                completionCallback)
+                .nonBlocking(dataStream, responseHandler, eventLoopGroup);
+
+        final PutMediaClient putMediaClient = putMediaClientBuilder.build();
+
+        // Kick off execution
+        try {
+            putMediaClient.putMediaInBackground();
+        } catch (final RuntimeException e) {
+            invalidateCachedMetadata(streamName);
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void free() {
+        if (connectionManager != null) {
+            connectionManager.close();
+            connectionManager = null;
+        }
+
+        if (streamMetadataCache != null) {
+            streamMetadataCache.close();
+            streamMetadataCache = null;
+        }
+
+        for (final AmazonKinesisVideo serviceClient : sharedServiceClients.values()) {
+            serviceClient.shutdown();
+        }
+
+        sharedServiceClients.clear();
+    }
+
+    /**
+     * Drops the cached endpoint of the stream if the upload fails as the endpoint could have moved
+     */
+    private Consumer<Exception> invalidateCachedMetadataOnError(@Nonnull final String streamName,
+            @Nullable final Consumer<Exception> completionCallback) {
+        if (streamMetadataCache == null) {
+            return completionCallback;
+        }
+
+        return new Consumer<Exception>() {
+            @Override
+            public void accept(@Nullable final Exception exception) {
+                if (exception != null) {
+                    invalidateCachedMetadata(streamName);
+                }
+
+                if (completionCallback != null) {
+                    completionCallback.accept(exception);
+                }
+            }
+        };
+    }
+
+    private PutMediaClient.Builder createPutMediaClientBuilder(@Nonnull final String streamName,
+            final long streamStartTimeInMillis,
+            final boolean absoluteFragmentTimes,
+            @Nonnull final String dataEndpoint,
+            @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
+            @Nullable final Consumer<Exception> completionCallback)
+            throws KinesisVideoException {
         final AWSCredentialsProvider awsCredentialsProvider = createAwsCredentialsProvider(credentialsProvider, log);
         final com.amazonaws.kinesisvideo.config.ClientConfiguration clientConfiguration =
                 com.amazonaws.kinesisvideo.config.ClientConfiguration
@@ -430,23 +585,16 @@ public final class JavaKinesisVideoServiceClient implements KinesisVideoServiceC
         final URI putMediaUri = URI.create(dataEndpoint + "/putMedia");
         final String timecodeType = absoluteFragmentTimes ? ABSOLUTE_TIMECODE : RELATIVE_TIMECODE;
 
-        final PutMediaClient.Builder putMediaClientBuilder = PutMediaClient
+        return PutMediaClient
                 .builder()
                 .log(log)
                 .receiveTimeout(RECEIVE_TIMEOUT_1HR)
                 .timestamp(streamStartTimeInMillis)
                 .signWith(signer)
-                .receiveAcks(acksConsumer)
-                .receiveCompletion(completionCallback)
+                .receiveCompletion(invalidateCachedMetadataOnError(streamName, completionCallback))
                 .streamName(streamName)
-                .mkvStream(dataInputStream)
                 .fragmentTimecodeType(timecodeType)
                 .putMediaDestinationUri(putMediaUri);
-
-        final PutMediaClient putMediaClient = putMediaClientBuilder.build();
-
-        // Kick off execution
-        putMediaClient.putMediaInBackground();
     }
 
     private static StreamDescription toStreamDescription(@Nonnull final DescribeStreamResult result) {
@@ -0,0 +1,315 @@
+package com.amazonaws.kinesisvideo.java.service;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+import com.amazonaws.kinesisvideo.producer.StreamStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time limited cache of the active stream descriptions and the data endpoints so restarting the streams doesn't
+ * need the describeStream and getDataEndpoint calls for every one of them.
+ *
+ * The entries can be persisted into a file to survive the process restart. The file is written by a background
+ * thread which coalesces the updates made while a write is in progress into the next one. The entries of a stream
+ * are dropped once the service returns an error for the stream or its data endpoint.
+ */
+@ThreadSafe
+final class StreamMetadataCache implements Closeable {
+    private static final String DESCRIPTION_KEY_PREFIX = "stream:";
+    private static final String ENDPOINT_KEY_PREFIX = "endpoint:";
+    private static final String KEY_SEPARATOR = ":";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String PERSISTENCE_THREAD_NAME = "KinesisVideo-MetadataCache";
+    private static final long CLOSE_TIMEOUT_IN_MILLIS = 5000;
+
+    private static final class Entry<T> {
+        private final T mValue;
+        private final long mExpiresAtMillis;
+
+        private Entry(final T value, final long expiresAtMillis) {
+            mValue = value;
+            mExpiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired(final long nowMillis) {
+            return nowMillis >= mExpiresAtMillis;
+        }
+    }
+
+    private final long mTtlInMillis;
+    private final File mPersistenceFile;
+    private final Log mLog;
+    private final Map<String, Entry<StreamDescription>> mDescriptions = new HashMap<String, Entry<StreamDescription>>();
+    private final Map<String, Entry<String>> mDataEndpoints = new HashMap<String, Entry<String>>();
+    private final ExecutorService mPersistenceExecutor;
+    private final Runnable mPersistTask = new Runnable() {
+        @Override
+        public void run() {
+            persist();
+        }
+    };
+    private boolean mPersistScheduled;
+
+    StreamMetadataCache(final long ttlInMillis, @Nullable final File persistenceFile, @Nonnull final Log log) {
+        Preconditions.checkArgument(ttlInMillis > 0, "Cache TTL should be positive");
+        mTtlInMillis = ttlInMillis;
+        mPersistenceFile = persistenceFile;
+        mLog = Preconditions.checkNotNull(log);
+
+        if (mPersistenceFile == null) {
+            mPersistenceExecutor = null;
+            return;
+        }
+
+        load();
+        mPersistenceExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, PERSISTENCE_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Nullable
+    synchronized StreamDescription getStreamDescription(@Nonnull final String streamName) {
+        return getValue(mDescriptions, streamName);
+    }
+
+    /**
+     * Caches the description of an active stream. The streams in other states are still changing.
+     */
+    synchronized void putStreamDescription(@Nonnull final StreamDescription streamDescription) {
+        if (streamDescription.getStreamStatus() != StreamStatus.ACTIVE.intValue()) {
+            return;
+        }
+
+        mDescriptions.put(streamDescription.getStreamName(),
+                new Entry<StreamDescription>(streamDescription, System.currentTimeMillis() + mTtlInMillis));
+        schedulePersist();
+    }
+
+    @Nullable
+    synchronized String getDataEndpoint(@Nonnull final String streamName, @Nonnull final String apiName) {
+        return getValue(mDataEndpoints, getEndpointKey(streamName, apiName));
+    }
+
+    synchronized void putDataEndpoint(@Nonnull final String streamName,
+                                      @Nonnull final String apiName,
+                                      @Nonnull final String dataEndpoint) {
+        mDataEndpoints.put(getEndpointKey(streamName, apiName),
+                new Entry<String>(dataEndpoint, System.currentTimeMillis() + mTtlInMillis));
+        schedulePersist();
+    }
+
+    /**
+     * Drops the description and the data endpoints of the stream
+     */
+    synchronized void invalidate(@Nonnull final String streamName) {
+        boolean removed = mDescriptions.remove(streamName) != null;
+
+        final String endpointKeyPrefix = streamName + KEY_SEPARATOR;
+        final Iterator<String> iterator = mDataEndpoints.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(endpointKeyPrefix)) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+
+        if (removed) {
+            mLog.debug("Invalidated the cached metadata of stream " + streamName);
+            schedulePersist();
+        }
+    }
+
+    /**
+     * Writes out the pending updates and stops the persistence thread
+     */
+    @Override
+    public void close() {
+        if (mPersistenceExecutor == null) {
+            return;
+        }
+
+        mPersistenceExecutor.shutdown();
+        try {
+            if (!mPersistenceExecutor.awaitTermination(CLOSE_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                mLog.warn("Timed out persisting the stream metadata cache into " + mPersistenceFile);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a write of the cache file unless one is queued already. Called with the lock held.
+     */
+    private void schedulePersist() {
+        if (mPersistenceExecutor == null || mPersistScheduled || mPersistenceExecutor.isShutdown()) {
+            return;
+        }
+
+        mPersistScheduled = true;
+        mPersistenceExecutor.execute(mPersistTask);
+    }
+
+    private static String getEndpointKey(final String streamName, final String apiName) {
+        return streamName + KEY_SEPARATOR + apiName;
+    }
+
+    private static <T> T getValue(final Map<String, Entry<T>> entries, final String key) {
+        final Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.mValue;
+    }
+
+    private void load() {
+        if (!mPersistenceFile.isFile()) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(mPersistenceFile);
+            properties.load(inputStream);
+        } catch (final IOException e) {
+            mLog.exception(e, "Loading the stream metadata cache failed. Starting with an empty cache.");
+            return;
+        } finally {
+            closeQuietly(inputStream);
+        }
+
+        final long now = System.currentTimeMillis();
+        for (final String key : properties.stringPropertyNames()) {
+            try {
+                final String[] fields = properties.getProperty(key).split(FIELD_SEPARATOR, -1);
+                final long expiresAtMillis = Long.parseLong(fields[0]);
+                if (expiresAtMillis <= now) {
+                    continue;
+                }
+
+                if (key.startsWith(DESCRIPTION_KEY_PREFIX)) {
+                    final String streamName = key.substring(DESCRIPTION_KEY_PREFIX.length());
+                    mDescriptions.put(streamName, new Entry<StreamDescription>(
+                            new StreamDescription(StreamDescription.STREAM_DESCRIPTION_CURRENT_VERSION,
+                                    fields[1], streamName, fields[2], fields[3], fields[4],
+                                    StreamStatus.ACTIVE, Long.parseLong(fields[5])),
+                            expiresAtMillis));
+                } else if (key.startsWith(ENDPOINT_KEY_PREFIX)) {
+                    mDataEndpoints.put(key.substring(ENDPOINT_KEY_PREFIX.length()),
+                            new Entry<String>(fields[1], expiresAtMillis));
+                }
+            } catch (final RuntimeException e) {
+                mLog.warn("Skipping the malformed stream metadata cache entry " + key);
+            }
+        }
+
+        mLog.debug(String.format("Loaded %d stream descriptions and %d data endpoints from %s",
+                mDescriptions.size(), mDataEndpoints.size(), mPersistenceFile));
+    }
+
+    /**
+     * Writes the entries into a temporary file which then replaces the cache file so a crash can't leave a
+     * partially written cache behind. Runs on the persistence thread and only holds the lock to take a snapshot.
+     */
+    private void persist() {
+        final Properties properties = snapshot();
+        final File tempFile = new File(mPersistenceFile.getPath() + TEMP_FILE_SUFFIX);
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            properties.store(outputStream, "Kinesis Video stream metadata cache");
+            outputStream.close();
+            outputStream = null;
+
+            if (!tempFile.renameTo(mPersistenceFile)
+                    && !(mPersistenceFile.delete() && tempFile.renameTo(mPersistenceFile))) {
+                throw new IOException("Unable to replace " + mPersistenceFile);
+            }
+        } catch (final IOException e) {
+            mLog.exception(e, "Persisting the stream metadata cache failed.");
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private synchronized Properties snapshot() {
+        mPersistScheduled = false;
+
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, Entry<StreamDescription>> entry : mDescriptions.entrySet()) {
+            final StreamDescription description = entry.getValue().mValue;
+            properties.setProperty(DESCRIPTION_KEY_PREFIX + entry.getKey(), join(
+                    String.valueOf(entry.getValue().mExpiresAtMillis),
+                    description.getDeviceName(),
+                    description.getContentType(),
+                    description.getUpdateVersion(),
+                    description.getStreamArn(),
+                    String.valueOf(description.getCreationTime())));
+        }
+
+        for (final Map.Entry<String, Entry<String>> entry : mDataEndpoints.entrySet()) {
+            properties.setProperty(ENDPOINT_KEY_PREFIX + entry.getKey(), join(
+                    String.valueOf(entry.getValue().mExpiresAtMillis),
+                    entry.getValue().mValue));
+        }
+
+        return properties;
+    }
+
+    private static String join(final String... fields) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                builder.append(FIELD_SEPARATOR);
+            }
+
+            builder.append(fields[i] == null ? "" : fields[i]);
+        }
+
+        return builder.toString();
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (final IOException e) {
+            // Nothing to do
+        }
+    }
+}
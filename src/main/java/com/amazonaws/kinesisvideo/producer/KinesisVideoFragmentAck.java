@@ -23,7 +23,8 @@ public class KinesisVideoFragmentAck {
     private final FragmentAckType mAckType;
 
     /**
-     * Fragment ACK timestamp in 100ns precision
+     * Fragment timecode from the ACK in the units of the stream timecode scale, i.e. milliseconds with the default
+     * scale. It is not in 100ns units like the frame timestamps.
      */
     private final long mTimestamp;
 
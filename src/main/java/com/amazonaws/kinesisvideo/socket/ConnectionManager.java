@@ -0,0 +1,248 @@
+package com.amazonaws.kinesisvideo.socket;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the connections to the PutMedia data endpoints keeping a connected and TLS handshaken spare connection
+ * to every endpoint which has an active upload.
+ *
+ * The token rotation and the connection reset both close the current connection and open a new one to the same
+ * endpoint so the next upload picks up the spare instead of waiting for the TCP connect and the TLS handshake.
+ * The spares are replaced before the endpoints would close them as idle and dropped once the last upload to the
+ * endpoint is released.
+ */
+@ThreadSafe
+public final class ConnectionManager {
+    private static final String THREAD_NAME = "KinesisVideo-ConnectionManager";
+    private static final long MAX_SPARE_IDLE_TIME_IN_MILLISECONDS = 30000;
+    private static final long PREWARM_RETRY_DELAY_IN_MILLISECONDS = 5000;
+
+    private static final class Endpoint {
+        private final URI mUri;
+        private int mActiveConnections = 0;
+        private Socket mSpare;
+        private long mSpareCreatedNanos;
+        private boolean mPrewarming = false;
+
+        private Endpoint(final URI uri) {
+            mUri = uri;
+        }
+    }
+
+    private final SocketFactory mSocketFactory;
+    private final Log mLog;
+    private final ScheduledExecutorService mExecutor;
+    private final Map<String, Endpoint> mEndpoints = new HashMap<String, Endpoint>();
+    private boolean mClosed = false;
+
+    public ConnectionManager(@Nonnull final SocketFactory socketFactory, @Nonnull final Log log) {
+        mSocketFactory = Preconditions.checkNotNull(socketFactory);
+        mLog = Preconditions.checkNotNull(log);
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns a connection to the endpoint of the URI, the spare one if there is one which is still alive. Each
+     * acquired connection should be released with {@link #release(URI)} once it's closed.
+     */
+    @Nonnull
+    public Socket acquire(@Nonnull final URI uri) {
+        final Endpoint endpoint;
+        Socket socket;
+        Socket staleSpare = null;
+        synchronized (this) {
+            endpoint = getEndpoint(uri);
+            endpoint.mActiveConnections++;
+            socket = takeSpare(endpoint);
+            if (socket != null && !isUsable(endpoint, socket)) {
+                staleSpare = socket;
+                socket = null;
+            }
+        }
+
+        closeQuietly(staleSpare);
+
+        if (socket == null) {
+            try {
+                socket = mSocketFactory.createSocket(uri);
+            } catch (final RuntimeException e) {
+                release(uri);
+                throw e;
+            }
+        } else {
+            mLog.debug("Reusing the pre-warmed connection to " + endpoint.mUri.getHost());
+        }
+
+        prewarm(endpoint);
+        return socket;
+    }
+
+    /**
+     * Releases the connection acquired for the URI. The spare connection is closed with the last one.
+     */
+    public void release(@Nonnull final URI uri) {
+        Socket spare = null;
+        synchronized (this) {
+            final Endpoint endpoint = mEndpoints.get(getEndpointKey(uri));
+            if (endpoint == null) {
+                return;
+            }
+
+            if (--endpoint.mActiveConnections <= 0) {
+                spare = takeSpare(endpoint);
+                mEndpoints.remove(getEndpointKey(uri));
+            }
+        }
+
+        closeQuietly(spare);
+    }
+
+    public void close() {
+        synchronized (this) {
+            mClosed = true;
+            for (final Endpoint endpoint : mEndpoints.values()) {
+                closeQuietly(takeSpare(endpoint));
+            }
+
+            mEndpoints.clear();
+        }
+
+        mExecutor.shutdownNow();
+    }
+
+    private Endpoint getEndpoint(final URI uri) {
+        final String key = getEndpointKey(uri);
+        Endpoint endpoint = mEndpoints.get(key);
+        if (endpoint == null) {
+            endpoint = new Endpoint(uri);
+            mEndpoints.put(key, endpoint);
+        }
+
+        return endpoint;
+    }
+
+    private static String getEndpointKey(final URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    private static Socket takeSpare(final Endpoint endpoint) {
+        final Socket spare = endpoint.mSpare;
+        endpoint.mSpare = null;
+        return spare;
+    }
+
+    private void prewarm(final Endpoint endpoint) {
+        synchronized (this) {
+            if (!isActive(endpoint) || endpoint.mPrewarming || endpoint.mSpare != null) {
+                return;
+            }
+
+            endpoint.mPrewarming = true;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                openSpare(endpoint);
+            }
+        });
+    }
+
+    private void openSpare(final Endpoint endpoint) {
+        Socket socket = null;
+        try {
+            socket = mSocketFactory.createSocket(endpoint.mUri);
+            if (socket instanceof SSLSocket) {
+                ((SSLSocket) socket).startHandshake();
+            }
+        } catch (final Exception e) {
+            mLog.exception(e, "Pre-warming the connection to " + endpoint.mUri.getHost() + " failed. Retrying.");
+            closeQuietly(socket);
+            socket = null;
+        }
+
+        synchronized (this) {
+            endpoint.mPrewarming = false;
+            if (socket != null && isActive(endpoint) && endpoint.mSpare == null) {
+                endpoint.mSpare = socket;
+                endpoint.mSpareCreatedNanos = System.nanoTime();
+                socket = null;
+                scheduleSpareRefresh(endpoint, MAX_SPARE_IDLE_TIME_IN_MILLISECONDS);
+            } else if (socket == null && isActive(endpoint)) {
+                scheduleSpareRefresh(endpoint, PREWARM_RETRY_DELAY_IN_MILLISECONDS);
+            }
+        }
+
+        closeQuietly(socket);
+    }
+
+    /**
+     * Replaces the spare connection once it has been idle for too long or opens it if the previous attempt failed
+     */
+    private void scheduleSpareRefresh(final Endpoint endpoint, final long delayInMillis) {
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Socket staleSpare = null;
+                synchronized (ConnectionManager.this) {
+                    final long idleTimeInNanos = System.nanoTime() - endpoint.mSpareCreatedNanos;
+                    if (endpoint.mSpare != null
+                            && idleTimeInNanos >= TimeUnit.MILLISECONDS.toNanos(MAX_SPARE_IDLE_TIME_IN_MILLISECONDS)) {
+                        staleSpare = takeSpare(endpoint);
+                    }
+                }
+
+                closeQuietly(staleSpare);
+                prewarm(endpoint);
+            }
+        }, delayInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks the spare without touching the socket, i.e. without a blocking read on a TLS socket in the acquire
+     * path. The spares are replaced before the endpoints would close them as idle so an old one is not trusted.
+     */
+    private static boolean isUsable(final Endpoint endpoint, final Socket spare) {
+        return !spare.isClosed() && !spare.isInputShutdown() && !spare.isOutputShutdown()
+                && System.nanoTime() - endpoint.mSpareCreatedNanos
+                        < TimeUnit.MILLISECONDS.toNanos(MAX_SPARE_IDLE_TIME_IN_MILLISECONDS);
+    }
+
+    private boolean isActive(final Endpoint endpoint) {
+        return !mClosed && endpoint.mActiveConnections > 0
+                && mEndpoints.get(getEndpointKey(endpoint.mUri)) == endpoint;
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        if (socket == null) {
+            return;
+        }
+
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            // Nothing to do
+        }
+    }
+}
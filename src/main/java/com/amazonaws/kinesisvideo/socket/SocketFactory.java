@@ -2,12 +2,15 @@ package com.amazonaws.kinesisvideo.socket;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
+import java.nio.channels.SocketChannel;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 
@@ -16,6 +19,12 @@ public class SocketFactory {
     private static final int DEFAULT_HTTPS_PORT = 443;
     private static final KeyManager[] NO_KEY_MANAGERS = null;
 
+    /**
+     * The client session cache lives in the context so sharing it lets the reconnects resume the TLS session
+     * instead of doing the full handshake.
+     */
+    private static volatile SSLContext sSslContext;
+
     public Socket createSocket(final URI uri) {
         try {
             return openSocket(uri);
@@ -24,20 +33,79 @@ public class SocketFactory {
         }
     }
 
+    /**
+     * Resolves the address to connect to for the URI.
+     */
+    public InetSocketAddress createSocketAddress(final URI uri) {
+        try {
+            return new InetSocketAddress(toInetAddr(uri), getPort(uri));
+        } catch (final Throwable e) {
+            throw new RuntimeException("Exception while resolving address ! ", e);
+        }
+    }
+
+    /**
+     * Creates a client mode TLS engine for the non-blocking transport or null for the plain http URI.
+     */
+    public SSLEngine createSslEngine(final URI uri) {
+        if (!isHttps(uri)) {
+            return null;
+        }
+
+        try {
+            final SSLEngine engine = getSslContext().createSSLEngine(getHost(uri), getPort(uri));
+            engine.setUseClientMode(true);
+            return engine;
+        } catch (final Throwable e) {
+            throw new RuntimeException("Exception while creating SSL engine ! ", e);
+        }
+    }
+
     private Socket openSocket(final URI uri) throws Exception {
         final InetAddress address = toInetAddr(uri);
         final int port = getPort(uri);
 
         return isHttps(uri)
-                ? createSslSocket(address, port)
-                : new Socket(address, port);
+                ? createSslSocket(address, getHost(uri), port)
+                : createChannelSocket(address, port);
+    }
+
+    /**
+     * Plain sockets are opened through a blocking channel so the payload can be written into the channel directly
+     * with the gathering writes. The socket adaptor still serves the stream based readers.
+     */
+    private Socket createChannelSocket(final InetAddress address, final int port) throws Exception {
+        return SocketChannel.open(new InetSocketAddress(address, port)).socket();
+    }
+
+    /**
+     * The TLS socket is layered over the connected socket so the session is cached under the host name which
+     * the resumption lookups use.
+     */
+    private Socket createSslSocket(final InetAddress address, final String host, final int port) throws Exception {
+        final Socket socket = new Socket(address, port);
+        try {
+            return getSslContext().getSocketFactory().createSocket(socket, host, port, true);
+        } catch (final Exception e) {
+            socket.close();
+            throw e;
+        }
     }
 
-    private Socket createSslSocket(final InetAddress address, final int port) throws Exception {
-        final SSLContext context = SSLContext.getInstance("TLSv1.2");
-        context.init(NO_KEY_MANAGERS, trustAllCertificates(), new SecureRandom());
-        return context.getSocketFactory().createSocket(address, port);
+    private SSLContext getSslContext() throws Exception {
+        SSLContext context = sSslContext;
+        if (context == null) {
+            synchronized (SocketFactory.class) {
+                context = sSslContext;
+                if (context == null) {
+                    context = SSLContext.getInstance("TLSv1.2");
+                    context.init(NO_KEY_MANAGERS, trustAllCertificates(), new SecureRandom());
+                    sSslContext = context;
+                }
+            }
+        }
 
+        return context;
     }
 
     public TrustManager[] trustAllCertificates() {
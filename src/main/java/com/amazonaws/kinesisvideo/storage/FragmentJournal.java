@@ -0,0 +1,625 @@
+package com.amazonaws.kinesisvideo.storage;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the frames put into a stream and the ACKs of their fragments, so the fragments which were
+ * never persisted can be uploaded again after the process restarts.
+ *
+ * The records are appended to memory-mapped segment files and carry a CRC32 checksum, so a record torn by a crash is
+ * detected and the rest of its segment is ignored on recovery. The mappings are forced to the disk at most once a
+ * second and when a segment is full. A segment is deleted once all the fragments starting in it are persisted, or
+ * when the journal exceeds the disk quota.
+ *
+ * A fragment is the run of frames from a key-frame to the next one, matched to the ACKs by the presentation timestamp
+ * of the key-frame in the timecode scale of the stream, which is the unit of the ACK timestamps. Requires the stream
+ * to use the absolute fragment times. With the key-frame
+ * fragmentation every run is a fragment of its own. Otherwise a run is persisted if it lies between a persisted
+ * fragment and the next acknowledged one.
+ *
+ * On creation the journal recovers the segments left by the previous process. The frames of the fragments which were
+ * not persisted are returned by {@link #nextReplayFrame()} and should be put into the stream before any new frames.
+ * The recovered segments are deleted by {@link #completeReplay()} as the replayed frames are journaled again.
+ */
+@ThreadSafe
+public class FragmentJournal {
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_FILE_PREFIX = "journal-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    private static final byte FRAME_RECORD = 1;
+    private static final byte ACK_RECORD = 2;
+
+    /**
+     * payload length, payload CRC32
+     */
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.SIZE / Byte.SIZE;
+
+    /**
+     * type, index, flags, decoding ts, presentation ts, duration, track id
+     */
+    private static final int FRAME_PAYLOAD_HEADER_SIZE = 1 + 2 * Integer.SIZE / Byte.SIZE + 4 * Long.SIZE / Byte.SIZE;
+
+    /**
+     * type, ACK type, timestamp
+     */
+    private static final int ACK_PAYLOAD_SIZE = 1 + Integer.SIZE / Byte.SIZE + Long.SIZE / Byte.SIZE;
+
+    private static final long FORCE_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long NO_FRAGMENT = Long.MIN_VALUE;
+
+    private final File mDirectory;
+    private final long mSegmentSize;
+    private final long mDiskQuota;
+    private final long mTimecodeScale;
+    private final Log mLog;
+    private final CRC32 mCrc = new CRC32();
+    private final ArrayDeque<Segment> mSegments = new ArrayDeque<Segment>();
+
+    /**
+     * Segments left by the previous process and the fragments of them to replay
+     */
+    private final List<Segment> mRecoveredSegments = new ArrayList<Segment>();
+    private final List<Fragment> mReplayFragments = new ArrayList<Fragment>();
+    private int mRecoveredFragmentCount;
+    private long mReplayFrameCount;
+    private long mReplayBytes;
+    private long mCorruptRecords;
+
+    /**
+     * Position of the next frame to replay
+     */
+    private int mReplayFragmentIndex;
+    private int mReplaySegmentIndex;
+    private int mReplayPosition;
+    private int mReplayFramesLeft;
+
+    private long mNextSegmentSequence;
+    private long mAllocatedBytes;
+    private long mLastFragmentStartTimecode = NO_FRAGMENT;
+    private long mPersistedWatermarkTimecode = NO_FRAGMENT;
+    private long mLastForceNanos = System.nanoTime();
+    private long mJournaledFrames;
+    private long mJournaledBytes;
+    private long mDroppedSegments;
+    private boolean mClosed;
+
+    /**
+     * @param directory the directory of the segment files, created if missing
+     * @param segmentSize the size of a segment file, a larger frame gets a segment of its own
+     * @param diskQuota the maximum size of the segment files, at least two segments
+     * @param timecodeScale the timecode scale of the stream in hundreds of nanoseconds
+     * @param log the log
+     * @throws IOException if the recovered segments can't be read
+     */
+    public FragmentJournal(@Nonnull final File directory,
+                           final long segmentSize,
+                           final long diskQuota,
+                           final long timecodeScale,
+                           @Nonnull final Log log) throws IOException {
+        Preconditions.checkArgument(segmentSize > RECORD_HEADER_SIZE + FRAME_PAYLOAD_HEADER_SIZE
+                && segmentSize <= Integer.MAX_VALUE, "Invalid segment size");
+        Preconditions.checkArgument(diskQuota >= 2 * segmentSize, "Disk quota should fit at least two segments");
+        Preconditions.checkArgument(timecodeScale > 0, "Timecode scale should be positive");
+        mDirectory = Preconditions.checkNotNull(directory);
+        mSegmentSize = segmentSize;
+        mDiskQuota = diskQuota;
+        mTimecodeScale = timecodeScale;
+        mLog = Preconditions.checkNotNull(log);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the journal directory " + directory);
+        }
+
+        recover();
+    }
+
+    /**
+     * Journals the frame before it's put into the stream
+     *
+     * @throws IOException if the segment file can't be created
+     */
+    public synchronized void appendFrame(@Nonnull final KinesisVideoFrame frame) throws IOException {
+        Preconditions.checkState(!mClosed, "Journal is closed");
+        if (FrameFlags.isKeyFrame(frame.getFlags())) {
+            mLastFragmentStartTimecode = frame.getPresentationTs() / mTimecodeScale;
+        }
+
+        final Segment segment = segmentFor(FRAME_PAYLOAD_HEADER_SIZE + frame.getSize());
+        final MappedByteBuffer mapping = segment.mapping;
+        final int recordPosition = mapping.position();
+        mapping.position(recordPosition + RECORD_HEADER_SIZE);
+        mapping.put(FRAME_RECORD);
+        mapping.putInt(frame.getIndex());
+        mapping.putInt(frame.getFlags());
+        mapping.putLong(frame.getDecodingTs());
+        mapping.putLong(frame.getPresentationTs());
+        mapping.putLong(frame.getDuration());
+        mapping.putLong(frame.getTrackId());
+        mapping.put(frame.getData().duplicate());
+        completeRecord(segment, recordPosition);
+
+        segment.lastFragmentStartTimecode = mLastFragmentStartTimecode;
+        mJournaledFrames++;
+        mJournaledBytes += frame.getSize();
+    }
+
+    /**
+     * Journals the fragment ACK and deletes the segments whose fragments are all persisted
+     *
+     * @throws IOException if the segment file can't be created
+     */
+    public synchronized void appendAck(@Nonnull final KinesisVideoFragmentAck ack) throws IOException {
+        Preconditions.checkState(!mClosed, "Journal is closed");
+        final int ackType = ack.getAckType().getIntType();
+        if (ackType == FragmentAckType.FRAGMENT_ACK_TYPE_UNDEFINED
+                || ackType == FragmentAckType.FRAGMENT_ACK_TYPE_IDLE) {
+            return;
+        }
+
+        final Segment segment = segmentFor(ACK_PAYLOAD_SIZE);
+        final MappedByteBuffer mapping = segment.mapping;
+        final int recordPosition = mapping.position();
+        mapping.position(recordPosition + RECORD_HEADER_SIZE);
+        mapping.put(ACK_RECORD);
+        mapping.putInt(ackType);
+        mapping.putLong(ack.getTimestamp());
+        completeRecord(segment, recordPosition);
+
+        if (ackType == FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED) {
+            // The ACK timestamp is the fragment timecode
+            mPersistedWatermarkTimecode = Math.max(mPersistedWatermarkTimecode, ack.getTimestamp());
+            deletePersistedSegments();
+        }
+    }
+
+    /**
+     * Returns the next frame of the recovered fragments which were not persisted. The frame data is a read-only slice
+     * of the recovered segment which stays valid until {@link #completeReplay()}.
+     *
+     * @return the next frame to replay or null if all have been returned
+     */
+    @Nullable
+    public synchronized KinesisVideoFrame nextReplayFrame() {
+        if (mClosed) {
+            return null;
+        }
+
+        while (mReplayFramesLeft == 0) {
+            if (mReplayFragmentIndex >= mReplayFragments.size()) {
+                return null;
+            }
+
+            final Fragment fragment = mReplayFragments.get(mReplayFragmentIndex++);
+            mReplaySegmentIndex = fragment.segmentIndex;
+            mReplayPosition = fragment.position;
+            mReplayFramesLeft = fragment.frames;
+        }
+
+        while (true) {
+            final Segment segment = mRecoveredSegments.get(mReplaySegmentIndex);
+            if (mReplayPosition >= segment.end) {
+                // The fragment continues in the next segment
+                mReplaySegmentIndex++;
+                mReplayPosition = 0;
+                continue;
+            }
+
+            final MappedByteBuffer mapping = segment.mapping;
+            final int position = mReplayPosition;
+            mReplayPosition += RECORD_HEADER_SIZE + mapping.getInt(position);
+            if (mapping.get(position + RECORD_HEADER_SIZE) == FRAME_RECORD) {
+                mReplayFramesLeft--;
+                return frameAt(mapping, position);
+            }
+        }
+    }
+
+    /**
+     * Deletes the recovered segments once their frames have been replayed and journaled again
+     */
+    public synchronized void completeReplay() {
+        for (final Segment segment : mRecoveredSegments) {
+            deleteFile(segment.file);
+        }
+
+        mRecoveredSegments.clear();
+        mReplayFragments.clear();
+        mReplayFramesLeft = 0;
+        mReplayFragmentIndex = 0;
+    }
+
+    /**
+     * @return number of the fragments found in the recovered segments
+     */
+    public synchronized int getRecoveredFragmentCount() {
+        return mRecoveredFragmentCount;
+    }
+
+    /**
+     * @return number of the recovered fragments which were not persisted
+     */
+    public synchronized int getReplayFragmentCount() {
+        return mReplayFragments.size();
+    }
+
+    public synchronized long getReplayFrameCount() {
+        return mReplayFrameCount;
+    }
+
+    /**
+     * @return frame bytes of the recovered fragments which were not persisted
+     */
+    public synchronized long getReplayBytes() {
+        return mReplayBytes;
+    }
+
+    /**
+     * @return number of the recovered records with a bad checksum, i.e. torn by a crash
+     */
+    public synchronized long getCorruptRecords() {
+        return mCorruptRecords;
+    }
+
+    public synchronized long getJournaledFrames() {
+        return mJournaledFrames;
+    }
+
+    public synchronized long getJournaledBytes() {
+        return mJournaledBytes;
+    }
+
+    /**
+     * @return number of the segments deleted before their fragments were persisted to stay within the quota
+     */
+    public synchronized long getDroppedSegments() {
+        return mDroppedSegments;
+    }
+
+    /**
+     * @return size of the live segment files on the disk
+     */
+    public synchronized long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    /**
+     * Forces the journal to the disk and releases it. The segments are kept for the next process to recover.
+     */
+    public synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        final Segment tail = mSegments.peekLast();
+        if (tail != null) {
+            tail.mapping.force();
+        }
+
+        mSegments.clear();
+        mRecoveredSegments.clear();
+        mReplayFragments.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s{journaled: %d frames %d bytes, persisted up to timecode: %d, disk: %d of %d bytes, "
+                        + "dropped: %d segments, recovered: %d fragments, replay: %d fragments %d frames %d bytes, "
+                        + "corrupt: %d records}",
+                getClass().getSimpleName(), mJournaledFrames, mJournaledBytes, mPersistedWatermarkTimecode,
+                mAllocatedBytes, mDiskQuota, mDroppedSegments, mRecoveredFragmentCount, mReplayFragments.size(),
+                mReplayFrameCount, mReplayBytes, mCorruptRecords);
+    }
+
+    /**
+     * @return the segment with the room for the record, a new one if the tail is full
+     */
+    @Nonnull
+    private Segment segmentFor(final int payloadSize) throws IOException {
+        final int recordSize = RECORD_HEADER_SIZE + payloadSize;
+        final Segment tail = mSegments.peekLast();
+        if (tail != null && tail.mapping.remaining() >= recordSize) {
+            return tail;
+        }
+
+        if (tail != null) {
+            tail.mapping.force();
+        }
+
+        final long segmentSize = Math.max(mSegmentSize, recordSize);
+        while (mAllocatedBytes + segmentSize > mDiskQuota && !mSegments.isEmpty()) {
+            final Segment oldest = mSegments.pollFirst();
+            mLog.warn("Journal %s exceeds the quota, dropping the fragments up to timecode %d", mDirectory,
+                    oldest.lastFragmentStartTimecode);
+            mDroppedSegments++;
+            deleteSegment(oldest);
+        }
+
+        return newSegment(segmentSize);
+    }
+
+    /**
+     * Writes the header of the record once its payload is in place
+     */
+    private void completeRecord(@Nonnull final Segment segment, final int recordPosition) {
+        final MappedByteBuffer mapping = segment.mapping;
+        final int payloadSize = mapping.position() - recordPosition - RECORD_HEADER_SIZE;
+        mapping.putInt(recordPosition + Integer.SIZE / Byte.SIZE, checksum(mapping, recordPosition, payloadSize));
+        // The length goes last so a torn record reads as the end of the segment or fails the checksum
+        mapping.putInt(recordPosition, payloadSize);
+        segment.end = mapping.position();
+
+        final long now = System.nanoTime();
+        if (now - mLastForceNanos >= FORCE_INTERVAL_IN_NANOS) {
+            mapping.force();
+            mLastForceNanos = now;
+        }
+    }
+
+    private int checksum(@Nonnull final ByteBuffer mapping, final int recordPosition, final int payloadSize) {
+        final ByteBuffer payload = mapping.duplicate();
+        payload.limit(recordPosition + RECORD_HEADER_SIZE + payloadSize);
+        payload.position(recordPosition + RECORD_HEADER_SIZE);
+        mCrc.reset();
+        mCrc.update(payload);
+        return (int) mCrc.getValue();
+    }
+
+    private void deletePersistedSegments() {
+        // Keep the segment being written to
+        while (mSegments.size() > 1 && mSegments.peekFirst().lastFragmentStartTimecode <= mPersistedWatermarkTimecode) {
+            deleteSegment(mSegments.pollFirst());
+        }
+    }
+
+    @Nonnull
+    private Segment newSegment(final long segmentSize) throws IOException {
+        final File file = new File(mDirectory, SEGMENT_FILE_PREFIX + mNextSegmentSequence++ + SEGMENT_FILE_SUFFIX);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(segmentSize);
+            // The mapping stays valid after the file is closed
+            final Segment segment = new Segment(file,
+                    randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            segment.lastFragmentStartTimecode = mLastFragmentStartTimecode;
+            mSegments.addLast(segment);
+            mAllocatedBytes += segmentSize;
+            return segment;
+        } catch (final IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void deleteSegment(@Nonnull final Segment segment) {
+        mAllocatedBytes -= segment.mapping.capacity();
+        deleteFile(segment.file);
+    }
+
+    private void deleteFile(@Nonnull final File file) {
+        // The pages are released when the mapping is collected
+        if (!file.delete()) {
+            mLog.warn("Unable to delete the journal segment %s", file);
+        }
+    }
+
+    /**
+     * Reads the segments left by the previous process and finds the fragments to replay
+     */
+    private void recover() throws IOException {
+        final File[] files = mDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().startsWith(SEGMENT_FILE_PREFIX)
+                        && file.getName().endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File first, final File second) {
+                return Long.compare(segmentSequence(first), segmentSequence(second));
+            }
+        });
+
+        final List<Fragment> fragments = new ArrayList<Fragment>();
+        final Set<Long> fragmentStarts = new HashSet<Long>();
+        final TreeSet<Long> acknowledgedStarts = new TreeSet<Long>();
+        final Set<Long> persistedStarts = new HashSet<Long>();
+        Fragment fragment = null;
+        for (final File file : files) {
+            mNextSegmentSequence = Math.max(mNextSegmentSequence, segmentSequence(file) + 1);
+            final Segment segment = mapForRecovery(file);
+            final int segmentIndex = mRecoveredSegments.size();
+            mRecoveredSegments.add(segment);
+
+            final MappedByteBuffer mapping = segment.mapping;
+            int position = 0;
+            while (position + RECORD_HEADER_SIZE < mapping.capacity()) {
+                final int payloadSize = mapping.getInt(position);
+                if (payloadSize <= 0 || position + RECORD_HEADER_SIZE + payloadSize > mapping.capacity()) {
+                    // The end of the journaled records
+                    break;
+                }
+
+                if (checksum(mapping, position, payloadSize) != mapping.getInt(position + Integer.SIZE / Byte.SIZE)) {
+                    mCorruptRecords++;
+                    break;
+                }
+
+                final byte type = mapping.get(position + RECORD_HEADER_SIZE);
+                if (type == FRAME_RECORD) {
+                    final KinesisVideoFrame frame = frameAt(mapping, position);
+                    if (FrameFlags.isKeyFrame(frame.getFlags())) {
+                        final long startTimecode = frame.getPresentationTs() / mTimecodeScale;
+                        // The fragments replayed by a process which crashed before completing the replay are
+                        // journaled twice
+                        fragment = fragmentStarts.add(startTimecode)
+                                ? new Fragment(startTimecode, segmentIndex, position)
+                                : null;
+                        if (fragment != null) {
+                            fragments.add(fragment);
+                        }
+                    }
+
+                    // The frames before the first key-frame can't be decoded
+                    if (fragment != null) {
+                        fragment.frames++;
+                        fragment.bytes += frame.getSize();
+                    }
+                } else if (type == ACK_RECORD) {
+                    final int ackPosition = position + RECORD_HEADER_SIZE + 1;
+                    final int ackType = mapping.getInt(ackPosition);
+                    final long startTimecode = mapping.getLong(ackPosition + Integer.SIZE / Byte.SIZE);
+                    acknowledgedStarts.add(startTimecode);
+                    if (ackType == FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED) {
+                        persistedStarts.add(startTimecode);
+                    }
+                }
+
+                position += RECORD_HEADER_SIZE + payloadSize;
+            }
+
+            segment.end = position;
+        }
+
+        mRecoveredFragmentCount = fragments.size();
+        for (final Fragment recovered : fragments) {
+            if (!isPersisted(recovered.startTimecode, acknowledgedStarts, persistedStarts)) {
+                mReplayFragments.add(recovered);
+                mReplayFrameCount += recovered.frames;
+                mReplayBytes += recovered.bytes;
+            }
+        }
+
+        mLog.info("Recovered journal %s: %d of %d fragments to replay, %d bytes, %d corrupt records", mDirectory,
+                mReplayFragments.size(), mRecoveredFragmentCount, mReplayBytes, mCorruptRecords);
+    }
+
+    /**
+     * @return whether the run of frames starting at the time is persisted on its own or as a part of a fragment
+     */
+    private static boolean isPersisted(final long startTimecode,
+                                       @Nonnull final TreeSet<Long> acknowledgedStarts,
+                                       @Nonnull final Set<Long> persistedStarts) {
+        if (persistedStarts.contains(startTimecode)) {
+            return true;
+        }
+
+        // Within a persisted fragment which is followed by another acknowledged one
+        final Long fragmentStart = acknowledgedStarts.floor(startTimecode);
+        return fragmentStart != null && persistedStarts.contains(fragmentStart)
+                && acknowledgedStarts.higher(startTimecode) != null;
+    }
+
+    @Nonnull
+    private static Segment mapForRecovery(@Nonnull final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            Preconditions.checkState(channel.size() <= Integer.MAX_VALUE, "The journal segment is too big");
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static long segmentSequence(@Nonnull final File file) {
+        final String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(),
+                    name.length() - SEGMENT_FILE_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Nonnull
+    private static KinesisVideoFrame frameAt(@Nonnull final MappedByteBuffer mapping, final int recordPosition) {
+        final int payloadSize = mapping.getInt(recordPosition);
+        int position = recordPosition + RECORD_HEADER_SIZE + 1;
+        final int index = mapping.getInt(position);
+        final int flags = mapping.getInt(position += Integer.SIZE / Byte.SIZE);
+        final long decodingTs = mapping.getLong(position += Integer.SIZE / Byte.SIZE);
+        final long presentationTs = mapping.getLong(position += Long.SIZE / Byte.SIZE);
+        final long duration = mapping.getLong(position += Long.SIZE / Byte.SIZE);
+        final long trackId = mapping.getLong(position += Long.SIZE / Byte.SIZE);
+
+        final ByteBuffer data = mapping.duplicate();
+        data.limit(recordPosition + RECORD_HEADER_SIZE + payloadSize);
+        data.position(recordPosition + RECORD_HEADER_SIZE + FRAME_PAYLOAD_HEADER_SIZE);
+        return new KinesisVideoFrame(index, flags, decodingTs, presentationTs, duration,
+                data.slice().asReadOnlyBuffer(), trackId);
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final MappedByteBuffer mapping;
+
+        /**
+         * End of the records
+         */
+        private int end;
+
+        /**
+         * Start of the last fragment with frames in the segment
+         */
+        private long lastFragmentStartTimecode = NO_FRAGMENT;
+
+        private Segment(final File file, final MappedByteBuffer mapping) {
+            this.file = file;
+            this.mapping = mapping;
+        }
+    }
+
+    /**
+     * Run of the recovered frames from a key-frame to the next one
+     */
+    private static final class Fragment {
+        private final long startTimecode;
+        private final int segmentIndex;
+        private final int position;
+        private int frames;
+        private long bytes;
+
+        private Fragment(final long startTimecode, final int segmentIndex, final int position) {
+            this.startTimecode = startTimecode;
+            this.segmentIndex = segmentIndex;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.amazonaws.kinesisvideo.storage;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First-in first-out store of the frames which don't fit into the producer's content store, i.e. while the uplink is
+ * down. The frames are appended to memory-mapped segment files and are read back as slices of the mapped segments in
+ * the order they were appended, which is the timestamp order of the stream. A segment file is deleted once all of
+ * its frames are drained.
+ *
+ * The segments take at most the disk quota. When the quota is used up the store either evicts the oldest segment or
+ * rejects the new frames, depending on the {@link EvictionPolicy}. Either way the frames following the gap are
+ * dropped up to the next key-frame so the drained stream stays decodable.
+ *
+ * The spilled frames are only kept for the lifetime of the store - the segments left over by a previous process are
+ * deleted on creation.
+ */
+@ThreadSafe
+public class FrameSpillStore {
+    public enum EvictionPolicy {
+        /**
+         * Evicts the oldest segment to make room for the new frames, keeping the most recent media
+         */
+        DROP_OLDEST,
+
+        /**
+         * Rejects the new frames until the store is drained, keeping the media closest to the outage start
+         */
+        DROP_NEWEST
+    }
+
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".spill";
+
+    /**
+     * size, index, flags, decoding ts, presentation ts, duration, track id
+     */
+    private static final int RECORD_HEADER_SIZE = 3 * Integer.SIZE / Byte.SIZE + 4 * Long.SIZE / Byte.SIZE;
+
+    private static final long DRAIN_RATE_WINDOW_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final File mDirectory;
+    private final long mSegmentSize;
+    private final long mDiskQuota;
+    private final EvictionPolicy mEvictionPolicy;
+    private final Log mLog;
+    private final ArrayDeque<Segment> mSegments = new ArrayDeque<Segment>();
+
+    private long mNextSegmentSequence;
+
+    /**
+     * Sequence number of the oldest frame, i.e. the number of the frames removed or evicted so far
+     */
+    private long mHeadSequence;
+    private long mAllocatedBytes;
+    private long mDepthBytes;
+    private long mDepthFrames;
+    private boolean mSkipToKeyFrameOnAppend;
+    private boolean mSkipToKeyFrameOnDrain;
+    private boolean mClosed;
+
+    private long mSpilledFrames;
+    private long mSpilledBytes;
+    private long mDrainedFrames;
+    private long mDrainedBytes;
+    private long mEvictedFrames;
+    private long mRejectedFrames;
+    private long mDroppedFrames;
+    private long mMaxDepthBytes;
+
+    private long mDrainWindowStartNanos;
+    private long mDrainWindowBytes;
+    private long mDrainBytesPerSecond;
+
+    /**
+     * @param directory the directory of the segment files, created if missing
+     * @param segmentSize the size of a segment file, a larger frame gets a segment of its own
+     * @param diskQuota the maximum size of the segment files, at least two segments
+     * @param evictionPolicy what to drop when the quota is used up
+     * @param log the log
+     */
+    public FrameSpillStore(@Nonnull final File directory,
+                           final long segmentSize,
+                           final long diskQuota,
+                           @Nonnull final EvictionPolicy evictionPolicy,
+                           @Nonnull final Log log) throws IOException {
+        Preconditions.checkArgument(segmentSize > RECORD_HEADER_SIZE && segmentSize <= Integer.MAX_VALUE,
+                "Invalid segment size");
+        Preconditions.checkArgument(diskQuota >= 2 * segmentSize, "Disk quota should fit at least two segments");
+        mDirectory = Preconditions.checkNotNull(directory);
+        mSegmentSize = segmentSize;
+        mDiskQuota = diskQuota;
+        mEvictionPolicy = Preconditions.checkNotNull(evictionPolicy);
+        mLog = Preconditions.checkNotNull(log);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the spill directory " + directory);
+        }
+
+        deleteLeftOverSegments();
+    }
+
+    /**
+     * Appends the frame after the previously appended ones
+     *
+     * @return whether the frame is stored, false if it was rejected or dropped after a gap
+     * @throws IOException if the segment file can't be created
+     */
+    public synchronized boolean append(@Nonnull final KinesisVideoFrame frame) throws IOException {
+        Preconditions.checkState(!mClosed, "Spill store is closed");
+        final boolean keyFrame = FrameFlags.isKeyFrame(frame.getFlags());
+        if (mSkipToKeyFrameOnAppend && !keyFrame) {
+            mRejectedFrames++;
+            return false;
+        }
+
+        final int recordSize = RECORD_HEADER_SIZE + frame.getSize();
+        Segment tail = mSegments.peekLast();
+        if (tail == null || tail.mapping.remaining() < recordSize) {
+            final long segmentSize = Math.max(mSegmentSize, recordSize);
+            if (!makeRoom(segmentSize)) {
+                mRejectedFrames++;
+                mSkipToKeyFrameOnAppend = true;
+                return false;
+            }
+
+            tail = newSegment(segmentSize);
+        }
+
+        mSkipToKeyFrameOnAppend = false;
+        final MappedByteBuffer mapping = tail.mapping;
+        mapping.putInt(frame.getSize());
+        mapping.putInt(frame.getIndex());
+        mapping.putInt(frame.getFlags());
+        mapping.putLong(frame.getDecodingTs());
+        mapping.putLong(frame.getPresentationTs());
+        mapping.putLong(frame.getDuration());
+        mapping.putLong(frame.getTrackId());
+        mapping.put(frame.getData().duplicate());
+        tail.frames++;
+
+        mDepthFrames++;
+        mDepthBytes += recordSize;
+        mMaxDepthBytes = Math.max(mMaxDepthBytes, mDepthBytes);
+        mSpilledFrames++;
+        mSpilledBytes += frame.getSize();
+        return true;
+    }
+
+    /**
+     * Returns the oldest frame without removing it. The frame data is a read-only slice of the segment which can be
+     * overwritten once the frame is removed.
+     *
+     * @return the oldest frame or null if the store is empty
+     */
+    @Nullable
+    public synchronized KinesisVideoFrame peek() {
+        while (true) {
+            final Segment head = mSegments.peekFirst();
+            if (head == null || head.frames == 0) {
+                return null;
+            }
+
+            final KinesisVideoFrame frame = head.frameAt(head.readPosition);
+            if (!mSkipToKeyFrameOnDrain || FrameFlags.isKeyFrame(frame.getFlags())) {
+                mSkipToKeyFrameOnDrain = false;
+                return frame;
+            }
+
+            // The frames depending on the evicted ones can't be decoded
+            removeHead(head);
+            mEvictedFrames++;
+        }
+    }
+
+    /**
+     * @return sequence number of the frame {@link #peek()} returned, which changes once the frame is removed or
+     * evicted
+     */
+    public synchronized long getHeadSequence() {
+        return mHeadSequence;
+    }
+
+    /**
+     * Removes the oldest frame once it has been put into the producer
+     */
+    public synchronized void remove() {
+        final Segment head = mSegments.peekFirst();
+        Preconditions.checkState(head != null && head.frames > 0, "Spill store is empty");
+        final int frameSize = removeHead(head);
+        mDrainedFrames++;
+        mDrainedBytes += frameSize;
+        recordDrainRate(frameSize);
+    }
+
+    /**
+     * Removes the oldest frame once it has been put into the producer unless the frame was evicted in the meantime,
+     * so the frames can be appended while the peeked one is being put.
+     *
+     * @param headSequence the {@link #getHeadSequence()} of the frame when it was peeked
+     * @return whether the frame was removed
+     */
+    public synchronized boolean remove(final long headSequence) {
+        if (mClosed || headSequence != mHeadSequence || mDepthFrames == 0) {
+            return false;
+        }
+
+        remove();
+        return true;
+    }
+
+    /**
+     * Drops the oldest frame the producer failed to put unless the frame was evicted in the meantime. The frames
+     * depending on it are skipped up to the next key frame.
+     *
+     * @param headSequence the {@link #getHeadSequence()} of the frame when it was peeked
+     * @return whether the frame was dropped
+     */
+    public synchronized boolean drop(final long headSequence) {
+        if (mClosed || headSequence != mHeadSequence || mDepthFrames == 0) {
+            return false;
+        }
+
+        removeHead(mSegments.peekFirst());
+        mDroppedFrames++;
+        mSkipToKeyFrameOnDrain = true;
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return mDepthFrames == 0;
+    }
+
+    /**
+     * @return number of the frames waiting to be drained
+     */
+    public synchronized long getDepthFrames() {
+        return mDepthFrames;
+    }
+
+    /**
+     * @return bytes of the frames waiting to be drained including the record headers
+     */
+    public synchronized long getDepthBytes() {
+        return mDepthBytes;
+    }
+
+    public synchronized long getMaxDepthBytes() {
+        return mMaxDepthBytes;
+    }
+
+    /**
+     * @return size of the segment files on the disk
+     */
+    public synchronized long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    public synchronized long getSpilledFrames() {
+        return mSpilledFrames;
+    }
+
+    public synchronized long getSpilledBytes() {
+        return mSpilledBytes;
+    }
+
+    public synchronized long getDrainedFrames() {
+        return mDrainedFrames;
+    }
+
+    public synchronized long getDrainedBytes() {
+        return mDrainedBytes;
+    }
+
+    /**
+     * @return number of the stored frames dropped by the eviction
+     */
+    public synchronized long getEvictedFrames() {
+        return mEvictedFrames;
+    }
+
+    /**
+     * @return number of the frames which weren't stored for the lack of space
+     */
+    public synchronized long getRejectedFrames() {
+        return mRejectedFrames;
+    }
+
+    /**
+     * @return number of the frames dropped because the producer failed to put them
+     */
+    public synchronized long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * @return frame bytes drained per second over the last second
+     */
+    public synchronized long getDrainBytesPerSecond() {
+        if (System.nanoTime() - mDrainWindowStartNanos > 2 * DRAIN_RATE_WINDOW_IN_NANOS) {
+            // Nothing drained over the last window
+            return 0;
+        }
+
+        return mDrainBytesPerSecond;
+    }
+
+    public long getDiskQuota() {
+        return mDiskQuota;
+    }
+
+    @Nonnull
+    public EvictionPolicy getEvictionPolicy() {
+        return mEvictionPolicy;
+    }
+
+    /**
+     * Drops the stored frames and deletes the segment files
+     */
+    public synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        while (!mSegments.isEmpty()) {
+            deleteSegment(mSegments.pollFirst());
+        }
+
+        mDepthFrames = 0;
+        mDepthBytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s{depth: %d frames %d bytes, max depth: %d bytes, spilled: %d frames, "
+                        + "drained: %d frames at %d B/s, evicted: %d frames, rejected: %d frames, "
+                        + "dropped: %d frames, disk: %d of %d bytes}",
+                getClass().getSimpleName(), mDepthFrames, mDepthBytes, mMaxDepthBytes, mSpilledFrames,
+                mDrainedFrames, getDrainBytesPerSecond(), mEvictedFrames, mRejectedFrames, mDroppedFrames,
+                mAllocatedBytes, mDiskQuota);
+    }
+
+    /**
+     * Makes room for a new segment within the quota
+     *
+     * @return whether the segment fits
+     */
+    private boolean makeRoom(final long segmentSize) {
+        if (mAllocatedBytes + segmentSize <= mDiskQuota) {
+            return true;
+        }
+
+        if (mEvictionPolicy == EvictionPolicy.DROP_NEWEST || segmentSize > mDiskQuota) {
+            return false;
+        }
+
+        while (mAllocatedBytes + segmentSize > mDiskQuota && !mSegments.isEmpty()) {
+            final Segment oldest = mSegments.pollFirst();
+            mEvictedFrames += oldest.frames;
+            mHeadSequence += oldest.frames;
+            mDepthFrames -= oldest.frames;
+            mDepthBytes -= oldest.mapping.position() - oldest.readPosition;
+            deleteSegment(oldest);
+            mSkipToKeyFrameOnDrain = true;
+        }
+
+        return true;
+    }
+
+    @Nonnull
+    private Segment newSegment(final long segmentSize) throws IOException {
+        final File file = new File(mDirectory, SEGMENT_FILE_PREFIX + mNextSegmentSequence++ + SEGMENT_FILE_SUFFIX);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(segmentSize);
+            // The mapping stays valid after the file is closed
+            final Segment segment = new Segment(file,
+                    randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            mSegments.addLast(segment);
+            mAllocatedBytes += segmentSize;
+            return segment;
+        } catch (final IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return the frame size of the removed record
+     */
+    private int removeHead(@Nonnull final Segment head) {
+        final int frameSize = head.mapping.getInt(head.readPosition);
+        head.readPosition += RECORD_HEADER_SIZE + frameSize;
+        head.frames--;
+        mHeadSequence++;
+        mDepthFrames--;
+        mDepthBytes -= RECORD_HEADER_SIZE + frameSize;
+
+        if (head.frames == 0) {
+            if (mSegments.size() > 1) {
+                mSegments.pollFirst();
+                deleteSegment(head);
+            } else {
+                // Rewind the segment being written to
+                head.mapping.clear();
+                head.readPosition = 0;
+            }
+        }
+
+        return frameSize;
+    }
+
+    private void deleteSegment(@Nonnull final Segment segment) {
+        mAllocatedBytes -= segment.mapping.capacity();
+        // The pages are released when the mapping is collected
+        if (!segment.file.delete()) {
+            mLog.warn("Unable to delete the spill segment %s", segment.file);
+        }
+    }
+
+    private void deleteLeftOverSegments() {
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (final File file : files) {
+            if (file.getName().startsWith(SEGMENT_FILE_PREFIX) && file.getName().endsWith(SEGMENT_FILE_SUFFIX)
+                    && !file.delete()) {
+                mLog.warn("Unable to delete the spill segment %s", file);
+            }
+        }
+    }
+
+    private void recordDrainRate(final int frameSize) {
+        final long now = System.nanoTime();
+        final long elapsed = now - mDrainWindowStartNanos;
+        mDrainWindowBytes += frameSize;
+        if (elapsed >= DRAIN_RATE_WINDOW_IN_NANOS) {
+            mDrainBytesPerSecond = elapsed > 2 * DRAIN_RATE_WINDOW_IN_NANOS
+                    ? 0
+                    : mDrainWindowBytes * DRAIN_RATE_WINDOW_IN_NANOS / elapsed;
+            mDrainWindowStartNanos = now;
+            mDrainWindowBytes = 0;
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final MappedByteBuffer mapping;
+        private int readPosition;
+        private int frames;
+
+        private Segment(final File file, final MappedByteBuffer mapping) {
+            this.file = file;
+            this.mapping = mapping;
+        }
+
+        @Nonnull
+        private KinesisVideoFrame frameAt(final int position) {
+            final int size = mapping.getInt(position);
+            final int index = mapping.getInt(position + 4);
+            final int flags = mapping.getInt(position + 8);
+            final long decodingTs = mapping.getLong(position + 12);
+            final long presentationTs = mapping.getLong(position + 20);
+            final long duration = mapping.getLong(position + 28);
+            final long trackId = mapping.getLong(position + 36);
+
+            final ByteBuffer data = mapping.duplicate();
+            data.limit(position + RECORD_HEADER_SIZE + size);
+            data.position(position + RECORD_HEADER_SIZE);
+            return new KinesisVideoFrame(index, flags, decodingTs, presentationTs, duration,
+                    data.slice().asReadOnlyBuffer(), trackId);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed loop upload rate control for a stream (AIMD).
+ *
+ * The fragment round trip time is measured from the end of the fragment, i.e. the next key-frame being put, to the
+ * RECEIVED ACK for it. While the smoothed round trip time stays close to the minimum one the rate is increased
+ * additively, and once it grows, or the producer reports the latency or the buffer pressure, the rate is decreased
+ * multiplicatively from the rate the data was actually sent at. The listeners get the upload rate for the throttler
+ * and the recommended encoder bitrate for the media source.
+ */
+@ThreadSafe
+public class AdaptiveRateController {
+    /**
+     * Notified when the rate changes
+     */
+    public interface Listener {
+        /**
+         * @param uploadBitsPerSecond the rate to upload at
+         * @param encoderBitsPerSecond the recommended encoder bitrate
+         */
+        void onRateChanged(long uploadBitsPerSecond, long encoderBitsPerSecond);
+    }
+
+    private static final long NANOS_IN_A_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double DECREASE_FACTOR = 0.7;
+    private static final double INCREASE_FRACTION_OF_MAX = 0.05;
+    private static final double CONGESTED_RTT_RATIO = 1.5;
+    private static final double RTT_SMOOTHING = 0.125;
+    private static final double APP_LIMITED_RATIO = 0.5;
+    private static final double ENCODER_HEADROOM = 0.85;
+    private static final long MIN_RTT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_FRAGMENTS_IN_FLIGHT = 64;
+
+    private final long mMinBitsPerSecond;
+    private final long mMaxBitsPerSecond;
+    private final long mMaxEncoderBitsPerSecond;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    /**
+     * Times the not yet acknowledged fragments started at
+     */
+    private final long[] mFragmentStartNanos = new long[MAX_FRAGMENTS_IN_FLIGHT];
+    private int mFragmentHead = 0;
+    private int mFragmentCount = 0;
+
+    private long mBitsPerSecond;
+    private long mMinRttNanos = Long.MAX_VALUE;
+    private long mMinRttTimestampNanos;
+    private long mSmoothedRttNanos;
+    private long mLastDecreaseNanos;
+    private long mDeliveryBitsPerSecond;
+    private long mDeliverySampleNanos = System.nanoTime();
+    private long mDeliverySampleBytes;
+
+    /**
+     * @param minBitsPerSecond the rate never goes below
+     * @param maxBitsPerSecond the rate never goes above, also the initial rate
+     * @param maxEncoderBitsPerSecond the recommended encoder bitrate never goes above, i.e. the configured one
+     */
+    public AdaptiveRateController(final long minBitsPerSecond,
+                                  final long maxBitsPerSecond,
+                                  final long maxEncoderBitsPerSecond) {
+        Preconditions.checkArgument(minBitsPerSecond > 0 && minBitsPerSecond <= maxBitsPerSecond,
+                "Invalid rate range");
+        Preconditions.checkArgument(maxEncoderBitsPerSecond > 0, "Encoder bitrate should be positive");
+        mMinBitsPerSecond = minBitsPerSecond;
+        mMaxBitsPerSecond = maxBitsPerSecond;
+        mMaxEncoderBitsPerSecond = maxEncoderBitsPerSecond;
+        mBitsPerSecond = maxBitsPerSecond;
+        mLastDecreaseNanos = System.nanoTime() - MIN_DECREASE_INTERVAL_NANOS;
+    }
+
+    public void addListener(@Nonnull final Listener listener) {
+        mListeners.add(Preconditions.checkNotNull(listener));
+    }
+
+    public void removeListener(@Nonnull final Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    public synchronized long getBitsPerSecond() {
+        return mBitsPerSecond;
+    }
+
+    public long getEncoderBitsPerSecond() {
+        return toEncoderBitsPerSecond(getBitsPerSecond());
+    }
+
+    /**
+     * @return the smoothed fragment round trip time or 0 if not measured yet
+     */
+    public synchronized long getSmoothedRttMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mSmoothedRttNanos);
+    }
+
+    /**
+     * Records the upload progress. Called on the upload path so it doesn't lock.
+     */
+    public void onBytesSent(final long bytes) {
+        mBytesSent.addAndGet(bytes);
+    }
+
+    /**
+     * Records a key-frame which ends the previous fragment and starts the next one
+     */
+    public synchronized void onFragmentStarted() {
+        if (mFragmentCount == MAX_FRAGMENTS_IN_FLIGHT) {
+            // Not getting the ACKs - forget the oldest
+            mFragmentHead = (mFragmentHead + 1) % MAX_FRAGMENTS_IN_FLIGHT;
+            mFragmentCount--;
+        }
+
+        mFragmentStartNanos[(mFragmentHead + mFragmentCount) % MAX_FRAGMENTS_IN_FLIGHT] = System.nanoTime();
+        mFragmentCount++;
+    }
+
+    /**
+     * Records the RECEIVED ACK of the oldest fragment in flight
+     */
+    public void onFragmentReceived() {
+        final long rate;
+        synchronized (this) {
+            if (mFragmentCount == 0) {
+                return;
+            }
+
+            mFragmentHead = (mFragmentHead + 1) % MAX_FRAGMENTS_IN_FLIGHT;
+            mFragmentCount--;
+            if (mFragmentCount == 0) {
+                // The end of the fragment isn't known yet
+                return;
+            }
+
+            final long now = System.nanoTime();
+            final long previousRate = mBitsPerSecond;
+            updateDeliveryRate(now);
+            updateRtt(now, now - mFragmentStartNanos[mFragmentHead]);
+            rate = mSmoothedRttNanos > mMinRttNanos * CONGESTED_RTT_RATIO
+                    ? decrease(now)
+                    : increase();
+            if (rate == previousRate) {
+                return;
+            }
+        }
+
+        notifyListeners(rate);
+    }
+
+    /**
+     * Records the latency or the buffer pressure reported by the producer
+     */
+    public void onCongestion() {
+        final long rate;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final long previousRate = mBitsPerSecond;
+            updateDeliveryRate(now);
+            rate = decrease(now);
+            if (rate == previousRate) {
+                return;
+            }
+        }
+
+        notifyListeners(rate);
+    }
+
+    /**
+     * Forgets the fragments in flight, i.e. when the upload is restarted
+     */
+    public synchronized void onUploadRestarted() {
+        mFragmentHead = 0;
+        mFragmentCount = 0;
+    }
+
+    private void updateRtt(final long now, final long rttNanos) {
+        if (rttNanos <= mMinRttNanos || now - mMinRttTimestampNanos > MIN_RTT_WINDOW_NANOS) {
+            mMinRttNanos = rttNanos;
+            mMinRttTimestampNanos = now;
+        }
+
+        mSmoothedRttNanos = mSmoothedRttNanos == 0
+                ? rttNanos
+                : (long) (mSmoothedRttNanos + RTT_SMOOTHING * (rttNanos - mSmoothedRttNanos));
+    }
+
+    private void updateDeliveryRate(final long now) {
+        final long elapsed = now - mDeliverySampleNanos;
+        if (elapsed < NANOS_IN_A_SECOND) {
+            return;
+        }
+
+        final long bytes = mBytesSent.get();
+        mDeliveryBitsPerSecond = (bytes - mDeliverySampleBytes) * Byte.SIZE * NANOS_IN_A_SECOND / elapsed;
+        mDeliverySampleBytes = bytes;
+        mDeliverySampleNanos = now;
+    }
+
+    private long decrease(final long now) {
+        if (now - mLastDecreaseNanos < Math.max(MIN_DECREASE_INTERVAL_NANOS, mSmoothedRttNanos)) {
+            // Give the previous decrease the time to take effect
+            return mBitsPerSecond;
+        }
+
+        mLastDecreaseNanos = now;
+        final long sentBitsPerSecond = mDeliveryBitsPerSecond > 0
+                ? Math.min(mBitsPerSecond, mDeliveryBitsPerSecond)
+                : mBitsPerSecond;
+        mBitsPerSecond = Math.max(mMinBitsPerSecond, (long) (sentBitsPerSecond * DECREASE_FACTOR));
+        return mBitsPerSecond;
+    }
+
+    private long increase() {
+        if (mDeliveryBitsPerSecond > 0 && mDeliveryBitsPerSecond < mBitsPerSecond * APP_LIMITED_RATIO) {
+            // The rate isn't what limits the upload
+            return mBitsPerSecond;
+        }
+
+        mBitsPerSecond = Math.min(mMaxBitsPerSecond,
+                mBitsPerSecond + (long) (mMaxBitsPerSecond * INCREASE_FRACTION_OF_MAX));
+        return mBitsPerSecond;
+    }
+
+    private long toEncoderBitsPerSecond(final long bitsPerSecond) {
+        return Math.min(mMaxEncoderBitsPerSecond, (long) (bitsPerSecond * ENCODER_HEADROOM));
+    }
+
+    private void notifyListeners(final long bitsPerSecond) {
+        final long encoderBitsPerSecond = toEncoderBitsPerSecond(bitsPerSecond);
+        for (final Listener listener : mListeners) {
+            listener.onRateChanged(bitsPerSecond, encoderBitsPerSecond);
+        }
+    }
+}
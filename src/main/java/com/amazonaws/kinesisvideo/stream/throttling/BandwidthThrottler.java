@@ -18,4 +18,35 @@ public interface BandwidthThrottler {
      * @return allowed bytes
      */
     int getAllowedBytes(int len);
+
+    /**
+     * Get the allowed number of bytes to read from or write to socket without waiting. Waits in
+     * {@link #getAllowedBytes(int)} unless overridden.
+     *
+     * @param len maximum number of bytes.
+     * @return allowed bytes, 0 if none are allowed right now
+     */
+    default int tryGetAllowedBytes(int len) {
+        return getAllowedBytes(len);
+    }
+
+    /**
+     * Get the time until {@link #tryGetAllowedBytes(int)} allows some of the bytes.
+     *
+     * @param len maximum number of bytes.
+     * @return nanoseconds to wait, 0 if the bytes are allowed now
+     */
+    default long getNanosUntilAllowed(int len) {
+        // The default tryGetAllowedBytes always allows some of the bytes
+        return 0;
+    }
+
+    /**
+     * Returns the part of the allowed bytes which wasn't read or written as less data was available.
+     *
+     * @param bytes number of the unused bytes.
+     */
+    default void releaseUnusedBytes(int bytes) {
+        // The unused bytes are not allowed again
+    }
 }
@@ -1,14 +1,15 @@
 package com.amazonaws.kinesisvideo.stream.throttling;
 
-import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import java.util.concurrent.TimeUnit;
 
-import java.util.Random;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
 
 /**
  * A bandwidth throttler for output stream (i.e. upload).
  * <p>
- * The maximum upstream kbps can be set via {@link #setUpstreamKbps(long)}. Note that, 'byte' will be explicitly called
- * out. Any 'b' or 'B' (in variable names with camel case) will refer to bit.
+ * The maximum upstream kbps can be set via {@link #setUpstreamKbps(long)}, also while writing, i.e. by the
+ * {@link AdaptiveRateController}. Note that, 'byte' will be explicitly called out. Any 'b' or 'B' (in variable names
+ * with camel case) will refer to bit.
  * <p>
  * TODO: implement for input.
  */
@@ -17,10 +18,8 @@ public class BandwidthThrottlerImpl implements BandwidthThrottler {
     private static final long BITS_IN_A_BYTE = 8L;
     private static final long ONE_SECOND_IN_MILLIS = 1000L;
     private static final double ACTUAL_PAYLOAD_PERCENTAGE = 1;
-    private static final int MAX_RANDOM_VALUE = 1;
     private static final int DEFAULT_RESET_SUBINTERVAL = 20;
 
-    private final Random randomGenerator = new Random();
     private final ThrottlingParams upstream = new ThrottlingParams();
 
     /**
@@ -41,7 +40,7 @@ public class BandwidthThrottlerImpl implements BandwidthThrottler {
         }
     }
 
-    public void setAbsoluteMaxBps(final long maxBps) {
+    public synchronized void setAbsoluteMaxBps(final long maxBps) {
         this.absoluteMaxBps = maxBps;
         setMaxBps(this.upstream, this.upstream.maxBps);
     }
@@ -50,17 +49,23 @@ public class BandwidthThrottlerImpl implements BandwidthThrottler {
     public void setUpstreamKbps(final long kbps) {
         checkArgument(kbps > 0, String.format("Given bandwidth value %d is not positive.", kbps));
         final long bps = (kbps * BITS_IN_A_KILOBIT) / BITS_IN_A_BYTE;
-        setMaxBps(this.upstream, bps);
+        synchronized (this) {
+            setMaxBps(this.upstream, bps);
+        }
     }
 
     @Override
     public int getAllowedBytes(final int len) {
         int allowed;
 
-        while ((allowed = getAllowedBytesWrite(len)) <= 0) {
-            long sleepDuration = timeToNextReset(this.upstream);
+        while ((allowed = tryGetAllowedBytes(len)) <= 0) {
+            // Sleep without holding the lock so the rate can be changed meanwhile
+            final long sleepDuration;
+            synchronized (this) {
+                sleepDuration = timeToNextReset(this.upstream);
+            }
+
             if (sleepDuration > 0) {
-                sleepDuration += randomGenerator.nextInt(MAX_RANDOM_VALUE);
                 BandwidthThrottlerImpl.sleep(sleepDuration);
             }
         }
@@ -68,6 +73,27 @@ public class BandwidthThrottlerImpl implements BandwidthThrottler {
         return allowed;
     }
 
+    @Override
+    public synchronized int tryGetAllowedBytes(final int len) {
+        return getAllowedBytesWrite(len);
+    }
+
+    @Override
+    public synchronized long getNanosUntilAllowed(final int len) {
+        resetCounterIfNecessary(this.upstream);
+        if (len == 0 || this.upstream.remainingBps > 0) {
+            return 0;
+        }
+
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeToNextReset(this.upstream)));
+    }
+
+    @Override
+    public synchronized void releaseUnusedBytes(final int bytes) {
+        this.upstream.remainingBps = Math.min(this.upstream.remainingBps + bytes,
+                this.upstream.adjustedMaxBps / this.upstream.nextResetSubIntervals);
+    }
+
     private void setMaxBps(final ThrottlingParams params, final long maxBps) {
         params.maxBps = Math.min(this.absoluteMaxBps, maxBps);
         params.adjustedMaxBps = (long) (params.maxBps * ACTUAL_PAYLOAD_PERCENTAGE);
@@ -0,0 +1,426 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the frames of the media sources on a shared hashed timer wheel instead of a thread per source.
+ *
+ * Each source is registered with its frame period and the frames are due at absolute times on the grid
+ * start + n * period, so the time spent producing a frame doesn't push the following ones back the way sleeping for
+ * the period after each frame does. The wheel thread only moves the due frames to the workers which emit them. The
+ * next frame of a source is scheduled once the previous one has been emitted, so the frames of a source are never
+ * emitted concurrently. When a source falls behind by a whole period or more the missed frames are skipped rather
+ * than emitted in a burst.
+ *
+ * Emitting a frame may block, e.g. in putFrame when the content store is full. The workers are handed the frames
+ * without queueing: when all of them are busy another one is started, so a blocked source never holds up the others.
+ * As a source has at most one frame in flight there are never more workers than sources, and the ones above the core
+ * count exit after being idle for a while.
+ *
+ * The jitter, i.e. how late the frames were emitted, and the drift from the nominal frame rate are reported per
+ * source by its {@link Registration}.
+ */
+@ThreadSafe
+public class FramePacingScheduler {
+    /**
+     * Emits the frame which is due
+     */
+    public interface FrameEmitter {
+        /**
+         * @return whether to keep emitting the frames
+         */
+        boolean emitFrame();
+    }
+
+    public static final long DEFAULT_TICK_IN_MICROS = 1000;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    public static final int DEFAULT_WORKER_COUNT = 2;
+    public static final long WORKER_KEEP_ALIVE_IN_MILLIS = 30 * 1000;
+
+    private static final String TICKER_THREAD_NAME = "KinesisVideo-FramePacing";
+    private static final String WORKER_THREAD_NAME_PREFIX = "KinesisVideo-FramePacing-worker-";
+
+    private static final Log log = LogFactory.getLog(FramePacingScheduler.class);
+
+    private final long mTickNanos;
+    private final long mStartNanos = System.nanoTime();
+    private final int mWheelMask;
+    private final List<List<Registration>> mWheel;
+    private final Queue<Registration> mPendingRegistrations = new ConcurrentLinkedQueue<Registration>();
+    private final List<Registration> mRegistrations = new CopyOnWriteArrayList<Registration>();
+    private final ExecutorService mWorkers;
+    private final Thread mTickerThread;
+
+    /**
+     * Number of the frames in the wheel, only accessed by the wheel thread
+     */
+    private int mScheduledCount = 0;
+    private volatile boolean mIdle = false;
+    private volatile boolean mShutdown = false;
+
+    /**
+     * Shared by the media sources which aren't given a scheduler
+     */
+    private static class DefaultInstanceHolder {
+        private static final FramePacingScheduler INSTANCE = new FramePacingScheduler(DEFAULT_WORKER_COUNT,
+                DEFAULT_TICK_IN_MICROS, DEFAULT_WHEEL_SIZE);
+    }
+
+    @Nonnull
+    public static FramePacingScheduler getDefault() {
+        return DefaultInstanceHolder.INSTANCE;
+    }
+
+    /**
+     * @param workerCount number of the threads emitting the frames which are kept when idle
+     * @param tickInMicros resolution of the wheel, the frames are emitted up to a tick late
+     * @param wheelSize number of the wheel buckets, rounded up to a power of two
+     */
+    public FramePacingScheduler(final int workerCount, final long tickInMicros, final int wheelSize) {
+        Preconditions.checkArgument(workerCount > 0, "Worker count should be positive");
+        Preconditions.checkArgument(tickInMicros > 0, "Tick should be positive");
+        Preconditions.checkArgument(wheelSize > 0 && wheelSize <= 1 << 20, "Invalid wheel size");
+
+        int buckets = 1;
+        while (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+
+        mTickNanos = TimeUnit.MICROSECONDS.toNanos(tickInMicros);
+        mWheelMask = buckets - 1;
+        mWheel = new ArrayList<List<Registration>>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            mWheel.add(new ArrayList<Registration>());
+        }
+
+        final AtomicInteger workerIndex = new AtomicInteger();
+        mWorkers = new ThreadPoolExecutor(workerCount, Integer.MAX_VALUE, WORKER_KEEP_ALIVE_IN_MILLIS,
+                TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@Nonnull final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                WORKER_THREAD_NAME_PREFIX + workerIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        mTickerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWheel();
+            }
+        }, TICKER_THREAD_NAME);
+        mTickerThread.setDaemon(true);
+        mTickerThread.start();
+    }
+
+    /**
+     * Registers a frame source. The first frame is emitted right away.
+     *
+     * @param name the name of the source for the statistics
+     * @param framesPerSecond the frame rate
+     * @param emitter emits the frames
+     * @return the registration to stop the source with
+     */
+    @Nonnull
+    public Registration register(@Nonnull final String name,
+                                 final int framesPerSecond,
+                                 @Nonnull final FrameEmitter emitter) {
+        Preconditions.checkArgument(framesPerSecond > 0, "Frame rate should be positive");
+        return register(name, TimeUnit.SECONDS.toNanos(1) / framesPerSecond, TimeUnit.NANOSECONDS, emitter);
+    }
+
+    /**
+     * Registers a source emitting every period. The first frame is emitted right away.
+     */
+    @Nonnull
+    public Registration register(@Nonnull final String name,
+                                 final long period,
+                                 @Nonnull final TimeUnit unit,
+                                 @Nonnull final FrameEmitter emitter) {
+        Preconditions.checkState(!mShutdown, "Frame pacing scheduler is shut down");
+        Preconditions.checkArgument(period > 0, "Period should be positive");
+        final Registration registration = new Registration(Preconditions.checkNotNull(name), unit.toNanos(period),
+                Preconditions.checkNotNull(emitter));
+        mRegistrations.add(registration);
+        schedule(registration);
+        return registration;
+    }
+
+    /**
+     * @return the registered sources with their statistics
+     */
+    @Nonnull
+    public List<Registration> getRegistrations() {
+        return Collections.unmodifiableList(new ArrayList<Registration>(mRegistrations));
+    }
+
+    /**
+     * Stops the wheel and the workers, the registered sources stop emitting
+     */
+    public void shutdown() {
+        mShutdown = true;
+        LockSupport.unpark(mTickerThread);
+        mWorkers.shutdown();
+    }
+
+    private void schedule(@Nonnull final Registration registration) {
+        mPendingRegistrations.add(registration);
+        if (mIdle) {
+            LockSupport.unpark(mTickerThread);
+        }
+    }
+
+    private void runWheel() {
+        long tick = currentTick();
+        while (!mShutdown) {
+            if (mScheduledCount == 0) {
+                // Nothing to pace - wait for a registration instead of ticking
+                mIdle = true;
+                if (mPendingRegistrations.isEmpty()) {
+                    LockSupport.park(this);
+                }
+
+                mIdle = false;
+                tick = currentTick();
+                if (mPendingRegistrations.isEmpty()) {
+                    continue;
+                }
+            }
+
+            waitForTick(tick);
+            transferPendingRegistrations(tick);
+            expireBucket(tick);
+            tick++;
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - mStartNanos) / mTickNanos;
+    }
+
+    private void waitForTick(final long tick) {
+        final long tickNanos = mStartNanos + tick * mTickNanos;
+        long remaining;
+        while ((remaining = tickNanos - System.nanoTime()) > 0 && !mShutdown) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void transferPendingRegistrations(final long currentTick) {
+        Registration registration;
+        while ((registration = mPendingRegistrations.poll()) != null) {
+            if (registration.isCancelled()) {
+                continue;
+            }
+
+            // The bucket of the first tick at or after the deadline, the overdue ones go to the current tick
+            final long deadlineOffset = registration.mNextDeadlineNanos - mStartNanos;
+            final long ticks = Math.max(currentTick, (deadlineOffset + mTickNanos - 1) / mTickNanos);
+            registration.mRemainingRounds = (ticks - currentTick) / (mWheelMask + 1);
+            mWheel.get((int) (ticks & mWheelMask)).add(registration);
+            mScheduledCount++;
+        }
+    }
+
+    private void expireBucket(final long tick) {
+        final List<Registration> bucket = mWheel.get((int) (tick & mWheelMask));
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            final Registration registration = bucket.get(i);
+            if (registration.isCancelled()) {
+                mScheduledCount--;
+            } else if (registration.mRemainingRounds > 0) {
+                registration.mRemainingRounds--;
+                bucket.set(kept++, registration);
+            } else {
+                mScheduledCount--;
+                dispatch(registration);
+            }
+        }
+
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void dispatch(@Nonnull final Registration registration) {
+        try {
+            mWorkers.execute(registration);
+        } catch (final RuntimeException e) {
+            // Shutting down
+            registration.cancel();
+        }
+    }
+
+    /**
+     * A registered frame source and its pacing statistics
+     */
+    @ThreadSafe
+    public final class Registration implements Runnable {
+        private final String mName;
+        private final long mPeriodNanos;
+        private final FrameEmitter mEmitter;
+        private volatile boolean mCancelled = false;
+
+        /**
+         * Wheel state, handed between the wheel thread and the worker through the pending queue
+         */
+        private volatile long mNextDeadlineNanos = System.nanoTime();
+        private long mRemainingRounds;
+
+        /**
+         * Statistics, written by the worker emitting the frame
+         */
+        private volatile long mFramesEmitted = 0;
+        private volatile long mFramesSkipped = 0;
+        private volatile long mTotalJitterNanos = 0;
+        private volatile long mMaxJitterNanos = 0;
+        private volatile long mFirstEmitNanos = 0;
+        private volatile long mLastEmitNanos = 0;
+
+        private Registration(final String name, final long periodNanos, final FrameEmitter emitter) {
+            mName = name;
+            mPeriodNanos = periodNanos;
+            mEmitter = emitter;
+        }
+
+        @Nonnull
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Stops emitting the frames. A frame being emitted is completed.
+         */
+        public void cancel() {
+            mCancelled = true;
+            mRegistrations.remove(this);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled || mShutdown;
+        }
+
+        public long getFramesEmitted() {
+            return mFramesEmitted;
+        }
+
+        /**
+         * @return number of the frames skipped because the source fell a whole period or more behind
+         */
+        public long getFramesSkipped() {
+            return mFramesSkipped;
+        }
+
+        /**
+         * @return average time the frames were emitted after their due time
+         */
+        public long getMeanJitterMicros() {
+            final long framesEmitted = mFramesEmitted;
+            return framesEmitted == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(mTotalJitterNanos / framesEmitted);
+        }
+
+        /**
+         * @return longest time a frame was emitted after its due time
+         */
+        public long getMaxJitterMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(mMaxJitterNanos);
+        }
+
+        /**
+         * @return how far the emitted frames lag behind the nominal frame rate since the first frame. Stays within the
+         * jitter unless the frames are skipped.
+         */
+        public long getDriftMicros() {
+            final long framesEmitted = mFramesEmitted;
+            if (framesEmitted < 2) {
+                return 0;
+            }
+
+            return TimeUnit.NANOSECONDS.toMicros(
+                    mLastEmitNanos - mFirstEmitNanos - (framesEmitted - 1) * mPeriodNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d frames emitted, %d skipped, jitter mean %d us max %d us, drift %d us",
+                    mName, getFramesEmitted(), getFramesSkipped(), getMeanJitterMicros(), getMaxJitterMicros(),
+                    getDriftMicros());
+        }
+
+        /**
+         * Emits the due frame and schedules the next one. Run by a worker.
+         */
+        @Override
+        public void run() {
+            if (isCancelled()) {
+                return;
+            }
+
+            final long deadline = mNextDeadlineNanos;
+            final long emitNanos = System.nanoTime();
+            recordEmit(emitNanos, Math.max(0, emitNanos - deadline));
+
+            boolean keepEmitting;
+            try {
+                keepEmitting = mEmitter.emitFrame();
+            } catch (final RuntimeException e) {
+                log.error("Frame source " + mName + " failed to emit a frame, stopping it", e);
+                keepEmitting = false;
+            }
+
+            if (!keepEmitting) {
+                cancel();
+                return;
+            }
+
+            if (isCancelled()) {
+                return;
+            }
+
+            // Next frame on the grid, skipping the ones missed by a whole period or more
+            long nextDeadline = deadline + mPeriodNanos;
+            final long behind = System.nanoTime() - nextDeadline;
+            if (behind >= mPeriodNanos) {
+                final long skipped = behind / mPeriodNanos;
+                nextDeadline += skipped * mPeriodNanos;
+                mFramesSkipped += skipped;
+            }
+
+            mNextDeadlineNanos = nextDeadline;
+            schedule(this);
+        }
+
+        private void recordEmit(final long emitNanos, final long jitterNanos) {
+            if (mFramesEmitted == 0) {
+                mFirstEmitNanos = emitNanos;
+            }
+
+            mLastEmitNanos = emitNanos;
+            mTotalJitterNanos += jitterNanos;
+            if (jitterNanos > mMaxJitterNanos) {
+                mMaxJitterNanos = jitterNanos;
+            }
+
+            mFramesEmitted++;
+        }
+    }
+}
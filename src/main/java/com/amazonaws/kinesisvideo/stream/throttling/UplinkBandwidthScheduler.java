@@ -0,0 +1,253 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the uplink bandwidth of the process, i.e. of a site, between the uploading streams.
+ *
+ * Each stream uploads through its {@link UplinkBandwidthShare}, a token bucket refilled at the rate allocated to the
+ * stream. The allocations are recalculated every {@link #ALLOCATION_PERIOD_IN_MILLIS} by the first uploader which
+ * notices it's due: the higher priority streams are served first and the streams with the same priority share the
+ * rest in proportion to their weights (weighted max-min fairness). The streams which didn't use their allocation are
+ * given what they used plus some headroom and the rest goes to the streams which were held back, so the capacity isn't
+ * left unused. The sum of the allocations never exceeds the total.
+ */
+@ThreadSafe
+public class UplinkBandwidthScheduler {
+    /**
+     * How often the allocations are recalculated
+     */
+    public static final long ALLOCATION_PERIOD_IN_MILLIS = 100;
+
+    public static final int DEFAULT_WEIGHT = 1;
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private static final long ALLOCATION_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(ALLOCATION_PERIOD_IN_MILLIS);
+
+    /**
+     * Headroom given to the streams using less than their allocation so they can grow
+     */
+    private static final double DEMAND_HEADROOM = 1.5;
+
+    /**
+     * Rate given to an idle stream so it can start
+     */
+    private static final long MIN_DEMAND_BITS_PER_SECOND = 64 * 1024;
+
+    /**
+     * Weight and priority set for a stream before it registers
+     */
+    private static final class StreamWeight {
+        private final int mWeight;
+        private final int mPriority;
+
+        private StreamWeight(final int weight, final int priority) {
+            mWeight = weight;
+            mPriority = priority;
+        }
+    }
+
+    private static final Comparator<UplinkBandwidthShare> BY_PRIORITY = new Comparator<UplinkBandwidthShare>() {
+        @Override
+        public int compare(final UplinkBandwidthShare first, final UplinkBandwidthShare second) {
+            return second.getPriority() - first.getPriority();
+        }
+    };
+
+    private final List<UplinkBandwidthShare> mShares = new CopyOnWriteArrayList<UplinkBandwidthShare>();
+    private final Map<String, StreamWeight> mStreamWeights = new ConcurrentHashMap<String, StreamWeight>();
+    private final AtomicLong mNextAllocationNanos = new AtomicLong(System.nanoTime());
+    private volatile long mTotalBitsPerSecond;
+    private long mLastAllocationNanos = System.nanoTime();
+
+    /**
+     * @param totalBitsPerSecond the uplink bandwidth to share
+     */
+    public UplinkBandwidthScheduler(final long totalBitsPerSecond) {
+        setTotalBitsPerSecond(totalBitsPerSecond);
+    }
+
+    public void setTotalBitsPerSecond(final long totalBitsPerSecond) {
+        Preconditions.checkArgument(totalBitsPerSecond > 0, "Total bandwidth should be positive");
+        mTotalBitsPerSecond = totalBitsPerSecond;
+        mNextAllocationNanos.set(System.nanoTime());
+    }
+
+    public long getTotalBitsPerSecond() {
+        return mTotalBitsPerSecond;
+    }
+
+    /**
+     * Sets the weight and the priority of the stream to use when it registers
+     *
+     * @param streamName the name of the stream
+     * @param weight share of the bandwidth relative to the other streams with the same priority
+     * @param priority the higher priority streams get their bandwidth first
+     */
+    public void setStreamWeight(@Nonnull final String streamName, final int weight, final int priority) {
+        Preconditions.checkNotNull(streamName);
+        Preconditions.checkArgument(weight > 0, "Weight should be positive");
+        mStreamWeights.put(streamName, new StreamWeight(weight, priority));
+    }
+
+    /**
+     * Registers the stream with the weight and the priority set by {@link #setStreamWeight} or the defaults
+     */
+    @Nonnull
+    public UplinkBandwidthShare register(@Nonnull final String streamName) {
+        final StreamWeight streamWeight = mStreamWeights.get(Preconditions.checkNotNull(streamName));
+        return streamWeight == null
+                ? register(streamName, DEFAULT_WEIGHT, DEFAULT_PRIORITY)
+                : register(streamName, streamWeight.mWeight, streamWeight.mPriority);
+    }
+
+    /**
+     * Registers the stream. The stream should {@link UplinkBandwidthShare#close()} the share when it's done.
+     */
+    @Nonnull
+    public UplinkBandwidthShare register(@Nonnull final String streamName, final int weight, final int priority) {
+        Preconditions.checkArgument(weight > 0, "Weight should be positive");
+        final UplinkBandwidthShare share = new UplinkBandwidthShare(this, streamName, weight, priority);
+        mShares.add(share);
+        mNextAllocationNanos.set(System.nanoTime());
+        return share;
+    }
+
+    /**
+     * @return the registered shares with their allocated and achieved rates
+     */
+    @Nonnull
+    public List<UplinkBandwidthShare> getShares() {
+        return Collections.unmodifiableList(new ArrayList<UplinkBandwidthShare>(mShares));
+    }
+
+    void unregister(@Nonnull final UplinkBandwidthShare share) {
+        mShares.remove(share);
+        mNextAllocationNanos.set(System.nanoTime());
+    }
+
+    /**
+     * Recalculates the allocations if due. Called by the uploaders so there is no scheduler thread.
+     */
+    void allocateIfDue(final long now) {
+        final long nextAllocation = mNextAllocationNanos.get();
+        if (now - nextAllocation < 0
+                || !mNextAllocationNanos.compareAndSet(nextAllocation, now + ALLOCATION_PERIOD_NANOS)) {
+            return;
+        }
+
+        allocate(now);
+    }
+
+    private synchronized void allocate(final long now) {
+        final long elapsed = Math.max(1, now - mLastAllocationNanos);
+        mLastAllocationNanos = now;
+
+        final List<UplinkBandwidthShare> shares = new ArrayList<UplinkBandwidthShare>(mShares);
+        Collections.sort(shares, BY_PRIORITY);
+
+        final long[] demands = new long[shares.size()];
+        for (int i = 0; i < shares.size(); i++) {
+            demands[i] = shares.get(i).sampleDemand(elapsed);
+        }
+
+        long remaining = mTotalBitsPerSecond;
+        int levelStart = 0;
+        while (levelStart < shares.size()) {
+            int levelEnd = levelStart + 1;
+            while (levelEnd < shares.size()
+                    && shares.get(levelEnd).getPriority() == shares.get(levelStart).getPriority()) {
+                levelEnd++;
+            }
+
+            remaining -= allocateLevel(shares, demands, levelStart, levelEnd, remaining);
+            levelStart = levelEnd;
+        }
+    }
+
+    /**
+     * Water-fills the remaining bandwidth between the streams with the same priority
+     *
+     * @return the allocated bandwidth
+     */
+    private static long allocateLevel(final List<UplinkBandwidthShare> shares,
+                                      final long[] demands,
+                                      final int start,
+                                      final int end,
+                                      final long available) {
+        final long[] allocations = new long[end - start];
+        final boolean[] satisfied = new boolean[end - start];
+        long remaining = available;
+        boolean progress = true;
+        while (progress && remaining > 0) {
+            progress = false;
+            long totalWeight = 0;
+            for (int i = start; i < end; i++) {
+                if (!satisfied[i - start]) {
+                    totalWeight += shares.get(i).getWeight();
+                }
+            }
+
+            if (totalWeight == 0) {
+                break;
+            }
+
+            // Satisfy the streams demanding less than their fair share and redistribute the rest
+            for (int i = start; i < end; i++) {
+                final long fairShare = remaining * shares.get(i).getWeight() / totalWeight;
+                if (!satisfied[i - start] && demands[i] <= fairShare) {
+                    allocations[i - start] = demands[i];
+                    satisfied[i - start] = true;
+                    progress = true;
+                }
+            }
+
+            if (progress) {
+                remaining = available;
+                for (int i = start; i < end; i++) {
+                    if (satisfied[i - start]) {
+                        remaining -= allocations[i - start];
+                    }
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    if (!satisfied[i - start]) {
+                        allocations[i - start] = remaining * shares.get(i).getWeight() / totalWeight;
+                    }
+                }
+
+                remaining = 0;
+            }
+        }
+
+        long allocated = 0;
+        for (int i = start; i < end; i++) {
+            shares.get(i).setAllocatedBitsPerSecond(allocations[i - start]);
+            allocated += allocations[i - start];
+        }
+
+        return allocated;
+    }
+
+    /**
+     * @return the rate the stream would use given what it used in the last period
+     */
+    static long demand(final long achievedBitsPerSecond, final boolean heldBack, final long capBitsPerSecond) {
+        final long demand = heldBack
+                ? capBitsPerSecond
+                : Math.max(MIN_DEMAND_BITS_PER_SECOND, (long) (achievedBitsPerSecond * DEMAND_HEADROOM));
+        return Math.min(demand, capBitsPerSecond);
+    }
+}
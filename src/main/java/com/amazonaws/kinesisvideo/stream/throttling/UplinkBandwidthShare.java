@@ -0,0 +1,225 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The part of the {@link UplinkBandwidthScheduler} bandwidth allocated to a stream.
+ *
+ * A token bucket refilled at the allocated rate and paced with {@link System#nanoTime()}: the blocking uploader parks
+ * exactly until the tokens for its write are available and the non-blocking one learns when to retry from
+ * {@link #getNanosUntilAllowed(int)}. {@link #setUpstreamKbps(long)} caps the rate of the stream
+ * below its allocation, i.e. for the {@link AdaptiveRateController}.
+ */
+@ThreadSafe
+public class UplinkBandwidthShare implements BandwidthThrottler {
+    private static final long NANOS_IN_A_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+
+    /**
+     * How much the bucket holds, i.e. the burst the stream can send after being idle
+     */
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Smallest write the blocking uploader waits for so it doesn't wake up for every few bytes
+     */
+    private static final int MIN_WRITE_BYTES = 1024;
+
+    private static final double ACHIEVED_RATE_SMOOTHING = 0.25;
+
+    private final UplinkBandwidthScheduler mScheduler;
+    private final String mStreamName;
+    private final int mWeight;
+    private final int mPriority;
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    private volatile long mAllocatedBitsPerSecond;
+    private volatile long mCapBitsPerSecond = Long.MAX_VALUE;
+    private volatile long mAchievedBitsPerSecond;
+    private volatile boolean mHeldBack;
+    private long mSampledBytes;
+
+    /**
+     * Token bucket state, guarded by this
+     */
+    private double mTokens;
+    private long mRefillNanos = System.nanoTime();
+
+    UplinkBandwidthShare(@Nonnull final UplinkBandwidthScheduler scheduler,
+                         @Nonnull final String streamName,
+                         final int weight,
+                         final int priority) {
+        mScheduler = Preconditions.checkNotNull(scheduler);
+        mStreamName = Preconditions.checkNotNull(streamName);
+        mWeight = weight;
+        mPriority = priority;
+    }
+
+    @Nonnull
+    public String getStreamName() {
+        return mStreamName;
+    }
+
+    public int getWeight() {
+        return mWeight;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * @return the rate allocated to the stream by the scheduler
+     */
+    public long getAllocatedBitsPerSecond() {
+        return mAllocatedBitsPerSecond;
+    }
+
+    /**
+     * @return the rate the stream has actually sent at recently
+     */
+    public long getAchievedBitsPerSecond() {
+        return mAchievedBitsPerSecond;
+    }
+
+    /**
+     * Caps the rate of the stream, the scheduler gives the rest to the other streams
+     */
+    @Override
+    public void setUpstreamKbps(final long kbps) {
+        Preconditions.checkArgument(kbps > 0, String.format("Given bandwidth value %d is not positive.", kbps));
+        mCapBitsPerSecond = kbps * BITS_IN_A_KILOBIT;
+    }
+
+    @Override
+    public int getAllowedBytes(final int len) {
+        while (true) {
+            final int allowed = tryGetAllowedBytes(len);
+            if (allowed > 0) {
+                return allowed;
+            }
+
+            final long waitNanos = nanosUntilAvailable(Math.min(len, MIN_WRITE_BYTES));
+            LockSupport.parkNanos(this, waitNanos);
+
+            // Same as the BandwidthThrottlerImpl sleep - an interrupt would make the parking spin
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Takes the tokens for up to len bytes. The stream counts as held back only if it's refused some of them, so len
+     * should be the data the stream has pending rather than the size of its buffer. The tokens not used are
+     * returned with {@link #releaseUnusedBytes(int)} so the stream is credited only with the bytes it sent.
+     */
+    @Override
+    public int tryGetAllowedBytes(final int len) {
+        final long now = System.nanoTime();
+        mScheduler.allocateIfDue(now);
+
+        final int allowed;
+        synchronized (this) {
+            refill(now);
+            allowed = (int) Math.min(len, (long) mTokens);
+            mTokens -= allowed;
+        }
+
+        if (allowed < len) {
+            mHeldBack = true;
+        }
+
+        mBytesSent.addAndGet(allowed);
+        return allowed;
+    }
+
+    @Override
+    public void releaseUnusedBytes(final int bytes) {
+        synchronized (this) {
+            mTokens = Math.min(mTokens + bytes, bucketSize());
+        }
+
+        mBytesSent.addAndGet(-bytes);
+    }
+
+    @Override
+    public long getNanosUntilAllowed(final int len) {
+        final long now = System.nanoTime();
+        mScheduler.allocateIfDue(now);
+        synchronized (this) {
+            refill(now);
+            if (len == 0 || mTokens >= 1) {
+                return 0;
+            }
+
+            return nanosUntilAvailable(Math.min(len, MIN_WRITE_BYTES));
+        }
+    }
+
+    /**
+     * Stops sharing the bandwidth with the stream
+     */
+    public void close() {
+        mScheduler.unregister(this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: weight %d, priority %d, allocated %d bps, achieved %d bps",
+                mStreamName, mWeight, mPriority, mAllocatedBitsPerSecond, mAchievedBitsPerSecond);
+    }
+
+    /**
+     * Samples the achieved rate and returns what the stream would use. Called by the scheduler.
+     */
+    long sampleDemand(final long elapsedNanos) {
+        final long bytes = mBytesSent.get();
+        final long sampledBitsPerSecond = (bytes - mSampledBytes) * Byte.SIZE * NANOS_IN_A_SECOND / elapsedNanos;
+        mSampledBytes = bytes;
+        mAchievedBitsPerSecond = (long) (mAchievedBitsPerSecond
+                + ACHIEVED_RATE_SMOOTHING * (sampledBitsPerSecond - mAchievedBitsPerSecond));
+
+        final boolean heldBack = mHeldBack;
+        mHeldBack = false;
+        return UplinkBandwidthScheduler.demand(sampledBitsPerSecond, heldBack, mCapBitsPerSecond);
+    }
+
+    synchronized void setAllocatedBitsPerSecond(final long allocatedBitsPerSecond) {
+        // Credit the tokens earned at the old rate before switching
+        refill(System.nanoTime());
+        mAllocatedBitsPerSecond = allocatedBitsPerSecond;
+    }
+
+    private void refill(final long now) {
+        final long elapsed = now - mRefillNanos;
+        if (elapsed <= 0) {
+            // Already refilled by a newer reading of the clock
+            return;
+        }
+
+        mRefillNanos = now;
+        final double bytesPerNano = (double) mAllocatedBitsPerSecond / Byte.SIZE / NANOS_IN_A_SECOND;
+        mTokens = Math.min(mTokens + elapsed * bytesPerNano, bucketSize());
+    }
+
+    private double bucketSize() {
+        final double bytesPerNano = (double) mAllocatedBitsPerSecond / Byte.SIZE / NANOS_IN_A_SECOND;
+        return Math.max(1.0, BURST_NANOS * bytesPerNano);
+    }
+
+    private synchronized long nanosUntilAvailable(final int bytes) {
+        final double bytesPerNano = (double) mAllocatedBitsPerSecond / Byte.SIZE / NANOS_IN_A_SECOND;
+        if (bytesPerNano == 0) {
+            // Nothing allocated yet - check again with the next allocation
+            return TimeUnit.MILLISECONDS.toNanos(UplinkBandwidthScheduler.ALLOCATION_PERIOD_IN_MILLIS);
+        }
+
+        final double needed = Math.min(bytes, bucketSize()) - mTokens;
+        return Math.max(1, (long) (needed / bytesPerNano));
+    }
+}
@@ -0,0 +1,72 @@
+package com.amazonaws.kinesisvideo.util;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size byte buffers which are reused across the upload sessions instead of being re-allocated
+ * on every connection.
+ */
+@ThreadSafe
+public final class ByteBufferPool {
+    private final int mBufferSize;
+    private final int mMaxPooledBuffers;
+    private final boolean mDirect;
+    private final ConcurrentLinkedQueue<ByteBuffer> mBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger mPooledBufferCount = new AtomicInteger();
+
+    /**
+     * @param bufferSize size of the pooled buffers
+     * @param maxPooledBuffers max number of the idle buffers to retain
+     * @param direct whether to allocate direct buffers. Heap buffers are needed if the array is to be accessed.
+     */
+    public ByteBufferPool(final int bufferSize, final int maxPooledBuffers, final boolean direct) {
+        Preconditions.checkArgument(bufferSize > 0, "Buffer size should be positive");
+        Preconditions.checkArgument(maxPooledBuffers >= 0, "Max pooled buffers should not be negative");
+        mBufferSize = bufferSize;
+        mMaxPooledBuffers = maxPooledBuffers;
+        mDirect = direct;
+    }
+
+    /**
+     * Returns a cleared buffer from the pool or a newly allocated one if the pool is empty.
+     */
+    @Nonnull
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = mBuffers.poll();
+        if (buffer == null) {
+            return mDirect ? ByteBuffer.allocateDirect(mBufferSize) : ByteBuffer.allocate(mBufferSize);
+        }
+
+        mPooledBufferCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. The buffer should not be used by the caller afterwards.
+     */
+    public void release(@Nonnull final ByteBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+        if (buffer.capacity() != mBufferSize || buffer.isDirect() != mDirect) {
+            // Not ours - let it be collected
+            return;
+        }
+
+        if (mPooledBufferCount.incrementAndGet() > mMaxPooledBuffers) {
+            mPooledBufferCount.decrementAndGet();
+            return;
+        }
+
+        mBuffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+}
@@ -0,0 +1,82 @@
+package com.amazonaws.kinesisvideo.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of the Java 21+ runtimes.
+ *
+ * The SDK is compiled for Java 8 so the APIs are looked up reflectively. Callers should check
+ * {@link #isSupported()} and fall back to the platform threads otherwise.
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Class<?> THREAD_BUILDER_CLASS = findClass("java.lang.Thread$Builder");
+
+    private VirtualThreads() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && THREAD_BUILDER_CLASS != null;
+    }
+
+    /**
+     * Creates a factory of virtual threads named with the specified prefix followed by a sequence number.
+     *
+     * @throws UnsupportedOperationException if the runtime doesn't support virtual threads
+     */
+    @Nonnull
+    public static ThreadFactory newThreadFactory(@Nonnull final String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+        }
+
+        try {
+            final Object builder = OF_VIRTUAL.invoke(null);
+            final Object namedBuilder = THREAD_BUILDER_CLASS.getMethod("name", String.class, long.class)
+                    .invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) THREAD_BUILDER_CLASS.getMethod("factory").invoke(namedBuilder);
+        } catch (final ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unable to create virtual thread factory", e);
+        }
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task.
+     *
+     * @throws UnsupportedOperationException if the runtime doesn't support virtual threads
+     */
+    @Nonnull
+    public static ExecutorService newThreadPerTaskExecutor(@Nonnull final String namePrefix) {
+        final ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (final ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static Method findMethod(final Class<?> clazz, final String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> findClass(final String name) {
+        try {
+            return Class.forName(name);
+        } catch (final ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.amazonaws.kinesisvideo.client.stream;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * BackfillCheckpoint class tests
+ */
+public class BackfillCheckpointTest {
+    private static final String STREAM_NAME = "stream";
+    private static final int FILE_SIZE = 100;
+
+    private File mDirectory;
+    private File mMkvFile;
+    private File mJournalFile;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("checkpoint").toFile();
+        mMkvFile = new File(mDirectory, "recording.mkv");
+        Files.write(mMkvFile.toPath(), new byte[FILE_SIZE]);
+        mJournalFile = new File(mDirectory, "backfill.checkpoint");
+    }
+
+    @After
+    public void teardown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void resumesFromPersistedOffsetTest() throws IOException {
+        final BackfillCheckpoint checkpoint = new BackfillCheckpoint(mJournalFile);
+        assertEquals(0, checkpoint.getPersistedOffset(STREAM_NAME, mMkvFile));
+        checkpoint.markPersisted(STREAM_NAME, mMkvFile, 40);
+        checkpoint.markPersisted(STREAM_NAME, mMkvFile, 20);
+        assertEquals(40, checkpoint.getPersistedOffset(STREAM_NAME, mMkvFile));
+        checkpoint.close();
+
+        final BackfillCheckpoint restarted = new BackfillCheckpoint(mJournalFile);
+        assertEquals(40, restarted.getPersistedOffset(STREAM_NAME, mMkvFile));
+        assertFalse(restarted.isCompleted(STREAM_NAME, mMkvFile));
+        restarted.markCompleted(STREAM_NAME, mMkvFile);
+        assertTrue(restarted.isCompleted(STREAM_NAME, mMkvFile));
+        restarted.close();
+    }
+
+    @Test
+    public void changedFileStartsOverTest() throws IOException {
+        final BackfillCheckpoint checkpoint = new BackfillCheckpoint(mJournalFile);
+        checkpoint.markCompleted(STREAM_NAME, mMkvFile);
+        Files.write(mMkvFile.toPath(), new byte[FILE_SIZE + 1]);
+
+        assertFalse(checkpoint.isCompleted(STREAM_NAME, mMkvFile));
+        assertEquals(0, checkpoint.getPersistedOffset(STREAM_NAME, mMkvFile));
+        checkpoint.close();
+    }
+
+    @Test
+    public void tornLineIsNotLoadedTest() throws IOException {
+        final BackfillCheckpoint checkpoint = new BackfillCheckpoint(mJournalFile);
+        checkpoint.markPersisted(STREAM_NAME, mMkvFile, 40);
+        checkpoint.close();
+
+        // A crash while writing the next entry
+        final String entry = STREAM_NAME + "\t" + mMkvFile.getAbsolutePath() + "\t" + FILE_SIZE + "\t60";
+        Files.write(mJournalFile.toPath(), entry.substring(0, entry.length() - 1).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        final BackfillCheckpoint restarted = new BackfillCheckpoint(mJournalFile);
+        assertEquals(40, restarted.getPersistedOffset(STREAM_NAME, mMkvFile));
+        restarted.markPersisted(STREAM_NAME, mMkvFile, 80);
+        restarted.close();
+
+        // The torn line doesn't merge with the next entry
+        final List<String> lines = Files.readAllLines(mJournalFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).endsWith("\t80"));
+
+        final BackfillCheckpoint reloaded = new BackfillCheckpoint(mJournalFile);
+        assertEquals(80, reloaded.getPersistedOffset(STREAM_NAME, mMkvFile));
+        reloaded.close();
+    }
+}
@@ -0,0 +1,233 @@
+package com.amazonaws.kinesisvideo.client.stream;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+
+/**
+ * BackfillUploader class tests
+ */
+public class BackfillUploaderTest {
+    private static final String STREAM_NAME = "stream";
+    private static final int RECEIVE_TIMEOUT_IN_MILLIS = 5000;
+
+    /**
+     * EBML header, segment and cluster of unknown size, timecode and a single frame
+     */
+    private static final byte[] MKV_FILE = {
+            0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) 0x84, 0x42, (byte) 0x86, (byte) 0x81, 0x01,
+            0x18, 0x53, (byte) 0x80, 0x67,
+            0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            0x1F, 0x43, (byte) 0xB6, 0x75,
+            0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xE7, (byte) 0x81, 0x00,
+            (byte) 0xA3, (byte) 0x84, (byte) 0x81, 0x00, 0x00, (byte) 0x80
+    };
+    private static final int CLUSTER_OFFSET = 21;
+    private static final byte[] CLUSTER_ID = { 0x1F, 0x43, (byte) 0xB6, 0x75 };
+
+    private static final String PERSISTED_ACK = "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":1000,"
+            + "\"FragmentNumber\":\"91343852333181432392682062607743920146264708\"}";
+    private static final String OK_RESPONSE = "HTTP/1.1 200 OK\r\n"
+            + "Transfer-Encoding: chunked\r\n"
+            + "\r\n"
+            + Integer.toHexString(PERSISTED_ACK.length()) + "\r\n" + PERSISTED_ACK + "\r\n"
+            + "0\r\n"
+            + "\r\n";
+    /**
+     * The body of a rejected request isn't parsed for the ACKs
+     */
+    private static final String FORBIDDEN_RESPONSE = "HTTP/1.1 403 Forbidden\r\n"
+            + "Content-Length: " + PERSISTED_ACK.length() + "\r\n"
+            + "\r\n"
+            + PERSISTED_ACK;
+    private static final byte[] LAST_CHUNK = "\r\n0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private final List<byte[]> mRequestBodies = new CopyOnWriteArrayList<byte[]>();
+    private ServerSocket mServerSocket;
+    private URI mUri;
+    private File mDirectory;
+    private File mMkvFile;
+    private File mCheckpointFile;
+
+    @Before
+    public void setup() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        mUri = URI.create("http://127.0.0.1:" + mServerSocket.getLocalPort() + "/putMedia");
+        mDirectory = Files.createTempDirectory("backfill").toFile();
+        mMkvFile = new File(mDirectory, "recording.mkv");
+        Files.write(mMkvFile.toPath(), MKV_FILE);
+        mCheckpointFile = new File(mDirectory, "backfill.checkpoint");
+    }
+
+    @After
+    public void teardown() throws IOException {
+        mServerSocket.close();
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void persistedFileIsCheckpointedTest() throws IOException, InterruptedException {
+        startServer(OK_RESPONSE);
+
+        final BackfillUploader uploader = createUploader();
+        uploader.addDirectory(STREAM_NAME, mUri, mDirectory);
+
+        assertTrue(uploader.run());
+        assertEquals(1, uploader.getFilesCompleted());
+        assertEquals(MKV_FILE.length, uploader.getPersistedBytes());
+        assertEquals(1, mRequests.get());
+
+        // The completed file isn't uploaded again
+        final BackfillUploader restarted = createUploader();
+        restarted.addFile(STREAM_NAME, mUri, mMkvFile);
+
+        assertTrue(restarted.run());
+        assertEquals(1, restarted.getFilesSkipped());
+        assertEquals(0, restarted.getFilesCompleted());
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void rejectedUploadFailsTest() throws IOException, InterruptedException {
+        startServer(FORBIDDEN_RESPONSE);
+
+        final BackfillUploader uploader = createUploader();
+        uploader.addFile(STREAM_NAME, mUri, mMkvFile);
+
+        assertFalse(uploader.run());
+        assertEquals(1, uploader.getFilesFailed());
+        assertEquals(0, uploader.getPersistedBytes());
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void retryResumesAfterPersistedFragmentTest() throws IOException, InterruptedException {
+        // A second cluster while the response acknowledges a single one
+        final byte[] mkvFile = Arrays.copyOf(MKV_FILE, 2 * MKV_FILE.length - CLUSTER_OFFSET);
+        System.arraycopy(MKV_FILE, CLUSTER_OFFSET, mkvFile, MKV_FILE.length, MKV_FILE.length - CLUSTER_OFFSET);
+        Files.write(mMkvFile.toPath(), mkvFile);
+        startServer(OK_RESPONSE);
+
+        final BackfillUploader uploader = createUploader();
+        uploader.addFile(STREAM_NAME, mUri, mMkvFile);
+
+        assertTrue(uploader.run());
+        assertEquals(1, uploader.getFilesCompleted());
+        assertEquals(mkvFile.length, uploader.getPersistedBytes());
+        assertEquals(2, mRequests.get());
+
+        // The retry sends the header and the second cluster only
+        assertEquals(2, count(mRequestBodies.get(0), CLUSTER_ID));
+        assertEquals(1, count(mRequestBodies.get(1), CLUSTER_ID));
+        assertEquals(1, count(mRequestBodies.get(1), Arrays.copyOf(MKV_FILE, CLUSTER_OFFSET)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void logIsRequiredTest() {
+        BackfillUploader.builder().build();
+    }
+
+    private BackfillUploader createUploader() {
+        return BackfillUploader.builder()
+                .checkpointFile(mCheckpointFile)
+                .maxAttempts(2)
+                .receiveTimeout(RECEIVE_TIMEOUT_IN_MILLIS)
+                .log(mLog)
+                .build();
+    }
+
+    /**
+     * Reads each chunked request up to the last chunk and answers it with the response
+     */
+    private void startServer(final String response) {
+        final Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = mServerSocket.accept();
+                        try {
+                            mRequestBodies.add(readRequest(socket.getInputStream()));
+                            mRequests.incrementAndGet();
+                            final OutputStream output = socket.getOutputStream();
+                            output.write(response.getBytes(StandardCharsets.US_ASCII));
+                            output.flush();
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (final IOException e) {
+                    // The server socket is closed
+                }
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private static byte[] readRequest(final InputStream input) throws IOException {
+        final ByteArrayOutputStream request = new ByteArrayOutputStream();
+        int matched = 0;
+        int b;
+        while (matched < LAST_CHUNK.length && (b = input.read()) >= 0) {
+            request.write(b);
+            if (b == LAST_CHUNK[matched]) {
+                matched++;
+            } else {
+                matched = b == LAST_CHUNK[0] ? 1 : 0;
+            }
+        }
+
+        return request.toByteArray();
+    }
+
+    private static int count(final byte[] data, final byte[] pattern) {
+        int count = 0;
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,136 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * AsyncOutputChannel class tests
+ */
+public class AsyncOutputChannelTest {
+    private static final long TEST_TIMEOUT_IN_MILLIS = 5000;
+    private static final String TAG = "Test";
+
+    private static final class CollectingOutputChannel implements OutputChannel {
+        private final List<String> mMessages = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            mMessages.add(message);
+        }
+    }
+
+    @Test
+    public void printsQueuedMessagesInOrderTest() {
+        final CollectingOutputChannel output = new CollectingOutputChannel();
+        final AsyncOutputChannel channel = new AsyncOutputChannel(output);
+
+        for (int i = 0; i < 100; i++) {
+            channel.print(LogLevel.INFO.getLogLevel(), TAG, "message %d", new Object[] { i });
+        }
+
+        channel.close();
+
+        assertEquals(100, output.mMessages.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i, output.mMessages.get(i));
+        }
+    }
+
+    @Test
+    public void wakesUpForMessageAfterIdleTest() throws InterruptedException {
+        final CountDownLatch printed = new CountDownLatch(1);
+        final AsyncOutputChannel channel = new AsyncOutputChannel(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                printed.countDown();
+            }
+        });
+
+        // Let the printing thread park
+        Thread.sleep(50);
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "late message");
+
+        assertTrue(printed.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        channel.close();
+    }
+
+    @Test
+    public void reportsFailuresThroughFallbackChannelTest() {
+        final CollectingOutputChannel fallback = new CollectingOutputChannel();
+        final CollectingOutputChannel output = new CollectingOutputChannel();
+        final AsyncOutputChannel channel = new AsyncOutputChannel(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                if (message.contains("fail")) {
+                    throw new IllegalStateException("broken channel");
+                }
+
+                output.print(level, tag, message);
+            }
+        }, AsyncOutputChannel.DEFAULT_CAPACITY, fallback);
+
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "fail once");
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "keep going");
+        channel.close();
+
+        assertEquals(1, fallback.mMessages.size());
+        assertTrue(fallback.mMessages.get(0).contains("broken channel"));
+        assertTrue(fallback.mMessages.get(0).contains("fail once"));
+        assertEquals(1, output.mMessages.size());
+        assertEquals("keep going", output.mMessages.get(0));
+    }
+
+    @Test
+    public void dropsMessagesWhenFullAndReportsCountTest() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CollectingOutputChannel output = new CollectingOutputChannel();
+        final AsyncOutputChannel channel = new AsyncOutputChannel(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                blocked.countDown();
+                try {
+                    release.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                output.print(level, tag, message);
+            }
+        }, 2);
+
+        // The first message holds up the printing thread, the next two fill the buffer
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "first");
+        assertTrue(blocked.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "second");
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "third");
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "dropped");
+
+        assertEquals(1, channel.getDroppedCount());
+        release.countDown();
+        channel.close();
+
+        assertTrue(output.mMessages.contains("1 log messages dropped"));
+        assertFalse(output.mMessages.contains("dropped"));
+    }
+
+    @Test
+    public void dropsMessagesAfterCloseTest() {
+        final CollectingOutputChannel output = new CollectingOutputChannel();
+        final AsyncOutputChannel channel = new AsyncOutputChannel(output);
+        channel.close();
+
+        channel.print(LogLevel.INFO.getLogLevel(), TAG, "too late");
+
+        assertEquals(1, channel.getDroppedCount());
+        assertTrue(output.mMessages.isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * ChunkEncoder class tests
+ */
+public class ChunkEncoderTest {
+    private static final int[] TEST_PAYLOAD_SIZES = {0, 1, 15, 16, 255, 4096, 65535, 1024 * 1024};
+
+    @Test
+    public void encodeTest() {
+        final byte[] payload = "Hello".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("5\r\nHello\r\n", new String(ChunkEncoder.encode(payload, payload.length),
+                StandardCharsets.US_ASCII));
+        assertEquals("0\r\n\r\n", new String(ChunkEncoder.encode(new byte[0], 0), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void encodeInPlaceMatchesEncodeTest() {
+        for (final int payloadSize : TEST_PAYLOAD_SIZES) {
+            final byte[] payload = new byte[payloadSize];
+            Arrays.fill(payload, (byte) 'x');
+
+            final byte[] buffer = new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize
+                    + ChunkEncoder.CHUNK_TRAILER_SIZE];
+            System.arraycopy(payload, 0, buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, payloadSize);
+            final int chunkOffset = ChunkEncoder.encodeInPlace(buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE,
+                    payloadSize);
+
+            assertArrayEquals(ChunkEncoder.encode(payload, payloadSize),
+                    Arrays.copyOfRange(buffer, chunkOffset, buffer.length));
+        }
+    }
+
+    @Test
+    public void putChunkHeaderTest() {
+        for (final int payloadSize : TEST_PAYLOAD_SIZES) {
+            final ByteBuffer header = ByteBuffer.allocate(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+            ChunkEncoder.putChunkHeader(header, payloadSize);
+
+            assertEquals(Integer.toHexString(payloadSize) + "\r\n",
+                    new String(header.array(), 0, header.position(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodeInPlaceWithoutHeadRoomTest() {
+        ChunkEncoder.encodeInPlace(new byte[32], ChunkEncoder.MAX_CHUNK_HEADER_SIZE - 1, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodeInPlaceWithoutTailRoomTest() {
+        ChunkEncoder.encodeInPlace(new byte[16], ChunkEncoder.MAX_CHUNK_HEADER_SIZE, 5);
+    }
+}
@@ -0,0 +1,144 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ChunkedGatheringWriter class tests
+ */
+public class ChunkedGatheringWriterTest {
+    private static final String PAYLOAD = "Hello, chunked world";
+
+    private RecordingChannel mChannel;
+    private File mFile;
+
+    @Before
+    public void setup() throws IOException {
+        mChannel = new RecordingChannel(Integer.MAX_VALUE);
+        mFile = File.createTempFile("chunked", ".mkv");
+        Files.write(mFile.toPath(), PAYLOAD.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void teardown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void writeChunkTest() throws IOException {
+        final ChunkedGatheringWriter writer = new ChunkedGatheringWriter(mChannel);
+        final ByteBuffer payload = ByteBuffer.wrap(PAYLOAD.getBytes(StandardCharsets.US_ASCII));
+        writer.writeChunk(payload);
+        writer.writeLastChunk();
+
+        assertFalse(payload.hasRemaining());
+        assertEquals("14\r\n" + PAYLOAD + "\r\n0\r\n\r\n", mChannel.getOutput());
+    }
+
+    @Test
+    public void partialWritesAreCompletedTest() throws IOException {
+        mChannel = new RecordingChannel(3);
+        final ChunkedGatheringWriter writer = new ChunkedGatheringWriter(mChannel);
+        writer.writeChunk(ByteBuffer.wrap(PAYLOAD.getBytes(StandardCharsets.US_ASCII)));
+        // The buffers are reused for the next chunk
+        writer.writeChunk(ByteBuffer.wrap("x".getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals("14\r\n" + PAYLOAD + "\r\n1\r\nx\r\n", mChannel.getOutput());
+    }
+
+    @Test
+    public void emptyPayloadIsSkippedTest() throws IOException {
+        final ChunkedGatheringWriter writer = new ChunkedGatheringWriter(mChannel);
+        writer.writeChunk(ByteBuffer.allocate(0));
+
+        assertEquals("", mChannel.getOutput());
+    }
+
+    @Test
+    public void transferChunkTest() throws IOException {
+        final ChunkedGatheringWriter writer = new ChunkedGatheringWriter(mChannel);
+        try (FileChannel file = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+            writer.transferChunk(file, 7, 7);
+            writer.transferChunk(file, 0, 0);
+        }
+
+        assertEquals("7\r\nchunked\r\n", mChannel.getOutput());
+    }
+
+    @Test(expected = EOFException.class)
+    public void transferChunkPastFileEndTest() throws IOException {
+        final ChunkedGatheringWriter writer = new ChunkedGatheringWriter(mChannel);
+        try (FileChannel file = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+            writer.transferChunk(file, 7, PAYLOAD.length());
+        }
+    }
+
+    /**
+     * Channel recording the written bytes which writes at most the given number of bytes per call
+     */
+    private static class RecordingChannel implements GatheringByteChannel {
+        private final int mMaxBytesPerWrite;
+        private final ByteArrayOutputStream mOutput = new ByteArrayOutputStream();
+
+        RecordingChannel(final int maxBytesPerWrite) {
+            mMaxBytesPerWrite = maxBytesPerWrite;
+        }
+
+        String getOutput() {
+            return new String(mOutput.toByteArray(), StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length && written < mMaxBytesPerWrite; i++) {
+                written += write(srcs[i], (int) (mMaxBytesPerWrite - written));
+            }
+
+            return written;
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            return write(src, mMaxBytesPerWrite);
+        }
+
+        private int write(final ByteBuffer src, final int maxBytes) {
+            final int bytes = Math.min(src.remaining(), maxBytes);
+            for (int i = 0; i < bytes; i++) {
+                mOutput.write(src.get());
+            }
+
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
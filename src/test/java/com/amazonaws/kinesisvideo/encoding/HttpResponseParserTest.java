@@ -0,0 +1,182 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * HttpResponseParser class tests
+ */
+public class HttpResponseParserTest {
+    private static final String CHUNKED_RESPONSE = "HTTP/1.1 200 OK\r\n"
+            + "transfer-encoding: chunked\r\n"
+            + "x-amzn-RequestId: 1234\r\n"
+            + "\r\n"
+            + "5\r\nhello\r\n"
+            + "7;ext=1\r\n, world\r\n"
+            + "0\r\n"
+            + "\r\n";
+
+    private static final class BodyCollector implements HttpResponseParser.Listener {
+        private final ByteArrayOutputStream mBody = new ByteArrayOutputStream();
+        private int mCompletions;
+
+        @Override
+        public void onBody(@Nonnull final byte[] buffer, final int offset, final int length) {
+            mBody.write(buffer, offset, length);
+        }
+
+        @Override
+        public void onComplete() {
+            mCompletions++;
+        }
+
+        private String getBody() {
+            return new String(mBody.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void parsesChunkedResponseTest() {
+        final BodyCollector collector = new BodyCollector();
+        final HttpResponseParser parser = new HttpResponseParser(collector);
+
+        parseAll(parser, bytes(CHUNKED_RESPONSE));
+
+        assertTrue(parser.isComplete());
+        assertEquals(200, parser.getResponseStatus().getStatusCode());
+        assertEquals("HTTP/1.1", parser.getResponseStatus().getProtocol());
+        assertEquals("OK", parser.getResponseStatus().getReason());
+        assertEquals("1234", parser.getHeaders().get("x-amzn-RequestId"));
+        assertEquals("hello, world", collector.getBody());
+        assertEquals(1, collector.mCompletions);
+    }
+
+    @Test
+    public void parsesResponseFedByteByByteTest() {
+        final BodyCollector collector = new BodyCollector();
+        final HttpResponseParser parser = new HttpResponseParser(collector);
+        final byte[] response = bytes(CHUNKED_RESPONSE);
+
+        int position = 0;
+        while (position < response.length && !parser.isComplete()) {
+            position += parser.parse(response, position, 1);
+        }
+
+        assertTrue(parser.isComplete());
+        assertEquals(response.length, position);
+        assertEquals("hello, world", collector.getBody());
+    }
+
+    @Test
+    public void stopsAfterHeadersTest() {
+        final HttpResponseParser parser = new HttpResponseParser();
+        final String head = "HTTP/1.1 403 Forbidden\r\nContent-Length: 4\r\n\r\n";
+        final byte[] response = bytes(head + "deny");
+
+        final int consumed = parser.parse(response, 0, response.length);
+
+        assertEquals(head.length(), consumed);
+        assertTrue(parser.isHeadersComplete());
+        assertFalse(parser.isComplete());
+        assertEquals(403, parser.getResponseStatus().getStatusCode());
+        assertEquals("Forbidden", parser.getResponseStatus().getReason());
+    }
+
+    @Test
+    public void parsesFixedLengthBodyFromDirectBufferTest() {
+        final BodyCollector collector = new BodyCollector();
+        final HttpResponseParser parser = new HttpResponseParser(collector);
+        final byte[] response = bytes("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nabcEXTRA");
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(response.length);
+        buffer.put(response).flip();
+
+        while (buffer.hasRemaining() && !parser.isComplete()) {
+            parser.parse(buffer);
+        }
+
+        assertTrue(parser.isComplete());
+        assertEquals("abc", collector.getBody());
+        assertEquals("EXTRA".length(), buffer.remaining());
+    }
+
+    @Test
+    public void emptyBodyCompletesAtHeadersTest() {
+        final BodyCollector collector = new BodyCollector();
+        final HttpResponseParser parser = new HttpResponseParser(collector);
+
+        parseAll(parser, bytes("HTTP/1.1 204 No Content\r\nContent-Length: 0\r\n\r\n"));
+
+        assertTrue(parser.isComplete());
+        assertEquals(1, collector.mCompletions);
+    }
+
+    @Test
+    public void parseHeadReturnsRemainingBodyTest() throws IOException {
+        final HttpResponseParser parser = new HttpResponseParser();
+        final InputStream body = parser.parseHead(
+                new ByteArrayInputStream(bytes("HTTP/1.1 200 OK\r\nHeader: value\r\n\r\n{\"EventType\":\"BUFFERING\"}")));
+
+        assertEquals(200, parser.getResponseStatus().getStatusCode());
+        assertEquals("value", parser.getHeaders().get("Header"));
+
+        final ByteArrayOutputStream remaining = new ByteArrayOutputStream();
+        int b;
+        while ((b = body.read()) >= 0) {
+            remaining.write(b);
+        }
+
+        assertEquals("{\"EventType\":\"BUFFERING\"}", new String(remaining.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IOException.class)
+    public void parseHeadFailsOnTruncatedHeadersTest() throws IOException {
+        new HttpResponseParser().parseHead(new ByteArrayInputStream(bytes("HTTP/1.1 200 OK\r\nHead")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsOversizedHeadersTest() {
+        final HttpResponseParser parser = new HttpResponseParser(null, 32);
+        parseAll(parser, bytes("HTTP/1.1 200 OK\r\nX-Long-Header: 0123456789abcdef\r\n\r\n"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsMalformedChunkSizeTest() {
+        parseAll(new HttpResponseParser(), bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nxyz\r\n"));
+    }
+
+    @Test
+    public void resetAllowsReuseTest() {
+        final BodyCollector collector = new BodyCollector();
+        final HttpResponseParser parser = new HttpResponseParser(collector);
+        parseAll(parser, bytes(CHUNKED_RESPONSE));
+
+        parser.reset();
+        assertNull(parser.getResponseStatus());
+        assertTrue(parser.getHeaders().isEmpty());
+
+        parseAll(parser, bytes(CHUNKED_RESPONSE));
+        assertTrue(parser.isComplete());
+        assertEquals(2, collector.mCompletions);
+    }
+
+    private static void parseAll(final HttpResponseParser parser, final byte[] response) {
+        int position = 0;
+        while (position < response.length && !parser.isComplete()) {
+            position += parser.parse(response, position, response.length - position);
+        }
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,219 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * MkvFragmentIndex class tests
+ */
+public class MkvFragmentIndexTest {
+    private static final int EBML_HEADER_ID = 0x1A45DFA3;
+    private static final int SEGMENT_ID = 0x18538067;
+    private static final int INFO_ID = 0x1549A966;
+    private static final int TRACKS_ID = 0x1654AE6B;
+    private static final int CLUSTER_ID = 0x1F43B675;
+    private static final int TIMECODE_ID = 0xE7;
+    private static final int SIMPLE_BLOCK_ID = 0xA3;
+
+    /**
+     * A frame with the cluster and the EBML header IDs in its data
+     */
+    private static final byte[] FRAME = {
+            (byte) 0x81, 0x00, 0x00, (byte) 0x80,
+            0x1F, 0x43, (byte) 0xB6, 0x75, 0x01, (byte) 0xFF,
+            0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, 0x42, 0x42
+    };
+
+    private final ByteArrayOutputStream mMkv = new ByteArrayOutputStream();
+    private File mFile;
+
+    @Before
+    public void setup() throws IOException {
+        mFile = Files.createTempFile("fragments", ".mkv").toFile();
+    }
+
+    @After
+    public void teardown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void findsFragmentsOfUnknownSizeClustersTest() throws IOException {
+        writeFragmentStart();
+        final long firstCluster = writeUnknownSizeCluster(2);
+        final long secondCluster = writeUnknownSizeCluster(3);
+        final long secondFragment = writeFragmentStart();
+        final long thirdCluster = writeUnknownSizeCluster(1);
+
+        final MkvFragmentIndex index = scan();
+
+        assertEquals(3, index.getClusterCount());
+        assertEquals(4, index.getBoundaryCount());
+        assertEquals(firstCluster, index.getFragmentEnd(0));
+        assertEquals(secondCluster, index.getFragmentEnd(firstCluster));
+        assertEquals(secondFragment, index.getFragmentEnd(secondCluster + 1));
+        assertEquals(thirdCluster, index.getFragmentEnd(secondFragment));
+        assertEquals(mMkv.size(), index.getFragmentEnd(thirdCluster));
+        assertEquals(mMkv.size(), index.getFileSize());
+    }
+
+    @Test
+    public void findsClustersAndTheirHeadersTest() throws IOException {
+        writeFragmentStart();
+        final long firstCluster = writeUnknownSizeCluster(2);
+        final long secondCluster = writeUnknownSizeCluster(3);
+        final long secondFragment = writeFragmentStart();
+        final long thirdCluster = writeUnknownSizeCluster(1);
+
+        final MkvFragmentIndex index = scan();
+
+        assertEquals(firstCluster, index.getClusterOffset(0));
+        assertEquals(secondCluster, index.getClusterOffset(1));
+        assertEquals(thirdCluster, index.getClusterOffset(2));
+        assertEquals(0, index.getClustersBefore(firstCluster));
+        assertEquals(2, index.getClustersBefore(secondFragment));
+        assertEquals(3, index.getClustersBefore(mMkv.size()));
+        assertEquals(0, index.getHeaderStart(secondCluster));
+        assertEquals(secondFragment, index.getHeaderStart(secondFragment));
+        assertEquals(secondFragment, index.getHeaderStart(thirdCluster));
+    }
+
+    @Test
+    public void skipsKnownSizeElementsTest() throws IOException {
+        writeFragmentStart();
+        final long firstCluster = mMkv.size();
+        writeElement(mMkv, CLUSTER_ID, cluster(2));
+        final long secondCluster = mMkv.size();
+        writeElement(mMkv, CLUSTER_ID, cluster(2));
+
+        final MkvFragmentIndex index = scan();
+
+        assertEquals(2, index.getClusterCount());
+        assertEquals(firstCluster, index.getFragmentEnd(0));
+        assertEquals(secondCluster, index.getFragmentEnd(firstCluster));
+    }
+
+    @Test
+    public void truncatedLastElementEndsScanTest() throws IOException {
+        writeFragmentStart();
+        final long cluster = writeUnknownSizeCluster(2);
+        // Header of a frame which was never written
+        writeId(mMkv, SIMPLE_BLOCK_ID);
+        mMkv.write(0x01);
+        mMkv.write(0x00);
+
+        final MkvFragmentIndex index = scan();
+
+        assertEquals(1, index.getClusterCount());
+        assertEquals(1, index.getBoundaryCount());
+        assertEquals(mMkv.size(), index.getFragmentEnd(cluster));
+    }
+
+    @Test
+    public void emptyFileHasNoFragmentsTest() throws IOException {
+        final MkvFragmentIndex index = scan();
+
+        assertEquals(0, index.getClusterCount());
+        assertEquals(0, index.getBoundaryCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidElementTest() throws IOException {
+        writeFragmentStart();
+        mMkv.write(new byte[] { 0x00, 0x00, 0x00, 0x00 });
+
+        scan();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownSizeLeafElementTest() throws IOException {
+        writeFragmentStart();
+        writeUnknownSizeHeader(SIMPLE_BLOCK_ID);
+        mMkv.write(FRAME);
+
+        scan();
+    }
+
+    private MkvFragmentIndex scan() throws IOException {
+        Files.write(mFile.toPath(), mMkv.toByteArray());
+        final RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            return MkvFragmentIndex.scan(file.getChannel());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the EBML header, the start of a segment of unknown size, the info and the tracks
+     *
+     * @return the offset of the EBML header
+     */
+    private long writeFragmentStart() throws IOException {
+        final long offset = mMkv.size();
+        writeElement(mMkv, EBML_HEADER_ID, new byte[] { 0x42, (byte) 0x82, (byte) 0x84, 'w', 'e', 'b', 'm' });
+        writeUnknownSizeHeader(SEGMENT_ID);
+        writeElement(mMkv, INFO_ID, new byte[] { 0x2A, (byte) 0xD7, (byte) 0xB1, (byte) 0x83, 0x0F, 0x42, 0x40 });
+        writeElement(mMkv, TRACKS_ID, new byte[] { (byte) 0xAE, (byte) 0x80 });
+        return offset;
+    }
+
+    /**
+     * @return the offset of the cluster
+     */
+    private long writeUnknownSizeCluster(final int frames) throws IOException {
+        final long offset = mMkv.size();
+        writeUnknownSizeHeader(CLUSTER_ID);
+        mMkv.write(cluster(frames));
+        return offset;
+    }
+
+    private static byte[] cluster(final int frames) throws IOException {
+        final ByteArrayOutputStream children = new ByteArrayOutputStream();
+        writeElement(children, TIMECODE_ID, new byte[] { 0x00 });
+        for (int i = 0; i < frames; i++) {
+            writeElement(children, SIMPLE_BLOCK_ID, FRAME);
+        }
+
+        return children.toByteArray();
+    }
+
+    private static void writeElement(final ByteArrayOutputStream mkv, final int id, final byte[] data)
+            throws IOException {
+        writeId(mkv, id);
+        // Eight byte size
+        mkv.write(0x01);
+        for (int shift = 48; shift >= 0; shift -= 8) {
+            mkv.write((int) ((long) data.length >> shift) & 0xFF);
+        }
+
+        mkv.write(data);
+    }
+
+    private void writeUnknownSizeHeader(final int id) throws IOException {
+        writeId(mMkv, id);
+        mMkv.write(new byte[] {
+                0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF
+        });
+    }
+
+    private static void writeId(final ByteArrayOutputStream mkv, final int id) {
+        boolean started = false;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            final int b = (id >> shift) & 0xFF;
+            if (b != 0 || started) {
+                mkv.write(b);
+                started = true;
+            }
+        }
+    }
+}
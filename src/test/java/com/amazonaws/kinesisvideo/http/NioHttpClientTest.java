@@ -0,0 +1,322 @@
+package com.amazonaws.kinesisvideo.http;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+
+/**
+ * NioHttpClient class tests against a local plain HTTP server
+ */
+public class NioHttpClientTest {
+    private static final String TEST_RESPONSE = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+            + "5\r\n{\"a\"}\r\n0\r\n\r\n";
+    private static final long TEST_TIMEOUT_IN_SECONDS = 10;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    }, LogLevel.ERROR, "NioHttpClientTest");
+
+    private NioEventLoopGroup mEventLoopGroup;
+    private ServerSocket mServerSocket;
+
+    @Before
+    public void setup() throws IOException {
+        // A single loop so all of the connections share it
+        mEventLoopGroup = new NioEventLoopGroup(1, mLog);
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        mEventLoopGroup.shutdown();
+        mServerSocket.close();
+    }
+
+    @Test
+    public void streamsPayloadAsChunksTest() throws Exception {
+        final TestPayload payload = new TestPayload(null);
+        final TestConnection connection = new TestConnection(payload);
+        final ServerThread server = new ServerThread(1);
+        server.start();
+
+        connection.client.connectInBackground();
+        payload.offer("Hello");
+        payload.offer("World!");
+        payload.end();
+
+        assertTrue(connection.completed.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+        assertNull(connection.error);
+        assertEquals("5\r\n{\"a\"}\r\n0\r\n\r\n", connection.responseBody());
+
+        server.join(TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_IN_SECONDS));
+        final String request = server.requests[0];
+        assertTrue(request, request.startsWith("POST /putMedia HTTP/1.1\r\n"));
+        assertTrue(request, request.contains("\r\nx-amzn-test: unsigned\r\n"));
+        assertFalse(connection.client.getHeaders().containsKey("x-amzn-test"));
+        assertTrue(request, request.endsWith("\r\n\r\n5\r\nHello\r\n6\r\nWorld!\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void blockedPayloadReadDoesNotStallOtherConnectionsTest() throws Exception {
+        final CountDownLatch readBlocked = new CountDownLatch(1);
+        final CountDownLatch unblockRead = new CountDownLatch(1);
+        final TestPayload blockedPayload = new TestPayload(new Runnable() {
+            @Override
+            public void run() {
+                readBlocked.countDown();
+                try {
+                    unblockRead.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final TestConnection blockedConnection = new TestConnection(blockedPayload);
+        final TestPayload payload = new TestPayload(null);
+        final TestConnection connection = new TestConnection(payload);
+        final ServerThread server = new ServerThread(2);
+        server.start();
+
+        blockedConnection.client.connectInBackground();
+        blockedPayload.offer("Blocked");
+        assertTrue(readBlocked.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+
+        // The other connection of the loop completes while the read is blocked
+        connection.client.connectInBackground();
+        payload.offer("Hello");
+        payload.end();
+        assertTrue(connection.completed.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+        assertNull(connection.error);
+
+        unblockRead.countDown();
+        blockedPayload.end();
+        assertTrue(blockedConnection.completed.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+        assertNull(blockedConnection.error);
+    }
+
+    @Test
+    public void throttledPayloadIsRetriedWithoutNotificationTest() throws Exception {
+        final TestPayload payload = new TestPayload(null);
+        final TestConnection connection = new TestConnection(payload);
+        final ServerThread server = new ServerThread(1);
+        server.start();
+
+        // The first read is held back by the rate limit and nothing notifies the client afterwards
+        payload.throttleNextRead(TimeUnit.MILLISECONDS.toNanos(20));
+        payload.offerSilently("Tail");
+        payload.endSilently();
+        connection.client.connectInBackground();
+
+        assertTrue(connection.completed.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+        assertNull(connection.error);
+
+        server.join(TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_IN_SECONDS));
+        assertTrue(server.requests[0], server.requests[0].endsWith("\r\n\r\n4\r\nTail\r\n0\r\n\r\n"));
+    }
+
+    private final class TestConnection {
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        private final NioHttpClient client;
+        private volatile Exception error;
+
+        private TestConnection(final TestPayload payload) {
+            client = NioHttpClient.builder()
+                    .uri(URI.create("http://127.0.0.1:" + mServerSocket.getLocalPort() + "/putMedia"))
+                    .method(HttpMethodName.POST)
+                    .header("Transfer-Encoding", "chunked")
+                    .unsignedHeader("x-amzn-test", "unsigned")
+                    .payload(payload)
+                    .log(mLog)
+                    .eventLoopGroup(mEventLoopGroup)
+                    .responseHandler(new NonBlockingResponseHandler() {
+                        @Override
+                        public boolean onResponseData(@Nonnull final ByteBuffer data) {
+                            synchronized (response) {
+                                response.write(data.array(), data.arrayOffset() + data.position(),
+                                        data.remaining());
+                            }
+                            return true;
+                        }
+                    })
+                    .completionCallback(new Consumer<Exception>() {
+                        @Override
+                        public void accept(final Exception exception) {
+                            error = exception;
+                            completed.countDown();
+                        }
+                    })
+                    .build();
+        }
+
+        private String responseBody() {
+            synchronized (response) {
+                final String text = new String(response.toByteArray(), StandardCharsets.US_ASCII);
+                return text.substring(text.indexOf("\r\n\r\n") + 4);
+            }
+        }
+    }
+
+    /**
+     * Payload fed by the test, the optional read hook runs on the reading thread
+     */
+    private static final class TestPayload implements PollableInputStream {
+        private final ConcurrentLinkedQueue<byte[]> mChunks = new ConcurrentLinkedQueue<byte[]>();
+        private final Runnable mReadHook;
+        private volatile boolean mEnded;
+        private volatile Runnable mListener;
+        private volatile long mThrottleDelayNanos;
+        private volatile long mRetryDelayNanos;
+
+        private TestPayload(@Nullable final Runnable readHook) {
+            mReadHook = readHook;
+        }
+
+        void offer(final String chunk) {
+            mChunks.offer(chunk.getBytes(StandardCharsets.US_ASCII));
+            notifyListener();
+        }
+
+        void end() {
+            mEnded = true;
+            notifyListener();
+        }
+
+        void offerSilently(final String chunk) {
+            mChunks.offer(chunk.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        void endSilently() {
+            mEnded = true;
+        }
+
+        /**
+         * Holds back the next read as if the upload rate limit was reached
+         */
+        void throttleNextRead(final long delayNanos) {
+            mThrottleDelayNanos = delayNanos;
+        }
+
+        @Override
+        public int readNonBlocking(@Nonnull final byte[] b, final int off, final int len) {
+            mRetryDelayNanos = 0;
+            if (mThrottleDelayNanos > 0) {
+                mRetryDelayNanos = mThrottleDelayNanos;
+                mThrottleDelayNanos = 0;
+                return 0;
+            }
+
+            final byte[] chunk = mChunks.poll();
+            if (chunk == null) {
+                return mEnded ? -1 : 0;
+            }
+
+            if (mReadHook != null) {
+                mReadHook.run();
+            }
+
+            System.arraycopy(chunk, 0, b, off, chunk.length);
+            return chunk.length;
+        }
+
+        @Override
+        public long getRetryDelayNanos() {
+            return mRetryDelayNanos;
+        }
+
+        @Override
+        public void setDataAvailableListener(@Nullable final Runnable listener) {
+            mListener = listener;
+        }
+
+        private void notifyListener() {
+            final Runnable listener = mListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Reads the chunked requests up to the last chunk and answers them
+     */
+    private final class ServerThread extends Thread {
+        private final String[] requests;
+
+        private ServerThread(final int connectionCount) {
+            requests = new String[connectionCount];
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < requests.length; i++) {
+                    final Socket socket = mServerSocket.accept();
+                    final int index = i;
+                    final Thread handler = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket, index);
+                        }
+                    });
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (final IOException e) {
+                // The test fails on the missing requests
+            }
+        }
+
+        private void serve(final Socket socket, final int index) {
+            try {
+                final InputStream input = socket.getInputStream();
+                final ByteArrayOutputStream request = new ByteArrayOutputStream();
+                int b;
+                while ((b = input.read()) >= 0) {
+                    request.write(b);
+                    final String text = new String(request.toByteArray(), StandardCharsets.US_ASCII);
+                    if (text.endsWith("\r\n0\r\n\r\n")) {
+                        break;
+                    }
+                }
+
+                // Record the request before the response completes the client
+                requests[index] = new String(request.toByteArray(), StandardCharsets.US_ASCII);
+                final OutputStream output = socket.getOutputStream();
+                output.write(TEST_RESPONSE.getBytes(StandardCharsets.US_ASCII));
+                output.flush();
+                socket.close();
+            } catch (final IOException e) {
+                // The test fails on the missing request
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.amazonaws.kinesisvideo.internal.client;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.internal.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducer;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.producer.AuthCallbacks;
+import com.amazonaws.kinesisvideo.producer.DeviceInfo;
+import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+import com.amazonaws.kinesisvideo.producer.StorageInfo;
+import com.amazonaws.kinesisvideo.producer.StreamCallbacks;
+import com.amazonaws.kinesisvideo.producer.Tag;
+
+/**
+ * NativeKinesisVideoClient class tests
+ */
+public class NativeKinesisVideoClientTest {
+    private static final int SHARD_COUNT = 4;
+    private static final long STORAGE_SIZE = 16 * 1024 * 1024;
+    private static final int BANDWIDTH_BPS = 1000000;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private final List<String> mCalls = new CopyOnWriteArrayList<String>();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shardStorageBelowNativeMinimumTest() throws KinesisVideoException {
+        final List<ServiceCallbacks> serviceCallbacks = new ArrayList<ServiceCallbacks>();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            serviceCallbacks.add(noOp(ServiceCallbacks.class));
+        }
+
+        final NativeKinesisVideoClient client = new NativeKinesisVideoClient(mLog,
+                noOp(AuthCallbacks.class),
+                noOp(StorageCallbacks.class),
+                serviceCallbacks,
+                noOp(StreamCallbacks.class),
+                null);
+
+        // Enough for a single native producer, not for the four shards
+        final StorageInfo storageInfo = new StorageInfo(0, StorageInfo.DeviceStorageType.DEVICE_STORAGE_TYPE_IN_MEM,
+                128 * 1024, 90, "/tmp");
+        try {
+            client.initialize(new DeviceInfo(0, "device", storageInfo, SHARD_COUNT, new Tag[0]));
+        } finally {
+            assertFalse(client.isInitialized());
+        }
+    }
+
+    @Test
+    public void failedRegistrationFreesStreamTest() throws KinesisVideoException {
+        final List<ServiceCallbacks> serviceCallbacks = new ArrayList<ServiceCallbacks>();
+        for (int i = 0; i < 2; i++) {
+            serviceCallbacks.add(recording(ServiceCallbacks.class, "callbacks" + i));
+        }
+
+        final NativeKinesisVideoClient client = new NativeKinesisVideoClient(mLog,
+                noOp(AuthCallbacks.class),
+                noOp(StorageCallbacks.class),
+                serviceCallbacks,
+                noOp(StreamCallbacks.class),
+                null) {
+            @Nonnull
+            @Override
+            KinesisVideoProducer initializeNewKinesisVideoProducer(final DeviceInfo deviceInfo,
+                                                                   final ServiceCallbacks callbacks) {
+                return recording(KinesisVideoProducer.class, "producer" + serviceCallbacks.indexOf(callbacks));
+            }
+        };
+
+        final StorageInfo storageInfo = new StorageInfo(0, StorageInfo.DeviceStorageType.DEVICE_STORAGE_TYPE_IN_MEM,
+                STORAGE_SIZE, 90, "/tmp");
+        client.initialize(new DeviceInfo(0, "device", storageInfo, SHARD_COUNT, new Tag[0]));
+
+        try {
+            client.registerMediaSource(createMediaSource(true));
+            fail("The media source fails to initialize");
+        } catch (final KinesisVideoException e) {
+            // Expected
+        }
+
+        final String createCall = mCalls.get(0);
+        assertTrue(createCall.endsWith(".createStreamSync"));
+        final String shardIndex = createCall.substring("producer".length(), "producer".length() + 1);
+        assertTrue(mCalls.contains("producer" + shardIndex + ".freeStream"));
+        assertTrue(mCalls.contains("callbacks" + shardIndex + ".removeStream"));
+
+        // The load of the shard is released so the stream lands on the same shard again
+        mCalls.clear();
+        client.registerMediaSource(createMediaSource(false));
+        assertEquals(createCall, mCalls.get(0));
+        assertTrue(mCalls.contains("callbacks" + shardIndex + ".addStream"));
+    }
+
+    private MediaSource createMediaSource(final boolean failing) {
+        return (MediaSource) Proxy.newProxyInstance(MediaSource.class.getClassLoader(),
+                new Class<?>[] { MediaSource.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args)
+                            throws KinesisVideoException {
+                        if ("getStreamInfo".equals(method.getName())) {
+                            return ProducerShardTest.streamInfo("stream", BANDWIDTH_BPS);
+                        } else if ("initialize".equals(method.getName()) && failing) {
+                            throw new KinesisVideoException("Failed to initialize the media source");
+                        }
+
+                        return defaultValue(method);
+                    }
+                });
+    }
+
+    /**
+     * @return stub recording the calls as "name.method", the producer stub creates the recording streams
+     */
+    private <T> T recording(final Class<T> interfaceClass, final String name) {
+        return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+                new Class<?>[] { interfaceClass },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("toString".equals(method.getName())) {
+                            return name;
+                        } else if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+
+                        mCalls.add(name + "." + method.getName());
+                        if ("createStreamSync".equals(method.getName())) {
+                            return recording(KinesisVideoProducerStream.class, name + "-stream");
+                        }
+
+                        return defaultValue(method);
+                    }
+                }));
+    }
+
+    private static Object defaultValue(final Method method) {
+        final Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+            return false;
+        } else if (returnType == int.class) {
+            return 0;
+        } else if (returnType == long.class) {
+            return 0L;
+        } else if (returnType == double.class) {
+            return 0.0;
+        }
+
+        return null;
+    }
+
+    private static <T> T noOp(final Class<T> interfaceClass) {
+        return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+                new Class<?>[] { interfaceClass },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return null;
+                    }
+                }));
+    }
+}
@@ -0,0 +1,178 @@
+package com.amazonaws.kinesisvideo.internal.client;
+
+import static com.amazonaws.kinesisvideo.producer.StreamInfo.NalAdaptationFlags.NAL_ADAPTATION_FLAG_NONE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_BUFFER_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_GOP_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_REPLAY_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_STALENESS_DURATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.DEFAULT_TIMESCALE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.FRAMERATE_30;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.KEYFRAME_FRAGMENTATION;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.MAX_LATENCY_ZERO;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.NOT_ADAPTIVE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.NO_KMS_KEY_ID;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RECALCULATE_METRICS;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RECOVER_ON_FAILURE;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RELATIVE_TIMECODES;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.REQUEST_FRAGMENT_ACKS;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.RETENTION_ONE_HOUR;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.USE_FRAME_TIMECODES;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VERSION_ZERO;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VIDEO_CODEC_ID;
+import static com.amazonaws.kinesisvideo.util.StreamInfoConstants.VIDEO_CONTENT_TYPE;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducer;
+import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import com.amazonaws.kinesisvideo.producer.Tag;
+
+/**
+ * ProducerShard class tests
+ */
+public class ProducerShardTest {
+    private static final int SHARD_COUNT = 4;
+    private static final int BANDWIDTH_BPS = 1000000;
+
+    private final List<ProducerShard> mShards = new ArrayList<ProducerShard>();
+
+    @Before
+    public void setup() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            mShards.add(new ProducerShard(i, noOp(KinesisVideoProducer.class), noOp(ServiceCallbacks.class)));
+        }
+    }
+
+    @Test
+    public void tiesGoToHashedShardTest() {
+        final StreamInfo streamInfo = streamInfo("stream", BANDWIDTH_BPS);
+        final int preferred = ("stream".hashCode() & Integer.MAX_VALUE) % SHARD_COUNT;
+
+        assertEquals(preferred, ProducerShard.select(mShards, streamInfo).getIndex());
+        // Selecting doesn't change the load
+        assertEquals(preferred, ProducerShard.select(mShards, streamInfo).getIndex());
+    }
+
+    @Test
+    public void leastBandwidthWinsTest() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            mShards.get(i).addStream(streamInfo("loaded-" + i, (SHARD_COUNT - i) * BANDWIDTH_BPS));
+        }
+
+        // The shard with the most streams but the least bandwidth is still selected
+        mShards.get(SHARD_COUNT - 1).addStream(streamInfo("idle", 0));
+
+        final ProducerShard selected = ProducerShard.select(mShards, streamInfo("stream", BANDWIDTH_BPS));
+        assertEquals(SHARD_COUNT - 1, selected.getIndex());
+        assertEquals(2, selected.getStreamCount());
+        assertEquals(BANDWIDTH_BPS, selected.getBandwidthBps());
+    }
+
+    @Test
+    public void equalBandwidthGoesToFewerStreamsTest() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            mShards.get(i).addStream(streamInfo("loaded-" + i, BANDWIDTH_BPS));
+            if (i != 1) {
+                mShards.get(i).addStream(streamInfo("idle-" + i, 0));
+            }
+        }
+
+        assertEquals(1, ProducerShard.select(mShards, streamInfo("stream", BANDWIDTH_BPS)).getIndex());
+    }
+
+    @Test
+    public void streamsAreSpreadEvenlyTest() {
+        for (int i = 0; i < 3 * SHARD_COUNT; i++) {
+            final StreamInfo streamInfo = streamInfo("stream-" + i, BANDWIDTH_BPS);
+            ProducerShard.select(mShards, streamInfo).addStream(streamInfo);
+        }
+
+        for (final ProducerShard shard : mShards) {
+            assertEquals(3, shard.getStreamCount());
+            assertEquals(3 * BANDWIDTH_BPS, shard.getBandwidthBps());
+        }
+    }
+
+    @Test
+    public void removedStreamFreesShardTest() {
+        final List<ProducerShard> selected = new ArrayList<ProducerShard>();
+        final List<StreamInfo> streams = new ArrayList<StreamInfo>();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            final StreamInfo streamInfo = streamInfo("stream-" + i, BANDWIDTH_BPS);
+            final ProducerShard shard = ProducerShard.select(mShards, streamInfo);
+            shard.addStream(streamInfo);
+            selected.add(shard);
+            streams.add(streamInfo);
+        }
+
+        final ProducerShard shard = selected.get(2);
+        shard.removeStream(streams.get(2));
+        assertEquals(0, shard.getStreamCount());
+        assertEquals(0, shard.getBandwidthBps());
+
+        assertSame(shard, ProducerShard.select(mShards, streamInfo("stream", BANDWIDTH_BPS)));
+    }
+
+    @Test
+    public void singleShardIsAlwaysSelectedTest() {
+        final List<ProducerShard> shards = Collections.singletonList(mShards.get(0));
+        mShards.get(0).addStream(streamInfo("loaded", BANDWIDTH_BPS));
+
+        assertSame(mShards.get(0), ProducerShard.select(shards, streamInfo("stream", BANDWIDTH_BPS)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shardsAreRequiredTest() {
+        ProducerShard.select(Collections.<ProducerShard>emptyList(), streamInfo("stream", BANDWIDTH_BPS));
+    }
+
+    static StreamInfo streamInfo(final String name, final int avgBandwidthBps) {
+        return new StreamInfo(VERSION_ZERO,
+                name,
+                StreamInfo.StreamingType.STREAMING_TYPE_REALTIME,
+                VIDEO_CONTENT_TYPE,
+                NO_KMS_KEY_ID,
+                RETENTION_ONE_HOUR,
+                NOT_ADAPTIVE,
+                MAX_LATENCY_ZERO,
+                DEFAULT_GOP_DURATION,
+                KEYFRAME_FRAGMENTATION,
+                USE_FRAME_TIMECODES,
+                RELATIVE_TIMECODES,
+                REQUEST_FRAGMENT_ACKS,
+                RECOVER_ON_FAILURE,
+                VIDEO_CODEC_ID,
+                "track",
+                avgBandwidthBps,
+                FRAMERATE_30,
+                DEFAULT_BUFFER_DURATION,
+                DEFAULT_REPLAY_DURATION,
+                DEFAULT_STALENESS_DURATION,
+                DEFAULT_TIMESCALE,
+                RECALCULATE_METRICS,
+                null,
+                new Tag[0],
+                NAL_ADAPTATION_FLAG_NONE);
+    }
+
+    private static <T> T noOp(final Class<T> interfaceClass) {
+        return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+                new Class<?>[] { interfaceClass },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return null;
+                    }
+                }));
+    }
+}
@@ -0,0 +1,189 @@
+package com.amazonaws.kinesisvideo.internal.mediasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.storage.FragmentJournal;
+
+/**
+ * FragmentJournalReplay class tests
+ */
+public class FragmentJournalReplayTest {
+    private static final long SEGMENT_SIZE = 1024;
+    private static final long TIMECODE_SCALE = 10000;
+    private static final int FRAME_COUNT = 3;
+    private static final long FRAME_DURATION = 400000;
+    private static final long START_TS = 16000000000000000L;
+    private static final long BYTES_PER_SECOND = 1000 * 1000 * 1000;
+    private static final int LIVE_FRAME_INDEX = 100;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private final List<Integer> mPutFrames = new CopyOnWriteArrayList<Integer>();
+    private File mDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("journal-replay").toFile();
+        // A fragment which was never acknowledged
+        final FragmentJournal journal = createJournal();
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            journal.appendFrame(frame(i, START_TS + i * FRAME_DURATION));
+        }
+
+        journal.close();
+    }
+
+    @After
+    public void teardown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void replaysFramesOnItsThreadTest() throws IOException, KinesisVideoException {
+        final FragmentJournal journal = createJournal();
+        final FragmentJournalReplay replay = new FragmentJournalReplay(createStream(false), journal,
+                BYTES_PER_SECOND, mLog);
+
+        replay.start();
+        replay.awaitCompletion();
+
+        assertTrue(replay.isCompleted());
+        assertEquals(FRAME_COUNT, mPutFrames.size());
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            assertEquals(i, mPutFrames.get(i).intValue());
+        }
+
+        // The recovered segments are deleted
+        assertEquals(0, mDirectory.listFiles().length);
+        journal.close();
+    }
+
+    @Test
+    public void failedReplayKeepsSegmentsTest() throws IOException, KinesisVideoException {
+        final FragmentJournal journal = createJournal();
+        final FragmentJournalReplay replay = new FragmentJournalReplay(createStream(true), journal,
+                BYTES_PER_SECOND, mLog);
+
+        replay.start();
+        replay.awaitCompletion();
+
+        assertTrue(replay.isCompleted());
+        assertTrue(mPutFrames.isEmpty());
+        assertEquals(1, mDirectory.listFiles().length);
+        journal.close();
+    }
+
+    @Test
+    public void sinkWaitsForReplayTest() throws IOException, InterruptedException {
+        final FragmentJournal journal = createJournal();
+        final KinesisVideoProducerStream stream = createStream(false);
+        final FragmentJournalReplay replay = new FragmentJournalReplay(stream, journal, BYTES_PER_SECOND, mLog);
+        final ProducerStreamSink sink = new ProducerStreamSink(stream, null, replay);
+
+        final Thread mediaSource = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sink.onFrame(frame(LIVE_FRAME_INDEX, START_TS + FRAME_COUNT * FRAME_DURATION));
+                } catch (final KinesisVideoException e) {
+                    fail(e.getMessage());
+                }
+            }
+        });
+
+        mediaSource.start();
+        Thread.sleep(50);
+        assertTrue(mPutFrames.isEmpty());
+
+        replay.run();
+        mediaSource.join();
+
+        assertEquals(FRAME_COUNT + 1, mPutFrames.size());
+        assertEquals(LIVE_FRAME_INDEX, mPutFrames.get(FRAME_COUNT).intValue());
+        journal.close();
+    }
+
+    private FragmentJournal createJournal() throws IOException {
+        return new FragmentJournal(mDirectory, SEGMENT_SIZE, 4 * SEGMENT_SIZE, TIMECODE_SCALE, mLog);
+    }
+
+    /**
+     * @return stream recording the indices of the frames put into it
+     */
+    private KinesisVideoProducerStream createStream(final boolean failing) {
+        return (KinesisVideoProducerStream) Proxy.newProxyInstance(KinesisVideoProducerStream.class.getClassLoader(),
+                new Class<?>[] { KinesisVideoProducerStream.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args)
+                            throws ProducerException {
+                        if ("putFrame".equals(method.getName())) {
+                            if (failing) {
+                                throw new ProducerException("Stream is stopped", 0);
+                            }
+
+                            mPutFrames.add(((KinesisVideoFrame) args[0]).getIndex());
+                        } else if ("getStreamName".equals(method.getName())) {
+                            return "stream";
+                        }
+
+                        final Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        } else if (returnType == int.class) {
+                            return 0;
+                        } else if (returnType == long.class) {
+                            return 0L;
+                        } else if (returnType == double.class) {
+                            return 0.0;
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    private static KinesisVideoFrame frame(final int index, final long timestamp) {
+        return new KinesisVideoFrame(index,
+                index == 0 ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                timestamp,
+                timestamp,
+                FRAME_DURATION,
+                ByteBuffer.allocate(16));
+    }
+}
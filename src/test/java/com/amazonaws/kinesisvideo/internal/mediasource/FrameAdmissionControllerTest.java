@@ -0,0 +1,224 @@
+package com.amazonaws.kinesisvideo.internal.mediasource;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.internal.mediasource.FrameAdmissionController.DegradationPolicy;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+/**
+ * FrameAdmissionController class tests
+ */
+public class FrameAdmissionControllerTest {
+    private static final String STREAM_NAME = "stream";
+    private static final long VIDEO_TRACK_ID = 1;
+    private static final long AUDIO_TRACK_ID = 2;
+    private static final int FRAME_SIZE = 100;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private volatile double mPressure;
+
+    @Test
+    public void admitsAllFramesWithoutPressureTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_GOPS);
+
+        assertTrue(controller.admit(keyFrame()));
+        assertTrue(controller.admit(discardableFrame()));
+        assertTrue(controller.admit(deltaFrame()));
+
+        assertEquals(FrameAdmissionController.Level.ADMIT_ALL, controller.getLevel());
+        assertEquals(3, controller.getAdmittedFrames());
+        assertEquals(0, controller.getDroppedFrames());
+    }
+
+    @Test
+    public void dropsDiscardableFramesTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_NON_REFERENCE);
+        assertTrue(controller.admit(keyFrame()));
+
+        mPressure = 0.75;
+        assertFalse(controller.admit(discardableFrame()));
+        assertTrue(controller.admit(deltaFrame()));
+
+        assertEquals(FrameAdmissionController.Level.DROP_NON_REFERENCE, controller.getLevel());
+        assertEquals(1, controller.getDroppedNonReferenceFrames());
+        assertEquals(FRAME_SIZE, controller.getDroppedBytes());
+    }
+
+    @Test
+    public void policyLimitsDegradationTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_NON_REFERENCE);
+        mPressure = 1;
+
+        assertTrue(controller.admit(keyFrame()));
+        assertTrue(controller.admit(deltaFrame()));
+
+        assertEquals(FrameAdmissionController.Level.DROP_NON_REFERENCE, controller.getLevel());
+        assertEquals(0, controller.getDroppedFrames());
+    }
+
+    @Test
+    public void keyFramesOnlyDropsRestOfGopTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.KEY_FRAMES_ONLY);
+        assertTrue(controller.admit(keyFrame()));
+
+        mPressure = 0.9;
+        assertFalse(controller.admit(deltaFrame()));
+        // The pressure is gone but the frames depend on the dropped one
+        mPressure = 0;
+        assertFalse(controller.admit(deltaFrame()));
+
+        assertEquals(1, controller.getDroppedNonKeyFrames());
+        assertEquals(1, controller.getDroppedDependentFrames());
+        assertEquals(FrameAdmissionController.Level.KEY_FRAMES_ONLY, controller.getLevel());
+
+        // Eases at the key-frame
+        assertTrue(controller.admit(keyFrame()));
+        assertTrue(controller.admit(deltaFrame()));
+        assertEquals(FrameAdmissionController.Level.ADMIT_ALL, controller.getLevel());
+    }
+
+    @Test
+    public void dropGopsDropsFromKeyFrameTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_GOPS);
+        assertTrue(controller.admit(keyFrame()));
+
+        mPressure = 0.99;
+        assertFalse(controller.admit(deltaFrame()));
+        assertFalse(controller.admit(keyFrame()));
+        assertFalse(controller.admit(discardableFrame()));
+        assertFalse(controller.admit(deltaFrame()));
+
+        assertEquals(FrameAdmissionController.Level.DROP_GOPS, controller.getLevel());
+        assertEquals(1, controller.getDroppedGops());
+        assertEquals(1, controller.getDroppedNonKeyFrames());
+        assertEquals(2, controller.getDroppedDependentFrames());
+        assertEquals(4, controller.getDroppedFrames());
+        assertEquals(4 * FRAME_SIZE, controller.getDroppedBytes());
+    }
+
+    @Test
+    public void levelKeptWithinHysteresisTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_NON_REFERENCE);
+        mPressure = 0.72;
+        assertTrue(controller.admit(keyFrame()));
+        assertEquals(FrameAdmissionController.Level.DROP_NON_REFERENCE, controller.getLevel());
+
+        mPressure = 0.67;
+        assertTrue(controller.admit(keyFrame()));
+        assertFalse(controller.admit(discardableFrame()));
+        assertEquals(FrameAdmissionController.Level.DROP_NON_REFERENCE, controller.getLevel());
+
+        mPressure = 0.6;
+        assertTrue(controller.admit(keyFrame()));
+        assertTrue(controller.admit(discardableFrame()));
+        assertEquals(FrameAdmissionController.Level.ADMIT_ALL, controller.getLevel());
+    }
+
+    @Test
+    public void tracksWithoutKeyFramesAreAdmittedTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_GOPS);
+        mPressure = 1;
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(controller.admit(frame(FrameFlags.FRAME_FLAG_NONE, AUDIO_TRACK_ID)));
+        }
+
+        assertEquals(3, controller.getAdmittedFrames());
+    }
+
+    @Test
+    public void metricsSnapshotCountersTest() {
+        final FrameAdmissionController controller = createController(DegradationPolicy.DROP_GOPS);
+        controller.admit(keyFrame());
+        mPressure = 0.99;
+        controller.admit(keyFrame());
+        controller.admit(deltaFrame());
+
+        final FrameAdmissionMetrics metrics = controller.getMetrics();
+        mPressure = 0;
+        controller.admit(keyFrame());
+
+        assertEquals(STREAM_NAME, metrics.getStreamName());
+        assertEquals(FrameAdmissionController.Level.DROP_GOPS, metrics.getLevel());
+        assertEquals(1, metrics.getAdmittedFrames());
+        assertEquals(1, metrics.getDroppedGops());
+        assertEquals(1, metrics.getDroppedDependentFrames());
+        assertEquals(2, metrics.getDroppedFrames());
+        assertEquals(2 * FRAME_SIZE, metrics.getDroppedBytes());
+        assertEquals(2, controller.getAdmittedFrames());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void levelPressuresAreOrderedTest() {
+        new FrameAdmissionController(createStream(), DegradationPolicy.DROP_GOPS,
+                0.9, 0.8, 0.95, mLog);
+    }
+
+    private FrameAdmissionController createController(final DegradationPolicy policy) {
+        return new FrameAdmissionController(createStream(), policy, mLog);
+    }
+
+    /**
+     * @return stream reporting the buffer pressure of the test
+     */
+    private KinesisVideoProducerStream createStream() {
+        return (KinesisVideoProducerStream) Proxy.newProxyInstance(KinesisVideoProducerStream.class.getClassLoader(),
+                new Class<?>[] { KinesisVideoProducerStream.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("getBufferPressure".equals(method.getName())) {
+                            return mPressure;
+                        } else if ("getStreamName".equals(method.getName())) {
+                            return STREAM_NAME;
+                        }
+
+                        final Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        } else if (returnType == int.class) {
+                            return 0;
+                        } else if (returnType == long.class) {
+                            return 0L;
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    private static KinesisVideoFrame keyFrame() {
+        return frame(FrameFlags.FRAME_FLAG_KEY_FRAME, VIDEO_TRACK_ID);
+    }
+
+    private static KinesisVideoFrame deltaFrame() {
+        return frame(FrameFlags.FRAME_FLAG_NONE, VIDEO_TRACK_ID);
+    }
+
+    private static KinesisVideoFrame discardableFrame() {
+        return frame(FrameFlags.FRAME_FLAG_DISCARDABLE_FRAME, VIDEO_TRACK_ID);
+    }
+
+    private static KinesisVideoFrame frame(final int flags, final long trackId) {
+        return new KinesisVideoFrame(0, flags, 0, 0, 0, ByteBuffer.allocate(FRAME_SIZE), trackId);
+    }
+}
@@ -0,0 +1,68 @@
+package com.amazonaws.kinesisvideo.internal.producer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * LatencyHistogram class tests
+ */
+public class LatencyHistogramTest {
+    private LatencyHistogram mHistogram;
+
+    @Before
+    public void setupHistogram() {
+        mHistogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void emptyHistogramTest() {
+        assertEquals(0, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMeanNanos());
+        assertEquals(0, mHistogram.getMaxNanos());
+        assertEquals(0, mHistogram.getPercentileNanos(50));
+        assertEquals(0, mHistogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void recordTest() {
+        mHistogram.record(100);
+        mHistogram.record(300);
+        mHistogram.record(-5);
+
+        assertEquals(3, mHistogram.getCount());
+        assertEquals(300, mHistogram.getMaxNanos());
+        assertEquals(133, mHistogram.getMeanNanos());
+    }
+
+    @Test
+    public void percentileWithinFactorOfTwoTest() {
+        for (int i = 0; i < 99; i++) {
+            mHistogram.record(1000);
+        }
+
+        mHistogram.record(1000000);
+
+        // 1000 falls into the [512, 1024) bucket
+        assertEquals(1023, mHistogram.getPercentileNanos(50));
+        assertEquals(1023, mHistogram.getPercentileNanos(99));
+        // The top bucket is capped by the max
+        assertEquals(1000000, mHistogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void resetTest() {
+        mHistogram.record(1000);
+        mHistogram.reset();
+
+        assertEquals(0, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMaxNanos());
+        assertEquals(0, mHistogram.getPercentileNanos(99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentileTest() {
+        mHistogram.getPercentileNanos(0);
+    }
+}
@@ -0,0 +1,170 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoMetricsRegistry;
+import com.amazonaws.kinesisvideo.internal.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.internal.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.producer.AuthCallbacks;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+
+/**
+ * MetricsSampler class tests
+ */
+public class MetricsSamplerTest {
+    private static final long PERIOD_IN_MILLIS = 5;
+    private static final long TEST_TIMEOUT_IN_MILLIS = 5000;
+    private static final long FIRST_STREAM = 1;
+    private static final long SECOND_STREAM = 2;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private final AtomicInteger mClientSamples = new AtomicInteger();
+    private final Set<Long> mSampledStreams = ConcurrentHashMap.newKeySet();
+    private final KinesisVideoMetricsRegistry mRegistry = new KinesisVideoMetricsRegistry();
+    private MetricsSampler mSampler;
+
+    /**
+     * Counts the sampling calls instead of calling into the native code
+     */
+    private final class CountingProducerJni extends NativeKinesisVideoProducerJni {
+        private CountingProducerJni() throws ProducerException {
+            super(noOp(AuthCallbacks.class), noOp(StorageCallbacks.class), noOp(ServiceCallbacks.class), mLog);
+        }
+
+        @Override
+        boolean sampleMetrics(@Nonnull final KinesisVideoMetrics metrics) {
+            mClientSamples.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        boolean sampleStreamMetrics(final long streamHandle, @Nonnull final KinesisVideoStreamMetrics streamMetrics) {
+            mSampledStreams.add(streamHandle);
+            return true;
+        }
+    }
+
+    @Before
+    public void setup() throws ProducerException {
+        mSampler = new MetricsSampler(new CountingProducerJni(), mRegistry, PERIOD_IN_MILLIS, mLog);
+    }
+
+    @After
+    public void teardown() {
+        mSampler.stop();
+    }
+
+    @Test
+    public void doesNotSampleWithoutStreamsTest() throws InterruptedException {
+        mSampler.start();
+
+        Thread.sleep(PERIOD_IN_MILLIS * 10);
+
+        assertEquals(0, mClientSamples.get());
+        assertNull(mRegistry.getClientMetrics());
+    }
+
+    @Test
+    public void doesNotSampleBeforeStartTest() throws InterruptedException {
+        mSampler.addStream(FIRST_STREAM);
+
+        Thread.sleep(PERIOD_IN_MILLIS * 10);
+
+        assertEquals(0, mClientSamples.get());
+    }
+
+    @Test
+    public void samplesOnlyRequestedStreamsTest() throws InterruptedException {
+        mSampler.start();
+        mSampler.addStream(FIRST_STREAM);
+
+        awaitClientSamples(2);
+
+        assertTrue(mSampledStreams.contains(FIRST_STREAM));
+        assertFalse(mSampledStreams.contains(SECOND_STREAM));
+        assertNotNull(mRegistry.getClientMetrics());
+        assertNotNull(mRegistry.getStreamMetrics(FIRST_STREAM));
+    }
+
+    @Test
+    public void stopsSamplingAfterLastStreamIsRemovedTest() throws InterruptedException {
+        mSampler.start();
+        mSampler.addStream(FIRST_STREAM);
+        awaitClientSamples(1);
+
+        mSampler.removeStream(FIRST_STREAM);
+        // Let the sample in progress finish
+        Thread.sleep(PERIOD_IN_MILLIS * 4);
+        final int samples = mClientSamples.get();
+        Thread.sleep(PERIOD_IN_MILLIS * 10);
+
+        assertEquals(samples, mClientSamples.get());
+    }
+
+    @Test
+    public void stopClearsRegistryTest() throws InterruptedException {
+        mSampler.start();
+        mSampler.addStream(FIRST_STREAM);
+        awaitClientSamples(1);
+
+        mSampler.stop();
+
+        assertNull(mRegistry.getClientMetrics());
+        assertNull(mRegistry.getStreamMetrics(FIRST_STREAM));
+    }
+
+    private void awaitClientSamples(final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_IN_MILLIS);
+        while (mClientSamples.get() < count) {
+            assertTrue("Timed out waiting for the samples", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Implements the callback interface with the methods doing nothing and returning the default values
+     */
+    private static <T> T noOp(final Class<T> callbacksClass) {
+        return callbacksClass.cast(Proxy.newProxyInstance(callbacksClass.getClassLoader(),
+                new Class<?>[] { callbacksClass },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        } else if (returnType == int.class) {
+                            return 0;
+                        } else if (returnType == long.class) {
+                            return 0L;
+                        }
+
+                        return null;
+                    }
+                }));
+    }
+}
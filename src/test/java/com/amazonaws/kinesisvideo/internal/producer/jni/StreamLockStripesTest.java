@@ -0,0 +1,135 @@
+package com.amazonaws.kinesisvideo.internal.producer.jni;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+
+/**
+ * StreamLockStripes class tests
+ */
+public class StreamLockStripesTest {
+    private static final long TEST_TIMEOUT_IN_MILLIS = 5000;
+
+    /**
+     * Native stream handles are heap pointers so emulate their alignment
+     */
+    private static final long STREAM_HANDLE_BASE = 0x7f0000001000L;
+    private static final long STREAM_HANDLE_ALIGNMENT = 0x200L;
+
+    private final StreamLockStripes mStreamLocks = new StreamLockStripes();
+
+    @Test
+    public void sameStreamSerialisesTest() throws InterruptedException {
+        final Lock streamLock = mStreamLocks.lockFor(STREAM_HANDLE_BASE);
+        assertSame(streamLock, mStreamLocks.lockFor(STREAM_HANDLE_BASE));
+
+        streamLock.lock();
+        try {
+            assertFalse(tryLockOnOtherThread(STREAM_HANDLE_BASE));
+        } finally {
+            streamLock.unlock();
+        }
+
+        assertTrue(tryLockOnOtherThread(STREAM_HANDLE_BASE));
+    }
+
+    @Test
+    public void differentStreamsRunInParallelTest() throws InterruptedException {
+        final long otherStreamHandle = streamOnOtherStripe(STREAM_HANDLE_BASE);
+        final CyclicBarrier bothLocked = new CyclicBarrier(2);
+        final AtomicBoolean parallel = new AtomicBoolean(true);
+        final Thread first = lockUntilBarrier(STREAM_HANDLE_BASE, bothLocked, parallel);
+        final Thread second = lockUntilBarrier(otherStreamHandle, bothLocked, parallel);
+        first.start();
+        second.start();
+        first.join(TEST_TIMEOUT_IN_MILLIS);
+        second.join(TEST_TIMEOUT_IN_MILLIS);
+
+        assertTrue(parallel.get());
+    }
+
+    @Test
+    public void lockAllExcludesEverythingTest() throws InterruptedException {
+        final long otherStreamHandle = streamOnOtherStripe(STREAM_HANDLE_BASE);
+        mStreamLocks.lockAll();
+        try {
+            for (int i = 0; i < 2 * mStreamLocks.getStripeCount(); i++) {
+                assertFalse(tryLockOnOtherThread(STREAM_HANDLE_BASE + i * STREAM_HANDLE_ALIGNMENT));
+            }
+        } finally {
+            mStreamLocks.unlockAll();
+        }
+
+        assertTrue(tryLockOnOtherThread(STREAM_HANDLE_BASE));
+        assertTrue(tryLockOnOtherThread(otherStreamHandle));
+    }
+
+    @Test
+    public void singleStripeSerialisesAllStreamsTest() {
+        final StreamLockStripes streamLocks = new StreamLockStripes(1);
+
+        assertSame(streamLocks.lockFor(STREAM_HANDLE_BASE),
+                streamLocks.lockFor(STREAM_HANDLE_BASE + STREAM_HANDLE_ALIGNMENT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsStripeCountNotPowerOfTwoTest() {
+        new StreamLockStripes(3);
+    }
+
+    private long streamOnOtherStripe(final long streamHandle) {
+        long otherStreamHandle = streamHandle + STREAM_HANDLE_ALIGNMENT;
+        while (mStreamLocks.lockFor(otherStreamHandle) == mStreamLocks.lockFor(streamHandle)) {
+            otherStreamHandle += STREAM_HANDLE_ALIGNMENT;
+        }
+
+        return otherStreamHandle;
+    }
+
+    /**
+     * @return whether another thread acquired the stream lock, the lock is released again
+     */
+    private boolean tryLockOnOtherThread(final long streamHandle) throws InterruptedException {
+        final AtomicBoolean locked = new AtomicBoolean();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+                if (streamLock.tryLock()) {
+                    locked.set(true);
+                    streamLock.unlock();
+                }
+            }
+        });
+        thread.start();
+        thread.join(TEST_TIMEOUT_IN_MILLIS);
+        return locked.get();
+    }
+
+    /**
+     * Holds the stream lock until the other thread holds its stream lock as well
+     */
+    private Thread lockUntilBarrier(final long streamHandle,
+                                    final CyclicBarrier barrier,
+                                    final AtomicBoolean parallel) {
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Lock streamLock = mStreamLocks.lockFor(streamHandle);
+                streamLock.lock();
+                try {
+                    barrier.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final Exception e) {
+                    parallel.set(false);
+                } finally {
+                    streamLock.unlock();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.internal.producer.client.KinesisVideoServiceClient;
+
+/**
+ * DefaultServiceCallbacksImpl class tests
+ */
+public class DefaultServiceCallbacksImplTest {
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private final AtomicInteger mServiceClientInitializations = new AtomicInteger();
+    private final AtomicInteger mServiceClientFrees = new AtomicInteger();
+
+    @Test
+    public void shardCallbacksShareResourcesTest() {
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+        final DefaultServiceCallbacksImpl callbacks = new DefaultServiceCallbacksImpl(mLog, executor,
+                KinesisVideoClientConfiguration.builder().build(), createServiceClient());
+        final DefaultServiceCallbacksImpl shardCallbacks = callbacks.createShardCallbacks();
+        final DefaultServiceCallbacksImpl otherShardCallbacks = callbacks.createShardCallbacks();
+
+        assertEquals(1, mServiceClientInitializations.get());
+        assertFalse(callbacks.isSharingResources());
+        assertTrue(shardCallbacks.isSharingResources());
+
+        // The first callbacks are freed while the other shards still run
+        callbacks.free();
+        callbacks.free();
+        shardCallbacks.free();
+        assertEquals(0, mServiceClientFrees.get());
+        assertFalse(executor.isShutdown());
+
+        otherShardCallbacks.free();
+        assertEquals(1, mServiceClientFrees.get());
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void freedCallbacksCreateNoShardCallbacksTest() {
+        final DefaultServiceCallbacksImpl callbacks = new DefaultServiceCallbacksImpl(mLog,
+                Executors.newScheduledThreadPool(1), KinesisVideoClientConfiguration.builder().build(),
+                createServiceClient());
+        callbacks.free();
+
+        callbacks.createShardCallbacks();
+    }
+
+    /**
+     * @return service client counting its initializations and frees
+     */
+    private KinesisVideoServiceClient createServiceClient() {
+        return (KinesisVideoServiceClient) Proxy.newProxyInstance(KinesisVideoServiceClient.class.getClassLoader(),
+                new Class<?>[] { KinesisVideoServiceClient.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("initialize".equals(method.getName())) {
+                            mServiceClientInitializations.incrementAndGet();
+                        } else if ("free".equals(method.getName())) {
+                            mServiceClientFrees.incrementAndGet();
+                        }
+
+                        return null;
+                    }
+                });
+    }
+}
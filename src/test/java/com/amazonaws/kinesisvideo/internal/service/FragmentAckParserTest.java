@@ -0,0 +1,110 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+
+/**
+ * FragmentAckParser class tests
+ */
+public class FragmentAckParserTest {
+    private static final String TEST_PERSISTED_ACK = "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":1540000000123,"
+            + "\"FragmentNumber\":\"91343852333181432392682062607743920146264708\"}";
+    private static final String TEST_BUFFERING_ACK = "{\"EventType\" : \"BUFFERING\", \"FragmentTimecode\" : 2000}";
+    private static final String TEST_ERROR_ACK = "{\"EventType\":\"ERROR\",\"FragmentTimecode\":3000,"
+            + "\"ErrorId\":4005,\"Details\":{\"Nested\":\"}\"}}";
+
+    private FragmentAckParser mParser;
+
+    @Before
+    public void setupParser() {
+        mParser = new FragmentAckParser();
+    }
+
+    @Test
+    public void parsePersistedAckTest() {
+        feed(chunk(TEST_PERSISTED_ACK));
+
+        final KinesisVideoFragmentAck ack = mParser.nextAck();
+        assertNotNull(ack);
+        assertEquals(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, ack.getAckType().getIntType());
+        // The timecode is handed over as is, in milliseconds
+        assertEquals(1540000000123L, ack.getTimestamp());
+        assertEquals("91343852333181432392682062607743920146264708", ack.getSequenceNumber());
+        assertEquals(0, ack.getResult());
+        assertNull(mParser.nextAck());
+        assertFalse(mParser.isEndOfStream());
+    }
+
+    @Test
+    public void parseAcksWithWhitespaceAndNestedObjectsTest() {
+        feed(chunk(TEST_BUFFERING_ACK) + chunk(TEST_ERROR_ACK));
+
+        KinesisVideoFragmentAck ack = mParser.nextAck();
+        assertEquals(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, ack.getAckType().getIntType());
+        assertEquals(2000, ack.getTimestamp());
+
+        ack = mParser.nextAck();
+        assertEquals(FragmentAckType.FRAGMENT_ACK_TYPE_ERROR, ack.getAckType().getIntType());
+        assertEquals(3000, ack.getTimestamp());
+        assertEquals(4005, ack.getResult());
+        assertNull(mParser.nextAck());
+    }
+
+    @Test
+    public void parseAckSplitAcrossReadsTest() {
+        final byte[] input = (chunk(TEST_PERSISTED_ACK) + chunk(TEST_BUFFERING_ACK))
+                .getBytes(StandardCharsets.US_ASCII);
+
+        int acks = 0;
+        for (int i = 0; i < input.length; i++) {
+            mParser.feed(input, i, 1);
+            KinesisVideoFragmentAck ack;
+            while ((ack = mParser.nextAck()) != null) {
+                acks++;
+                assertEquals(acks == 1 ? 1540000000123L : 2000, ack.getTimestamp());
+            }
+        }
+
+        assertEquals(2, acks);
+    }
+
+    @Test
+    public void skipObjectsWithoutEventTypeTest() {
+        feed(chunk("{\"FragmentTimecode\":1000}") + chunk("{\"EventType\":\"UNKNOWN\"}"));
+
+        assertNull(mParser.nextAck());
+    }
+
+    @Test
+    public void endOfStreamTest() {
+        feed(chunk(TEST_PERSISTED_ACK) + "0\r\n\r\n");
+
+        assertNotNull(mParser.nextAck());
+        assertNull(mParser.nextAck());
+        assertTrue(mParser.isEndOfStream());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void feedBeforeConsumedTest() {
+        feed(chunk(TEST_PERSISTED_ACK));
+        feed(chunk(TEST_PERSISTED_ACK));
+    }
+
+    private void feed(final String input) {
+        final byte[] bytes = input.getBytes(StandardCharsets.US_ASCII);
+        mParser.feed(bytes, 0, bytes.length);
+    }
+
+    private static String chunk(final String payload) {
+        final byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        return new String(ChunkEncoder.encode(bytes, bytes.length), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,101 @@
+package com.amazonaws.kinesisvideo.internal.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+
+/**
+ * ServiceTaskScheduler class tests
+ */
+public class ServiceTaskSchedulerTest {
+    private static final long TEST_TIMEOUT_IN_SECONDS = 5;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private ServiceTaskScheduler mScheduler;
+
+    @Before
+    public void setupScheduler() {
+        mScheduler = new ServiceTaskScheduler(Executors.newScheduledThreadPool(1),
+                Executors.newScheduledThreadPool(1), null, mLog);
+    }
+
+    @After
+    public void shutdownScheduler() {
+        mScheduler.shutdownNow();
+    }
+
+    @Test
+    public void controlPlaneDoesNotWaitBehindDataPlaneTest() throws Exception {
+        final CountDownLatch dataPlaneStarted = new CountDownLatch(1);
+        final CountDownLatch releaseDataPlane = new CountDownLatch(1);
+        final CountDownLatch controlPlaneDone = new CountDownLatch(1);
+
+        // The data plane task occupies the only thread of the shared pool
+        mScheduler.scheduleDataPlane(new Runnable() {
+            @Override
+            public void run() {
+                dataPlaneStarted.countDown();
+                awaitQuietly(releaseDataPlane);
+            }
+        }, 0);
+        assertTrue(dataPlaneStarted.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+
+        mScheduler.scheduleControlPlane(new Runnable() {
+            @Override
+            public void run() {
+                controlPlaneDone.countDown();
+            }
+        }, 0);
+
+        assertTrue(controlPlaneDone.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+        releaseDataPlane.countDown();
+    }
+
+    @Test
+    public void laneMetricsTest() throws Exception {
+        final CountDownLatch done = new CountDownLatch(2);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+
+        mScheduler.scheduleControlPlane(task, TimeUnit.MILLISECONDS.toNanos(10));
+        mScheduler.scheduleControlPlane(task, 0);
+        assertTrue(done.await(TEST_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+
+        final ServiceTaskLaneMetrics metrics = mScheduler.getControlPlaneMetrics();
+        assertEquals("ControlPlane", metrics.getLaneName());
+        assertEquals(2, metrics.getStartedTaskCount());
+        assertEquals(0, metrics.getQueueDepth());
+        assertTrue(metrics.getMaxWaitTimeInNanos() >= metrics.getAverageWaitTimeInNanos());
+        assertEquals(0, mScheduler.getDataPlaneMetrics().getStartedTaskCount());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
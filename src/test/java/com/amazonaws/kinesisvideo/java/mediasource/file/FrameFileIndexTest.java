@@ -0,0 +1,143 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+
+/**
+ * FrameFileIndex class tests
+ */
+public class FrameFileIndexTest {
+    private static final String FILENAME_FORMAT = "frame-%03d.h264";
+
+    private File mDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("frame-index").toFile();
+        for (int i = 1; i <= 3; i++) {
+            Files.write(new File(mDirectory, String.format(FILENAME_FORMAT, i)).toPath(), bytes("frame " + i));
+        }
+    }
+
+    @After
+    public void teardown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void servesMappedFramesTest() throws KinesisVideoException {
+        final FrameFileIndex index = forImageFiles(false);
+
+        assertEquals(3, index.getFrameCount());
+        assertFalse(index.isCached());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("frame " + (i + 1), string(index.getFrameData(i)));
+            assertEquals(("frame " + (i + 1)).length(), index.getLength(i));
+        }
+
+        index.close();
+    }
+
+    @Test
+    public void servesCachedFramesTest() throws KinesisVideoException {
+        final FrameFileIndex index = forImageFiles(true);
+
+        assertTrue(index.isCached());
+        assertEquals("frame 2", string(index.getFrameData(1)));
+        assertTrue(index.getFrameData(1).isDirect());
+        index.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedIndexDoesNotServeFramesTest() throws KinesisVideoException {
+        final FrameFileIndex index = forImageFiles(false);
+        index.close();
+
+        index.getFrameData(0);
+    }
+
+    @Test(expected = KinesisVideoException.class)
+    public void missingFrameFileFailsTest() throws KinesisVideoException {
+        FrameFileIndex.forImageFiles(mDirectory.getPath() + File.separator, FILENAME_FORMAT, 1, 4, false);
+    }
+
+    @Test
+    public void ordersAudioVideoFramesByTimecodeTest() throws IOException, KinesisVideoException {
+        final File avDirectory = new File(mDirectory, "av");
+        assertTrue(avDirectory.mkdir());
+        try {
+            Files.write(new File(avDirectory, "20000-audio-false-frame").toPath(), bytes("audio"));
+            Files.write(new File(avDirectory, "10000-video-true-frame").toPath(), bytes("video"));
+
+            final FrameFileIndex index = FrameFileIndex.forAudioVideoFiles(avDirectory.getPath(), false);
+
+            assertEquals(2, index.getFrameCount());
+            assertEquals(10000, index.getTimecode(0));
+            assertTrue(index.isKeyFrame(0));
+            assertEquals("video", string(index.getFrameData(0)));
+            assertEquals(20000, index.getTimecode(1));
+            assertFalse(index.isKeyFrame(1));
+            index.close();
+        } finally {
+            final File[] files = avDirectory.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    file.delete();
+                }
+            }
+
+            avDirectory.delete();
+        }
+    }
+
+    @Test
+    public void imageFrameSourceIndexesFilesOnStartTest() {
+        // Creating the source doesn't touch the files
+        final ImageFrameSource source = new ImageFrameSource(new ImageFileMediaSourceConfiguration.Builder()
+                .fps(25)
+                .dir(new File(mDirectory, "missing").getPath() + File.separator)
+                .filenameFormat(FILENAME_FORMAT)
+                .startFileIndex(1)
+                .endFileIndex(3)
+                .build());
+
+        try {
+            source.start();
+            fail("Started without the frame files");
+        } catch (final KinesisVideoException e) {
+            // Expected
+        }
+    }
+
+    private FrameFileIndex forImageFiles(final boolean cached) throws KinesisVideoException {
+        return FrameFileIndex.forImageFiles(mDirectory.getPath() + File.separator, FILENAME_FORMAT, 1, 3, cached);
+    }
+
+    private static String string(final ByteBuffer buffer) {
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
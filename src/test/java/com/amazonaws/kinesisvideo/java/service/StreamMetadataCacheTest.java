@@ -0,0 +1,129 @@
+package com.amazonaws.kinesisvideo.java.service;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+import com.amazonaws.kinesisvideo.producer.StreamStatus;
+
+/**
+ * StreamMetadataCache class tests
+ */
+public class StreamMetadataCacheTest {
+    private static final long TTL_IN_MILLIS = 60 * 1000;
+    private static final String STREAM_NAME = "stream";
+    private static final String API_NAME = "PUT_MEDIA";
+    private static final String DATA_ENDPOINT = "https://data.example.com";
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private File mDirectory;
+    private File mCacheFile;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("metadata-cache").toFile();
+        mCacheFile = new File(mDirectory, "cache.properties");
+    }
+
+    @After
+    public void teardown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void cachesActiveStreamDescriptionsOnlyTest() {
+        final StreamMetadataCache cache = new StreamMetadataCache(TTL_IN_MILLIS, null, mLog);
+
+        cache.putStreamDescription(createDescription(StreamStatus.CREATING));
+        assertNull(cache.getStreamDescription(STREAM_NAME));
+
+        cache.putStreamDescription(createDescription(StreamStatus.ACTIVE));
+        assertEquals("arn", cache.getStreamDescription(STREAM_NAME).getStreamArn());
+        cache.close();
+    }
+
+    @Test
+    public void invalidateDropsDescriptionAndEndpointsTest() {
+        final StreamMetadataCache cache = new StreamMetadataCache(TTL_IN_MILLIS, null, mLog);
+        cache.putStreamDescription(createDescription(StreamStatus.ACTIVE));
+        cache.putDataEndpoint(STREAM_NAME, API_NAME, DATA_ENDPOINT);
+        cache.putDataEndpoint("other", API_NAME, DATA_ENDPOINT);
+
+        cache.invalidate(STREAM_NAME);
+
+        assertNull(cache.getStreamDescription(STREAM_NAME));
+        assertNull(cache.getDataEndpoint(STREAM_NAME, API_NAME));
+        assertEquals(DATA_ENDPOINT, cache.getDataEndpoint("other", API_NAME));
+        cache.close();
+    }
+
+    @Test
+    public void expiredEntriesAreNotReturnedTest() throws InterruptedException {
+        final StreamMetadataCache cache = new StreamMetadataCache(1, null, mLog);
+        cache.putDataEndpoint(STREAM_NAME, API_NAME, DATA_ENDPOINT);
+
+        Thread.sleep(5);
+
+        assertNull(cache.getDataEndpoint(STREAM_NAME, API_NAME));
+        cache.close();
+    }
+
+    @Test
+    public void persistedEntriesSurviveRestartTest() {
+        final StreamMetadataCache cache = new StreamMetadataCache(TTL_IN_MILLIS, mCacheFile, mLog);
+        cache.putStreamDescription(createDescription(StreamStatus.ACTIVE));
+        cache.putDataEndpoint(STREAM_NAME, API_NAME, DATA_ENDPOINT);
+        cache.close();
+
+        assertTrue(mCacheFile.isFile());
+
+        final StreamMetadataCache restored = new StreamMetadataCache(TTL_IN_MILLIS, mCacheFile, mLog);
+        final StreamDescription description = restored.getStreamDescription(STREAM_NAME);
+        assertNotNull(description);
+        assertEquals("arn", description.getStreamArn());
+        assertEquals("video/h264", description.getContentType());
+        assertEquals(DATA_ENDPOINT, restored.getDataEndpoint(STREAM_NAME, API_NAME));
+        restored.close();
+    }
+
+    @Test
+    public void invalidationIsPersistedTest() {
+        final StreamMetadataCache cache = new StreamMetadataCache(TTL_IN_MILLIS, mCacheFile, mLog);
+        cache.putDataEndpoint(STREAM_NAME, API_NAME, DATA_ENDPOINT);
+        cache.invalidate(STREAM_NAME);
+        cache.close();
+
+        final StreamMetadataCache restored = new StreamMetadataCache(TTL_IN_MILLIS, mCacheFile, mLog);
+        assertNull(restored.getDataEndpoint(STREAM_NAME, API_NAME));
+        restored.close();
+    }
+
+    private static StreamDescription createDescription(final StreamStatus status) {
+        return new StreamDescription(StreamDescription.STREAM_DESCRIPTION_CURRENT_VERSION, "device", STREAM_NAME,
+                "video/h264", "1", "arn", status, 0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.amazonaws.kinesisvideo.socket;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+
+/**
+ * ConnectionManager class tests against a local server
+ */
+public class ConnectionManagerTest {
+    private static final long TEST_TIMEOUT_IN_MILLIS = 5000;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private final List<Socket> mCreatedSockets = new CopyOnWriteArrayList<Socket>();
+
+    private ServerSocket mServerSocket;
+    private URI mUri;
+    private ConnectionManager mConnectionManager;
+
+    @Before
+    public void setup() throws IOException {
+        // The connections are left in the backlog, which is enough for the client side
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        mUri = URI.create("http://127.0.0.1:" + mServerSocket.getLocalPort() + "/putMedia");
+        mConnectionManager = new ConnectionManager(new SocketFactory() {
+            @Override
+            public Socket createSocket(final URI uri) {
+                final Socket socket = super.createSocket(uri);
+                mCreatedSockets.add(socket);
+                return socket;
+            }
+        }, mLog);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        mConnectionManager.close();
+        mServerSocket.close();
+    }
+
+    @Test
+    public void acquireReusesPrewarmedSpareTest() throws Exception {
+        final Socket first = mConnectionManager.acquire(mUri);
+        assertSame(mCreatedSockets.get(0), first);
+        awaitCreatedSockets(2);
+
+        final Socket second = mConnectionManager.acquire(mUri);
+        assertSame(mCreatedSockets.get(1), second);
+        assertFalse(second.isClosed());
+    }
+
+    @Test
+    public void releaseOfLastConnectionClosesSpareTest() throws Exception {
+        mConnectionManager.acquire(mUri);
+        awaitCreatedSockets(2);
+        final Socket spare = mCreatedSockets.get(1);
+
+        mConnectionManager.release(mUri);
+        assertTrue(spare.isClosed());
+
+        // No spare is left to reuse
+        final Socket next = mConnectionManager.acquire(mUri);
+        assertNotSame(spare, next);
+    }
+
+    @Test
+    public void closedSpareIsNotReusedTest() throws Exception {
+        mConnectionManager.acquire(mUri);
+        awaitCreatedSockets(2);
+        final Socket spare = mCreatedSockets.get(1);
+        spare.close();
+
+        final Socket next = mConnectionManager.acquire(mUri);
+        assertNotSame(spare, next);
+        assertFalse(next.isClosed());
+    }
+
+    @Test
+    public void closeClosesSpareTest() throws Exception {
+        mConnectionManager.acquire(mUri);
+        awaitCreatedSockets(2);
+
+        mConnectionManager.close();
+        assertTrue(mCreatedSockets.get(1).isClosed());
+    }
+
+    private void awaitCreatedSockets(final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_IN_MILLIS);
+        while (mCreatedSockets.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue("Spare connection was not opened", mCreatedSockets.size() >= count);
+        // The spare is handed over right after it's connected
+        Thread.sleep(50);
+    }
+}
@@ -0,0 +1,198 @@
+package com.amazonaws.kinesisvideo.storage;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+/**
+ * FragmentJournal class tests
+ */
+public class FragmentJournalTest {
+    /**
+     * Four frames fit into a segment
+     */
+    private static final int FRAME_SIZE = 200;
+    private static final long SEGMENT_SIZE = 1024;
+    private static final long DISK_QUOTA = 16 * SEGMENT_SIZE;
+
+    /**
+     * The default timecode scale of a millisecond in hundreds of nanoseconds
+     */
+    private static final long TIMECODE_SCALE = 10000;
+    private static final int FRAMES_PER_FRAGMENT = 5;
+    private static final long FRAME_DURATION = 400000;
+    private static final long START_TS = 16000000000000000L;
+    private static final String SEQUENCE_NUMBER = "91343852333181432392682062607743920146264708";
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private File mDirectory;
+    private int mFrameIndex;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void teardown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void persistedFragmentsAreDeletedTest() throws IOException {
+        final FragmentJournal journal = createJournal(TIMECODE_SCALE);
+        for (int fragment = 0; fragment < 4; fragment++) {
+            appendFragment(journal, fragment);
+            if (fragment > 0) {
+                appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, fragment - 1, TIMECODE_SCALE);
+                appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, fragment - 1, TIMECODE_SCALE);
+            }
+        }
+
+        appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 3, TIMECODE_SCALE);
+
+        // Only the segment being written to is left
+        assertEquals(4 * FRAMES_PER_FRAGMENT, journal.getJournaledFrames());
+        assertEquals(SEGMENT_SIZE, journal.getAllocatedBytes());
+        assertEquals(1, segmentFileCount());
+        assertEquals(0, journal.getDroppedSegments());
+        journal.close();
+
+        final FragmentJournal recovered = createJournal(TIMECODE_SCALE);
+        assertEquals(0, recovered.getReplayFragmentCount());
+        assertEquals(0, recovered.getReplayFrameCount());
+        assertNull(recovered.nextReplayFrame());
+        recovered.close();
+    }
+
+    @Test
+    public void unpersistedFragmentIsReplayedTest() throws IOException {
+        final FragmentJournal journal = createJournal(TIMECODE_SCALE);
+        appendFragment(journal, 0);
+        appendFragment(journal, 1);
+        appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 0, TIMECODE_SCALE);
+        appendFragment(journal, 2);
+        appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 1, TIMECODE_SCALE);
+        // Received but never persisted
+        appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, 2, TIMECODE_SCALE);
+        journal.close();
+
+        final FragmentJournal recovered = createJournal(TIMECODE_SCALE);
+        assertEquals(1, recovered.getReplayFragmentCount());
+        assertEquals(FRAMES_PER_FRAGMENT, recovered.getReplayFrameCount());
+        assertEquals(FRAMES_PER_FRAGMENT * FRAME_SIZE, recovered.getReplayBytes());
+        for (int i = 0; i < FRAMES_PER_FRAGMENT; i++) {
+            final KinesisVideoFrame frame = recovered.nextReplayFrame();
+            assertNotNull(frame);
+            assertEquals(2 * FRAMES_PER_FRAGMENT + i, frame.getIndex());
+            assertEquals(presentationTs(2, i), frame.getPresentationTs());
+            assertEquals(i == 0, FrameFlags.isKeyFrame(frame.getFlags()));
+            assertEquals((byte) frame.getIndex(), frame.getData().get(0));
+        }
+
+        assertNull(recovered.nextReplayFrame());
+        recovered.completeReplay();
+        assertEquals(0, segmentFileCount());
+        recovered.close();
+    }
+
+    @Test
+    public void acksUseStreamTimecodeScaleTest() throws IOException {
+        // A microsecond timecode scale
+        final long timecodeScale = 10;
+        final FragmentJournal journal = createJournal(timecodeScale);
+        appendFragment(journal, 0);
+        appendFragment(journal, 1);
+        appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, 0, timecodeScale);
+        appendAck(journal, FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 0, timecodeScale);
+        journal.close();
+
+        final FragmentJournal recovered = createJournal(timecodeScale);
+        assertEquals(1, recovered.getReplayFragmentCount());
+        assertEquals(presentationTs(1, 0), recovered.nextReplayFrame().getPresentationTs());
+        recovered.close();
+    }
+
+    @Test
+    public void closedJournalReplaysNothingTest() throws IOException {
+        final FragmentJournal journal = createJournal(TIMECODE_SCALE);
+        appendFragment(journal, 0);
+        journal.close();
+
+        final FragmentJournal recovered = createJournal(TIMECODE_SCALE);
+        assertEquals(1, recovered.getReplayFragmentCount());
+        assertNotNull(recovered.nextReplayFrame());
+        recovered.close();
+
+        assertNull(recovered.nextReplayFrame());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timecodeScaleIsRequiredTest() throws IOException {
+        createJournal(0);
+    }
+
+    private FragmentJournal createJournal(final long timecodeScale) throws IOException {
+        return new FragmentJournal(mDirectory, SEGMENT_SIZE, DISK_QUOTA, timecodeScale, mLog);
+    }
+
+    private void appendFragment(final FragmentJournal journal, final int fragment) throws IOException {
+        for (int i = 0; i < FRAMES_PER_FRAGMENT; i++) {
+            final ByteBuffer data = ByteBuffer.allocate(FRAME_SIZE);
+            data.put(0, (byte) mFrameIndex);
+            journal.appendFrame(new KinesisVideoFrame(mFrameIndex++,
+                    i == 0 ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                    presentationTs(fragment, i),
+                    presentationTs(fragment, i),
+                    FRAME_DURATION,
+                    data));
+        }
+    }
+
+    /**
+     * Appends the ACK with the fragment timecode, i.e. the key-frame timestamp in the timecode scale
+     */
+    private static void appendAck(final FragmentJournal journal, final int ackType, final int fragment,
+                                  final long timecodeScale) throws IOException {
+        journal.appendAck(new KinesisVideoFragmentAck(ackType, presentationTs(fragment, 0) / timecodeScale,
+                SEQUENCE_NUMBER, 0));
+    }
+
+    private static long presentationTs(final int fragment, final int frame) {
+        return START_TS + (fragment * FRAMES_PER_FRAGMENT + frame) * FRAME_DURATION;
+    }
+
+    private int segmentFileCount() {
+        final File[] files = mDirectory.listFiles();
+        return files == null ? 0 : files.length;
+    }
+}
@@ -0,0 +1,258 @@
+package com.amazonaws.kinesisvideo.storage;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+/**
+ * FrameSpillStore class tests
+ */
+public class FrameSpillStoreTest {
+    /**
+     * With the 44 byte record header two frames fit into a segment and two segments into the quota
+     */
+    private static final int FRAME_SIZE = 56;
+    private static final long SEGMENT_SIZE = 200;
+    private static final long DISK_QUOTA = 2 * SEGMENT_SIZE;
+    private static final long TRACK_ID = 2;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            // Quiet
+        }
+    });
+
+    private File mDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("spill").toFile();
+    }
+
+    @After
+    public void teardown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void drainsFramesInOrderTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        assertTrue(store.isEmpty());
+        assertNull(store.peek());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(store.append(frame(i, i == 0)));
+        }
+
+        assertEquals(3, store.getDepthFrames());
+        assertEquals(3, store.getSpilledFrames());
+        for (int i = 0; i < 3; i++) {
+            final KinesisVideoFrame frame = store.peek();
+            assertNotNull(frame);
+            assertEquals(i, frame.getIndex());
+            assertEquals(i == 0, FrameFlags.isKeyFrame(frame.getFlags()));
+            assertEquals(i * 1000, frame.getDecodingTs());
+            assertEquals(i * 1000 + 1, frame.getPresentationTs());
+            assertEquals(1000, frame.getDuration());
+            assertEquals(TRACK_ID, frame.getTrackId());
+            assertEquals(FRAME_SIZE, frame.getSize());
+            assertEquals((byte) i, frame.getData().get(FRAME_SIZE - 1));
+            store.remove();
+        }
+
+        assertTrue(store.isEmpty());
+        assertNull(store.peek());
+        assertEquals(3, store.getDrainedFrames());
+        assertEquals(3 * FRAME_SIZE, store.getDrainedBytes());
+        store.close();
+    }
+
+    @Test
+    public void deletesDrainedSegmentsTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        for (int i = 0; i < 3; i++) {
+            store.append(frame(i, i == 0));
+        }
+
+        assertEquals(2, segmentFileCount());
+        assertEquals(DISK_QUOTA, store.getAllocatedBytes());
+
+        store.remove();
+        store.remove();
+
+        assertEquals(1, segmentFileCount());
+        assertEquals(SEGMENT_SIZE, store.getAllocatedBytes());
+        assertEquals(1, store.getDepthFrames());
+        store.close();
+    }
+
+    @Test
+    public void dropOldestEvictsUpToKeyFrameTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        // Segments of [K0, P1] [P2, K3], the fifth frame evicts the first one
+        for (int i = 0; i < 5; i++) {
+            assertTrue(store.append(frame(i, i == 0 || i == 3)));
+        }
+
+        assertEquals(2, store.getEvictedFrames());
+        assertEquals(DISK_QUOTA, store.getAllocatedBytes());
+
+        // P2 depends on the evicted frames
+        final KinesisVideoFrame frame = store.peek();
+        assertNotNull(frame);
+        assertEquals(3, frame.getIndex());
+        assertEquals(3, store.getEvictedFrames());
+        assertEquals(2, store.getDepthFrames());
+        store.close();
+    }
+
+    @Test
+    public void evictedFrameIsNotRemovedTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        for (int i = 0; i < 4; i++) {
+            store.append(frame(i, i % 2 == 0));
+        }
+
+        assertEquals(0, store.peek().getIndex());
+        final long headSequence = store.getHeadSequence();
+
+        // Evicts the peeked frame while it's being put
+        store.append(frame(4, true));
+
+        assertFalse(store.remove(headSequence));
+        assertEquals(2, store.peek().getIndex());
+        assertTrue(store.remove(store.getHeadSequence()));
+        assertEquals(3, store.peek().getIndex());
+        assertEquals(1, store.getDrainedFrames());
+        store.close();
+    }
+
+    @Test
+    public void droppedFrameSkipsUpToKeyFrameTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(store.append(frame(i, i == 0 || i == 3)));
+        }
+
+        assertEquals(0, store.peek().getIndex());
+        final long headSequence = store.getHeadSequence();
+        assertTrue(store.drop(headSequence));
+        assertFalse(store.drop(headSequence));
+
+        // P1 and P2 depend on the dropped frame
+        assertEquals(3, store.peek().getIndex());
+        assertEquals(1, store.getDroppedFrames());
+        assertEquals(2, store.getEvictedFrames());
+        assertEquals(0, store.getDrainedFrames());
+        assertEquals(1, store.getDepthFrames());
+        store.close();
+    }
+
+    @Test
+    public void dropNewestRejectsUpToKeyFrameTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_NEWEST);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(store.append(frame(i, i == 0)));
+        }
+
+        assertFalse(store.append(frame(4, false)));
+        assertEquals(1, store.getRejectedFrames());
+
+        store.remove();
+        store.remove();
+
+        // There is room again but the frame depends on the rejected one
+        assertFalse(store.append(frame(5, false)));
+        assertTrue(store.append(frame(6, true)));
+        assertEquals(2, store.getRejectedFrames());
+        assertEquals(0, store.getEvictedFrames());
+        assertEquals(3, store.getDepthFrames());
+        assertEquals(2, store.peek().getIndex());
+        store.close();
+    }
+
+    @Test
+    public void closeDeletesSegmentsTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        for (int i = 0; i < 3; i++) {
+            store.append(frame(i, i == 0));
+        }
+
+        store.close();
+
+        assertEquals(0, segmentFileCount());
+        assertTrue(store.isEmpty());
+        assertFalse(store.remove(store.getHeadSequence()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedStoreRejectsAppendTest() throws IOException {
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+        store.close();
+
+        store.append(frame(0, true));
+    }
+
+    @Test
+    public void deletesLeftOverSegmentsTest() throws IOException {
+        final File leftOver = new File(mDirectory, "segment-7.spill");
+        final File other = new File(mDirectory, "other.txt");
+        assertTrue(leftOver.createNewFile());
+        assertTrue(other.createNewFile());
+
+        final FrameSpillStore store = createStore(FrameSpillStore.EvictionPolicy.DROP_OLDEST);
+
+        assertFalse(leftOver.exists());
+        assertTrue(other.exists());
+        store.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quotaFitsTwoSegmentsTest() throws IOException {
+        new FrameSpillStore(mDirectory, SEGMENT_SIZE, 2 * SEGMENT_SIZE - 1,
+                FrameSpillStore.EvictionPolicy.DROP_OLDEST, mLog);
+    }
+
+    private FrameSpillStore createStore(final FrameSpillStore.EvictionPolicy evictionPolicy) throws IOException {
+        return new FrameSpillStore(mDirectory, SEGMENT_SIZE, DISK_QUOTA, evictionPolicy, mLog);
+    }
+
+    private int segmentFileCount() {
+        final File[] files = mDirectory.listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    private static KinesisVideoFrame frame(final int index, final boolean keyFrame) {
+        final ByteBuffer data = ByteBuffer.allocate(FRAME_SIZE);
+        data.put(FRAME_SIZE - 1, (byte) index);
+        return new KinesisVideoFrame(index,
+                keyFrame ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                index * 1000L,
+                index * 1000L + 1,
+                1000,
+                data,
+                TRACK_ID);
+    }
+}
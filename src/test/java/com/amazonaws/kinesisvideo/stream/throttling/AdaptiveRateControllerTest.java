@@ -0,0 +1,125 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * AdaptiveRateController class tests
+ */
+public class AdaptiveRateControllerTest {
+    private static final long MIN_BITS_PER_SECOND = 100 * 1000;
+    private static final long MAX_BITS_PER_SECOND = 1000 * 1000;
+    private static final long MAX_ENCODER_BITS_PER_SECOND = 800 * 1000;
+
+    private final List<long[]> mRateChanges = new ArrayList<long[]>();
+    private AdaptiveRateController mController;
+
+    @Before
+    public void setup() {
+        mController = new AdaptiveRateController(MIN_BITS_PER_SECOND, MAX_BITS_PER_SECOND,
+                MAX_ENCODER_BITS_PER_SECOND);
+        mController.addListener(new AdaptiveRateController.Listener() {
+            @Override
+            public void onRateChanged(final long uploadBitsPerSecond, final long encoderBitsPerSecond) {
+                mRateChanges.add(new long[] { uploadBitsPerSecond, encoderBitsPerSecond });
+            }
+        });
+    }
+
+    @Test
+    public void startsAtMaxRateTest() {
+        assertEquals(MAX_BITS_PER_SECOND, mController.getBitsPerSecond());
+        assertEquals(MAX_ENCODER_BITS_PER_SECOND, mController.getEncoderBitsPerSecond());
+        assertEquals(0, mController.getSmoothedRttMillis());
+    }
+
+    @Test
+    public void congestionDecreasesMultiplicativelyTest() {
+        mController.onCongestion();
+
+        assertEquals(700 * 1000, mController.getBitsPerSecond());
+        assertEquals(1, mRateChanges.size());
+        assertEquals(700 * 1000, mRateChanges.get(0)[0]);
+        // The encoder bitrate keeps the headroom below the upload rate
+        assertEquals(595 * 1000, mRateChanges.get(0)[1]);
+    }
+
+    @Test
+    public void backToBackCongestionDecreasesOnceTest() {
+        mController.onCongestion();
+        mController.onCongestion();
+
+        assertEquals(700 * 1000, mController.getBitsPerSecond());
+        assertEquals(1, mRateChanges.size());
+    }
+
+    @Test
+    public void decreaseStopsAtMinRateTest() {
+        final AdaptiveRateController controller = new AdaptiveRateController(MAX_BITS_PER_SECOND - 1,
+                MAX_BITS_PER_SECOND, MAX_ENCODER_BITS_PER_SECOND);
+        controller.onCongestion();
+
+        assertEquals(MAX_BITS_PER_SECOND - 1, controller.getBitsPerSecond());
+    }
+
+    @Test
+    public void steadyRttIncreasesAdditivelyTest() {
+        mController.onCongestion();
+        mRateChanges.clear();
+
+        mController.onFragmentStarted();
+        mController.onFragmentStarted();
+        mController.onFragmentReceived();
+
+        assertEquals(750 * 1000, mController.getBitsPerSecond());
+        assertEquals(1, mRateChanges.size());
+    }
+
+    @Test
+    public void increaseStopsAtMaxRateTest() {
+        mController.onFragmentStarted();
+        mController.onFragmentStarted();
+        mController.onFragmentReceived();
+
+        assertEquals(MAX_BITS_PER_SECOND, mController.getBitsPerSecond());
+        assertTrue(mRateChanges.isEmpty());
+    }
+
+    @Test
+    public void lastFragmentInFlightIsNotMeasuredTest() {
+        mController.onCongestion();
+        mRateChanges.clear();
+
+        // The fragment hasn't ended so there is no round trip time yet
+        mController.onFragmentStarted();
+        mController.onFragmentReceived();
+        mController.onFragmentReceived();
+
+        assertEquals(700 * 1000, mController.getBitsPerSecond());
+        assertTrue(mRateChanges.isEmpty());
+    }
+
+    @Test
+    public void removedListenerIsNotNotifiedTest() {
+        final AdaptiveRateController controller = new AdaptiveRateController(MIN_BITS_PER_SECOND,
+                MAX_BITS_PER_SECOND, MAX_ENCODER_BITS_PER_SECOND);
+        final List<Long> rates = new ArrayList<Long>();
+        final AdaptiveRateController.Listener listener = new AdaptiveRateController.Listener() {
+            @Override
+            public void onRateChanged(final long uploadBitsPerSecond, final long encoderBitsPerSecond) {
+                rates.add(uploadBitsPerSecond);
+            }
+        };
+        controller.addListener(listener);
+        controller.removeListener(listener);
+
+        controller.onCongestion();
+
+        assertTrue(rates.isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * BandwidthThrottlerImpl class tests
+ */
+public class BandwidthThrottlerImplTest {
+    /**
+     * 160 kbps, i.e. 1024 bytes per 50 ms sub-interval
+     */
+    private static final long MAX_BPS = 160 * 1024;
+    private static final int BYTES_PER_SUBINTERVAL = 1024;
+    private static final long SUBINTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void allowsSubintervalBudgetTest() {
+        final BandwidthThrottlerImpl throttler = new BandwidthThrottlerImpl(MAX_BPS);
+
+        assertEquals(0, throttler.getNanosUntilAllowed(1));
+        assertEquals(100, throttler.tryGetAllowedBytes(100));
+        assertEquals(BYTES_PER_SUBINTERVAL - 100, throttler.tryGetAllowedBytes(4 * BYTES_PER_SUBINTERVAL));
+    }
+
+    @Test
+    public void exhaustedBudgetReportsRefillDelayTest() {
+        final BandwidthThrottlerImpl throttler = new BandwidthThrottlerImpl(MAX_BPS);
+        throttler.tryGetAllowedBytes(BYTES_PER_SUBINTERVAL);
+
+        final long delay = throttler.getNanosUntilAllowed(1);
+        if (throttler.tryGetAllowedBytes(1) == 0) {
+            assertTrue(delay > 0);
+            assertTrue(delay <= SUBINTERVAL_NANOS);
+        }
+
+        assertEquals(0, throttler.getNanosUntilAllowed(0));
+    }
+
+    @Test
+    public void blockingCallWaitsForRefillTest() {
+        final BandwidthThrottlerImpl throttler = new BandwidthThrottlerImpl(MAX_BPS);
+        throttler.tryGetAllowedBytes(BYTES_PER_SUBINTERVAL);
+
+        final int allowed = throttler.getAllowedBytes(BYTES_PER_SUBINTERVAL);
+
+        assertTrue(allowed > 0);
+        assertTrue(allowed <= BYTES_PER_SUBINTERVAL);
+    }
+
+    @Test
+    public void releasedBytesAreAllowedAgainTest() {
+        final BandwidthThrottlerImpl throttler = new BandwidthThrottlerImpl(MAX_BPS);
+        assertEquals(BYTES_PER_SUBINTERVAL, throttler.tryGetAllowedBytes(BYTES_PER_SUBINTERVAL));
+
+        throttler.releaseUnusedBytes(BYTES_PER_SUBINTERVAL);
+        // Not above the budget of the sub-interval
+        throttler.releaseUnusedBytes(BYTES_PER_SUBINTERVAL);
+
+        assertEquals(BYTES_PER_SUBINTERVAL, throttler.tryGetAllowedBytes(4 * BYTES_PER_SUBINTERVAL));
+    }
+
+    @Test
+    public void rateChangeTakesEffectTest() {
+        final BandwidthThrottlerImpl throttler = new BandwidthThrottlerImpl(MAX_BPS);
+
+        throttler.setUpstreamKbps(80);
+
+        assertEquals(BYTES_PER_SUBINTERVAL / 2, throttler.tryGetAllowedBytes(4 * BYTES_PER_SUBINTERVAL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveRateTest() {
+        new BandwidthThrottlerImpl(MAX_BPS).setUpstreamKbps(0);
+    }
+}
@@ -0,0 +1,206 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * FramePacingScheduler class tests
+ */
+public class FramePacingSchedulerTest {
+    private static final int FRAMES_PER_SECOND = 200;
+    private static final long TEST_TIMEOUT_IN_MILLIS = 5000;
+
+    private FramePacingScheduler mScheduler;
+
+    @Before
+    public void setup() {
+        mScheduler = new FramePacingScheduler(1, FramePacingScheduler.DEFAULT_TICK_IN_MICROS,
+                FramePacingScheduler.DEFAULT_WHEEL_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void emitsFramesAtFrameRateTest() throws InterruptedException {
+        final CountDownLatch frames = new CountDownLatch(20);
+        final FramePacingScheduler.Registration registration = mScheduler.register("source", FRAMES_PER_SECOND,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        frames.countDown();
+                        return true;
+                    }
+                });
+
+        final long startNanos = System.nanoTime();
+        assertTrue(frames.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        // 19 periods of 5 ms after the first frame, which is emitted right away
+        assertTrue("Emitted too fast: " + elapsedMillis + " ms", elapsedMillis >= 90);
+        assertEquals("source", registration.getName());
+        assertTrue(registration.getFramesEmitted() >= 20);
+        assertTrue(mScheduler.getRegistrations().contains(registration));
+    }
+
+    @Test
+    public void blockedSourcesDoNotDelayOtherSourcesTest() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(2);
+        final FramePacingScheduler.FrameEmitter blockingEmitter = new FramePacingScheduler.FrameEmitter() {
+            @Override
+            public boolean emitFrame() {
+                blocked.countDown();
+                try {
+                    release.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return true;
+            }
+        };
+
+        // Both block more workers than the single core one
+        mScheduler.register("blocked-1", FRAMES_PER_SECOND, blockingEmitter);
+        mScheduler.register("blocked-2", FRAMES_PER_SECOND, blockingEmitter);
+        assertTrue(blocked.await(TEST_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+
+        final CountDownLatch frames = new CountDownLatch(10);
+        mScheduler.register("live", FRAMES_PER_SECOND, new FramePacingScheduler.FrameEmitter() {
+            @Override
+            public boolean emitFrame() {
+                frames.countDown();
+                return true;
+            }
+        });
+
+        try {
+            assertTrue(frames.await(TEST_TIMEOUT_IN_MILLIS / 2, TimeUnit.MILLISECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void cancelStopsEmittingTest() throws InterruptedException {
+        final AtomicInteger frames = new AtomicInteger();
+        final FramePacingScheduler.Registration registration = mScheduler.register("source", FRAMES_PER_SECOND,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        frames.incrementAndGet();
+                        return true;
+                    }
+                });
+
+        awaitFrames(frames, 3);
+        registration.cancel();
+        // Let the frame in progress finish
+        Thread.sleep(20);
+        final int emitted = frames.get();
+        Thread.sleep(50);
+
+        assertEquals(emitted, frames.get());
+        assertTrue(registration.isCancelled());
+        assertFalse(mScheduler.getRegistrations().contains(registration));
+    }
+
+    @Test
+    public void emitterStopsItselfTest() throws InterruptedException {
+        final AtomicInteger frames = new AtomicInteger();
+        final FramePacingScheduler.Registration registration = mScheduler.register("source", FRAMES_PER_SECOND,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        return frames.incrementAndGet() < 3;
+                    }
+                });
+
+        awaitCancelled(registration);
+        Thread.sleep(50);
+
+        assertEquals(3, frames.get());
+    }
+
+    @Test
+    public void failingEmitterIsStoppedTest() throws InterruptedException {
+        final AtomicInteger frames = new AtomicInteger();
+        final FramePacingScheduler.Registration registration = mScheduler.register("source", FRAMES_PER_SECOND,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        frames.incrementAndGet();
+                        throw new IllegalStateException("broken source");
+                    }
+                });
+
+        awaitCancelled(registration);
+        Thread.sleep(50);
+
+        assertEquals(1, frames.get());
+    }
+
+    @Test
+    public void slowFramesAreSkippedTest() throws InterruptedException {
+        final AtomicInteger frames = new AtomicInteger();
+        final FramePacingScheduler.Registration registration = mScheduler.register("source", FRAMES_PER_SECOND,
+                new FramePacingScheduler.FrameEmitter() {
+                    @Override
+                    public boolean emitFrame() {
+                        if (frames.incrementAndGet() == 1) {
+                            try {
+                                // Four periods late
+                                Thread.sleep(20);
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+
+                        return true;
+                    }
+                });
+
+        awaitFrames(frames, 3);
+
+        assertTrue(registration.getFramesSkipped() >= 3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void registerAfterShutdownFailsTest() {
+        mScheduler.shutdown();
+        mScheduler.register("source", FRAMES_PER_SECOND, new FramePacingScheduler.FrameEmitter() {
+            @Override
+            public boolean emitFrame() {
+                return true;
+            }
+        });
+    }
+
+    private static void awaitFrames(final AtomicInteger frames, final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_IN_MILLIS);
+        while (frames.get() < count) {
+            assertTrue("Timed out waiting for the frames", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitCancelled(final FramePacingScheduler.Registration registration)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_IN_MILLIS);
+        while (!registration.isCancelled()) {
+            assertTrue("Timed out waiting for the source to stop", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * UplinkBandwidthScheduler and UplinkBandwidthShare class tests
+ */
+public class UplinkBandwidthSchedulerTest {
+    private static final long TOTAL_BITS_PER_SECOND = 1000 * 1000;
+    private static final long MIN_DEMAND_BITS_PER_SECOND = 64 * 1024;
+    private static final int LARGE_WRITE = 1 << 20;
+    private static final int SMALL_WRITE = 1000;
+    private static final long ALLOCATION_PERIOD_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(UplinkBandwidthScheduler.ALLOCATION_PERIOD_IN_MILLIS);
+
+    @Test
+    public void heldBackStreamsShareByWeightTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare light = scheduler.register("light", 1, 0);
+        final UplinkBandwidthShare heavy = scheduler.register("heavy", 3, 0);
+
+        light.tryGetAllowedBytes(LARGE_WRITE);
+        heavy.tryGetAllowedBytes(LARGE_WRITE);
+        allocate(scheduler);
+
+        assertEquals(TOTAL_BITS_PER_SECOND / 4, light.getAllocatedBitsPerSecond());
+        assertEquals(TOTAL_BITS_PER_SECOND * 3 / 4, heavy.getAllocatedBitsPerSecond());
+    }
+
+    @Test
+    public void higherPriorityIsServedFirstTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare important = scheduler.register("important", 1, 1);
+        final UplinkBandwidthShare other = scheduler.register("other", 1, 0);
+
+        important.tryGetAllowedBytes(LARGE_WRITE);
+        other.tryGetAllowedBytes(LARGE_WRITE);
+        allocate(scheduler);
+
+        assertEquals(TOTAL_BITS_PER_SECOND, important.getAllocatedBitsPerSecond());
+        assertEquals(0, other.getAllocatedBitsPerSecond());
+    }
+
+    @Test
+    public void idleStreamCapacityGoesToHeldBackStreamTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare idle = scheduler.register("idle", 1, 0);
+        final UplinkBandwidthShare busy = scheduler.register("busy", 1, 0);
+
+        busy.tryGetAllowedBytes(LARGE_WRITE);
+        allocate(scheduler);
+
+        assertEquals(MIN_DEMAND_BITS_PER_SECOND, idle.getAllocatedBitsPerSecond());
+        assertEquals(TOTAL_BITS_PER_SECOND - MIN_DEMAND_BITS_PER_SECOND, busy.getAllocatedBitsPerSecond());
+    }
+
+    @Test
+    public void cappedStreamLeavesRestToOthersTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare capped = scheduler.register("capped", 1, 0);
+        final UplinkBandwidthShare other = scheduler.register("other", 1, 0);
+        capped.setUpstreamKbps(100);
+
+        capped.tryGetAllowedBytes(LARGE_WRITE);
+        other.tryGetAllowedBytes(LARGE_WRITE);
+        allocate(scheduler);
+
+        assertEquals(100 * 1024, capped.getAllocatedBitsPerSecond());
+        assertEquals(TOTAL_BITS_PER_SECOND - 100 * 1024, other.getAllocatedBitsPerSecond());
+    }
+
+    @Test
+    public void releasedBytesAreNotCountedAsSentTest() throws InterruptedException {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare share = scheduler.register("stream");
+        share.tryGetAllowedBytes(LARGE_WRITE);
+        allocate(scheduler);
+
+        // Let the bucket of the 50 ms burst fill up
+        Thread.sleep(100);
+        final int allowed = share.tryGetAllowedBytes(SMALL_WRITE);
+        assertEquals(SMALL_WRITE, allowed);
+        share.releaseUnusedBytes(allowed);
+
+        // Neither held back nor sending
+        assertEquals(MIN_DEMAND_BITS_PER_SECOND, share.sampleDemand(ALLOCATION_PERIOD_NANOS));
+        assertEquals(0, share.getAchievedBitsPerSecond());
+        assertEquals(SMALL_WRITE, share.tryGetAllowedBytes(SMALL_WRITE));
+    }
+
+    @Test
+    public void registeredStreamUsesConfiguredWeightTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        scheduler.setStreamWeight("configured", 5, 2);
+
+        final UplinkBandwidthShare configured = scheduler.register("configured");
+        final UplinkBandwidthShare defaulted = scheduler.register("defaulted");
+
+        assertEquals(5, configured.getWeight());
+        assertEquals(2, configured.getPriority());
+        assertEquals(UplinkBandwidthScheduler.DEFAULT_WEIGHT, defaulted.getWeight());
+        assertEquals(UplinkBandwidthScheduler.DEFAULT_PRIORITY, defaulted.getPriority());
+        assertEquals(2, scheduler.getShares().size());
+
+        configured.close();
+        assertEquals(1, scheduler.getShares().size());
+    }
+
+    @Test
+    public void emptyBucketReportsRetryDelayTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare share = scheduler.register("stream");
+        allocate(scheduler);
+
+        // Drain the bucket
+        while (share.tryGetAllowedBytes(LARGE_WRITE) > 0) {
+            // Keep draining
+        }
+
+        final long delay = share.getNanosUntilAllowed(LARGE_WRITE);
+        assertTrue(delay > 0);
+        assertTrue(delay <= ALLOCATION_PERIOD_NANOS);
+        assertEquals(0, share.getNanosUntilAllowed(0));
+    }
+
+    @Test
+    public void blockingUploaderGetsBytesAfterRefillTest() {
+        final UplinkBandwidthScheduler scheduler = new UplinkBandwidthScheduler(TOTAL_BITS_PER_SECOND);
+        final UplinkBandwidthShare share = scheduler.register("stream");
+
+        assertTrue(share.getAllowedBytes(LARGE_WRITE) > 0);
+    }
+
+    /**
+     * Runs the allocation as if the next period was due
+     */
+    private static void allocate(final UplinkBandwidthScheduler scheduler) {
+        scheduler.allocateIfDue(System.nanoTime() + 2 * ALLOCATION_PERIOD_NANOS);
+    }
+}
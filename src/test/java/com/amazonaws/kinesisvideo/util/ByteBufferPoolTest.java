@@ -0,0 +1,74 @@
+package com.amazonaws.kinesisvideo.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * ByteBufferPool class tests
+ */
+public class ByteBufferPoolTest {
+    private static final int BUFFER_SIZE = 1024;
+
+    @Test
+    public void releasedBufferIsReusedClearedTest() {
+        final ByteBufferPool pool = new ByteBufferPool(BUFFER_SIZE, 2, false);
+        final ByteBuffer buffer = pool.acquire();
+        assertEquals(BUFFER_SIZE, buffer.capacity());
+        assertFalse(buffer.isDirect());
+
+        buffer.put(new byte[16]).flip();
+        pool.release(buffer);
+
+        final ByteBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(BUFFER_SIZE, reused.limit());
+        assertNotSame(buffer, pool.acquire());
+    }
+
+    @Test
+    public void idleBuffersAreCappedTest() {
+        final ByteBufferPool pool = new ByteBufferPool(BUFFER_SIZE, 1, true);
+        final ByteBuffer first = pool.acquire();
+        final ByteBuffer second = pool.acquire();
+        assertTrue(first.isDirect());
+
+        pool.release(first);
+        pool.release(second);
+
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test
+    public void foreignBuffersAreNotPooledTest() {
+        final ByteBufferPool pool = new ByteBufferPool(BUFFER_SIZE, 2, true);
+        final ByteBuffer smaller = ByteBuffer.allocateDirect(BUFFER_SIZE / 2);
+        final ByteBuffer heap = ByteBuffer.allocate(BUFFER_SIZE);
+        pool.release(smaller);
+        pool.release(heap);
+
+        final ByteBuffer buffer = pool.acquire();
+        assertNotSame(smaller, buffer);
+        assertNotSame(heap, buffer);
+        assertEquals(BUFFER_SIZE, buffer.capacity());
+        assertTrue(buffer.isDirect());
+    }
+
+    @Test
+    public void zeroPooledBuffersAllocatesEveryTimeTest() {
+        final ByteBufferPool pool = new ByteBufferPool(BUFFER_SIZE, 0, false);
+        final ByteBuffer buffer = pool.acquire();
+        pool.release(buffer);
+
+        assertNotSame(buffer, pool.acquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bufferSizeIsPositiveTest() {
+        new ByteBufferPool(0, 1, false);
+    }
+}